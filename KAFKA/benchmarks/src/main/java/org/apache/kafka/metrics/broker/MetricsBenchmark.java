@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.broker;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import org.apache.kafka.metrics.replica.ReplicaMetrics;
+import org.apache.kafka.metrics.topic.TopicMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the metric definitions of every metric class.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MetricsBenchmark {
+
+    private List<String> requestNames;
+
+    @Setup
+    public void setup() {
+        requestNames = RequestMetrics.getKafkaRequestNames();
+    }
+
+    @Benchmark
+    public List<CodahaleMetric> brokerMetrics() {
+        return BrokerMetrics.getMetrics();
+    }
+
+    @Benchmark
+    public List<CodahaleMetric> brokerTopicMetrics() {
+        return BrokerTopicMetrics.getMetrics();
+    }
+
+    @Benchmark
+    public List<CodahaleMetric> controllerMetrics() {
+        return ControllerMetrics.getMetrics();
+    }
+
+    @Benchmark
+    public List<CodahaleMetric> networkMetrics() {
+        return NetworkMetrics.getMetrics();
+    }
+
+    @Benchmark
+    public List<CodahaleMetric> purgatoryMetrics() {
+        return PurgatoryMetrics.getMetrics();
+    }
+
+    @Benchmark
+    public List<CodahaleMetric> replicaManagerMetrics() {
+        return ReplicaManagerMetrics.getMetrics();
+    }
+
+    @Benchmark
+    public List<CodahaleMetric> requestMetrics() {
+        return RequestMetrics.getMetrics();
+    }
+
+    @Benchmark
+    public List<CodahaleMetric> topicMetrics() {
+        return TopicMetrics.getMetrics();
+    }
+
+    @Benchmark
+    public List<CodahaleMetric> replicaMetrics() {
+        return ReplicaMetrics.getMetrics();
+    }
+
+    @Benchmark
+    public void requestNameToMetricName(final Blackhole blackhole) {
+        for (String requestName : requestNames) {
+            blackhole.consume(RequestMetrics.requestNameToMetricName(requestName));
+        }
+    }
+
+    @Benchmark
+    public List<String> kafkaRequestNames() {
+        return RequestMetrics.getKafkaRequestNames();
+    }
+
+    /**
+     * Steady state cost of converting the Scala request metrics map once the singleton is loaded.
+     */
+    @Benchmark
+    public List<String> kafkaRequestNamesFromKafka() {
+        return RequestNamesSnapshot.loadFromKafka();
+    }
+}
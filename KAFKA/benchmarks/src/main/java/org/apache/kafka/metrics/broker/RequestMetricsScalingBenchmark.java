@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.broker;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import org.apache.kafka.metrics.fixture.FixtureCompactor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how building the per request metrics scales with the number of Kafka requests,
+ * using synthetic request names instead of the ones of the Kafka version on the classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RequestMetricsScalingBenchmark {
+
+    @Param({"50", "500", "1000", "5000"})
+    private int requestCount;
+
+    private List<String> requestNames;
+
+    @Setup
+    public void setup() {
+        requestNames = new ArrayList<String>(requestCount);
+        for (int i = 0; i < requestCount; i++) {
+            requestNames.add(String.format("SyntheticApi%dRequest", i));
+        }
+    }
+
+    @Benchmark
+    public List<CodahaleMetric> requestMetrics() {
+        return RequestMetrics.getMetrics(requestNames);
+    }
+
+    @Benchmark
+    public List<CodahaleMetric> compactedRequestMetrics() {
+        return new FixtureCompactor().compact("KAFKA_BROKER", RequestMetrics.getMetrics(requestNames));
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.catalog;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.kafka.metrics.broker.BrokerMetrics;
+import org.apache.kafka.metrics.replica.ReplicaMetrics;
+import org.apache.kafka.metrics.topic.TopicMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares looking up a mix of broker, topic and replica metric names, in context and MBean
+ * form, in the {@link MetricCatalog} trie with a HashMap after stripping the topic and
+ * partition with a regex, and with a scan over one regex per context.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MetricCatalogBenchmark {
+
+    private static final int NAME_COUNT = 1024;
+
+    private static final Pattern SCOPED_CONTEXT =
+            Pattern.compile("(kafka\\.[a-z]+\\.[A-Za-z]+)\\.(?:partition\\.(\\d+)\\.)?topic\\.([^:]+)::(.+)");
+    private static final Pattern SCOPED_MBEAN_NAME =
+            Pattern.compile("(kafka\\.[a-z]+:type=[A-Za-z]+,name=[A-Za-z]+),topic=([^,]+)(?:,partition=(\\d+))?");
+
+    private MetricCatalog catalog;
+    private final MetricCatalog.Match match = new MetricCatalog.Match();
+    private Map<String, CodahaleMetric> byName;
+    private List<Pattern> patterns;
+    private List<CodahaleMetric> patternMetrics;
+    private String[] names;
+    private int next;
+
+    @Setup
+    public void setup() {
+        catalog = MetricCatalog.build();
+
+        byName = Maps.newHashMap();
+        patterns = Lists.newArrayList();
+        patternMetrics = Lists.newArrayList();
+        for (CodahaleMetric metric : BrokerMetrics.getMetrics()) {
+            byName.put(metric.getContext(), metric);
+            patterns.add(Pattern.compile(Pattern.quote(metric.getContext())));
+            patternMetrics.add(metric);
+        }
+        for (CodahaleMetric metric : TopicMetrics.getMetrics()) {
+            byName.put(TopicMetrics.YAMMER_ROOT + "::" + metric.getContext(), metric);
+            byName.put("kafka.server:type=BrokerTopicMetrics,name=" + metric.getContext(), metric);
+            patterns.add(Pattern.compile(Pattern.quote(TopicMetrics.YAMMER_ROOT + ".topic.") + "([^:]+)"
+                    + Pattern.quote("::" + metric.getContext())));
+            patterns.add(Pattern.compile(Pattern.quote("kafka.server:type=BrokerTopicMetrics,name="
+                    + metric.getContext() + ",topic=") + "([^,]+)"));
+            patternMetrics.add(metric);
+            patternMetrics.add(metric);
+        }
+        for (CodahaleMetric metric : ReplicaMetrics.getMetrics()) {
+            byName.put(ReplicaMetrics.YAMMER_ROOT + "::" + metric.getContext(), metric);
+            byName.put("kafka.log:type=Log,name=" + metric.getContext(), metric);
+            patterns.add(Pattern.compile(Pattern.quote(ReplicaMetrics.YAMMER_ROOT + ".partition.") + "(\\d+)"
+                    + Pattern.quote(".topic.") + "([^:]+)" + Pattern.quote("::" + metric.getContext())));
+            patterns.add(Pattern.compile(Pattern.quote("kafka.log:type=Log,name=" + metric.getContext()
+                    + ",topic=") + "([^,]+),partition=(\\d+)"));
+            patternMetrics.add(metric);
+            patternMetrics.add(metric);
+        }
+
+        // Mostly replica and topic names, like a broker with many partitions has
+        final Random random = new Random(0);
+        final List<CodahaleMetric> brokerMetrics = BrokerMetrics.getMetrics();
+        final List<CodahaleMetric> topicMetrics = TopicMetrics.getMetrics();
+        final List<CodahaleMetric> replicaMetrics = ReplicaMetrics.getMetrics();
+        names = new String[NAME_COUNT];
+        for (int i = 0; i < NAME_COUNT; i++) {
+            final String topic = "topic-" + random.nextInt(1000);
+            final int partition = random.nextInt(100);
+            final int kind = random.nextInt(10);
+            final boolean mbeanName = random.nextBoolean();
+            if (kind == 0) {
+                names[i] = brokerMetrics.get(random.nextInt(brokerMetrics.size())).getContext();
+            } else if (kind < 4) {
+                final String name = topicMetrics.get(random.nextInt(topicMetrics.size())).getContext();
+                names[i] = mbeanName
+                        ? "kafka.server:type=BrokerTopicMetrics,name=" + name + ",topic=" + topic
+                        : TopicMetrics.YAMMER_ROOT + ".topic." + topic + "::" + name;
+            } else {
+                final String name = replicaMetrics.get(random.nextInt(replicaMetrics.size())).getContext();
+                names[i] = mbeanName
+                        ? "kafka.log:type=Log,name=" + name + ",topic=" + topic + ",partition=" + partition
+                        : ReplicaMetrics.YAMMER_ROOT + ".partition." + partition + ".topic." + topic + "::" + name;
+            }
+        }
+    }
+
+    private String nextName() {
+        next = (next + 1) & (NAME_COUNT - 1);
+        return names[next];
+    }
+
+    @Benchmark
+    public int trie() {
+        return catalog.lookup(nextName(), match) ? match.getPartition() + match.getTopicEnd() : -1;
+    }
+
+    @Benchmark
+    public int hashMapAndRegex() {
+        final String name = nextName();
+        CodahaleMetric metric = byName.get(name);
+        String topic = null;
+        int partition = -1;
+        if (metric == null) {
+            Matcher matcher = SCOPED_CONTEXT.matcher(name);
+            if (matcher.matches()) {
+                metric = byName.get(matcher.group(1) + "::" + matcher.group(4));
+                topic = matcher.group(3);
+                partition = matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : -1;
+            } else {
+                matcher = SCOPED_MBEAN_NAME.matcher(name);
+                if (matcher.matches()) {
+                    metric = byName.get(matcher.group(1));
+                    topic = matcher.group(2);
+                    partition = matcher.group(3) != null ? Integer.parseInt(matcher.group(3)) : -1;
+                }
+            }
+        }
+        return metric != null ? partition + (topic != null ? topic.length() : 0) : -1;
+    }
+
+    @Benchmark
+    public int regexScan() {
+        final String name = nextName();
+        for (int i = 0; i < patterns.size(); i++) {
+            final Matcher matcher = patterns.get(i).matcher(name);
+            if (matcher.matches()) {
+                return patternMetrics.get(i).getName().length() + matcher.groupCount();
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,236 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import org.apache.kafka.metrics.fixture.FixtureWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scrapes a {@link SyntheticCluster} from several threads at each scale point and reports
+ * the scrape latency, the payload size and the CPU the brokers spent serving and
+ * snapshotting, all on the local box.
+ *
+ * Each broker is scraped by a single thread, back to back, so that delta exports see one
+ * consumer. It is configured with the system properties of {@link SyntheticCluster}, where
+ * loadtest.scale may hold several scale points, and:
+ * <ul>
+ *   <li>loadtest.threads, the number of scrape threads</li>
+ *   <li>loadtest.duration.secs, how long to scrape each scale point</li>
+ *   <li>loadtest.delta, whether to request delta exports</li>
+ *   <li>loadtest.results, a file to also write the results to as JSON</li>
+ * </ul>
+ */
+public final class ScrapeLoadDriver {
+
+    static final String THREADS_PROPERTY = "loadtest.threads";
+    static final String DURATION_PROPERTY = "loadtest.duration.secs";
+    static final String DELTA_PROPERTY = "loadtest.delta";
+    static final String RESULTS_PROPERTY = "loadtest.results";
+
+    private static final int DEFAULT_THREADS = 8;
+    private static final int DEFAULT_DURATION_SECS = 30;
+    private static final long FIRST_SNAPSHOT_TIMEOUT_MS = 60000;
+
+    // The reporter threads the CPU time is measured of
+    private static final String HTTP_THREAD = "kafka-metrics-http";
+    private static final String SNAPSHOT_THREAD = "kafka-metrics-snapshot";
+
+    private final SyntheticCluster cluster;
+    private final int threads;
+    private final long durationMs;
+    private final boolean delta;
+
+    ScrapeLoadDriver(final SyntheticCluster cluster, final int threads, final long durationMs, final boolean delta) {
+        this.cluster = cluster;
+        this.threads = Math.min(threads, cluster.getScale().brokers);
+        this.durationMs = durationMs;
+        this.delta = delta;
+    }
+
+    /**
+     * Start the cluster, scrape it for the duration and stop it.
+     * @return the results, by name
+     */
+    Map<String, Object> run() throws Exception {
+        cluster.start();
+        try {
+            awaitFirstSnapshots();
+            return scrape();
+        } finally {
+            cluster.stop();
+        }
+    }
+
+    private Map<String, Object> scrape() throws InterruptedException {
+        final LatencyRecorder latencies = new LatencyRecorder();
+        final AtomicLong scrapes = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(threads);
+        final long httpCpuBefore = threadCpuNanos(HTTP_THREAD);
+        final long snapshotCpuBefore = threadCpuNanos(SNAPSHOT_THREAD);
+        final long start = System.nanoTime();
+        final long end = start + TimeUnit.MILLISECONDS.toNanos(durationMs);
+
+        for (int t = 0; t < threads; t++) {
+            final int first = t;
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final byte[] buffer = new byte[64 * 1024];
+                    try {
+                        while (System.nanoTime() < end) {
+                            for (int broker = first; broker < cluster.getScale().brokers; broker += threads) {
+                                final long scrapeStart = System.nanoTime();
+                                try {
+                                    bytes.addAndGet(get(broker, buffer));
+                                    latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scrapeStart));
+                                    scrapes.incrementAndGet();
+                                } catch (IOException e) {
+                                    failures.incrementAndGet();
+                                }
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "scrape-" + t);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        final long httpCpu = threadCpuNanos(HTTP_THREAD) - httpCpuBefore;
+        final long snapshotCpu = threadCpuNanos(SNAPSHOT_THREAD) - snapshotCpuBefore;
+        final LatencySnapshot latency = new LatencySnapshot();
+        latency.addInterval(latencies, new long[LatencyRecorder.BUCKET_COUNT]);
+        final long count = Math.max(1, scrapes.get());
+
+        final Map<String, Object> results = new LinkedHashMap<String, Object>();
+        results.put("scale", cluster.getScale().toString());
+        results.put("delta", delta);
+        results.put("threads", threads);
+        results.put("scrapes", scrapes.get());
+        results.put("failures", failures.get());
+        results.put("scrapes_per_sec", scrapes.get() / seconds);
+        results.put("latency_p50_ms", latency.valueAtPercentile(50) / 1000);
+        results.put("latency_p99_ms", latency.valueAtPercentile(99) / 1000);
+        results.put("latency_max_ms", latency.maxValue() / 1000);
+        results.put("payload_bytes_per_scrape", bytes.get() / count);
+        results.put("serve_cpu_ms_per_scrape", httpCpu / 1e6 / count);
+        results.put("snapshot_cpu_cores", snapshotCpu / 1e9 / seconds);
+        return results;
+    }
+
+    /**
+     * Wait until every broker has published a snapshot with metrics.
+     */
+    private void awaitFirstSnapshots() throws Exception {
+        final long deadline = System.currentTimeMillis() + FIRST_SNAPSHOT_TIMEOUT_MS;
+        final byte[] buffer = new byte[64 * 1024];
+        for (int broker = 0; broker < cluster.getScale().brokers; broker++) {
+            while (getFull(broker, buffer) <= 2) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Broker " + broker + " did not publish a snapshot");
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private int get(final int broker, final byte[] buffer) throws IOException {
+        return read(broker, delta ? CatalogMetricsReporter.METRICS_PATH + "?mode=delta"
+                : CatalogMetricsReporter.METRICS_PATH, buffer);
+    }
+
+    private int getFull(final int broker, final byte[] buffer) throws IOException {
+        return read(broker, CatalogMetricsReporter.METRICS_PATH, buffer);
+    }
+
+    /**
+     * Read a response to the end, the way a collector would before parsing it.
+     * @return the number of bytes read
+     */
+    private int read(final int broker, final String path, final byte[] buffer) throws IOException {
+        final URL url = new URL("http", System.getProperty(SyntheticCluster.HOST_PROPERTY, SyntheticCluster.DEFAULT_HOST),
+                cluster.getPort(broker), path);
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        final InputStream in = connection.getInputStream();
+        int total = 0;
+        try {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                total += read;
+            }
+        } finally {
+            in.close();
+        }
+        return total;
+    }
+
+    private static long threadCpuNanos(final String threadName) {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info != null && threadName.equals(info.getThreadName())) {
+                total += Math.max(0, threads.getThreadCpuTime(info.getThreadId()));
+            }
+        }
+        return total;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final ReporterCatalog catalog = SyntheticCluster.readCatalog(new File(
+                System.getProperty(SyntheticCluster.FIXTURE_PROPERTY, SyntheticCluster.DEFAULT_FIXTURE)));
+        final List<SyntheticCluster.Scale> scales = SyntheticCluster.Scale.parseList(
+                System.getProperty(SyntheticCluster.SCALE_PROPERTY, SyntheticCluster.DEFAULT_SCALE));
+        final int threads = Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS);
+        final long durationMs = TimeUnit.SECONDS.toMillis(Integer.getInteger(DURATION_PROPERTY, DEFAULT_DURATION_SECS));
+        final boolean delta = Boolean.getBoolean(DELTA_PROPERTY);
+
+        final List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
+        for (SyntheticCluster.Scale scale : scales) {
+            final Map<String, Object> result =
+                    new ScrapeLoadDriver(SyntheticCluster.fromSystemProperties(catalog, scale), threads, durationMs, delta).run();
+            System.out.println(result);
+            results.add(result);
+        }
+
+        final String resultsFile = System.getProperty(RESULTS_PROPERTY);
+        if (resultsFile != null && !resultsFile.isEmpty()) {
+            FixtureWriter.write(new File(resultsFile), results, true);
+        }
+    }
+}
@@ -0,0 +1,524 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.Metered;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricProcessor;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+import kafka.utils.VerifiableProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cluster of synthetic brokers serving the metrics of the fixture, for capacity testing
+ * the collection of the in-broker reporter without Kafka.
+ *
+ * Each broker has its own Yammer registry with a metric for every context of the fixture,
+ * for its replicas of the topics, and is served by a {@link CatalogMetricsReporter} on its
+ * own port, so scrapes get the same JSON as from a broker. Values evolve with time: busy
+ * topics grow their offsets, sizes and meters at a steady rate, idle topics stay flat, and
+ * histograms and timers are fed samples every second.
+ *
+ * Run it with the system properties below to serve a cluster until interrupted, for
+ * example to point a Cloudera Manager agent at it.
+ */
+public final class SyntheticCluster {
+
+    static final String FIXTURE_PROPERTY = "loadtest.fixture";
+    static final String SCALE_PROPERTY = "loadtest.scale";
+    static final String REPLICATION_PROPERTY = "loadtest.replication";
+    static final String IDLE_FRACTION_PROPERTY = "loadtest.idle.fraction";
+    static final String HOST_PROPERTY = "loadtest.host";
+    static final String PORT_PROPERTY = "loadtest.port";
+    // Properties of the reporter, like kafka.metrics.polling.interval.secs, are passed through
+    private static final String REPORTER_PROPERTY_PREFIX = "kafka.metrics.";
+
+    static final String DEFAULT_FIXTURE = "target/kafka_codahale_fixture.json";
+    static final String DEFAULT_SCALE = "10/100/10";
+    static final int DEFAULT_REPLICATION = 3;
+    static final double DEFAULT_IDLE_FRACTION = 0.8;
+    static final String DEFAULT_HOST = "127.0.0.1";
+    static final int DEFAULT_PORT = 24042;
+
+    private static final String DELTA_EXPORT_FILE_NAME = "delta_export_fixture.json";
+    private static final String COLLECTION_TIER_FILE_NAME = "collection_tier_fixture.json";
+    private static final String KAFKA_BROKER_TOPIC = "KAFKA_BROKER_TOPIC";
+    private static final String KAFKA_REPLICA = "KAFKA_REPLICA";
+
+    // Contexts the reporter computes itself rather than reading them from the registry
+    private static final Set<String> ROLLUP_CONTEXTS = new HashSet<String>();
+    static {
+        ROLLUP_CONTEXTS.add(ReplicaRollup.REPLICAS_SIZE);
+        ROLLUP_CONTEXTS.add(ReplicaRollup.REPLICAS_SIZE_GROWTH);
+        ROLLUP_CONTEXTS.add(ReplicaRollup.REPLICAS_LOG_END_OFFSET_GROWTH);
+    }
+
+    private static final int SAMPLES_PER_TICK = 10;
+    // Period of the oscillation of the gauges that do not grow
+    private static final double PERIOD_SECONDS = 300;
+
+    private final ReporterCatalog catalog;
+    private final Scale scale;
+    private final int replication;
+    private final double idleFraction;
+    private final String host;
+    private final int basePort;
+    private final Properties reporterProperties;
+
+    private final List<SyntheticRegistry> registries = new ArrayList<SyntheticRegistry>();
+    private final List<CatalogMetricsReporter> reporters = new ArrayList<CatalogMetricsReporter>();
+    private final List<Histogram> histograms = new ArrayList<Histogram>();
+    private final List<Timer> timers = new ArrayList<Timer>();
+    private final List<Counter> counters = new ArrayList<Counter>();
+    private ScheduledExecutorService feeder;
+
+    SyntheticCluster(final ReporterCatalog catalog, final Scale scale, final int replication,
+                     final double idleFraction, final String host, final int basePort,
+                     final Properties reporterProperties) {
+        if (replication < 1 || replication > scale.brokers) {
+            throw new IllegalArgumentException(String.format(
+                    "Replication factor must be between 1 and the %d brokers: %d", scale.brokers, replication));
+        }
+        this.catalog = catalog;
+        this.scale = scale;
+        this.replication = replication;
+        this.idleFraction = idleFraction;
+        this.host = host;
+        this.basePort = basePort;
+        this.reporterProperties = reporterProperties;
+    }
+
+    /**
+     * Register the metrics of every broker and start serving them.
+     */
+    synchronized void start() {
+        final long start = System.currentTimeMillis();
+        for (int broker = 0; broker < scale.brokers; broker++) {
+            final SyntheticRegistry registry = new SyntheticRegistry();
+            final Properties props = new Properties();
+            props.putAll(reporterProperties);
+            props.setProperty(CatalogMetricsReporter.HOST_PROPERTY, host);
+            props.setProperty(CatalogMetricsReporter.PORT_PROPERTY, String.valueOf(getPort(broker)));
+            final CatalogMetricsReporter reporter = new CatalogMetricsReporter(registry);
+            // Like in a broker, the reporter is initialized before the metrics are registered
+            reporter.init(new VerifiableProperties(props), catalog);
+            registerMetrics(registry, broker, new Random(broker), start);
+            registries.add(registry);
+            reporters.add(reporter);
+        }
+
+        feeder = Executors.newSingleThreadScheduledExecutor();
+        feeder.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                feed();
+            }
+        }, 0, 1, TimeUnit.SECONDS);
+    }
+
+    synchronized void stop() {
+        if (feeder != null) {
+            feeder.shutdownNow();
+            feeder = null;
+        }
+        for (CatalogMetricsReporter reporter : reporters) {
+            reporter.stopReporter();
+        }
+        for (MetricsRegistry registry : registries) {
+            registry.shutdown();
+        }
+        reporters.clear();
+        registries.clear();
+        histograms.clear();
+        timers.clear();
+        counters.clear();
+    }
+
+    int getPort(final int broker) {
+        return basePort + broker;
+    }
+
+    Scale getScale() {
+        return scale;
+    }
+
+    private void registerMetrics(final SyntheticRegistry registry, final int broker, final Random random,
+                                 final long start) {
+        final List<Integer> hostedTopics = new ArrayList<Integer>();
+        final List<String> hostedReplicas = new ArrayList<String>();
+        final List<Boolean> busyReplicas = new ArrayList<Boolean>();
+        for (int topic = 0; topic < scale.topics; topic++) {
+            boolean hosted = false;
+            for (int partition = 0; partition < scale.partitionsPerTopic; partition++) {
+                // The replicas of a partition are on consecutive brokers, starting at its leader
+                final int leader = (topic * scale.partitionsPerTopic + partition) % scale.brokers;
+                if ((broker - leader + scale.brokers) % scale.brokers < replication) {
+                    hosted = true;
+                    hostedReplicas.add(String.format("partition.%d.topic.%s", partition, topicName(topic)));
+                    busyReplicas.add(isBusy(topic));
+                }
+            }
+            if (hosted) {
+                hostedTopics.add(topic);
+            }
+        }
+
+        for (ReporterCatalog.Entry entry : catalog.getEntries()) {
+            final String context = entry.getContext();
+            final int separator = context.indexOf("::");
+            final String root = context.substring(0, separator);
+            final String name = context.substring(separator + 2);
+            if (KAFKA_BROKER_TOPIC.equals(entry.getEntity())) {
+                for (int topic : hostedTopics) {
+                    register(registry, entry.getType(), metricName(root + ".topic." + topicName(topic), name),
+                            false, isBusy(topic), random, start);
+                }
+            } else if (KAFKA_REPLICA.equals(entry.getEntity())) {
+                for (int i = 0; i < hostedReplicas.size(); i++) {
+                    register(registry, entry.getType(), metricName(root + "." + hostedReplicas.get(i), name),
+                            true, busyReplicas.get(i), random, start);
+                }
+            } else {
+                final MetricName metricName = root.startsWith(LatencyHistograms.REQUEST_ROOT)
+                        ? LatencyHistograms.toMetricName(context) : metricName(root, name);
+                register(registry, entry.getType(), metricName, false, true, random, start);
+            }
+        }
+    }
+
+    private void register(final SyntheticRegistry registry, final String type, final MetricName name,
+                          final boolean growing, final boolean busy, final Random random, final long start) {
+        final double rate = busy ? 1 + random.nextInt(10000) : 0;
+        if ("GAUGE".equals(type)) {
+            final double base = random.nextInt(1000);
+            if (growing) {
+                registry.newGauge(name, new SyntheticGauge(start, base, rate, 0, 0));
+            } else {
+                registry.newGauge(name, new SyntheticGauge(start, base, 0, busy ? base / 10 : 0,
+                        random.nextDouble() * 2 * Math.PI));
+            }
+        } else if ("METER".equals(type)) {
+            registry.register(name, new SyntheticMeter(start, rate));
+        } else if ("COUNTER".equals(type)) {
+            counters.add(registry.newCounter(name));
+        } else if ("HISTOGRAM".equals(type)) {
+            histograms.add(registry.newHistogram(name, true));
+        } else if ("TIMER".equals(type)) {
+            timers.add(registry.newTimer(name, TimeUnit.MILLISECONDS, TimeUnit.SECONDS));
+        } else {
+            throw new IllegalArgumentException("Unknown metric type " + type + " of " + name);
+        }
+    }
+
+    /**
+     * Feed exponentially distributed samples to the histograms and timers, and count.
+     */
+    private synchronized void feed() {
+        final Random random = new Random();
+        for (Histogram histogram : histograms) {
+            for (int i = 0; i < SAMPLES_PER_TICK; i++) {
+                histogram.update((long) (-10 * Math.log(1 - random.nextDouble())));
+            }
+        }
+        for (Timer timer : timers) {
+            for (int i = 0; i < SAMPLES_PER_TICK; i++) {
+                timer.update((long) (-10 * Math.log(1 - random.nextDouble())), TimeUnit.MILLISECONDS);
+            }
+        }
+        for (Counter counter : counters) {
+            counter.inc(SAMPLES_PER_TICK);
+        }
+    }
+
+    private boolean isBusy(final int topic) {
+        // Spread the busy topics over the topic range
+        return ((topic * 0x9E3779B9L) & 0xffff) >= idleFraction * 0x10000;
+    }
+
+    private static String topicName(final int topic) {
+        return String.format("topic-%06d", topic);
+    }
+
+    /**
+     * The name Kafka registers a metric under, with the scope of "group.type.scope" as the
+     * tags of its MBean name.
+     */
+    static MetricName metricName(final String root, final String name) {
+        final String[] parts = root.split("\\.");
+        if (parts.length < 3 || parts.length % 2 == 0) {
+            throw new IllegalArgumentException("Unexpected metric root " + root);
+        }
+        final String group = parts[0] + "." + parts[1];
+        final String type = parts[2];
+        if (parts.length == 3) {
+            return new MetricName(group, type, name, null, group + ":type=" + type + ",name=" + name);
+        }
+        final StringBuilder scope = new StringBuilder();
+        final StringBuilder mbeanName = new StringBuilder(group + ":type=" + type + ",name=" + name);
+        for (int i = 3; i < parts.length; i += 2) {
+            scope.append(i == 3 ? "" : ".").append(parts[i]).append('.').append(parts[i + 1]);
+            mbeanName.append(',').append(parts[i]).append('=').append(parts[i + 1]);
+        }
+        return new MetricName(group, type, name, scope.toString(), mbeanName.toString());
+    }
+
+    /**
+     * Build the reporter catalog of the metrics of a fixture. The delta exportable metrics
+     * and collection tiers are read from the delta export and collection tier fixtures next
+     * to it, if there are.
+     */
+    static ReporterCatalog readCatalog(final File fixtureFile) throws IOException {
+        final ObjectMapper mapper = new ObjectMapper();
+        final JsonNode fixture = mapper.readTree(fixtureFile);
+        final File deltaFile = new File(fixtureFile.getAbsoluteFile().getParentFile(), DELTA_EXPORT_FILE_NAME);
+        final JsonNode delta = deltaFile.isFile() ? mapper.readTree(deltaFile) : mapper.createObjectNode();
+        final File tierFile = new File(fixtureFile.getAbsoluteFile().getParentFile(), COLLECTION_TIER_FILE_NAME);
+        final JsonNode tiers = tierFile.isFile() ? mapper.readTree(tierFile) : mapper.createObjectNode();
+
+        final ReporterCatalog catalog = new ReporterCatalog();
+        final Iterator<Map.Entry<String, JsonNode>> roles = fixture.path("rolesMetrics").fields();
+        while (roles.hasNext()) {
+            final Map.Entry<String, JsonNode> role = roles.next();
+            if (!ReporterCatalog.KAFKA_BROKER.equals(role.getKey())) {
+                continue;
+            }
+            for (JsonNode metric : role.getValue()) {
+                final String context = metric.path("context").asText();
+                final String type = metric.path("codahaleMetricType").asText();
+                // The reporter computes the latency percentiles from the request histograms
+                if ("GAUGE".equals(type) && (context.startsWith(LatencyHistograms.REQUEST_ROOT)
+                        || context.startsWith(LatencyHistograms.CLUSTER_ROOT))) {
+                    continue;
+                }
+                catalog.add(role.getKey(), type, context, contains(delta.path(role.getKey()), metric),
+                        tierOf(tiers.path(role.getKey()), metric));
+            }
+        }
+        final JsonNode entities = fixture.path("additionalServiceEntityTypesMetrics");
+        for (String entity : new String[] { KAFKA_BROKER_TOPIC, KAFKA_REPLICA }) {
+            final String root = KAFKA_BROKER_TOPIC.equals(entity) ? ReporterCatalog.TOPIC_ROOT : ReporterCatalog.REPLICA_ROOT;
+            for (JsonNode metric : entities.path(entity)) {
+                final String context = metric.path("context").asText();
+                if (ROLLUP_CONTEXTS.contains(context)) {
+                    continue;
+                }
+                catalog.add(entity, metric.path("codahaleMetricType").asText(), root + "::" + context,
+                        contains(delta.path(entity), metric), tierOf(tiers.path(entity), metric));
+            }
+        }
+        if (catalog.getEntries().isEmpty()) {
+            throw new IOException("No KAFKA_BROKER, topic or replica metrics in " + fixtureFile);
+        }
+        return catalog;
+    }
+
+    private static int tierOf(final JsonNode tiers, final JsonNode metric) {
+        for (int tier : new int[] { ReporterCatalog.TIER_HOT, ReporterCatalog.TIER_COLD }) {
+            if (contains(tiers.path(ReporterCatalog.getTierName(tier)), metric)) {
+                return tier;
+            }
+        }
+        return ReporterCatalog.TIER_DEFAULT;
+    }
+
+    private static boolean contains(final JsonNode names, final JsonNode metric) {
+        final String name = metric.path("name").asText();
+        for (JsonNode listed : names) {
+            if (name.equals(listed.asText())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Build a cluster from the system properties.
+     */
+    static SyntheticCluster fromSystemProperties(final ReporterCatalog catalog, final Scale scale) {
+        final Properties reporterProperties = new Properties();
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(REPORTER_PROPERTY_PREFIX)) {
+                reporterProperties.setProperty(name, System.getProperty(name));
+            }
+        }
+        return new SyntheticCluster(catalog, scale,
+                Integer.getInteger(REPLICATION_PROPERTY, DEFAULT_REPLICATION),
+                Double.parseDouble(System.getProperty(IDLE_FRACTION_PROPERTY, String.valueOf(DEFAULT_IDLE_FRACTION))),
+                System.getProperty(HOST_PROPERTY, DEFAULT_HOST),
+                Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT),
+                reporterProperties);
+    }
+
+    public static void main(String[] args) throws Exception {
+        final ReporterCatalog catalog = readCatalog(new File(System.getProperty(FIXTURE_PROPERTY, DEFAULT_FIXTURE)));
+        final List<Scale> scales = Scale.parseList(System.getProperty(SCALE_PROPERTY, DEFAULT_SCALE));
+        if (scales.size() != 1) {
+            throw new IllegalArgumentException(SCALE_PROPERTY + " must be a single scale point to serve");
+        }
+        final SyntheticCluster cluster = fromSystemProperties(catalog, scales.get(0));
+        cluster.start();
+        System.out.println(String.format("Serving %s on ports %d to %d", cluster.getScale(),
+                cluster.getPort(0), cluster.getPort(cluster.getScale().brokers - 1)));
+        Thread.sleep(Long.MAX_VALUE);
+    }
+
+    /**
+     * A number of brokers, topics and partitions per topic, written "brokers/topics/partitions".
+     */
+    static final class Scale {
+        final int brokers;
+        final int topics;
+        final int partitionsPerTopic;
+
+        Scale(final int brokers, final int topics, final int partitionsPerTopic) {
+            if (brokers < 1 || topics < 0 || partitionsPerTopic < 1) {
+                throw new IllegalArgumentException(String.format("Invalid scale %d/%d/%d",
+                        brokers, topics, partitionsPerTopic));
+            }
+            this.brokers = brokers;
+            this.topics = topics;
+            this.partitionsPerTopic = partitionsPerTopic;
+        }
+
+        static List<Scale> parseList(final String value) {
+            final List<Scale> scales = new ArrayList<Scale>();
+            for (String point : value.split(",")) {
+                final String[] fields = point.trim().split("/");
+                if (fields.length != 3) {
+                    throw new IllegalArgumentException("Scale points are brokers/topics/partitions: " + point);
+                }
+                scales.add(new Scale(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                        Integer.parseInt(fields[2])));
+            }
+            return scales;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d brokers, %d topics, %d partitions", brokers, topics, topics * partitionsPerTopic);
+        }
+    }
+
+    /**
+     * Registers metrics that Yammer has no factory for.
+     */
+    private static final class SyntheticRegistry extends MetricsRegistry {
+        void register(final MetricName name, final Metered metered) {
+            getOrAdd(name, metered);
+        }
+    }
+
+    /**
+     * A gauge that grows at a steady rate and oscillates around it.
+     */
+    private static final class SyntheticGauge extends Gauge<Double> {
+        private final long start;
+        private final double base;
+        private final double rate;
+        private final double amplitude;
+        private final double phase;
+
+        private SyntheticGauge(final long start, final double base, final double rate,
+                               final double amplitude, final double phase) {
+            this.start = start;
+            this.base = base;
+            this.rate = rate;
+            this.amplitude = amplitude;
+            this.phase = phase;
+        }
+
+        @Override
+        public Double value() {
+            final double seconds = (System.currentTimeMillis() - start) / 1000.0;
+            return Math.floor(base + rate * seconds + amplitude * Math.sin(2 * Math.PI * seconds / PERIOD_SECONDS + phase));
+        }
+    }
+
+    /**
+     * A meter that marks events at a steady rate.
+     */
+    private static final class SyntheticMeter implements Metered {
+        private final long start;
+        private final double rate;
+
+        private SyntheticMeter(final long start, final double rate) {
+            this.start = start;
+            this.rate = rate;
+        }
+
+        @Override
+        public long count() {
+            return (long) (rate * (System.currentTimeMillis() - start) / 1000);
+        }
+
+        @Override
+        public double fifteenMinuteRate() {
+            return rate;
+        }
+
+        @Override
+        public double fiveMinuteRate() {
+            return rate;
+        }
+
+        @Override
+        public double meanRate() {
+            return rate;
+        }
+
+        @Override
+        public double oneMinuteRate() {
+            return rate;
+        }
+
+        @Override
+        public TimeUnit rateUnit() {
+            return TimeUnit.SECONDS;
+        }
+
+        @Override
+        public String eventType() {
+            return "events";
+        }
+
+        @Override
+        public <T> void processWith(final MetricProcessor<T> processor, final MetricName name, final T context)
+                throws Exception {
+            processor.processMeter(name, this, context);
+        }
+    }
+}
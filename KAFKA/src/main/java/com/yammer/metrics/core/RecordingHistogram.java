@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yammer.metrics.core;
+
+import org.apache.kafka.metrics.reporter.LatencyRecorder;
+
+/**
+ * A biased histogram, like the ones Kafka creates, that also records every value into a
+ * {@link LatencyRecorder}.
+ *
+ * It is in the Yammer package because histograms can only be created and added to a
+ * registry from there. Registering one under the name Kafka uses before Kafka creates its
+ * own makes Kafka record into it, since the registry returns the existing metric.
+ */
+public class RecordingHistogram extends Histogram {
+
+    private final LatencyRecorder recorder;
+
+    RecordingHistogram(final LatencyRecorder recorder) {
+        super(SampleType.BIASED);
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void update(final long value) {
+        super.update(value);
+        recorder.record(value);
+    }
+
+    /**
+     * Register a recording histogram.
+     * @return false if a metric with this name was already registered, in which case nothing
+     *         is recorded into the recorder
+     */
+    public static boolean register(final MetricsRegistry registry, final MetricName name,
+                                   final LatencyRecorder recorder) {
+        final RecordingHistogram histogram = new RecordingHistogram(recorder);
+        return registry.getOrAdd(name, histogram) == histogram;
+    }
+}
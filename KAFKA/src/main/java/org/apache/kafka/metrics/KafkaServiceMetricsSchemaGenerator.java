@@ -18,7 +18,6 @@
 package org.apache.kafka.metrics;
 
 import com.cloudera.csd.descriptors.MetricDescriptor;
-import com.cloudera.csd.tools.JsonUtil;
 import com.cloudera.csd.tools.codahale.AbstractCodahaleFixtureGenerator;
 import com.cloudera.csd.tools.codahale.CodahaleCommonMetricSets;
 import com.cloudera.csd.tools.codahale.CodahaleCommonMetricSets.MetricServlet2XAdapter;
@@ -26,27 +25,76 @@ import com.cloudera.csd.tools.codahale.CodahaleCommonMetricSets.MetricSet;
 import com.cloudera.csd.tools.codahale.CodahaleCommonMetricSets.Version;
 import com.cloudera.csd.tools.codahale.CodahaleMetricDefinitionFixture;
 import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import org.apache.commons.io.FileUtils;
+import com.google.common.collect.Sets;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.kafka.metrics.broker.BrokerMetrics;
+import org.apache.kafka.metrics.broker.KafkaDistribution;
+import org.apache.kafka.metrics.fetcher.ReplicaFetcherMetrics;
+import org.apache.kafka.metrics.fixture.BinaryFixtureWriter;
+import org.apache.kafka.metrics.fixture.FixtureCache;
+import org.apache.kafka.metrics.fixture.FixtureCompactor;
+import org.apache.kafka.metrics.fixture.FixtureWriter;
+import org.apache.kafka.metrics.group.ConsumerGroupMetrics;
+import org.apache.kafka.metrics.jvm.JvmMetrics;
+import org.apache.kafka.metrics.log.LogDirectoryMetrics;
+import org.apache.kafka.metrics.network.NetworkProcessorMetrics;
+import org.apache.kafka.metrics.quota.ClientQuotaMetrics;
 import org.apache.kafka.metrics.replica.ReplicaMetrics;
+import org.apache.kafka.metrics.replica.ReplicaRollupMetrics;
+import org.apache.kafka.metrics.reporter.FetcherRollup;
+import org.apache.kafka.metrics.reporter.ReporterCatalog;
 import org.apache.kafka.metrics.topic.TopicMetrics;
+import org.apache.kafka.metrics.topic.TopicSkewMetrics;
 
 import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class KafkaServiceMetricsSchemaGenerator extends AbstractCodahaleFixtureGenerator {
 
     private static final String SERVICE_NAME = "KAFKA";
 
-    private static final String KAFKA_BROKER = "KAFKA_BROKER";
+    static final String KAFKA_BROKER = "KAFKA_BROKER";
+    private static final String KAFKA_MIRROR_MAKER = "KAFKA_MIRROR_MAKER";
+    private static final String KAFKA_TOPIC = "KAFKA_TOPIC";
     private static final String KAFKA_BROKER_TOPIC = "KAFKA_BROKER_TOPIC";
     private static final String KAFKA_REPLICA = "KAFKA_REPLICA";
+    private static final String KAFKA_OTHER_REPLICAS = "KAFKA_OTHER_REPLICAS";
+    private static final String KAFKA_NETWORK_PROCESSOR = "KAFKA_NETWORK_PROCESSOR";
+    private static final String KAFKA_LOG_DIRECTORY = "KAFKA_LOG_DIRECTORY";
+    private static final String KAFKA_REPLICA_FETCHER = "KAFKA_REPLICA_FETCHER";
+    private static final String KAFKA_CONSUMER_GROUP = "KAFKA_CONSUMER_GROUP";
+    private static final String KAFKA_CLIENT_QUOTA = "KAFKA_CLIENT_QUOTA";
 
     private static final String COMMON_METRICS_FILE_NAME = "common_metrics_fixture.json";
+    private static final String DELTA_EXPORT_FILE_NAME = "delta_export_fixture.json";
+    private static final String COLLECTION_TIER_FILE_NAME = "collection_tier_fixture.json";
+
+    // System properties controlling the fixture cache
+    private static final String KAFKA_VERSION_PROPERTY = "kafka.version";
+    private static final String CACHE_DIR_PROPERTY = "kafka.fixture.cache.dir";
+    private static final String REGENERATE_PROPERTY = "kafka.fixture.regenerate";
+    // Changes where the request names come from, see RequestMetrics.getKafkaRequestNames()
+    private static final String REQUEST_NAMES_FROM_KAFKA_PROPERTY = "kafka.request.names.from.kafka";
+
+    // Comma separated list of <version>=<lib dir> to also generate per version fixtures for
+    private static final String DISTRIBUTIONS_PROPERTY = "kafka.distributions";
+
+    // Set to true to also write the fixture in binary form, see BinaryFixtureWriter
+    private static final String BINARY_FIXTURE_PROPERTY = "kafka.fixture.binary";
+    private static final String BINARY_FIXTURE_EXTENSION = "bin";
+
+    // Where to write the catalog of the in-broker reporter, if set
+    private static final String REPORTER_CATALOG_PROPERTY = "kafka.reporter.catalog";
+
+    // Merges duplicate definitions and fails on conflicting ones before anything is written
+    private final FixtureCompactor compactor = new FixtureCompactor();
 
     public KafkaServiceMetricsSchemaGenerator(String[] args) throws Exception {
         super(args);
@@ -57,30 +105,100 @@ public class KafkaServiceMetricsSchemaGenerator extends AbstractCodahaleFixtureG
      */
     @Override
     public CodahaleMetricDefinitionFixture generateFixture() throws Exception {
+        final CodahaleMetricDefinitionFixture ret = buildFixture(compactor, BrokerMetrics.getMetrics());
+        FixtureWriter.write(getFixtureFile(), ret, false);
+        if (Boolean.getBoolean(BINARY_FIXTURE_PROPERTY)) {
+            writeBinaryFixture(ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Write the fixture in binary form next to the JSON one.
+     */
+    private void writeBinaryFixture(final CodahaleMetricDefinitionFixture fixture) throws Exception {
+        BinaryFixtureWriter.write(getBinaryFixtureFile(), fixture);
+        System.out.println(String.format("Wrote %s, %d bytes for %d bytes of JSON", getBinaryFixtureFile(),
+                getBinaryFixtureFile().length(), getFixtureFile().length()));
+    }
+
+    /**
+     * Build the fixture from the given broker metrics.
+     * @param compactor the compactor to run the metrics through
+     * @param brokerMetrics the metrics of the KAFKA_BROKER role
+     * @return the fixture
+     */
+    static CodahaleMetricDefinitionFixture buildFixture(final FixtureCompactor compactor,
+                                                        final List<CodahaleMetric> brokerMetrics) {
         final CodahaleMetricDefinitionFixture ret = new CodahaleMetricDefinitionFixture();
 
         ret.setServiceName(SERVICE_NAME);
 
-        for (CodahaleMetric metric : BrokerMetrics.getMetrics()) {
+        final List<CodahaleMetric> serviceMetrics = Lists.newArrayList(BrokerMetrics.getClusterMetrics());
+        serviceMetrics.addAll(TopicSkewMetrics.getClusterMetrics());
+        for (CodahaleMetric metric : compactor.compact(SERVICE_NAME, serviceMetrics)) {
+            ret.addServiceMetric(metric);
+        }
+
+        final List<CodahaleMetric> allBrokerMetrics = Lists.newArrayList(brokerMetrics);
+        allBrokerMetrics.addAll(ReplicaFetcherMetrics.getBrokerRollupMetrics());
+        allBrokerMetrics.addAll(LogDirectoryMetrics.getBrokerRollupMetrics());
+        for (CodahaleMetric metric : compactor.compact(KAFKA_BROKER, allBrokerMetrics)) {
             ret.addRoleMetric(KAFKA_BROKER, metric);
         }
 
-        for (CodahaleMetric metric: TopicMetrics.getMetrics()) {
+        for (CodahaleMetric metric : compactor.compact(KAFKA_MIRROR_MAKER, JvmMetrics.getMirrorMakerMetrics())) {
+            ret.addRoleMetric(KAFKA_MIRROR_MAKER, metric);
+        }
+
+        final List<CodahaleMetric> clusterTopicMetrics = Lists.newArrayList(TopicSkewMetrics.getMetrics());
+        clusterTopicMetrics.addAll(ConsumerGroupMetrics.getTopicMetrics());
+        for (CodahaleMetric metric: compactor.compact(KAFKA_TOPIC, clusterTopicMetrics)) {
+            ret.addEntityMetric(KAFKA_TOPIC, metric);
+        }
+
+        final List<CodahaleMetric> topicMetrics = Lists.newArrayList(TopicMetrics.getMetrics());
+        topicMetrics.addAll(ReplicaRollupMetrics.getTopicMetrics());
+        for (CodahaleMetric metric: compactor.compact(KAFKA_BROKER_TOPIC, topicMetrics)) {
             ret.addEntityMetric(KAFKA_BROKER_TOPIC, metric);
         }
 
-        for (CodahaleMetric metric: ReplicaMetrics.getMetrics()) {
+        for (CodahaleMetric metric: compactor.compact(KAFKA_REPLICA, ReplicaMetrics.getMetrics())) {
             ret.addEntityMetric(KAFKA_REPLICA, metric);
         }
 
-        FileUtils.write(
-                new File(config.getString(OPT_GENERATED_OUPTUT.getLongOpt(),
-                        CODAHALE_OUT_DEFAULT_FILE_NAME)),
-                JsonUtil.valueAsString(ret));
+        for (CodahaleMetric metric: compactor.compact(KAFKA_OTHER_REPLICAS, ReplicaRollupMetrics.getOtherReplicasMetrics())) {
+            ret.addEntityMetric(KAFKA_OTHER_REPLICAS, metric);
+        }
+
+        for (CodahaleMetric metric: compactor.compact(KAFKA_NETWORK_PROCESSOR, NetworkProcessorMetrics.getMetrics())) {
+            ret.addEntityMetric(KAFKA_NETWORK_PROCESSOR, metric);
+        }
+
+        final List<CodahaleMetric> logDirectoryMetrics = Lists.newArrayList(LogDirectoryMetrics.getMetrics());
+        logDirectoryMetrics.addAll(LogDirectoryMetrics.getRollupMetrics());
+        for (CodahaleMetric metric: compactor.compact(KAFKA_LOG_DIRECTORY, logDirectoryMetrics)) {
+            ret.addEntityMetric(KAFKA_LOG_DIRECTORY, metric);
+        }
+
+        final List<CodahaleMetric> fetcherMetrics = Lists.newArrayList(ReplicaFetcherMetrics.getMetrics());
+        fetcherMetrics.addAll(ReplicaFetcherMetrics.getRollupMetrics());
+        for (CodahaleMetric metric: compactor.compact(KAFKA_REPLICA_FETCHER, fetcherMetrics)) {
+            ret.addEntityMetric(KAFKA_REPLICA_FETCHER, metric);
+        }
+
+        for (CodahaleMetric metric: compactor.compact(KAFKA_CONSUMER_GROUP, ConsumerGroupMetrics.getMetrics())) {
+            ret.addEntityMetric(KAFKA_CONSUMER_GROUP, metric);
+        }
+
+        for (CodahaleMetric metric: compactor.compact(KAFKA_CLIENT_QUOTA, ClientQuotaMetrics.getMetrics())) {
+            ret.addEntityMetric(KAFKA_CLIENT_QUOTA, metric);
+        }
+
         return ret;
     }
 
-    private void generateCommonMetricsFixture() throws Exception {
+    void generateCommonMetricsFixture() throws Exception {
         final List<MetricDescriptor> memoryMetricDescriptors =
                 CodahaleCommonMetricSets.generateMetricDescritptorsForMetricSet(
                         MetricSet.MEMORY,
@@ -97,20 +215,274 @@ public class KafkaServiceMetricsSchemaGenerator extends AbstractCodahaleFixtureG
         commonMetrics.addAll(memoryMetricDescriptors);
         commonMetrics.addAll(threadStateMetricDescriptors);
 
+        // Only the HTTP reporter serves the "jvm" section these sets are read from. MirrorMaker
+        // is served by JvmMetricsAgent, which does not, so it gets the JvmMetrics gauges only
         final Map<String, List<MetricDescriptor>> fixture = Maps.newTreeMap();
         fixture.put(KAFKA_BROKER, commonMetrics);
 
+        FixtureWriter.write(getCommonMetricsFile(), fixture, true);
+    }
+
+    /**
+     * Write the names of the metrics of each role and entity that the in-broker reporter may
+     * delta export: gauges are left out while they do not change and counters and meters
+     * are sent as the difference to the previous export.
+     */
+    void generateDeltaExportFixture() throws Exception {
+        final Map<String, List<String>> fixture = Maps.newTreeMap();
+        final List<CodahaleMetric> serviceMetrics = Lists.newArrayList(BrokerMetrics.getClusterMetrics());
+        serviceMetrics.addAll(TopicSkewMetrics.getClusterMetrics());
+        fixture.put(SERVICE_NAME, getDeltaExportableNames(serviceMetrics));
+        final List<CodahaleMetric> brokerMetrics = Lists.newArrayList(BrokerMetrics.getDeltaExportableMetrics());
+        brokerMetrics.addAll(ReplicaFetcherMetrics.getBrokerRollupMetrics());
+        brokerMetrics.addAll(LogDirectoryMetrics.getBrokerRollupMetrics());
+        fixture.put(KAFKA_BROKER, getDeltaExportableNames(brokerMetrics));
+        final List<CodahaleMetric> clusterTopicMetrics = Lists.newArrayList(TopicSkewMetrics.getMetrics());
+        clusterTopicMetrics.addAll(ConsumerGroupMetrics.getTopicMetrics());
+        fixture.put(KAFKA_TOPIC, getDeltaExportableNames(clusterTopicMetrics));
+        final List<CodahaleMetric> topicMetrics = Lists.newArrayList(TopicMetrics.getMetrics());
+        topicMetrics.addAll(ReplicaRollupMetrics.getTopicMetrics());
+        fixture.put(KAFKA_BROKER_TOPIC, getDeltaExportableNames(topicMetrics));
+        fixture.put(KAFKA_REPLICA, getDeltaExportableNames(ReplicaMetrics.getMetrics()));
+        fixture.put(KAFKA_OTHER_REPLICAS, getDeltaExportableNames(ReplicaRollupMetrics.getOtherReplicasMetrics()));
+        fixture.put(KAFKA_NETWORK_PROCESSOR, getDeltaExportableNames(NetworkProcessorMetrics.getMetrics()));
+        final List<CodahaleMetric> logDirectoryMetrics = Lists.newArrayList(LogDirectoryMetrics.getMetrics());
+        logDirectoryMetrics.addAll(LogDirectoryMetrics.getRollupMetrics());
+        fixture.put(KAFKA_LOG_DIRECTORY, getDeltaExportableNames(logDirectoryMetrics));
+        final List<CodahaleMetric> fetcherMetrics = Lists.newArrayList(ReplicaFetcherMetrics.getMetrics());
+        fetcherMetrics.addAll(ReplicaFetcherMetrics.getRollupMetrics());
+        fixture.put(KAFKA_REPLICA_FETCHER, getDeltaExportableNames(fetcherMetrics));
+        fixture.put(KAFKA_CONSUMER_GROUP, getDeltaExportableNames(ConsumerGroupMetrics.getMetrics()));
+        fixture.put(KAFKA_CLIENT_QUOTA, getDeltaExportableNames(ClientQuotaMetrics.getMetrics()));
+        FixtureWriter.write(getDeltaExportFile(), fixture, true);
+    }
+
+    /**
+     * Write the names of the metrics of each role and entity that the in-broker reporter
+     * collects more often, in the hot tier, or less often, in the cold tier, than the
+     * polling interval. Other metrics are in the default tier.
+     */
+    void generateCollectionTierFixture() throws Exception {
+        final Map<String, Map<String, List<String>>> fixture = Maps.newTreeMap();
+        fixture.put(KAFKA_BROKER, getTierNames(BrokerMetrics.getHotMetrics(), Collections.<CodahaleMetric>emptyList()));
+        fixture.put(KAFKA_REPLICA, getTierNames(Collections.<CodahaleMetric>emptyList(), ReplicaMetrics.getColdMetrics()));
+        fixture.put(KAFKA_NETWORK_PROCESSOR,
+                getTierNames(NetworkProcessorMetrics.getHotMetrics(), Collections.<CodahaleMetric>emptyList()));
+        FixtureWriter.write(getCollectionTierFile(), fixture, true);
+    }
+
+    private static Map<String, List<String>> getTierNames(final List<CodahaleMetric> hot,
+                                                          final List<CodahaleMetric> cold) {
+        final Map<String, List<String>> ret = Maps.newTreeMap();
+        ret.put(ReporterCatalog.getTierName(ReporterCatalog.TIER_HOT), getNames(hot));
+        ret.put(ReporterCatalog.getTierName(ReporterCatalog.TIER_COLD), getNames(cold));
+        return ret;
+    }
+
+    private static List<String> getNames(final List<CodahaleMetric> metrics) {
+        final List<String> names = Lists.newArrayList();
+        for (CodahaleMetric metric : metrics) {
+            names.add(metric.getName());
+        }
+        return names;
+    }
+
+    private static List<String> getDeltaExportableNames(final List<CodahaleMetric> metrics) {
+        final List<String> names = Lists.newArrayList();
+        for (CodahaleMetric metric : metrics) {
+            if (isDeltaExportable(metric)) {
+                names.add(metric.getName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Histograms and timers are always exported in full: their percentiles drift while idle.
+     */
+    private static boolean isDeltaExportable(final CodahaleMetric metric) {
+        switch (metric.getCodahaleMetricType()) {
+            case GAUGE:
+            case COUNTER:
+            case METER:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Write the contexts the in-broker reporter exports. Topic, replica, network processor,
+     * replica fetcher and client quota contexts are prefixed with the group and type their Yammer metrics are
+     * registered under, log directory contexts already include them. Rollups are computed by the
+     * reporter and are not in the catalog, but the partition lags the fetcher rollup reads are.
+     */
+    static void generateReporterCatalog(final File file) throws Exception {
+        final Set<String> deltaContexts = getContexts(BrokerMetrics.getDeltaExportableMetrics());
+        final Set<String> hotContexts = getContexts(BrokerMetrics.getHotMetrics());
+        final Set<String> coldContexts = getContexts(ReplicaMetrics.getColdMetrics());
+        final Set<String> hotProcessorContexts = getContexts(NetworkProcessorMetrics.getHotMetrics());
+        final ReporterCatalog catalog = new ReporterCatalog();
+        for (CodahaleMetric metric : BrokerMetrics.getMetrics()) {
+            catalog.add(KAFKA_BROKER, metric.getCodahaleMetricType().name(), metric.getContext(),
+                    deltaContexts.contains(metric.getContext()) && isDeltaExportable(metric),
+                    hotContexts.contains(metric.getContext())
+                            ? ReporterCatalog.TIER_HOT : ReporterCatalog.TIER_DEFAULT);
+        }
+        for (CodahaleMetric metric : TopicMetrics.getMetrics()) {
+            catalog.add(KAFKA_BROKER_TOPIC, metric.getCodahaleMetricType().name(),
+                    TopicMetrics.YAMMER_ROOT + "::" + metric.getContext(), isDeltaExportable(metric),
+                    ReporterCatalog.TIER_DEFAULT);
+        }
+        for (CodahaleMetric metric : ReplicaMetrics.getMetrics()) {
+            catalog.add(KAFKA_REPLICA, metric.getCodahaleMetricType().name(),
+                    ReplicaMetrics.YAMMER_ROOT + "::" + metric.getContext(), isDeltaExportable(metric),
+                    coldContexts.contains(metric.getContext())
+                            ? ReporterCatalog.TIER_COLD : ReporterCatalog.TIER_DEFAULT);
+        }
+        for (CodahaleMetric metric : NetworkProcessorMetrics.getMetrics()) {
+            catalog.add(KAFKA_NETWORK_PROCESSOR, metric.getCodahaleMetricType().name(),
+                    NetworkProcessorMetrics.YAMMER_ROOT + "::" + metric.getContext(), isDeltaExportable(metric),
+                    hotProcessorContexts.contains(metric.getContext())
+                            ? ReporterCatalog.TIER_HOT : ReporterCatalog.TIER_DEFAULT);
+        }
+        for (CodahaleMetric metric : LogDirectoryMetrics.getMetrics()) {
+            catalog.add(KAFKA_LOG_DIRECTORY, metric.getCodahaleMetricType().name(), metric.getContext(),
+                    isDeltaExportable(metric), ReporterCatalog.TIER_DEFAULT);
+        }
+        for (CodahaleMetric metric : ReplicaFetcherMetrics.getMetrics()) {
+            catalog.add(KAFKA_REPLICA_FETCHER, metric.getCodahaleMetricType().name(),
+                    ReplicaFetcherMetrics.YAMMER_ROOT + "::" + metric.getContext(), isDeltaExportable(metric),
+                    ReporterCatalog.TIER_DEFAULT);
+        }
+        catalog.add(KAFKA_REPLICA_FETCHER, CodahaleMetricTypes.CodahaleMetricType.GAUGE.name(),
+                ReplicaFetcherMetrics.LAG_YAMMER_ROOT + "::" + FetcherRollup.CONSUMER_LAG, true,
+                ReporterCatalog.TIER_DEFAULT);
+        catalog.add(KAFKA_REPLICA_FETCHER, CodahaleMetricTypes.CodahaleMetricType.TIMER.name(),
+                ReplicaFetcherMetrics.TIMER_YAMMER_ROOT + "::" + FetcherRollup.FETCH_REQUEST_TIMER, true,
+                ReporterCatalog.TIER_DEFAULT);
+        for (CodahaleMetric metric : ClientQuotaMetrics.getMetrics()) {
+            catalog.add(KAFKA_CLIENT_QUOTA, metric.getCodahaleMetricType().name(),
+                    ClientQuotaMetrics.YAMMER_ROOT + "::" + metric.getContext(), isDeltaExportable(metric),
+                    ReporterCatalog.TIER_DEFAULT);
+        }
+        catalog.write(file);
+    }
+
+    private static Set<String> getContexts(final List<CodahaleMetric> metrics) {
+        final Set<String> contexts = Sets.newHashSet();
+        for (CodahaleMetric metric : metrics) {
+            contexts.add(metric.getContext());
+        }
+        return contexts;
+    }
+
+    private File getFixtureFile() {
+        return new File(config.getString(OPT_GENERATED_OUPTUT.getLongOpt(), CODAHALE_OUT_DEFAULT_FILE_NAME));
+    }
+
+    private File getBinaryFixtureFile() {
+        final File fixtureFile = getFixtureFile().getAbsoluteFile();
+        return new File(fixtureFile.getParentFile(),
+                FilenameUtils.getBaseName(fixtureFile.getName()) + "." + BINARY_FIXTURE_EXTENSION);
+    }
+
+    private File getCommonMetricsFile() {
         final String path = FilenameUtils.getFullPath(config.getString(
                 AbstractCodahaleFixtureGenerator.OPT_GENERATED_OUPTUT.getLongOpt(),
                 CODAHALE_OUT_DEFAULT_FILE_NAME));
+        return new File(path, COMMON_METRICS_FILE_NAME);
+    }
+
+    private File getDeltaExportFile() {
+        return new File(getCommonMetricsFile().getParentFile(), DELTA_EXPORT_FILE_NAME);
+    }
 
-        FileUtils.write(new File(path, COMMON_METRICS_FILE_NAME), JsonUtil.valueAsString(fixture, true));
+    private File getCollectionTierFile() {
+        return new File(getCommonMetricsFile().getParentFile(), COLLECTION_TIER_FILE_NAME);
+    }
+
+    /**
+     * Get the fixture cache, or null if caching is disabled.
+     * @param distributions the other Kafka distributions fixtures are generated for
+     */
+    private static FixtureCache getFixtureCache(final List<KafkaDistribution> distributions) throws Exception {
+        final String cacheDir = System.getProperty(CACHE_DIR_PROPERTY);
+        if (cacheDir == null || cacheDir.isEmpty()) {
+            return null;
+        }
+        final List<File> distributionJars = Lists.newArrayList();
+        final List<String> inputs = Lists.newArrayList(
+                REQUEST_NAMES_FROM_KAFKA_PROPERTY + "=" + Boolean.getBoolean(REQUEST_NAMES_FROM_KAFKA_PROPERTY),
+                BINARY_FIXTURE_PROPERTY + "=" + Boolean.getBoolean(BINARY_FIXTURE_PROPERTY),
+                REPORTER_CATALOG_PROPERTY + "=" + System.getProperty(REPORTER_CATALOG_PROPERTY, ""));
+        for (KafkaDistribution distribution : distributions) {
+            inputs.add(DISTRIBUTIONS_PROPERTY + "=" + distribution.getVersion());
+            distributionJars.addAll(distribution.getJars());
+        }
+        return new FixtureCache(new File(cacheDir), FixtureCache.computeKey(
+                System.getProperty(KAFKA_VERSION_PROPERTY), distributionJars, inputs.toArray(new String[inputs.size()])));
     }
 
     public static void main(String[] args) throws Exception {
         KafkaServiceMetricsSchemaGenerator generator = new KafkaServiceMetricsSchemaGenerator(args);
+        final List<File> outputs = Lists.newArrayList(generator.getFixtureFile(), generator.getCommonMetricsFile(),
+                generator.getDeltaExportFile(), generator.getCollectionTierFile());
+        if (Boolean.getBoolean(BINARY_FIXTURE_PROPERTY)) {
+            outputs.add(generator.getBinaryFixtureFile());
+        }
+        final String reporterCatalog = System.getProperty(REPORTER_CATALOG_PROPERTY);
+        if (reporterCatalog != null && !reporterCatalog.isEmpty()) {
+            outputs.add(new File(reporterCatalog));
+        }
+
+        final List<KafkaDistribution> distributions = Lists.newArrayList();
+        final String distributionSpecs = System.getProperty(DISTRIBUTIONS_PROPERTY);
+        if (distributionSpecs != null && !distributionSpecs.trim().isEmpty()) {
+            for (String spec : distributionSpecs.split(",")) {
+                distributions.add(KafkaDistribution.parse(spec));
+            }
+        }
+        final MultiVersionFixtureGenerator multiVersionGenerator =
+                new MultiVersionFixtureGenerator(generator.getFixtureFile());
+        if (!distributions.isEmpty()) {
+            outputs.addAll(multiVersionGenerator.getOutputFiles(distributions));
+        }
+
+        final FixtureCache cache = getFixtureCache(distributions);
+        if (cache != null && !Boolean.getBoolean(REGENERATE_PROPERTY) && cache.restore(outputs.toArray(new File[outputs.size()]))) {
+            System.out.println("Reusing cached fixtures " + cache.getKey());
+            printStartupReport();
+            return;
+        }
+
         generator.generateFixture();
+        generator.compactor.printReport(System.out);
         generator.generateCommonMetricsFixture();
+        generator.generateDeltaExportFixture();
+        generator.generateCollectionTierFixture();
+        if (reporterCatalog != null && !reporterCatalog.isEmpty()) {
+            generateReporterCatalog(new File(reporterCatalog));
+        }
+        if (!distributions.isEmpty()) {
+            multiVersionGenerator.generate(distributions);
+        }
+
+        if (cache != null) {
+            cache.store(outputs.toArray(new File[outputs.size()]));
+        }
+        printStartupReport();
+    }
+
+    /**
+     * Print how long the JVM has been up and how many classes it loaded. Running with
+     * -Dkafka.request.names.from.kafka=true shows the cost of loading the Kafka broker and
+     * Scala runtime for comparison.
+     */
+    private static void printStartupReport() {
+        System.out.println(String.format("Generator finished after %d ms with %d classes loaded",
+                ManagementFactory.getRuntimeMXBean().getUptime(),
+                ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount()));
     }
 }
 
@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricDefinitionFixture;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.kafka.metrics.broker.BrokerMetrics;
+import org.apache.kafka.metrics.broker.KafkaDistribution;
+import org.apache.kafka.metrics.fixture.FixtureCompactor;
+import org.apache.kafka.metrics.fixture.FixtureWriter;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates fixtures for several Kafka versions at once.
+ *
+ * Each version is loaded in its own class loader and generated on a thread pool sized to
+ * the processors. Next to the main fixture this writes:
+ * <ul>
+ *   <li>kafka_codahale_fixture-&lt;version&gt;.json, the fixture of each version</li>
+ *   <li>kafka_codahale_fixture-all.json, the superset of all versions</li>
+ *   <li>kafka_codahale_fixture-versions.json, the versions each KAFKA_BROKER metric of the
+ *       superset is available in. Entity metrics do not depend on the Kafka version.</li>
+ * </ul>
+ */
+class MultiVersionFixtureGenerator {
+
+    private final File fixtureFile;
+
+    MultiVersionFixtureGenerator(final File fixtureFile) {
+        this.fixtureFile = fixtureFile;
+    }
+
+    void generate(final List<KafkaDistribution> distributions) throws Exception {
+        final ExecutorService pool = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(distributions.size(), Runtime.getRuntime().availableProcessors())));
+        final List<Future<List<CodahaleMetric>>> results = Lists.newArrayList();
+        try {
+            for (final KafkaDistribution distribution : distributions) {
+                results.add(pool.submit(new Callable<List<CodahaleMetric>>() {
+                    @Override
+                    public List<CodahaleMetric> call() throws Exception {
+                        return generate(distribution);
+                    }
+                }));
+            }
+
+            final List<CodahaleMetric> allBrokerMetrics = Lists.newArrayList();
+            final Map<String, Set<String>> versionsByMetric = Maps.newTreeMap();
+            for (int i = 0; i < distributions.size(); i++) {
+                final String version = distributions.get(i).getVersion();
+                for (CodahaleMetric metric : results.get(i).get()) {
+                    allBrokerMetrics.add(metric);
+                    if (!versionsByMetric.containsKey(metric.getName())) {
+                        versionsByMetric.put(metric.getName(), Sets.<String>newTreeSet());
+                    }
+                    versionsByMetric.get(metric.getName()).add(version);
+                }
+            }
+
+            // The compactor also fails if two versions define the same metric differently
+            final FixtureCompactor compactor = new FixtureCompactor();
+            FixtureWriter.write(getOutputFile("all"),
+                    KafkaServiceMetricsSchemaGenerator.buildFixture(compactor, allBrokerMetrics), false);
+            final Map<String, Map<String, Set<String>>> versions = Maps.newTreeMap();
+            versions.put(KafkaServiceMetricsSchemaGenerator.KAFKA_BROKER, versionsByMetric);
+            FixtureWriter.write(getOutputFile("versions"), versions, true);
+            System.out.println(String.format("Generated fixtures for %d Kafka versions", distributions.size()));
+            compactor.printReport(System.out);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Generate and write the fixture of one version.
+     * @return the broker metrics of the version
+     */
+    private List<CodahaleMetric> generate(final KafkaDistribution distribution) throws Exception {
+        final List<CodahaleMetric> brokerMetrics = BrokerMetrics.getMetrics(distribution.loadRequestNames());
+        final CodahaleMetricDefinitionFixture fixture =
+                KafkaServiceMetricsSchemaGenerator.buildFixture(new FixtureCompactor(), brokerMetrics);
+        FixtureWriter.write(getOutputFile(distribution.getVersion()), fixture, false);
+        return brokerMetrics;
+    }
+
+    /**
+     * @return the files {@link #generate(List)} writes for the distributions
+     */
+    List<File> getOutputFiles(final List<KafkaDistribution> distributions) {
+        final List<File> files = Lists.newArrayList();
+        for (KafkaDistribution distribution : distributions) {
+            files.add(getOutputFile(distribution.getVersion()));
+        }
+        files.add(getOutputFile("all"));
+        files.add(getOutputFile("versions"));
+        return files;
+    }
+
+    private File getOutputFile(final String suffix) {
+        return new File(fixtureFile.getAbsoluteFile().getParentFile(), String.format("%s-%s.%s",
+                FilenameUtils.getBaseName(fixtureFile.getName()), suffix,
+                FilenameUtils.getExtension(fixtureFile.getName())));
+    }
+}
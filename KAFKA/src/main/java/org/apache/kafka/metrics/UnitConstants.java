@@ -35,6 +35,7 @@ public class UnitConstants {
     public static final String expansions = "expansions";
     public static final String shrinks = "shrinks";
     public static final String flushes = "flushes";
+    public static final String events = "events";
 
     public static final String second = "second";
     public static final String nanoseconds = "nanoseconds";
@@ -43,6 +44,15 @@ public class UnitConstants {
     public static final String percent_idle = "percent_idle";
     public static final String state = "state";
 
+    public static final String buffers = "buffers";
+    public static final String garbage_collections = "garbage_collections";
+    public static final String file_descriptors = "file_descriptors";
+    public static final String safepoints = "safepoints";
+    public static final String percent = "percent";
+    public static final String ratio = "ratio";
+    public static final String connections = "connections";
+    public static final String clients = "clients";
+
     public static final String fetch_requests = "fetch_requests";
     public static final String fetchRequests = "fetch requests";
 }
@@ -21,7 +21,9 @@ import com.cloudera.csd.tools.codahale.CodahaleMetric;
 import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
 import com.google.common.collect.Lists;
 import org.apache.kafka.metrics.UnitConstants;
+import org.apache.kafka.metrics.jvm.JvmMetrics;
 
+import java.util.Collection;
 import java.util.List;
 
 public class BrokerMetrics {
@@ -82,6 +84,53 @@ public class BrokerMetrics {
                     .build();
 
     public static List<CodahaleMetric> getMetrics() {
+        return getMetrics(RequestMetrics.getKafkaRequestNames());
+    }
+
+    /**
+     * Get the broker metrics that stay flat while topics are idle, which the in-broker
+     * reporter may delta export.
+     * @return the list of metrics
+     */
+    public static List<CodahaleMetric> getDeltaExportableMetrics() {
+        final List<String> requestNames = RequestMetrics.getKafkaRequestNames();
+        List<CodahaleMetric> metrics = Lists.newArrayList();
+        metrics.addAll(BrokerTopicMetrics.getMetrics());
+        metrics.addAll(LogCleanerMetrics.getMetrics());
+        metrics.addAll(ReplicaManagerMetrics.getMetrics());
+        metrics.addAll(RequestLatencyMetrics.getMetrics(requestNames));
+        return metrics;
+    }
+
+    /**
+     * Get the request latency percentiles merged across the brokers, which only the active
+     * controller reports, so they are service metrics rather than broker metrics.
+     * @return the list of metrics
+     */
+    public static List<CodahaleMetric> getClusterMetrics() {
+        return RequestLatencyMetrics.getClusterMetrics(RequestMetrics.getKafkaRequestNames());
+    }
+
+    /**
+     * Get the broker metrics of the hot collection tier, which the in-broker reporter
+     * snapshots more often than the others to resolve short saturation spikes.
+     * @return the list of metrics
+     */
+    public static List<CodahaleMetric> getHotMetrics() {
+        List<CodahaleMetric> metrics = Lists.newArrayList();
+        metrics.addAll(ControllerMetrics.getHotMetrics());
+        metrics.addAll(NetworkMetrics.getHotMetrics());
+        metrics.addAll(ReplicaManagerMetrics.getHotMetrics());
+        return metrics;
+    }
+
+    /**
+     * Get the broker metrics for a given set of Kafka requests, for example the requests
+     * of another Kafka version than the one on the classpath.
+     * @param requestNames the names of the Kafka requests
+     * @return the list of metrics
+     */
+    public static List<CodahaleMetric> getMetrics(final Collection<String> requestNames) {
         List<CodahaleMetric> metrics = Lists.newArrayList();
         metrics.add(BROKER_STATE_METRIC);
         metrics.add(LOG_FLUSH_METRIC);
@@ -89,10 +138,15 @@ public class BrokerMetrics {
         metrics.add(NUM_OFFSETS_METRIC);
         metrics.addAll(BrokerTopicMetrics.getMetrics());
         metrics.addAll(ControllerMetrics.getMetrics());
+        metrics.addAll(LogCleanerMetrics.getMetrics());
         metrics.addAll(NetworkMetrics.getMetrics());
         metrics.addAll(PurgatoryMetrics.getMetrics());
+        metrics.addAll(QuotaMetrics.getMetrics());
         metrics.addAll(ReplicaManagerMetrics.getMetrics());
-        metrics.addAll(RequestMetrics.getMetrics());
+        metrics.addAll(RequestMetrics.getMetrics(requestNames));
+        metrics.addAll(RequestLatencyMetrics.getMetrics(requestNames));
+        metrics.addAll(ZooKeeperClientMetrics.getMetrics());
+        metrics.addAll(JvmMetrics.getMetrics());
         return metrics;
     }
 }
@@ -96,6 +96,29 @@ class BrokerTopicMetrics {
                     .setContext(String.format(BROKER_TOPICS_METRICS_CONTEXT_FORMAT, "FailedFetchRequestsPerSec"))
                     .build();
 
+    private static final CodahaleMetric PRODUCE_MESSAGE_CONVERSIONS_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("produce_message_conversions")
+                    .setLabel("Produce Message Conversions")
+                    .setDescription("Number of messages the broker converted from the message format of older producers")
+                    .setNumerator(UnitConstants.messages)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.METER)
+                    .setContext(String.format(BROKER_TOPICS_METRICS_CONTEXT_FORMAT, "ProduceMessageConversionsPerSec"))
+                    .build();
+
+    private static final CodahaleMetric FETCH_MESSAGE_CONVERSIONS_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("fetch_message_conversions")
+                    .setLabel("Fetch Message Conversions")
+                    .setDescription("Number of messages the broker converted to the message format of older consumers, " +
+                            "which cannot be sent with zero-copy")
+                    .setNumerator(UnitConstants.messages)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.METER)
+                    .setContext(String.format(BROKER_TOPICS_METRICS_CONTEXT_FORMAT, "FetchMessageConversionsPerSec"))
+                    .build();
+
     public static List<CodahaleMetric> getMetrics() {
         return Arrays.asList(
                 MESSAGES_RECEIVED_METRIC,
@@ -103,7 +126,9 @@ class BrokerTopicMetrics {
                 BYTES_FETCHED_METRIC,
                 BYTES_REJECTED_METRIC,
                 REJECTED_MESSAGE_BATCHES_METRIC,
-                FETCH_REQUEST_FAILURES_METRIC
+                FETCH_REQUEST_FAILURES_METRIC,
+                PRODUCE_MESSAGE_CONVERSIONS_METRIC,
+                FETCH_MESSAGE_CONVERSIONS_METRIC
         );
     }
 }
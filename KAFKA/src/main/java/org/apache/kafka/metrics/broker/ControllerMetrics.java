@@ -21,6 +21,7 @@ import com.cloudera.csd.tools.codahale.CodahaleMetric;
 import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
 import org.apache.kafka.metrics.UnitConstants;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -89,13 +90,91 @@ class ControllerMetrics {
                     .setContext(String.format(KAFKA_CONTROLLER_CONTEXT_FORMAT, "OfflinePartitionsCount"))
                     .build();
 
+    // ControllerEventManager
+    private static final String CONTROLLER_EVENT_MANAGER_CONTEXT_FORMAT = "kafka.controller.ControllerEventManager::%s";
+
+    private static final CodahaleMetric EVENT_QUEUE_SIZE_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("controller_event_queue_size")
+                    .setLabel("Controller Event Queue Size")
+                    .setDescription("Number of events waiting to be processed by the controller")
+                    .setNumerator(UnitConstants.events)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(CONTROLLER_EVENT_MANAGER_CONTEXT_FORMAT, "EventQueueSize"))
+                    .build();
+
+    private static final CodahaleMetric EVENT_QUEUE_TIME_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("controller_event_queue_time")
+                    .setLabel("Controller Event Queue Time")
+                    .setDescription("Time events waited in the queue before the controller processed them")
+                    .setNumerator(UnitConstants.ms)
+                    .setNumeratorForCounterMetric(UnitConstants.events)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.HISTOGRAM)
+                    .setContext(String.format(CONTROLLER_EVENT_MANAGER_CONTEXT_FORMAT, "EventQueueTimeMs"))
+                    .build();
+
+    // The controller states that time the processing of their events, which depend on the
+    // Kafka version. PartitionReassignment was renamed AlterPartitionReassignment in Kafka 2.4.
+    private static final String[] CONTROLLER_STATES = {
+            "ControllerChange",
+            "BrokerChange",
+            "TopicChange",
+            "TopicDeletion",
+            "PartitionReassignment",
+            "AlterPartitionReassignment",
+            "AutoLeaderBalance",
+            "ManualLeaderBalance",
+            "ControlledShutdown",
+            "IsrChange",
+            "LeaderAndIsrResponseReceived",
+            "LogDirChange",
+            "ControllerShutdown",
+            "UncleanLeaderElectionEnable",
+            "TopicUncleanLeaderElectionEnable"
+    };
+
     public static List<CodahaleMetric> getMetrics() {
-        return Arrays.asList(
+        final List<CodahaleMetric> metrics = new ArrayList<CodahaleMetric>(Arrays.asList(
                 LEADER_ELECTIONS_METRIC,
                 UNCLEAN_LEADER_ELECTIONS_METRIC,
                 ACTIVE_CONTROLLER_METRIC,
                 PREFERRED_REPLICA_IMBALANCE_METRIC,
-                OFFLINE_PARTITIONS_METRIC
+                OFFLINE_PARTITIONS_METRIC,
+                EVENT_QUEUE_SIZE_METRIC,
+                EVENT_QUEUE_TIME_METRIC
+        ));
+        for (String state : CONTROLLER_STATES) {
+            metrics.add(getMetricForState(state));
+        }
+        return metrics;
+    }
+
+    /**
+     * Get the metrics that show the saturation of the controller.
+     */
+    public static List<CodahaleMetric> getHotMetrics() {
+        return Arrays.asList(
+                EVENT_QUEUE_SIZE_METRIC
         );
     }
+
+    /**
+     * Get the rate and processing time of the events of a controller state.
+     * @param state the name of the controller state
+     * @return the metric
+     */
+    private static CodahaleMetric getMetricForState(final String state) {
+        final String label = state.replaceAll("([a-z])([A-Z]+)", "$1 $2");
+        return new CodahaleMetric.Builder()
+                .setName(String.format("controller_%s", RequestMetrics.requestNameToMetricName(state)))
+                .setLabel(String.format("Controller %s", label))
+                .setDescription(String.format("Rate and time of processing %s events by the controller", label))
+                .setNumerator(UnitConstants.ms)
+                .setNumeratorForCounterMetric(UnitConstants.events)
+                .setDenominatorForRateMetrics(UnitConstants.second)
+                .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.TIMER)
+                .setContext(String.format(CONTROLLER_STATS_CONTEXT_FORMAT, state + "RateAndTimeMs"))
+                .build();
+    }
 }
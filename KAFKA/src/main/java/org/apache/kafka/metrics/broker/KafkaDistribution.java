@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.broker;
+
+import com.google.common.collect.Lists;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A Kafka version and the jars it runs with, for example the lib directory of a Kafka parcel.
+ *
+ * The jars are loaded in their own class loader, isolated from the generator classpath and
+ * from other versions, so several Kafka and Scala versions can be inspected in one JVM.
+ */
+public class KafkaDistribution {
+
+    private final String version;
+    private final List<File> jars;
+
+    public KafkaDistribution(final String version, final List<File> jars) {
+        this.version = version;
+        this.jars = jars;
+    }
+
+    /**
+     * Parse a distribution from a version=libDir specification.
+     * @param spec the specification
+     * @return the distribution with all the jars in the lib directory
+     */
+    public static KafkaDistribution parse(final String spec) {
+        final int separator = spec.indexOf('=');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Expected <version>=<lib dir> but got " + spec);
+        }
+        final File libDir = new File(spec.substring(separator + 1).trim());
+        final File[] jars = libDir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().endsWith(".jar");
+            }
+        });
+        if (jars == null || jars.length == 0) {
+            throw new IllegalArgumentException("No jars found in " + libDir);
+        }
+        final List<File> sorted = Lists.newArrayList(jars);
+        Collections.sort(sorted);
+        return new KafkaDistribution(spec.substring(0, separator).trim(), sorted);
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the jars of the distribution, sorted by path
+     */
+    public List<File> getJars() {
+        return jars;
+    }
+
+    /**
+     * Load the request names of this Kafka version. The KafkaRequestNames snapshot is used
+     * if its version is this one and the names cannot be loaded from the jars.
+     * @return a sorted list of all the Kafka request metric names
+     * @throws IllegalStateException if the version does not register its request metrics
+     *         the way the generator reads them
+     * @throws Exception if the Kafka classes cannot be loaded
+     */
+    public List<String> loadRequestNames() throws Exception {
+        final URL[] urls = new URL[jars.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = jars.get(i).toURI().toURL();
+        }
+        // No parent besides the bootstrap loader, so nothing leaks in from the generator classpath
+        final URLClassLoader loader = new URLClassLoader(urls, null);
+        final Thread thread = Thread.currentThread();
+        final ClassLoader contextLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(loader);
+        try {
+            return loadRequestNames(loader);
+        } catch (ClassNotFoundException e) {
+            return loadSnapshotRequestNames(e);
+        } catch (NoSuchFieldException e) {
+            return loadSnapshotRequestNames(e);
+        } catch (NoSuchMethodException e) {
+            return loadSnapshotRequestNames(e);
+        } finally {
+            thread.setContextClassLoader(contextLoader);
+            if (loader instanceof Closeable) {
+                ((Closeable) loader).close();
+            }
+        }
+    }
+
+    /**
+     * Fall back to the KafkaRequestNames snapshot when the Kafka classes or members the
+     * request names are read from are missing, as they are in later Kafka versions.
+     */
+    private List<String> loadSnapshotRequestNames(final Exception cause) {
+        if (version.equals(KafkaRequestNames.KAFKA_VERSION)) {
+            return KafkaRequestNames.REQUEST_NAMES;
+        }
+        throw new IllegalStateException(String.format("Unsupported Kafka version %s: its request names cannot " +
+                "be read from kafka.network.RequestMetrics$.metricsMap (%s)", version, cause), cause);
+    }
+
+    /**
+     * Same as RequestNamesSnapshot.loadFromKafka(), through reflection because the Kafka and
+     * Scala classes of this version are not the ones the generator was compiled against.
+     */
+    private static List<String> loadRequestNames(final ClassLoader loader) throws Exception {
+        final Class<?> requestMetrics = Class.forName("kafka.network.RequestMetrics$", true, loader);
+        final Object module = requestMetrics.getField("MODULE$").get(null);
+        final Object metricsMap = requestMetrics.getMethod("metricsMap").invoke(module);
+
+        // scala.collection.Map inherits keysIterator from MapLike up to Scala 2.12 and from
+        // MapOps from Scala 2.13
+        final Method keysIterator = Class.forName("scala.collection.Map", false, loader)
+                .getMethod("keysIterator");
+        final Class<?> iteratorClass = Class.forName("scala.collection.Iterator", false, loader);
+        final Method hasNext = iteratorClass.getMethod("hasNext");
+        final Method next = iteratorClass.getMethod("next");
+
+        final List<String> metricNames = Lists.newArrayList();
+        final Object keys = keysIterator.invoke(metricsMap);
+        while ((Boolean) hasNext.invoke(keys)) {
+            metricNames.add((String) next.invoke(keys));
+        }
+        Collections.sort(metricNames);
+        return metricNames;
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.broker;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Kafka request names, generated by RequestNamesSnapshot. Do not edit.
+ */
+final class KafkaRequestNames {
+
+    private KafkaRequestNames() {}
+
+    static final String KAFKA_VERSION = "0.8.2.0-kafka-1.3.1";
+
+    static final List<String> REQUEST_NAMES = Collections.unmodifiableList(Arrays.asList(
+            "ConsumerMetadata",
+            "ControlledShutdown",
+            "Fetch",
+            "FetchConsumer",
+            "FetchFollower",
+            "Heartbeat",
+            "JoinGroup",
+            "LeaderAndIsr",
+            "Metadata",
+            "OffsetCommit",
+            "OffsetFetch",
+            "Offsets",
+            "Produce",
+            "StopReplica",
+            "UpdateMetadata"
+    ));
+}
@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.broker;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
+import org.apache.kafka.metrics.UnitConstants;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Metrics of the log cleaner, which compacts the logs of topics with cleanup.policy=compact.
+ * Only registered while log.cleaner.enable is set.
+ */
+class LogCleanerMetrics {
+
+    private LogCleanerMetrics() {}
+
+    // LogCleaner
+    private static final String LOG_CLEANER_CONTEXT_FORMAT = "kafka.log.LogCleaner::%s";
+
+    private static final CodahaleMetric MAX_CLEAN_TIME_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_cleaner_max_clean_time")
+                    .setLabel("Log Cleaner Maximum Clean Time")
+                    .setDescription("The longest time the cleaner threads took to clean a log in their last run")
+                    .setNumerator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_CLEANER_CONTEXT_FORMAT, "max-clean-time-secs"))
+                    .build();
+
+    private static final CodahaleMetric RECOPY_PERCENT_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_cleaner_recopy_percent")
+                    .setLabel("Log Cleaner Recopy Percent")
+                    .setDescription("The percentage of the cleaned bytes that the cleaner threads had to write " +
+                            "again in their last run. Close to 100 when little of the log can be compacted.")
+                    .setNumerator(UnitConstants.percent)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_CLEANER_CONTEXT_FORMAT, "cleaner-recopy-percent"))
+                    .build();
+
+    private static final CodahaleMetric MAX_BUFFER_UTILIZATION_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_cleaner_max_buffer_utilization")
+                    .setLabel("Log Cleaner Maximum Buffer Utilization")
+                    .setDescription("The highest percentage of the dedupe buffer a cleaner thread filled in its " +
+                            "last run. A full buffer limits the segments cleaned in one pass.")
+                    .setNumerator(UnitConstants.percent)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_CLEANER_CONTEXT_FORMAT, "max-buffer-utilization-percent"))
+                    .build();
+
+    // LogCleanerManager
+    private static final String LOG_CLEANER_MANAGER_CONTEXT_FORMAT = "kafka.log.LogCleanerManager::%s";
+
+    private static final CodahaleMetric MAX_DIRTY_PERCENT_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_cleaner_max_dirty_percent")
+                    .setLabel("Log Cleaner Maximum Dirty Percent")
+                    .setDescription("The highest percentage of a compacted log that has not been cleaned yet")
+                    .setNumerator(UnitConstants.percent)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_CLEANER_MANAGER_CONTEXT_FORMAT, "max-dirty-percent"))
+                    .build();
+
+    private static final CodahaleMetric TIME_SINCE_LAST_RUN_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_cleaner_time_since_last_run")
+                    .setLabel("Log Cleaner Time Since Last Run")
+                    .setDescription("The time since the cleaner threads last looked for a log to clean")
+                    .setNumerator(UnitConstants.ms)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_CLEANER_MANAGER_CONTEXT_FORMAT, "time-since-last-run-ms"))
+                    .build();
+
+    public static List<CodahaleMetric> getMetrics() {
+        return Arrays.asList(
+                MAX_CLEAN_TIME_METRIC,
+                RECOPY_PERCENT_METRIC,
+                MAX_BUFFER_UTILIZATION_METRIC,
+                MAX_DIRTY_PERCENT_METRIC,
+                TIME_SINCE_LAST_RUN_METRIC
+        );
+    }
+}
@@ -75,12 +75,39 @@ class NetworkMetrics {
                     .setContext(String.format(SOCKET_SERVER_CONTEXT_FORMAT, "ResponsesBeingSent"))
                     .build();
 
+    // SocketServerMetrics, bridged from the Kafka metrics of the socket server by
+    // org.apache.kafka.metrics.reporter.SocketServerMetricsBridge
+    private static final String SOCKET_SERVER_METRICS_CONTEXT_FORMAT = "kafka.network.SocketServerMetrics::%s";
+
+    private static final CodahaleMetric NETWORK_PROCESSOR_MIN_IDLE_RATIO_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("network_processor_min_idle_ratio")
+                    .setLabel("Network Processor Minimum Idle Ratio")
+                    .setDescription("The lowest fraction of time any network processor was idle, waiting for its "
+                            + "connections to be ready")
+                    .setNumerator(UnitConstants.ratio)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(SOCKET_SERVER_METRICS_CONTEXT_FORMAT, "MinIdleRatio"))
+                    .build();
+
     public static List<CodahaleMetric> getMetrics() {
         return Arrays.asList(
                 REQUEST_QUEUE_SIZE_METRIC,
                 RESPONSE_QUEUE_SIZE_METRIC,
                 NETWORK_PROCESSOR_AVG_IDLE_METRIC,
-                RESPONSES_BEING_SENT_METRIC
+                RESPONSES_BEING_SENT_METRIC,
+                NETWORK_PROCESSOR_MIN_IDLE_RATIO_METRIC
+        );
+    }
+
+    /**
+     * Get the metrics that show the saturation of the network threads.
+     */
+    public static List<CodahaleMetric> getHotMetrics() {
+        return Arrays.asList(
+                REQUEST_QUEUE_SIZE_METRIC,
+                NETWORK_PROCESSOR_AVG_IDLE_METRIC,
+                NETWORK_PROCESSOR_MIN_IDLE_RATIO_METRIC
         );
     }
 
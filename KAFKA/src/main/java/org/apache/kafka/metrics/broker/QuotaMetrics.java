@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.broker;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
+import org.apache.kafka.metrics.UnitConstants;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The throttling of all the clients of the broker, bridged from the quota metrics of Kafka 0.9
+ * and later by org.apache.kafka.metrics.reporter.ClientQuotaMetricsBridge. Many throttled
+ * clients point at broker saturation, a few throttled clients at noisy neighbours.
+ */
+class QuotaMetrics {
+
+    private QuotaMetrics() {}
+
+    // ClientQuotaMetrics
+    private static final String CLIENT_QUOTA_CONTEXT_FORMAT = "kafka.server.ClientQuotaMetrics::%s";
+
+    private static final CodahaleMetric THROTTLED_CLIENTS_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("throttled_clients")
+                    .setLabel("Throttled Clients")
+                    .setDescription("Number of clients whose responses were delayed for exceeding their quota")
+                    .setNumerator(UnitConstants.clients)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(CLIENT_QUOTA_CONTEXT_FORMAT, "ThrottledClients"))
+                    .build();
+
+    private static final CodahaleMetric MAX_THROTTLE_TIME_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("client_max_throttle_time")
+                    .setLabel("Client Maximum Throttle Time")
+                    .setDescription("Highest average time the responses of a client were delayed for exceeding " +
+                            "its quota")
+                    .setNumerator(UnitConstants.ms)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(CLIENT_QUOTA_CONTEXT_FORMAT, "MaxThrottleTimeMs"))
+                    .build();
+
+    private static final CodahaleMetric TRACKED_CLIENTS_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("quota_tracked_clients")
+                    .setLabel("Quota Tracked Clients")
+                    .setDescription("Number of clients whose quota metrics are reported")
+                    .setNumerator(UnitConstants.clients)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(CLIENT_QUOTA_CONTEXT_FORMAT, "TrackedClients"))
+                    .build();
+
+    private static final CodahaleMetric UNTRACKED_CLIENTS_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("quota_untracked_clients")
+                    .setLabel("Quota Untracked Clients")
+                    .setDescription("Number of clients whose quota metrics are not reported because the number " +
+                            "of clients reached Maximum Quota Clients. They still count towards the throttled clients.")
+                    .setNumerator(UnitConstants.clients)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(CLIENT_QUOTA_CONTEXT_FORMAT, "UntrackedClients"))
+                    .build();
+
+    private static final CodahaleMetric PRODUCE_THROTTLE_QUEUE_SIZE_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("produce_throttle_queue_size")
+                    .setLabel("Produce Throttle Queue Size")
+                    .setDescription("Number of produce responses being delayed for exceeding the quota of their client")
+                    .setNumerator(UnitConstants.responses)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(CLIENT_QUOTA_CONTEXT_FORMAT, "ProduceThrottleQueueSize"))
+                    .build();
+
+    private static final CodahaleMetric FETCH_THROTTLE_QUEUE_SIZE_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("fetch_throttle_queue_size")
+                    .setLabel("Fetch Throttle Queue Size")
+                    .setDescription("Number of fetch responses being delayed for exceeding the quota of their client")
+                    .setNumerator(UnitConstants.responses)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(CLIENT_QUOTA_CONTEXT_FORMAT, "FetchThrottleQueueSize"))
+                    .build();
+
+    private static final CodahaleMetric REQUEST_THROTTLE_QUEUE_SIZE_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("request_throttle_queue_size")
+                    .setLabel("Request Throttle Queue Size")
+                    .setDescription("Number of responses being delayed for exceeding the request quota of their " +
+                            "client. Kafka 0.11 and later.")
+                    .setNumerator(UnitConstants.responses)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(CLIENT_QUOTA_CONTEXT_FORMAT, "RequestThrottleQueueSize"))
+                    .build();
+
+    public static List<CodahaleMetric> getMetrics() {
+        return Arrays.asList(
+                THROTTLED_CLIENTS_METRIC,
+                MAX_THROTTLE_TIME_METRIC,
+                TRACKED_CLIENTS_METRIC,
+                UNTRACKED_CLIENTS_METRIC,
+                PRODUCE_THROTTLE_QUEUE_SIZE_METRIC,
+                FETCH_THROTTLE_QUEUE_SIZE_METRIC,
+                REQUEST_THROTTLE_QUEUE_SIZE_METRIC
+        );
+    }
+}
@@ -118,4 +118,13 @@ class ReplicaManagerMetrics {
                 MIN_REPLICATION_RATE
         );
     }
+
+    /**
+     * Get the metrics that show replication falling behind.
+     */
+    public static List<CodahaleMetric> getHotMetrics() {
+        return Arrays.asList(
+                UNDER_REPLICATED_PARTITIONS_METRIC
+        );
+    }
 }
@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.broker;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
+import com.google.common.collect.Lists;
+import org.apache.kafka.metrics.UnitConstants;
+import org.apache.kafka.metrics.reporter.LatencyHistograms;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Percentiles of the HDR latency histograms the in-broker reporter records next to the
+ * request total time histograms of RequestMetrics.
+ *
+ * The other request times keep their Yammer histograms only, and only the p99 and p999 of
+ * the requests of {@link LatencyHistograms#CLUSTER_REQUESTS} are merged across brokers.
+ */
+class RequestLatencyMetrics {
+
+    private RequestLatencyMetrics() {}
+
+    private static final String REQUEST_CONTEXT_FORMAT = LatencyHistograms.REQUEST_ROOT + "%s::%s%s";
+    private static final String CLUSTER_CONTEXT_FORMAT = LatencyHistograms.CLUSTER_ROOT + "%s::%s%s";
+
+    // Context suffix, metric name suffix and label of the percentiles
+    private static final String[][] PERCENTILES = {
+            { LatencyHistograms.P50, "p50", "50th Percentile" },
+            { LatencyHistograms.P99, "p99", "99th Percentile" },
+            { LatencyHistograms.P999, "p999", "99.9th Percentile" },
+            { LatencyHistograms.MAX, "max", "Maximum" }
+    };
+
+    private static final String[][] CLUSTER_PERCENTILES = {
+            { LatencyHistograms.P99, "p99", "99th Percentile" },
+            { LatencyHistograms.P999, "p999", "99.9th Percentile" }
+    };
+
+    /**
+     * Get the percentiles of the total time of the given requests.
+     * @param requestNames the names of the Kafka requests
+     * @return the list of metrics
+     */
+    static List<CodahaleMetric> getMetrics(final Collection<String> requestNames) {
+        final List<CodahaleMetric> metrics = Lists.newArrayList();
+        for (String requestName : requestNames) {
+            final String metricName = RequestMetrics.requestNameToMetricName(requestName);
+            for (String[] percentile : PERCENTILES) {
+                metrics.add(new CodahaleMetric.Builder()
+                        .setName(String.format("%s_total_time_%s", metricName, percentile[1]))
+                        .setLabel(String.format("%s Total Time %s", requestName, percentile[2]))
+                        .setDescription(String.format("%s of the Total Time spent in responding to %s requests " +
+                                "since the previous report", percentile[2], requestName))
+                        .setNumerator(UnitConstants.ms)
+                        .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                        .setContext(String.format(REQUEST_CONTEXT_FORMAT, requestName,
+                                LatencyHistograms.CLUSTER_METRIC, percentile[0]))
+                        .build());
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Get the percentiles of the total time of the cluster requests among the given requests,
+     * merged across the brokers of the cluster. Only the active controller reports them.
+     * @param requestNames the names of the Kafka requests
+     * @return the list of metrics
+     */
+    static List<CodahaleMetric> getClusterMetrics(final Collection<String> requestNames) {
+        final List<CodahaleMetric> metrics = Lists.newArrayList();
+        for (String requestName : requestNames) {
+            if (!LatencyHistograms.CLUSTER_REQUESTS.contains(requestName)) {
+                continue;
+            }
+            final String metricName = RequestMetrics.requestNameToMetricName(requestName);
+            for (String[] percentile : CLUSTER_PERCENTILES) {
+                metrics.add(new CodahaleMetric.Builder()
+                        .setName(String.format("%s_cluster_total_time_%s", metricName, percentile[1]))
+                        .setLabel(String.format("%s Cluster Total Time %s", requestName, percentile[2]))
+                        .setDescription(String.format("%s of the Total Time spent in responding to %s requests " +
+                                "by all brokers since the previous report, reported by the active controller",
+                                percentile[2], requestName))
+                        .setNumerator(UnitConstants.ms)
+                        .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                        .setContext(String.format(CLUSTER_CONTEXT_FORMAT, requestName,
+                                LatencyHistograms.CLUSTER_METRIC, percentile[0]))
+                        .build());
+            }
+        }
+        return metrics;
+    }
+}
@@ -19,7 +19,6 @@ package org.apache.kafka.metrics.broker;
 
 import com.cloudera.csd.tools.codahale.CodahaleMetric;
 import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
-import kafka.network.RequestMetrics$;
 import org.apache.kafka.metrics.UnitConstants;
 
 import java.util.*;
@@ -81,32 +80,61 @@ class RequestMetrics {
                     .setContext(String.format(DELAYED_PRODUCE_REQUEST_CONTEXT_FORMAT, "ExpiresPerSecond"))
                     .build();
 
+    private static final String KAFKA_VERSION_PROPERTY = "kafka.version";
+    private static final String REQUEST_NAMES_FROM_KAFKA_PROPERTY = "kafka.request.names.from.kafka";
+
     // RequestMetrics
     private static final String REQUEST_METRICS_CONTEXT_FORMAT = "kafka.network.RequestMetrics.request.%s::%s";
 
+    // Requests whose messages the broker converts to or from the format of old clients
+    private static final List<String> MESSAGE_CONVERSION_REQUESTS = Arrays.asList("Produce", "Fetch");
+
+    // Requests whose responses the broker delays when their client exceeds its byte rate quota
+    private static final List<String> THROTTLED_REQUESTS = Arrays.asList("Produce", "Fetch");
+
     public static List<CodahaleMetric> getMetrics() {
+        return getMetrics(getKafkaRequestNames());
+    }
+
+    /**
+     * Get the list of metrics for the given request names.
+     * @param requestNames the names of the Kafka requests
+     * @return the list of metrics
+     */
+    static List<CodahaleMetric> getMetrics(final Collection<String> requestNames) {
         List<CodahaleMetric> metrics = new ArrayList<CodahaleMetric>();
-        for(String requestName : getKafkaRequestNames()) {
-            metrics.add(REQUEST_HANDLER_AVG_IDLE_METRIC);
-            metrics.add(CONSUMER_EXPIRES_METRIC);
-            metrics.add(FOLLOWER_EXPIRES_METRIC);
-            metrics.add(PRODUCER_EXPIRES_METRIC);
+        metrics.add(REQUEST_HANDLER_AVG_IDLE_METRIC);
+        metrics.add(CONSUMER_EXPIRES_METRIC);
+        metrics.add(FOLLOWER_EXPIRES_METRIC);
+        metrics.add(PRODUCER_EXPIRES_METRIC);
+        for(String requestName : requestNames) {
             metrics.addAll(getMetricsForRequest(requestName));
         }
         return metrics;
     }
 
     /**
-     * Get the list of Kafka request metric names from Kafka.
-     * @return a list of all the Kafka request metric names
+     * Get the list of Kafka request metric names.
+     *
+     * The names come from the KafkaRequestNames snapshot, which does not load any Kafka or
+     * Scala classes. Kafka itself is only asked when the snapshot was taken from a different
+     * version than the one given by the kafka.version system property, or when the
+     * kafka.request.names.from.kafka system property is set.
+     * @return a sorted list of all the Kafka request metric names
      */
-    private static List<String> getKafkaRequestNames() {
-        // This is a little messy due to scala interop
-        Map<String, kafka.network.RequestMetrics> metricsMap = scala.collection.JavaConverters
-                .mapAsJavaMapConverter(RequestMetrics$.MODULE$.metricsMap()).asJava();
-        List<String> metricNames = new ArrayList<String>(metricsMap.keySet());
-        Collections.sort(metricNames);
-        return metricNames;
+    static List<String> getKafkaRequestNames() {
+        final String kafkaVersion = System.getProperty(KAFKA_VERSION_PROPERTY);
+        if (Boolean.getBoolean(REQUEST_NAMES_FROM_KAFKA_PROPERTY)) {
+            return RequestNamesSnapshot.loadFromKafka();
+        }
+        if (kafkaVersion != null && !kafkaVersion.equals(KafkaRequestNames.KAFKA_VERSION)) {
+            System.err.println(String.format("Request names were snapshotted from Kafka %s but building " +
+                    "for %s, loading them from Kafka. Run mvn -Psnapshot-request-names compile exec:exec " +
+                    "to update the snapshot.",
+                    KafkaRequestNames.KAFKA_VERSION, kafkaVersion));
+            return RequestNamesSnapshot.loadFromKafka();
+        }
+        return KafkaRequestNames.REQUEST_NAMES;
     }
 
     /**
@@ -114,7 +142,7 @@ class RequestMetrics {
      * @param requestName the name of the request
      * @return the list of metrics
      */
-    private static List<CodahaleMetric> getMetricsForRequest(final String requestName) {
+    static List<CodahaleMetric> getMetricsForRequest(final String requestName) {
         final String metricName = requestNameToMetricName(requestName);
 
         final CodahaleMetric localTimeMetric = new CodahaleMetric.Builder()
@@ -187,7 +215,7 @@ class RequestMetrics {
                 .setContext(String.format(REQUEST_METRICS_CONTEXT_FORMAT, requestName, "RequestsPerSec"))
                 .build();
 
-        return Arrays.asList(
+        final List<CodahaleMetric> metrics = new ArrayList<CodahaleMetric>(Arrays.asList(
                 localTimeMetric,
                 remoteTimeMetric,
                 requestQueueTimeMetric,
@@ -195,15 +223,80 @@ class RequestMetrics {
                 responseSendTimeMetric,
                 totalTimeMetric,
                 requestsMetric
+        ));
+        if (MESSAGE_CONVERSION_REQUESTS.contains(requestName)) {
+            metrics.addAll(getMessageConversionMetricsForRequest(requestName));
+        }
+        if (THROTTLED_REQUESTS.contains(requestName)) {
+            metrics.add(getThrottleTimeMetricForRequest(requestName));
+        }
+        return metrics;
+    }
+
+    /**
+     * Get the message conversion metrics of a Produce or Fetch request, which Kafka 1.0 and
+     * later registers. A converted fetch response cannot be sent with zero-copy.
+     * @param requestName the name of the request
+     * @return the list of metrics
+     */
+    private static List<CodahaleMetric> getMessageConversionMetricsForRequest(final String requestName) {
+        final String metricName = requestNameToMetricName(requestName);
+
+        final CodahaleMetric messageConversionsTimeMetric = new CodahaleMetric.Builder()
+                .setName(String.format("%s_message_conversions_time", metricName))
+                .setLabel(String.format("%s Message Conversions Time", requestName))
+                .setDescription(String.format("Time spent converting the messages of %s requests to or from the " +
+                        "message format of older clients", requestName))
+                .setNumerator(UnitConstants.ms)
+                .setNumeratorForCounterMetric(UnitConstants.requests)
+                .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.HISTOGRAM)
+                .setContext(String.format(REQUEST_METRICS_CONTEXT_FORMAT, requestName, "MessageConversionsTimeMs"))
+                .build();
+
+        final CodahaleMetric temporaryMemoryMetric = new CodahaleMetric.Builder()
+                .setName(String.format("%s_temporary_memory", metricName))
+                .setLabel(String.format("%s Temporary Memory", requestName))
+                .setDescription(String.format("Memory allocated to convert or validate the messages of %s requests",
+                        requestName))
+                .setNumerator(UnitConstants.bytes)
+                .setNumeratorForCounterMetric(UnitConstants.requests)
+                .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.HISTOGRAM)
+                .setContext(String.format(REQUEST_METRICS_CONTEXT_FORMAT, requestName, "TemporaryMemoryBytes"))
+                .build();
+
+        return Arrays.asList(
+                messageConversionsTimeMetric,
+                temporaryMemoryMetric
         );
     }
 
+    /**
+     * Get the throttle time of a Produce or Fetch request, which Kafka 0.9 and later registers.
+     * Unlike the per client throttle time, it shows the distribution of the delays.
+     * @param requestName the name of the request
+     * @return the metric
+     */
+    private static CodahaleMetric getThrottleTimeMetricForRequest(final String requestName) {
+        final String metricName = requestNameToMetricName(requestName);
+
+        return new CodahaleMetric.Builder()
+                .setName(String.format("%s_throttle_time", metricName))
+                .setLabel(String.format("%s Throttle Time", requestName))
+                .setDescription(String.format("Time the responses to %s requests were delayed for exceeding the " +
+                        "quota of their client", requestName))
+                .setNumerator(UnitConstants.ms)
+                .setNumeratorForCounterMetric(UnitConstants.requests)
+                .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.HISTOGRAM)
+                .setContext(String.format(REQUEST_METRICS_CONTEXT_FORMAT, requestName, "ThrottleTimeMs"))
+                .build();
+    }
+
     /**
      * Converts a request name to a metric name.
      * @param requestName the requestName to convert
      * @return the metric name
      */
-    private static String requestNameToMetricName(final String requestName) {
+    static String requestNameToMetricName(final String requestName) {
         final String regex = "([a-z])([A-Z]+)";
         final String replacement = "$1_$2";
         return requestName.replaceAll(regex,replacement).toLowerCase();
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.broker;
+
+import kafka.network.RequestMetrics$;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshots the Kafka request names into the generated KafkaRequestNames table.
+ *
+ * This is the only class that loads the Kafka broker and the Scala runtime. It is run by
+ * the snapshot-request-names profile whenever kafka.version changes:
+ * <pre>
+ *   mvn -Psnapshot-request-names compile exec:exec
+ * </pre>
+ */
+class RequestNamesSnapshot {
+
+    private RequestNamesSnapshot() {}
+
+    /**
+     * Get the list of Kafka request metric names from Kafka.
+     * @return a sorted list of all the Kafka request metric names
+     */
+    static List<String> loadFromKafka() {
+        // This is a little messy due to scala interop
+        Map<String, kafka.network.RequestMetrics> metricsMap = scala.collection.JavaConverters
+                .mapAsJavaMapConverter(RequestMetrics$.MODULE$.metricsMap()).asJava();
+        List<String> metricNames = new ArrayList<String>(metricsMap.keySet());
+        Collections.sort(metricNames);
+        return metricNames;
+    }
+
+    private static void write(final File file, final String kafkaVersion, final List<String> requestNames)
+            throws IOException {
+        final PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            out.println("/**");
+            out.println(" * Licensed to the Apache Software Foundation (ASF) under one");
+            out.println(" * or more contributor license agreements.  See the NOTICE file");
+            out.println(" * distributed with this work for additional information");
+            out.println(" * regarding copyright ownership.  The ASF licenses this file");
+            out.println(" * to you under the Apache License, Version 2.0 (the");
+            out.println(" * \"License\"); you may not use this file except in compliance");
+            out.println(" * with the License.  You may obtain a copy of the License at");
+            out.println(" *");
+            out.println(" *     http://www.apache.org/licenses/LICENSE-2.0");
+            out.println(" *");
+            out.println(" * Unless required by applicable law or agreed to in writing, software");
+            out.println(" * distributed under the License is distributed on an \"AS IS\" BASIS,");
+            out.println(" * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.");
+            out.println(" * See the License for the specific language governing permissions and");
+            out.println(" * limitations under the License.");
+            out.println(" */");
+            out.println("package org.apache.kafka.metrics.broker;");
+            out.println();
+            out.println("import java.util.Arrays;");
+            out.println("import java.util.Collections;");
+            out.println("import java.util.List;");
+            out.println();
+            out.println("/**");
+            out.println(" * Kafka request names, generated by RequestNamesSnapshot. Do not edit.");
+            out.println(" */");
+            out.println("final class KafkaRequestNames {");
+            out.println();
+            out.println("    private KafkaRequestNames() {}");
+            out.println();
+            out.println(String.format("    static final String KAFKA_VERSION = \"%s\";", kafkaVersion));
+            out.println();
+            out.println("    static final List<String> REQUEST_NAMES = Collections.unmodifiableList(Arrays.asList(");
+            for (int i = 0; i < requestNames.size(); i++) {
+                out.println(String.format("            \"%s\"%s", requestNames.get(i),
+                        i < requestNames.size() - 1 ? "," : ""));
+            }
+            out.println("    ));");
+            out.println("}");
+        } finally {
+            out.close();
+        }
+        if (out.checkError()) {
+            throw new IOException("Unable to write " + file);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: RequestNamesSnapshot <kafka version> <output file>");
+            System.exit(1);
+        }
+        final List<String> requestNames = loadFromKafka();
+        write(new File(args[1]), args[0], requestNames);
+        System.out.println(String.format("Wrote %d request names for Kafka %s to %s",
+                requestNames.size(), args[0], args[1]));
+    }
+}
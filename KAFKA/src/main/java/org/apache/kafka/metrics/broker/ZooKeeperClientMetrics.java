@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.broker;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
+import org.apache.kafka.metrics.UnitConstants;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Metrics of the ZooKeeper client of the broker, through which the controller reads and
+ * writes the cluster metadata.
+ */
+class ZooKeeperClientMetrics {
+
+    private ZooKeeperClientMetrics() {}
+
+    // ZooKeeperClientMetrics
+    private static final String ZOOKEEPER_CLIENT_METRICS_CONTEXT_FORMAT = "kafka.server.ZooKeeperClientMetrics::%s";
+
+    private static final CodahaleMetric REQUEST_LATENCY_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("zookeeper_request_latency")
+                    .setLabel("ZooKeeper Request Latency")
+                    .setDescription("Time ZooKeeper took to respond to the requests of the broker")
+                    .setNumerator(UnitConstants.ms)
+                    .setNumeratorForCounterMetric(UnitConstants.requests)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.HISTOGRAM)
+                    .setContext(String.format(ZOOKEEPER_CLIENT_METRICS_CONTEXT_FORMAT, "ZooKeeperRequestLatencyMs"))
+                    .build();
+
+    private static final CodahaleMetric REQUEST_LATENCY_SESSION_TIMEOUT_PERCENT_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("zookeeper_request_latency_session_timeout_percent")
+                    .setLabel("ZooKeeper Request Latency Percent of Session Timeout")
+                    .setDescription("The 99th percentile of the ZooKeeper request latency, as a percentage of " +
+                            "zookeeper.session.timeout.ms. The session expires when ZooKeeper does not hear from " +
+                            "the broker for that long.")
+                    .setNumerator(UnitConstants.percent)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(ZOOKEEPER_CLIENT_METRICS_CONTEXT_FORMAT,
+                            "ZooKeeperRequestLatencySessionTimeoutPercent"))
+                    .build();
+
+    // SessionExpireListener
+    private static final String SESSION_EXPIRE_LISTENER_CONTEXT_FORMAT = "kafka.server.SessionExpireListener::%s";
+
+    private static final CodahaleMetric EXPIRES_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("zookeeper_expires")
+                    .setLabel("ZooKeeper Session Expirations")
+                    .setDescription("Number of expirations of the ZooKeeper session of the broker. A controller " +
+                            "whose session expires resigns.")
+                    .setNumerator(UnitConstants.events)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.METER)
+                    .setContext(String.format(SESSION_EXPIRE_LISTENER_CONTEXT_FORMAT, "ZooKeeperExpiresPerSec"))
+                    .build();
+
+    private static final CodahaleMetric DISCONNECTS_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("zookeeper_disconnects")
+                    .setLabel("ZooKeeper Disconnects")
+                    .setDescription("Number of times the broker was disconnected from ZooKeeper")
+                    .setNumerator(UnitConstants.events)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.METER)
+                    .setContext(String.format(SESSION_EXPIRE_LISTENER_CONTEXT_FORMAT, "ZooKeeperDisconnectsPerSec"))
+                    .build();
+
+    private static final CodahaleMetric SYNC_CONNECTS_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("zookeeper_sync_connects")
+                    .setLabel("ZooKeeper Connects")
+                    .setDescription("Number of times the broker connected to ZooKeeper")
+                    .setNumerator(UnitConstants.events)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.METER)
+                    .setContext(String.format(SESSION_EXPIRE_LISTENER_CONTEXT_FORMAT, "ZooKeeperSyncConnectsPerSec"))
+                    .build();
+
+    public static List<CodahaleMetric> getMetrics() {
+        return Arrays.asList(
+                REQUEST_LATENCY_METRIC,
+                REQUEST_LATENCY_SESSION_TIMEOUT_PERCENT_METRIC,
+                EXPIRES_METRIC,
+                DISCONNECTS_METRIC,
+                SYNC_CONNECTS_METRIC
+        );
+    }
+}
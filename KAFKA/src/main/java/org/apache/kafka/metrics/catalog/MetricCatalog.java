@@ -0,0 +1,459 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.catalog;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import org.apache.kafka.metrics.broker.BrokerMetrics;
+import org.apache.kafka.metrics.replica.ReplicaMetrics;
+import org.apache.kafka.metrics.topic.TopicMetrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maps the name of a registered Kafka metric to its definition.
+ *
+ * Names are accepted in two forms, the context form of the metrics servlet and the MBean
+ * name, for example:
+ * <ul>
+ *   <li>kafka.server.ReplicaManager::UnderReplicatedPartitions or
+ *       kafka.server:type=ReplicaManager,name=UnderReplicatedPartitions</li>
+ *   <li>kafka.server.BrokerTopicMetrics.topic.foo::BytesInPerSec or
+ *       kafka.server:type=BrokerTopicMetrics,name=BytesInPerSec,topic=foo</li>
+ *   <li>kafka.log.Log.partition.0.topic.foo::LogEndOffset or
+ *       kafka.log:type=Log,name=LogEndOffset,topic=foo,partition=0</li>
+ * </ul>
+ *
+ * Every context is compiled into an immutable, path compressed trie over primitive arrays,
+ * in which topics and partitions are placeholders. A lookup walks the name once, character by character,
+ * without allocating, and records where the topic is and what the partition is on the way.
+ * A topic runs up to the next ':' or ',' and a partition is a run of digits, so a
+ * placeholder never shares a trie node with a character, and the walk never backtracks.
+ */
+public final class MetricCatalog {
+
+    public static final String KAFKA_BROKER = "KAFKA_BROKER";
+    public static final String KAFKA_BROKER_TOPIC = "KAFKA_BROKER_TOPIC";
+    public static final String KAFKA_REPLICA = "KAFKA_REPLICA";
+
+    // Placeholders in the patterns, which are built from contexts that never contain them
+    private static final char TOPIC = '\u0001';
+    private static final char PARTITION = '\u0002';
+
+    private static final int NONE = -1;
+
+    private final CodahaleMetric[] metrics;
+    private final String[] entities;
+
+    // Node i has the edges firstEdge[i] to firstEdge[i + 1] - 1, sorted by their first
+    // character. Chains of nodes with a single edge are merged into the label of one edge.
+    private final int[] firstEdge;
+    private final char[] edgeChars;
+    private final int[] labelStarts;
+    private final int[] labelEnds;
+    private final char[] labels;
+    private final int[] edgeTargets;
+    // The node after a topic or partition placeholder, or NONE
+    private final int[] topicTargets;
+    private final int[] partitionTargets;
+    // The index of the metric a name ending at the node is, or NONE
+    private final int[] terminals;
+
+    private MetricCatalog(final CodahaleMetric[] metrics, final String[] entities, final Node root) {
+        this.metrics = metrics;
+        this.entities = entities;
+
+        // Number the nodes that are not merged into a label breadth first
+        final List<Node> nodes = Lists.newArrayList();
+        final List<Character> chars = Lists.newArrayList();
+        final List<Integer> ends = Lists.newArrayList();
+        final List<Node> targets = Lists.newArrayList();
+        final StringBuilder label = new StringBuilder();
+        final int[] nodeEdges = new int[root.count() + 1];
+        nodes.add(root);
+        for (int i = 0; i < nodes.size(); i++) {
+            final Node node = nodes.get(i);
+            if ((node.topic != null ? 1 : 0) + (node.partition != null ? 1 : 0)
+                    + (node.children.isEmpty() ? 0 : 1) > 1) {
+                throw new IllegalArgumentException("A topic or partition follows a prefix of another context");
+            }
+            node.id = i;
+            nodeEdges[i] = chars.size();
+            for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+                label.append(child.getKey().charValue());
+                Node target = child.getValue();
+                while (target.isChain()) {
+                    final Map.Entry<Character, Node> next = target.children.firstEntry();
+                    label.append(next.getKey().charValue());
+                    target = next.getValue();
+                }
+                chars.add(child.getKey());
+                ends.add(label.length());
+                targets.add(target);
+                nodes.add(target);
+            }
+            if (node.topic != null) {
+                nodes.add(node.topic);
+            }
+            if (node.partition != null) {
+                nodes.add(node.partition);
+            }
+        }
+
+        firstEdge = Arrays.copyOf(nodeEdges, nodes.size() + 1);
+        firstEdge[nodes.size()] = chars.size();
+        edgeChars = new char[chars.size()];
+        labelStarts = new int[chars.size()];
+        labelEnds = new int[chars.size()];
+        edgeTargets = new int[chars.size()];
+        for (int edge = 0; edge < chars.size(); edge++) {
+            edgeChars[edge] = chars.get(edge);
+            labelStarts[edge] = edge == 0 ? 0 : ends.get(edge - 1);
+            labelEnds[edge] = ends.get(edge);
+            edgeTargets[edge] = targets.get(edge).id;
+        }
+        labels = label.toString().toCharArray();
+        topicTargets = new int[nodes.size()];
+        partitionTargets = new int[nodes.size()];
+        terminals = new int[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            final Node node = nodes.get(i);
+            topicTargets[i] = node.topic != null ? node.topic.id : NONE;
+            partitionTargets[i] = node.partition != null ? node.partition.id : NONE;
+            terminals[i] = node.terminal;
+        }
+    }
+
+    /**
+     * Build the catalog of the broker, topic and replica metrics of the Kafka version on
+     * the classpath, the same metrics the fixture is generated from.
+     */
+    public static MetricCatalog build() {
+        return new Builder()
+                .addBrokerMetrics(BrokerMetrics.getMetrics())
+                .addTopicMetrics(TopicMetrics.getMetrics())
+                .addReplicaMetrics(ReplicaMetrics.getMetrics())
+                .build();
+    }
+
+    /**
+     * Look up the metric a name is.
+     * @param name the context or MBean name of a registered metric
+     * @param match where to record the metric and its topic and partition
+     * @return whether the name is the name of a metric of the catalog
+     */
+    public boolean lookup(final CharSequence name, final Match match) {
+        match.clear();
+        final int length = name.length();
+        int node = 0;
+        int position = 0;
+        while (position < length) {
+            final char c = name.charAt(position);
+            final int edge = edgeOf(node, c);
+            if (edge != NONE) {
+                final int labelEnd = labelEnds[edge];
+                final int end = position + labelEnd - labelStarts[edge];
+                if (end > length) {
+                    return false;
+                }
+                for (int i = labelStarts[edge] + 1, j = position + 1; i < labelEnd; i++, j++) {
+                    if (labels[i] != name.charAt(j)) {
+                        return false;
+                    }
+                }
+                node = edgeTargets[edge];
+                position = end;
+            } else if (topicTargets[node] != NONE) {
+                final int start = position;
+                while (position < length && name.charAt(position) != ':' && name.charAt(position) != ',') {
+                    position++;
+                }
+                if (position == start) {
+                    return false;
+                }
+                match.topicStart = start;
+                match.topicEnd = position;
+                node = topicTargets[node];
+            } else if (partitionTargets[node] != NONE && c >= '0' && c <= '9') {
+                int partition = 0;
+                while (position < length && name.charAt(position) >= '0' && name.charAt(position) <= '9') {
+                    partition = partition * 10 + name.charAt(position) - '0';
+                    position++;
+                }
+                match.partition = partition;
+                node = partitionTargets[node];
+            } else {
+                return false;
+            }
+        }
+        final int terminal = terminals[node];
+        if (terminal == NONE) {
+            match.clear();
+            return false;
+        }
+        match.name = name;
+        match.metric = metrics[terminal];
+        match.entity = entities[terminal];
+        return true;
+    }
+
+    public int size() {
+        return metrics.length;
+    }
+
+    private int edgeOf(final int node, final char c) {
+        int low = firstEdge[node];
+        int high = firstEdge[node + 1] - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final char edge = edgeChars[middle];
+            if (edge < c) {
+                low = middle + 1;
+            } else if (edge > c) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * The result of a lookup, reused across lookups so that they do not allocate. Not thread
+     * safe.
+     */
+    public static final class Match {
+        private CharSequence name;
+        private CodahaleMetric metric;
+        private String entity;
+        private int topicStart = NONE;
+        private int topicEnd = NONE;
+        private int partition = NONE;
+
+        private void clear() {
+            name = null;
+            metric = null;
+            entity = null;
+            topicStart = NONE;
+            topicEnd = NONE;
+            partition = NONE;
+        }
+
+        public CodahaleMetric getMetric() {
+            return metric;
+        }
+
+        /**
+         * The role or entity type of the metric.
+         */
+        public String getEntity() {
+            return entity;
+        }
+
+        public boolean hasTopic() {
+            return topicStart != NONE;
+        }
+
+        /**
+         * The index of the first character of the topic in the name, or -1.
+         */
+        public int getTopicStart() {
+            return topicStart;
+        }
+
+        /**
+         * The index after the last character of the topic in the name, or -1.
+         */
+        public int getTopicEnd() {
+            return topicEnd;
+        }
+
+        /**
+         * The topic, as a new string, or null.
+         */
+        public String getTopic() {
+            return topicStart == NONE ? null : name.subSequence(topicStart, topicEnd).toString();
+        }
+
+        /**
+         * The partition, or -1.
+         */
+        public int getPartition() {
+            return partition;
+        }
+    }
+
+    /**
+     * Collects the metrics of a catalog.
+     */
+    public static final class Builder {
+        private final List<CodahaleMetric> metrics = Lists.newArrayList();
+        private final List<String> entities = Lists.newArrayList();
+        private final Node root = new Node();
+
+        /**
+         * Add KAFKA_BROKER metrics, whose contexts are complete.
+         */
+        public Builder addBrokerMetrics(final List<CodahaleMetric> brokerMetrics) {
+            for (CodahaleMetric metric : brokerMetrics) {
+                final String context = metric.getContext();
+                final int separator = context.indexOf("::");
+                Preconditions.checkArgument(separator > 0, "Context without a root: %s", context);
+                final String root = context.substring(0, separator);
+                final String name = context.substring(separator + 2);
+                add(KAFKA_BROKER, metric, context, mbeanName(root, name, ""));
+            }
+            return this;
+        }
+
+        /**
+         * Add KAFKA_BROKER_TOPIC metrics, whose contexts miss the root they are registered under.
+         */
+        public Builder addTopicMetrics(final List<CodahaleMetric> topicMetrics) {
+            for (CodahaleMetric metric : topicMetrics) {
+                final String name = metric.getContext();
+                add(KAFKA_BROKER_TOPIC, metric, TopicMetrics.YAMMER_ROOT + ".topic." + TOPIC + "::" + name,
+                        mbeanName(TopicMetrics.YAMMER_ROOT, name, ",topic=" + TOPIC));
+            }
+            return this;
+        }
+
+        /**
+         * Add KAFKA_REPLICA metrics, whose contexts miss the root they are registered under.
+         */
+        public Builder addReplicaMetrics(final List<CodahaleMetric> replicaMetrics) {
+            for (CodahaleMetric metric : replicaMetrics) {
+                final String name = metric.getContext();
+                add(KAFKA_REPLICA, metric,
+                        ReplicaMetrics.YAMMER_ROOT + ".partition." + PARTITION + ".topic." + TOPIC + "::" + name,
+                        mbeanName(ReplicaMetrics.YAMMER_ROOT, name, ",topic=" + TOPIC + ",partition=" + PARTITION));
+            }
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if a topic or partition would follow a prefix of
+         *         another context
+         */
+        public MetricCatalog build() {
+            return new MetricCatalog(metrics.toArray(new CodahaleMetric[metrics.size()]),
+                    entities.toArray(new String[entities.size()]), root);
+        }
+
+        /**
+         * @throws IllegalArgumentException if a pattern is already in the catalog
+         */
+        private void add(final String entity, final CodahaleMetric metric, final String... patterns) {
+            final int index = metrics.size();
+            metrics.add(metric);
+            entities.add(entity);
+            for (String pattern : patterns) {
+                if (pattern != null) {
+                    root.insert(pattern, index, metric.getContext());
+                }
+            }
+        }
+
+        /**
+         * The MBean name Kafka registers a metric of group.type[.key.value...] under, or null
+         * if the root is not of that form.
+         */
+        private static String mbeanName(final String root, final String name, final String tags) {
+            final String[] parts = root.split("\\.");
+            if (parts.length < 3 || parts.length % 2 == 0) {
+                return null;
+            }
+            final StringBuilder mbeanName = new StringBuilder()
+                    .append(parts[0]).append('.').append(parts[1])
+                    .append(":type=").append(parts[2])
+                    .append(",name=").append(name);
+            for (int i = 3; i < parts.length; i += 2) {
+                mbeanName.append(',').append(parts[i]).append('=').append(parts[i + 1]);
+            }
+            return mbeanName.append(tags).toString();
+        }
+    }
+
+    /**
+     * A node of the trie while it is built.
+     */
+    private static final class Node {
+        private final TreeMap<Character, Node> children = new TreeMap<Character, Node>();
+        private Node topic;
+        private Node partition;
+        private int terminal = NONE;
+        private int id;
+
+        private void insert(final String pattern, final int metric, final String context) {
+            Node node = this;
+            for (int i = 0; i < pattern.length(); i++) {
+                final char c = pattern.charAt(i);
+                if (c == TOPIC) {
+                    if (node.topic == null) {
+                        node.topic = new Node();
+                    }
+                    node = node.topic;
+                } else if (c == PARTITION) {
+                    if (node.partition == null) {
+                        node.partition = new Node();
+                    }
+                    node = node.partition;
+                } else {
+                    Node child = node.children.get(c);
+                    if (child == null) {
+                        child = new Node();
+                        node.children.put(c, child);
+                    }
+                    node = child;
+                }
+            }
+            if (node.terminal != NONE) {
+                throw new IllegalArgumentException("Duplicate context " + context);
+            }
+            node.terminal = metric;
+        }
+
+        /**
+         * Whether the node is merged into the label of the edge to it.
+         */
+        private boolean isChain() {
+            return children.size() == 1 && topic == null && partition == null && terminal == NONE;
+        }
+
+        /**
+         * The number of nodes of the subtree.
+         */
+        private int count() {
+            int count = 1;
+            for (Node child : children.values()) {
+                count += child.count();
+            }
+            if (topic != null) {
+                count += topic.count();
+            }
+            if (partition != null) {
+                count += partition.count();
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.fetcher;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
+import org.apache.kafka.metrics.UnitConstants;
+import org.apache.kafka.metrics.reporter.FetcherRollup;
+import org.apache.kafka.metrics.reporter.ReporterCatalog;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Metrics of a replica fetcher thread, which replicates the partitions led by one source
+ * broker. The maximum lag and the fetch request time are computed by the in-broker reporter, see
+ * org.apache.kafka.metrics.reporter.FetcherRollup.
+ *
+ * Note: The context is missing its "root" because that is generated per fetcher thread in CM
+ */
+public class ReplicaFetcherMetrics {
+
+    private ReplicaFetcherMetrics() {}
+
+    /**
+     * The group and type the per fetcher thread Yammer metrics are registered under in the broker.
+     */
+    public static final String YAMMER_ROOT = ReporterCatalog.FETCHER_ROOT;
+
+    /**
+     * The group and type the per partition lag gauges the maximum lag is computed from are
+     * registered under in the broker.
+     */
+    public static final String LAG_YAMMER_ROOT = ReporterCatalog.FETCHER_LAG_ROOT;
+
+    /**
+     * The group and type the fetch request timer the fetch time is computed from is
+     * registered under in the broker.
+     */
+    public static final String TIMER_YAMMER_ROOT = ReporterCatalog.FETCHER_REQUEST_ROOT;
+
+    private static final CodahaleMetric BYTES_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("replica_fetcher_bytes")
+                    .setLabel("Replica Fetcher Bytes Fetched")
+                    .setDescription("Amount of data the fetcher thread replicated from its source broker")
+                    .setNumerator(UnitConstants.bytes)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.METER)
+                    .setContext("BytesPerSec")
+                    .build();
+
+    private static final CodahaleMetric REQUESTS_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("replica_fetcher_requests")
+                    .setLabel("Replica Fetcher Requests")
+                    .setDescription("Number of fetch requests the fetcher thread sent to its source broker")
+                    .setNumerator(UnitConstants.fetchRequests)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.METER)
+                    .setContext("RequestsPerSec")
+                    .build();
+
+    private static final CodahaleMetric MAX_LAG_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("replica_fetcher_max_lag")
+                    .setLabel("Replica Fetcher Maximum Lag")
+                    .setDescription("Maximum replication lag of the partitions the fetcher thread replicates")
+                    .setNumerator(UnitConstants.messages)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(FetcherRollup.MAX_LAG)
+                    .build();
+
+    private static final CodahaleMetric FETCH_TIME_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("replica_fetcher_fetch_request_time_p99")
+                    .setLabel("Replica Fetcher Fetch Request Time 99th Percentile")
+                    .setDescription("99th percentile of the time of the fetch requests of the fetcher thread, "
+                            + "including the time the source broker waited for new messages, up to "
+                            + "replica.fetch.wait.max.ms, when the thread was caught up. Only reported by "
+                            + "Kafka versions whose fetcher threads fetch with a SimpleConsumer, such as 0.8.2")
+                    .setNumerator(UnitConstants.ms)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(FetcherRollup.FETCH_TIME)
+                    .build();
+
+    // Rollups of the fetcher threads to the broker
+    private static final String BROKER_ROLLUP_CONTEXT_FORMAT = FetcherRollup.BROKER_ROOT + "::%s";
+
+    private static final CodahaleMetric BROKER_BYTES_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("replica_fetchers_bytes")
+                    .setLabel("Replica Fetchers Bytes Fetched")
+                    .setDescription("Amount of data the replica fetcher threads of the broker replicated in the last minute")
+                    .setNumerator(UnitConstants.bytes)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(BROKER_ROLLUP_CONTEXT_FORMAT, FetcherRollup.BROKER_BYTES))
+                    .build();
+
+    private static final CodahaleMetric BROKER_REQUESTS_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("replica_fetchers_requests")
+                    .setLabel("Replica Fetchers Requests")
+                    .setDescription("Number of fetch requests the replica fetcher threads of the broker sent in the last minute")
+                    .setNumerator(UnitConstants.fetchRequests)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(BROKER_ROLLUP_CONTEXT_FORMAT, FetcherRollup.BROKER_REQUESTS))
+                    .build();
+
+    private static final CodahaleMetric BROKER_MAX_FETCH_TIME_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("replica_fetchers_max_fetch_request_time_p99")
+                    .setLabel("Replica Fetchers Maximum Fetch Request Time 99th Percentile")
+                    .setDescription("Highest 99th percentile fetch request time of the replica fetcher threads of the broker")
+                    .setNumerator(UnitConstants.ms)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(BROKER_ROLLUP_CONTEXT_FORMAT, FetcherRollup.BROKER_MAX_FETCH_TIME))
+                    .build();
+
+    /**
+     * Get the metrics Kafka registers per fetcher thread.
+     */
+    public static List<CodahaleMetric> getMetrics() {
+        return Arrays.asList(
+                BYTES_METRIC,
+                REQUESTS_METRIC
+        );
+    }
+
+    /**
+     * Get the metrics of the KAFKA_REPLICA_FETCHER entity that the reporter rolls up from the
+     * partitions of the fetcher thread.
+     */
+    public static List<CodahaleMetric> getRollupMetrics() {
+        return Arrays.asList(
+                MAX_LAG_METRIC,
+                FETCH_TIME_METRIC
+        );
+    }
+
+    /**
+     * Get the rollups of the fetcher threads to the KAFKA_BROKER role. The maximum lag of the
+     * broker is max_replication_lag, which Kafka computes itself.
+     */
+    public static List<CodahaleMetric> getBrokerRollupMetrics() {
+        return Arrays.asList(
+                BROKER_BYTES_METRIC,
+                BROKER_REQUESTS_METRIC,
+                BROKER_MAX_FETCH_TIME_METRIC
+        );
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.fixture;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricDefinitionFixture;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads fixtures written by {@link BinaryFixtureWriter} in place.
+ *
+ * Files are memory mapped rather than read, and strings are only decoded from the mapping
+ * when first asked for. Each string is decoded once, so metrics that share a string share
+ * its instance. Readers are safe to use from several threads.
+ */
+public final class BinaryFixtureReader {
+
+    private final ByteBuffer buffer;
+    private final int stringCount;
+    private final int dataStart;
+    private final int fixtureStart;
+    private final String[] strings;
+
+    private BinaryFixtureReader(final ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (this.buffer.limit() < BinaryFixtureWriter.HEADER_SIZE
+                || this.buffer.getInt(0) != BinaryFixtureWriter.MAGIC) {
+            throw new IOException("Not a binary fixture");
+        }
+        final int version = this.buffer.getInt(4);
+        if (version != BinaryFixtureWriter.VERSION) {
+            throw new IOException("Unsupported binary fixture version " + version);
+        }
+        stringCount = this.buffer.getInt(8);
+        if (stringCount < 0 || BinaryFixtureWriter.HEADER_SIZE + 4L * (stringCount + 1) > this.buffer.limit()) {
+            throw new IOException("Truncated string table");
+        }
+        dataStart = BinaryFixtureWriter.HEADER_SIZE + 4 * (stringCount + 1);
+        fixtureStart = dataStart + offsetOf(stringCount);
+        if (fixtureStart < dataStart || fixtureStart > this.buffer.limit()) {
+            throw new IOException("Truncated string table");
+        }
+        strings = new String[stringCount];
+    }
+
+    /**
+     * Map a binary fixture file.
+     * @param file the file
+     * @return the reader
+     * @throws IOException if the file cannot be mapped or is not a binary fixture
+     */
+    public static BinaryFixtureReader open(final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            // The mapping stays valid once the file is closed
+            return new BinaryFixtureReader(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Read a binary fixture from a buffer, from its position to its limit.
+     * @param buffer the buffer, which is not modified
+     * @return the reader
+     * @throws IOException if the buffer does not hold a binary fixture
+     */
+    public static BinaryFixtureReader wrap(final ByteBuffer buffer) throws IOException {
+        return new BinaryFixtureReader(buffer.slice());
+    }
+
+    public int getStringCount() {
+        return stringCount;
+    }
+
+    /**
+     * Get a string of the string table.
+     * @param index the index of the string
+     * @return the string
+     * @throws IOException if the index or the string is out of range
+     */
+    public String getString(final int index) throws IOException {
+        if (index < 0 || index >= stringCount) {
+            throw new IOException("String " + index + " out of range");
+        }
+        String string = strings[index];
+        if (string == null) {
+            final int start = dataStart + offsetOf(index);
+            final int end = dataStart + offsetOf(index + 1);
+            if (start < dataStart || end < start || end > fixtureStart) {
+                throw new IOException("String " + index + " out of range");
+            }
+            final ByteBuffer bytes = buffer.duplicate();
+            bytes.limit(end).position(start);
+            string = BinaryFixtureWriter.UTF_8.decode(bytes).toString();
+            strings[index] = string;
+        }
+        return string;
+    }
+
+    public String getServiceName() throws IOException {
+        return new Cursor(fixtureStart).readString();
+    }
+
+    /**
+     * Decode the whole fixture.
+     * @return the fixture
+     * @throws IOException if the fixture is malformed
+     */
+    public CodahaleMetricDefinitionFixture read() throws IOException {
+        final CodahaleMetricDefinitionFixture ret = new CodahaleMetricDefinitionFixture();
+        final Cursor cursor = new Cursor(fixtureStart);
+        ret.setServiceName(cursor.readString());
+        for (int group = cursor.readVarInt(); group > 0; group--) {
+            for (int metric = cursor.readVarInt(); metric > 0; metric--) {
+                ret.addServiceMetric(cursor.readMetric());
+            }
+        }
+        for (int group = cursor.readVarInt(); group > 0; group--) {
+            final String role = cursor.readString();
+            for (int metric = cursor.readVarInt(); metric > 0; metric--) {
+                ret.addRoleMetric(role, cursor.readMetric());
+            }
+        }
+        for (int group = cursor.readVarInt(); group > 0; group--) {
+            final String entity = cursor.readString();
+            for (int metric = cursor.readVarInt(); metric > 0; metric--) {
+                ret.addEntityMetric(entity, cursor.readMetric());
+            }
+        }
+        if (cursor.position != buffer.limit()) {
+            throw new IOException("Trailing data after the fixture");
+        }
+        return ret;
+    }
+
+    private int offsetOf(final int index) {
+        return buffer.getInt(BinaryFixtureWriter.HEADER_SIZE + 4 * index);
+    }
+
+    private class Cursor {
+        private int position;
+
+        Cursor(final int position) {
+            this.position = position;
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                if (position >= buffer.limit()) {
+                    throw new IOException("Truncated fixture");
+                }
+                final byte b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint at " + position);
+        }
+
+        String readString() throws IOException {
+            return getString(readVarInt());
+        }
+
+        CodahaleMetric readMetric() throws IOException {
+            final int mask = readVarInt();
+            if (mask >>> BinaryFixtureWriter.FIELD_COUNT != 0) {
+                throw new IOException("Unknown metric fields " + Integer.toBinaryString(mask));
+            }
+            final String[] fields = new String[BinaryFixtureWriter.FIELD_COUNT];
+            for (int field = 0; field < BinaryFixtureWriter.FIELD_COUNT; field++) {
+                if ((mask & 1 << field) != 0) {
+                    fields[field] = readString();
+                }
+            }
+            try {
+                return BinaryFixtureWriter.metricOf(fields);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown metric type " + fields[BinaryFixtureWriter.CODAHALE_METRIC_TYPE], e);
+            }
+        }
+    }
+}
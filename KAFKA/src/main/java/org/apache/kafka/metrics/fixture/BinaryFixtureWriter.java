@@ -0,0 +1,260 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.fixture;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricDefinitionFixture;
+import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a fixture in a compact binary form that can be memory mapped and read in place,
+ * see {@link BinaryFixtureReader}.
+ *
+ * Version 1 of the format, integers are big endian:
+ * <pre>
+ *   header    "KCMF", int32 version, int32 string count
+ *   strings   int32 offsets[count + 1] into the string data, then the UTF-8 string data
+ *   fixture   varint service name, metrics of the service, then of the roles and entities
+ *   metrics   varint group count, then each group as varint name, varint metric count and
+ *             the metrics. The service metrics are a single group without name.
+ *   metric    varint mask of the fields that are set, then a varint string for each of them
+ * </pre>
+ * Every string, including the metric type, is interned in the string table and referred to
+ * by its index. The most frequent strings come first so that they take a single byte.
+ */
+public final class BinaryFixtureWriter {
+
+    static final int MAGIC = 0x4B434D46;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 12;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // The metric fields in the order of their bit in the field mask
+    static final int NAME = 0;
+    static final int LABEL = 1;
+    static final int DESCRIPTION = 2;
+    static final int NUMERATOR = 3;
+    static final int DENOMINATOR = 4;
+    static final int NUMERATOR_FOR_COUNTER_METRIC = 5;
+    static final int DENOMINATOR_FOR_RATE_METRICS = 6;
+    static final int CODAHALE_METRIC_TYPE = 7;
+    static final int CONTEXT = 8;
+    static final int FIELD_COUNT = 9;
+
+    private BinaryFixtureWriter() {}
+
+    /**
+     * Write a fixture in binary form to a file.
+     * @param file the file to write
+     * @param fixture the fixture
+     * @throws IOException if the file cannot be written or renamed
+     */
+    public static void write(final File file, final CodahaleMetricDefinitionFixture fixture) throws IOException {
+        FixtureWriter.write(file, new FixtureWriter.Content() {
+            @Override
+            public void writeTo(final OutputStream out) throws IOException {
+                BinaryFixtureWriter.writeTo(out, fixture);
+            }
+        });
+    }
+
+    static void writeTo(final OutputStream stream, final CodahaleMetricDefinitionFixture fixture) throws IOException {
+        final StringTable strings = new StringTable();
+        strings.count(fixture.getServiceName());
+        strings.count(fixture.getServiceMetrics());
+        strings.count(fixture.getRolesMetrics());
+        strings.count(fixture.getAdditionalServiceEntityTypesMetrics());
+        final List<String> table = strings.sort();
+
+        final DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(table.size());
+        final List<byte[]> encoded = new ArrayList<byte[]>(table.size());
+        int offset = 0;
+        for (String string : table) {
+            final byte[] bytes = string.getBytes(UTF_8);
+            encoded.add(bytes);
+            out.writeInt(offset);
+            offset += bytes.length;
+        }
+        out.writeInt(offset);
+        for (byte[] bytes : encoded) {
+            out.write(bytes);
+        }
+
+        writeString(out, strings, fixture.getServiceName());
+        writeVarInt(out, 1);
+        writeVarInt(out, fixture.getServiceMetrics().size());
+        writeMetrics(out, strings, fixture.getServiceMetrics());
+        writeGroups(out, strings, fixture.getRolesMetrics());
+        writeGroups(out, strings, fixture.getAdditionalServiceEntityTypesMetrics());
+        out.flush();
+    }
+
+    private static void writeGroups(final DataOutputStream out, final StringTable strings,
+                                    final Map<String, List<CodahaleMetric>> groups) throws IOException {
+        writeVarInt(out, groups.size());
+        for (Map.Entry<String, List<CodahaleMetric>> group : groups.entrySet()) {
+            writeString(out, strings, group.getKey());
+            writeVarInt(out, group.getValue().size());
+            writeMetrics(out, strings, group.getValue());
+        }
+    }
+
+    private static void writeMetrics(final DataOutputStream out, final StringTable strings,
+                                     final List<CodahaleMetric> metrics) throws IOException {
+        final String[] fields = new String[FIELD_COUNT];
+        for (CodahaleMetric metric : metrics) {
+            fieldsOf(metric, fields);
+            int mask = 0;
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                if (fields[field] != null) {
+                    mask |= 1 << field;
+                }
+            }
+            writeVarInt(out, mask);
+            for (String field : fields) {
+                if (field != null) {
+                    writeString(out, strings, field);
+                }
+            }
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final StringTable strings,
+                                    final String string) throws IOException {
+        if (string == null) {
+            throw new IllegalArgumentException("The service, role and entity names of the fixture must be set");
+        }
+        writeVarInt(out, strings.indexOf(string));
+    }
+
+    static void fieldsOf(final CodahaleMetric metric, final String[] fields) {
+        fields[NAME] = metric.getName();
+        fields[LABEL] = metric.getLabel();
+        fields[DESCRIPTION] = metric.getDescription();
+        fields[NUMERATOR] = metric.getNumerator();
+        fields[DENOMINATOR] = metric.getDenominator();
+        fields[NUMERATOR_FOR_COUNTER_METRIC] = metric.getNumeratorForCounterMetric();
+        fields[DENOMINATOR_FOR_RATE_METRICS] = metric.getDenominatorForRateMetrics();
+        fields[CODAHALE_METRIC_TYPE] = metric.getCodahaleMetricType() == null
+                ? null : metric.getCodahaleMetricType().name();
+        fields[CONTEXT] = metric.getContext();
+    }
+
+    /**
+     * Build a metric from the fields set by {@link #fieldsOf}.
+     * @throws IllegalArgumentException if the metric type is unknown
+     */
+    static CodahaleMetric metricOf(final String[] fields) {
+        final CodahaleMetric.Builder builder = new CodahaleMetric.Builder()
+                .setName(fields[NAME])
+                .setLabel(fields[LABEL])
+                .setDescription(fields[DESCRIPTION])
+                .setNumerator(fields[NUMERATOR])
+                .setDenominator(fields[DENOMINATOR])
+                .setNumeratorForCounterMetric(fields[NUMERATOR_FOR_COUNTER_METRIC])
+                .setDenominatorForRateMetrics(fields[DENOMINATOR_FOR_RATE_METRICS])
+                .setContext(fields[CONTEXT]);
+        if (fields[CODAHALE_METRIC_TYPE] != null) {
+            builder.setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.valueOf(fields[CODAHALE_METRIC_TYPE]));
+        }
+        return builder.build();
+    }
+
+    static void writeVarInt(final DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Counts how often each string is used, then orders them by decreasing use.
+     */
+    private static class StringTable {
+        private final Map<String, int[]> uses = new HashMap<String, int[]>();
+        private final List<String> order = new ArrayList<String>();
+        private Map<String, Integer> indexes;
+
+        void count(final String string) {
+            if (string == null) {
+                return;
+            }
+            final int[] count = uses.get(string);
+            if (count != null) {
+                count[0]++;
+            } else {
+                uses.put(string, new int[] { 1 });
+                order.add(string);
+            }
+        }
+
+        void count(final List<CodahaleMetric> metrics) {
+            final String[] fields = new String[FIELD_COUNT];
+            for (CodahaleMetric metric : metrics) {
+                fieldsOf(metric, fields);
+                for (String field : fields) {
+                    count(field);
+                }
+            }
+        }
+
+        void count(final Map<String, List<CodahaleMetric>> groups) {
+            for (Map.Entry<String, List<CodahaleMetric>> group : groups.entrySet()) {
+                count(group.getKey());
+                count(group.getValue());
+            }
+        }
+
+        List<String> sort() {
+            final List<String> sorted = new ArrayList<String>(order);
+            // The sort is stable, so ties keep the order the strings were first used in
+            Collections.sort(sorted, new Comparator<String>() {
+                @Override
+                public int compare(final String a, final String b) {
+                    return uses.get(b)[0] - uses.get(a)[0];
+                }
+            });
+            indexes = new HashMap<String, Integer>();
+            for (int i = 0; i < sorted.size(); i++) {
+                indexes.put(sorted.get(i), i);
+            }
+            return sorted;
+        }
+
+        int indexOf(final String string) {
+            return indexes.get(string);
+        }
+    }
+}
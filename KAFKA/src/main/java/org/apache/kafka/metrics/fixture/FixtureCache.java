@@ -0,0 +1,220 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.fixture;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Content addressed cache of generated fixtures.
+ *
+ * The key is a hash over everything the fixtures are generated from: the compiled metric
+ * classes, the Kafka version, the Kafka classes that define the request names, the
+ * cm-schema classes that define the common metrics, the properties that change the output
+ * and the jars of any other Kafka distributions generated for. The inputs are hashed as
+ * bytes, nothing is loaded, so a cache hit does not pay for starting Kafka or Scala. Each
+ * key has its own directory under the cache root, so switching back and forth between
+ * Kafka versions hits the cache as well.
+ */
+public class FixtureCache {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String REQUEST_METRICS_RESOURCE = "kafka/network/RequestMetrics$.class";
+    private static final String COMMON_METRIC_SETS_RESOURCE =
+            "com/cloudera/csd/tools/codahale/CodahaleCommonMetricSets.class";
+
+    private final File root;
+    private final String key;
+
+    public FixtureCache(final File root, final String key) {
+        this.root = root;
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Compute the cache key for the classpath of the generator.
+     * @param kafkaVersion the Kafka version the fixtures are generated for
+     * @param inputs additional strings that affect the generated output
+     * @return the hex encoded key
+     * @throws IOException if one of the inputs cannot be read
+     */
+    public static String computeKey(final String kafkaVersion, final String... inputs) throws IOException {
+        return computeKey(kafkaVersion, Collections.<File>emptyList(), inputs);
+    }
+
+    /**
+     * Compute the cache key for the classpath of the generator and additional input files.
+     * @param kafkaVersion the Kafka version the fixtures are generated for
+     * @param files additional files the output is generated from, such as the jars of other
+     *              Kafka distributions
+     * @param inputs additional strings that affect the generated output, such as properties
+     * @return the hex encoded key
+     * @throws IOException if one of the inputs cannot be read
+     */
+    public static String computeKey(final String kafkaVersion, final List<File> files, final String... inputs)
+            throws IOException {
+        final MessageDigest digest = newDigest();
+        update(digest, String.valueOf(kafkaVersion));
+        for (String input : inputs) {
+            update(digest, String.valueOf(input));
+        }
+        for (File file : files) {
+            update(digest, file.getName());
+            updateWithFile(digest, file);
+        }
+        updateWithLocation(digest, FixtureCache.class.getProtectionDomain().getCodeSource().getLocation());
+        updateWithResource(digest, REQUEST_METRICS_RESOURCE);
+        updateWithResource(digest, COMMON_METRIC_SETS_RESOURCE);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Copy the cached fixtures to their output location.
+     * @param outputs the fixture files, in the same order as when they were stored
+     * @return true if every fixture was found in the cache and copied
+     * @throws IOException if a cached fixture cannot be copied
+     */
+    public boolean restore(final File... outputs) throws IOException {
+        final File dir = new File(root, key);
+        for (File output : outputs) {
+            if (!new File(dir, output.getName()).isFile()) {
+                return false;
+            }
+        }
+        for (File output : outputs) {
+            FileUtils.copyFile(new File(dir, output.getName()), output);
+        }
+        return true;
+    }
+
+    /**
+     * Store freshly generated fixtures in the cache.
+     * @param outputs the fixture files
+     * @throws IOException if the fixtures cannot be copied into the cache
+     */
+    public void store(final File... outputs) throws IOException {
+        final File dir = new File(root, key);
+        if (dir.isDirectory()) {
+            return;
+        }
+        // Populate a private directory and publish it with a rename, so concurrent
+        // builds sharing the cache never see a partial entry
+        final File tmp = new File(root, key + ".tmp" + System.nanoTime());
+        try {
+            for (File output : outputs) {
+                FileUtils.copyFile(output, new File(tmp, output.getName()));
+            }
+            if (!tmp.renameTo(dir) && !dir.isDirectory()) {
+                throw new IOException(String.format("Unable to rename %s to %s", tmp, dir));
+            }
+        } finally {
+            FileUtils.deleteQuietly(tmp);
+        }
+    }
+
+    /**
+     * Hash the jar, or the class file outside of a jar, a resource is loaded from.
+     */
+    private static void updateWithResource(final MessageDigest digest, final String resource) throws IOException {
+        final URL url = FixtureCache.class.getClassLoader().getResource(resource);
+        if (url == null) {
+            throw new IOException("Unable to find " + resource + " on the classpath");
+        }
+        if ("jar".equals(url.getProtocol())) {
+            updateWithLocation(digest, ((JarURLConnection) url.openConnection()).getJarFileURL());
+        } else {
+            updateWithLocation(digest, url);
+        }
+    }
+
+    private static void updateWithLocation(final MessageDigest digest, final URL location) throws IOException {
+        final File file;
+        try {
+            file = new File(location.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid location " + location, e);
+        }
+        if (file.isDirectory()) {
+            for (File classFile : listClassFiles(file)) {
+                update(digest, classFile.getAbsolutePath().substring(file.getAbsolutePath().length()));
+                updateWithFile(digest, classFile);
+            }
+        } else {
+            updateWithFile(digest, file);
+        }
+    }
+
+    private static List<File> listClassFiles(final File dir) {
+        final List<File> files = Lists.newArrayList(FileUtils.listFiles(dir, new String[] {"class"}, true));
+        Collections.sort(files);
+        return files;
+    }
+
+    private static void updateWithFile(final MessageDigest digest, final File file) throws IOException {
+        final InputStream in = new FileInputStream(file);
+        try {
+            final byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private static void update(final MessageDigest digest, final String value) {
+        digest.update(value.getBytes(UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.fixture;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Removes duplicate metric definitions before they are added to the fixture.
+ *
+ * Metrics are indexed by name and by context. A metric that is identical to one
+ * already seen is dropped. A metric that shares its name or its context with a
+ * different definition is a bug in the metric classes and fails the generation.
+ */
+public class FixtureCompactor {
+
+    private final Map<String, Stats> statsByEntity = Maps.newLinkedHashMap();
+
+    /**
+     * Compact the metrics of a role or entity.
+     * @param entityName the role or entity type the metrics belong to
+     * @param metrics the metrics, possibly with duplicates
+     * @return the metrics with exact duplicates removed, in first-seen order
+     * @throws IllegalStateException if two different definitions share a name or a context
+     */
+    public List<CodahaleMetric> compact(final String entityName, final List<CodahaleMetric> metrics) {
+        final Map<String, CodahaleMetric> byName = Maps.newLinkedHashMap();
+        final Map<String, CodahaleMetric> byContext = Maps.newHashMap();
+
+        for (CodahaleMetric metric : metrics) {
+            final CodahaleMetric sameName = byName.get(metric.getName());
+            final CodahaleMetric sameContext = byContext.get(metric.getContext());
+            if (sameName == null && sameContext == null) {
+                byName.put(metric.getName(), metric);
+                byContext.put(metric.getContext(), metric);
+            } else {
+                checkSameDefinition(entityName, sameName != null ? sameName : sameContext, metric);
+            }
+        }
+
+        final List<CodahaleMetric> compacted = Lists.newArrayList(byName.values());
+        statsByEntity.put(entityName, new Stats(metrics, compacted));
+        return compacted;
+    }
+
+    /**
+     * Print the before and after count and size of every compacted role or entity. The sizes
+     * are only computed here, so that compacting does not serialize the metrics.
+     * @param out the stream to print to
+     */
+    public void printReport(final PrintStream out) {
+        int totalBefore = 0;
+        int totalAfter = 0;
+        long totalBytesBefore = 0;
+        long totalBytesAfter = 0;
+        for (Map.Entry<String, Stats> entry : statsByEntity.entrySet()) {
+            final Stats stats = entry.getValue();
+            final long bytesBefore = serializedSize(stats.before);
+            final long bytesAfter = serializedSize(stats.after);
+            out.println(String.format("%s: %d -> %d metrics, %d -> %d bytes",
+                    entry.getKey(), stats.before.size(), stats.after.size(), bytesBefore, bytesAfter));
+            totalBefore += stats.before.size();
+            totalAfter += stats.after.size();
+            totalBytesBefore += bytesBefore;
+            totalBytesAfter += bytesAfter;
+        }
+        out.println(String.format("Total: %d -> %d metrics, %d -> %d bytes",
+                totalBefore, totalAfter, totalBytesBefore, totalBytesAfter));
+    }
+
+    private static void checkSameDefinition(final String entityName,
+                                            final CodahaleMetric existing,
+                                            final CodahaleMetric metric) {
+        final boolean same = Objects.equal(existing.getName(), metric.getName())
+                && Objects.equal(existing.getContext(), metric.getContext())
+                && Objects.equal(existing.getLabel(), metric.getLabel())
+                && Objects.equal(existing.getDescription(), metric.getDescription())
+                && Objects.equal(existing.getNumerator(), metric.getNumerator())
+                && Objects.equal(existing.getDenominator(), metric.getDenominator())
+                && Objects.equal(existing.getNumeratorForCounterMetric(), metric.getNumeratorForCounterMetric())
+                && Objects.equal(existing.getDenominatorForRateMetrics(), metric.getDenominatorForRateMetrics())
+                && existing.getCodahaleMetricType() == metric.getCodahaleMetricType();
+        if (!same) {
+            throw new IllegalStateException(String.format(
+                    "Conflicting definitions in %s: %s (%s) and %s (%s)", entityName,
+                    existing.getName(), existing.getContext(), metric.getName(), metric.getContext()));
+        }
+    }
+
+    private static long serializedSize(final List<CodahaleMetric> metrics) {
+        try {
+            return FixtureWriter.serializedSize(metrics);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to serialize metrics", e);
+        }
+    }
+
+    private static class Stats {
+        private final List<CodahaleMetric> before;
+        private final List<CodahaleMetric> after;
+
+        private Stats(final List<CodahaleMetric> before, final List<CodahaleMetric> after) {
+            // Copies of the lists, the callers may change theirs after compacting
+            this.before = Lists.newArrayList(before);
+            this.after = Lists.newArrayList(after);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.fixture;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+
+/**
+ * Writes fixtures straight to disk without first rendering the whole document into a String.
+ *
+ * Jackson serializes each metric as it walks the fixture, so only the buffer is held in
+ * memory. The output goes to a temporary file in the target directory which is renamed
+ * over the target once complete, so readers never see a partially written fixture.
+ */
+public class FixtureWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    private FixtureWriter() {}
+
+    /**
+     * Write a value as JSON to a file.
+     * @param file the file to write
+     * @param value the value to serialize
+     * @param pretty whether to pretty print the output
+     * @throws IOException if the file cannot be written or renamed
+     */
+    public static void write(final File file, final Object value, final boolean pretty) throws IOException {
+        write(file, new Content() {
+            @Override
+            public void writeTo(final OutputStream out) throws IOException {
+                FixtureWriter.writeTo(out, value, pretty);
+            }
+        });
+    }
+
+    /**
+     * Write a file through a temporary file that is renamed over it once complete.
+     * @param file the file to write
+     * @param content writes the content of the file
+     * @throws IOException if the file cannot be written or renamed
+     */
+    static void write(final File file, final Content content) throws IOException {
+        final File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create directory " + dir);
+        }
+
+        final File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            final FileOutputStream fileOut = new FileOutputStream(tmp);
+            try {
+                final OutputStream out = new BufferedOutputStream(
+                        Channels.newOutputStream(fileOut.getChannel()), BUFFER_SIZE);
+                content.writeTo(out);
+                out.flush();
+                fileOut.getChannel().force(false);
+            } finally {
+                fileOut.close();
+            }
+            rename(tmp, file);
+        } finally {
+            if (tmp.exists() && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Compute the size of a value serialized as compact JSON, without keeping the output.
+     * @param value the value to serialize
+     * @return the size in bytes
+     * @throws IOException if the value cannot be serialized
+     */
+    public static long serializedSize(final Object value) throws IOException {
+        final CountingOutputStream out = new CountingOutputStream(new NullOutputStream());
+        writeTo(out, value, false);
+        return out.getByteCount();
+    }
+
+    private static void writeTo(final OutputStream out, final Object value, final boolean pretty)
+            throws IOException {
+        final JsonGenerator generator = MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        // The caller owns the stream, it still has to sync the file before closing it
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (pretty) {
+            generator.useDefaultPrettyPrinter();
+        }
+        try {
+            MAPPER.writeValue(generator, value);
+        } finally {
+            generator.close();
+        }
+        out.flush();
+    }
+
+    /**
+     * Convert a value to the JSON tree it is written as.
+     */
+    public static JsonNode toTree(final Object value) {
+        return MAPPER.valueToTree(value);
+    }
+
+    /**
+     * Read a JSON file into a tree.
+     */
+    public static JsonNode readTree(final File file) throws IOException {
+        return MAPPER.readTree(file);
+    }
+
+    /**
+     * The content of a file written by {@link #write(File, Content)}.
+     */
+    interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static void rename(final File from, final File to) throws IOException {
+        // rename(2) atomically replaces the target on POSIX. Other platforms refuse to
+        // rename over an existing file, so fall back to deleting it first.
+        if (from.renameTo(to)) {
+            return;
+        }
+        if (to.exists() && to.delete() && from.renameTo(to)) {
+            return;
+        }
+        throw new IOException(String.format("Unable to rename %s to %s", from, to));
+    }
+}
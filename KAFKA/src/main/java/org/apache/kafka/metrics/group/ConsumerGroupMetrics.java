@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.group;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
+import org.apache.kafka.metrics.UnitConstants;
+import org.apache.kafka.metrics.reporter.ConsumerGroupLag;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The lag of the consumer groups, the messages between their committed offsets and the log
+ * end offsets of the partitions, computed by the in-broker reporter of the active
+ * controller, see org.apache.kafka.metrics.reporter.ConsumerGroupLag. Partitions whose
+ * log end offset no broker reports are left out of the lag and counted separately.
+ *
+ * Note: The contexts are missing their "root" because that is generated per consumer group
+ * or topic in CM.
+ */
+public class ConsumerGroupMetrics {
+
+    private ConsumerGroupMetrics() {}
+
+    /**
+     * The group and type the consumer group lag is reported under by the reporter.
+     */
+    public static final String YAMMER_ROOT = ConsumerGroupLag.ROOT;
+
+    private static final CodahaleMetric TOTAL_LAG_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("consumer_group_total_lag")
+                    .setLabel("Consumer Group Total Lag")
+                    .setDescription("Total number of messages the consumer group has yet to consume from the " +
+                            "partitions it committed offsets for")
+                    .setNumerator(UnitConstants.messages)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(ConsumerGroupLag.TOTAL_LAG)
+                    .build();
+
+    private static final CodahaleMetric MAX_LAG_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("consumer_group_max_lag")
+                    .setLabel("Consumer Group Maximum Lag")
+                    .setDescription("Highest number of messages the consumer group has yet to consume from one of " +
+                            "the partitions it committed offsets for")
+                    .setNumerator(UnitConstants.messages)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(ConsumerGroupLag.MAX_LAG)
+                    .build();
+
+    private static final CodahaleMetric PARTITIONS_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("consumer_group_partitions")
+                    .setLabel("Consumer Group Partitions")
+                    .setDescription("Number of partitions the consumer group committed offsets for")
+                    .setNumerator(UnitConstants.partitions)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(ConsumerGroupLag.PARTITIONS)
+                    .build();
+
+    private static final CodahaleMetric UNKNOWN_LAG_PARTITIONS_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("consumer_group_unknown_lag_partitions")
+                    .setLabel("Consumer Group Partitions With Unknown Lag")
+                    .setDescription("Number of partitions the consumer group committed offsets for whose log end " +
+                            "offset no broker reported, which are left out of its lag")
+                    .setNumerator(UnitConstants.partitions)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(ConsumerGroupLag.UNKNOWN_LAG_PARTITIONS)
+                    .build();
+
+    private static final CodahaleMetric TOPIC_TOTAL_LAG_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("consumer_groups_total_lag")
+                    .setLabel("Consumer Groups Total Lag")
+                    .setDescription("Total number of messages of the topic the consumer groups have yet to consume")
+                    .setNumerator(UnitConstants.messages)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(ConsumerGroupLag.TOPIC_TOTAL_LAG)
+                    .build();
+
+    private static final CodahaleMetric TOPIC_MAX_LAG_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("consumer_groups_max_lag")
+                    .setLabel("Consumer Groups Maximum Lag")
+                    .setDescription("Highest number of messages a consumer group has yet to consume from one of the " +
+                            "partitions of the topic")
+                    .setNumerator(UnitConstants.messages)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(ConsumerGroupLag.TOPIC_MAX_LAG)
+                    .build();
+
+    private static final CodahaleMetric TOPIC_UNKNOWN_LAG_PARTITIONS_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("consumer_groups_unknown_lag_partitions")
+                    .setLabel("Consumer Groups Partitions With Unknown Lag")
+                    .setDescription("Number of offsets the consumer groups committed for partitions of the topic " +
+                            "whose log end offset no broker reported, which are left out of the lag")
+                    .setNumerator(UnitConstants.partitions)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(ConsumerGroupLag.TOPIC_UNKNOWN_LAG_PARTITIONS)
+                    .build();
+
+    /**
+     * Get the metrics of the KAFKA_CONSUMER_GROUP entity.
+     */
+    public static List<CodahaleMetric> getMetrics() {
+        return Arrays.asList(
+                TOTAL_LAG_METRIC,
+                MAX_LAG_METRIC,
+                PARTITIONS_METRIC,
+                UNKNOWN_LAG_PARTITIONS_METRIC
+        );
+    }
+
+    /**
+     * Get the lag of all consumer groups on a topic, metrics of the KAFKA_TOPIC entity.
+     */
+    public static List<CodahaleMetric> getTopicMetrics() {
+        return Arrays.asList(
+                TOPIC_TOTAL_LAG_METRIC,
+                TOPIC_MAX_LAG_METRIC,
+                TOPIC_UNKNOWN_LAG_PARTITIONS_METRIC
+        );
+    }
+}
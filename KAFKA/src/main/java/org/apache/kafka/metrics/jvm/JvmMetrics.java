@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.jvm;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
+import com.google.common.collect.Lists;
+import org.apache.kafka.metrics.UnitConstants;
+
+import java.util.List;
+
+/**
+ * The JVM gauges that org.apache.kafka.metrics.reporter.JvmMetricSet registers in the
+ * broker, and that the JVM metrics agent serves for MirrorMaker.
+ */
+public class JvmMetrics {
+
+    private JvmMetrics() {}
+
+    private static final String MIRROR_MAKER_PREFIX = "mirror_maker_";
+
+    private static final String BUFFER_POOL_CONTEXT_FORMAT = "kafka.jvm.BufferPool::%s";
+    private static final String GARBAGE_COLLECTOR_CONTEXT_FORMAT = "kafka.jvm.GarbageCollector::%s";
+    private static final String FILE_DESCRIPTOR_CONTEXT_FORMAT = "kafka.jvm.FileDescriptor::%s";
+    private static final String SAFEPOINT_CONTEXT_FORMAT = "kafka.jvm.Safepoint::%s";
+
+    /**
+     * Get the metrics of the KAFKA_BROKER role.
+     */
+    public static List<CodahaleMetric> getMetrics() {
+        return getMetrics("");
+    }
+
+    /**
+     * Get the metrics of the KAFKA_MIRROR_MAKER role. They have the same contexts as the
+     * broker metrics but names of their own.
+     */
+    public static List<CodahaleMetric> getMirrorMakerMetrics() {
+        return getMetrics(MIRROR_MAKER_PREFIX);
+    }
+
+    private static List<CodahaleMetric> getMetrics(final String prefix) {
+        final List<CodahaleMetric> metrics = Lists.newArrayList();
+        addBufferPoolMetrics(metrics, prefix, "direct", "Direct",
+                "used by the network layer to send and receive data");
+        addBufferPoolMetrics(metrics, prefix, "mapped", "Mapped",
+                "used to memory map the offset and time indexes of the log segments");
+
+        metrics.add(gauge(prefix + "jvm_young_gc_count", "Young Generation Garbage Collections",
+                "The number of young generation garbage collections since the JVM started",
+                UnitConstants.garbage_collections, GARBAGE_COLLECTOR_CONTEXT_FORMAT, "YoungCollectionCount"));
+        metrics.add(gauge(prefix + "jvm_young_gc_time", "Young Generation Garbage Collection Time",
+                "The time spent in young generation garbage collections since the JVM started",
+                UnitConstants.ms, GARBAGE_COLLECTOR_CONTEXT_FORMAT, "YoungCollectionTime"));
+        metrics.add(gauge(prefix + "jvm_old_gc_count", "Old Generation Garbage Collections",
+                "The number of old generation, mixed and full garbage collections since the JVM started",
+                UnitConstants.garbage_collections, GARBAGE_COLLECTOR_CONTEXT_FORMAT, "OldCollectionCount"));
+        metrics.add(gauge(prefix + "jvm_old_gc_time", "Old Generation Garbage Collection Time",
+                "The time spent in old generation, mixed and full garbage collections since the JVM started",
+                UnitConstants.ms, GARBAGE_COLLECTOR_CONTEXT_FORMAT, "OldCollectionTime"));
+        metrics.add(gauge(prefix + "jvm_gc_time_percent", "Garbage Collection Time Percentage",
+                "The percentage of the time spent in garbage collections since the previous collection of the metric",
+                UnitConstants.percent, GARBAGE_COLLECTOR_CONTEXT_FORMAT, "TimePercent"));
+
+        metrics.add(gauge(prefix + "jvm_open_file_descriptors", "Open File Descriptors",
+                "The number of open file descriptors, including log segments, index files and sockets",
+                UnitConstants.file_descriptors, FILE_DESCRIPTOR_CONTEXT_FORMAT, "OpenFileDescriptorCount"));
+        metrics.add(gauge(prefix + "jvm_max_file_descriptors", "Maximum File Descriptors",
+                "The maximum number of file descriptors the process may open",
+                UnitConstants.file_descriptors, FILE_DESCRIPTOR_CONTEXT_FORMAT, "MaxFileDescriptorCount"));
+        metrics.add(gauge(prefix + "jvm_file_descriptor_usage", "File Descriptor Usage",
+                "The percentage of the maximum number of file descriptors that is open",
+                UnitConstants.percent, FILE_DESCRIPTOR_CONTEXT_FORMAT, "Usage"));
+
+        metrics.add(gauge(prefix + "jvm_safepoints", "Safepoints",
+                "The number of safepoints the JVM stopped all threads for since it started",
+                UnitConstants.safepoints, SAFEPOINT_CONTEXT_FORMAT, "Count"));
+        metrics.add(gauge(prefix + "jvm_safepoint_time", "Safepoint Time",
+                "The time all threads were stopped at safepoints since the JVM started",
+                UnitConstants.ms, SAFEPOINT_CONTEXT_FORMAT, "Time"));
+        metrics.add(gauge(prefix + "jvm_safepoint_time_percent", "Safepoint Time Percentage",
+                "The percentage of the time all threads were stopped at safepoints since the previous collection of the metric",
+                UnitConstants.percent, SAFEPOINT_CONTEXT_FORMAT, "TimePercent"));
+        return metrics;
+    }
+
+    private static void addBufferPoolMetrics(final List<CodahaleMetric> metrics, final String prefix,
+                                             final String pool, final String context, final String usage) {
+        final String label = Character.toUpperCase(pool.charAt(0)) + pool.substring(1);
+        metrics.add(gauge(prefix + "jvm_" + pool + "_buffers", label + " Buffers",
+                "The number of " + pool + " buffers, " + usage,
+                UnitConstants.buffers, BUFFER_POOL_CONTEXT_FORMAT, context + "Count"));
+        metrics.add(gauge(prefix + "jvm_" + pool + "_buffers_used", label + " Buffers Used",
+                "The memory used by the " + pool + " buffers",
+                UnitConstants.bytes, BUFFER_POOL_CONTEXT_FORMAT, context + "MemoryUsed"));
+        metrics.add(gauge(prefix + "jvm_" + pool + "_buffers_capacity", label + " Buffers Capacity",
+                "The total capacity of the " + pool + " buffers",
+                UnitConstants.bytes, BUFFER_POOL_CONTEXT_FORMAT, context + "TotalCapacity"));
+    }
+
+    private static CodahaleMetric gauge(final String name, final String label, final String description,
+                                        final String unit, final String contextFormat, final String context) {
+        return new CodahaleMetric.Builder()
+                .setName(name)
+                .setLabel(label)
+                .setDescription(description)
+                .setNumerator(unit)
+                .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                .setContext(String.format(contextFormat, context))
+                .build();
+    }
+}
@@ -0,0 +1,247 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.log;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
+import org.apache.kafka.metrics.UnitConstants;
+import org.apache.kafka.metrics.reporter.LogDirectoryRollup;
+import org.apache.kafka.metrics.reporter.ReporterCatalog;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Metrics of a log directory of a broker, one of the directories of log.dirs. The rollups of
+ * the replicas and of the device of the log directory are computed by the in-broker reporter,
+ * see org.apache.kafka.metrics.reporter.LogDirectoryRollup.
+ *
+ * Note: The context is missing its "logDirectory.&lt;path&gt;" scope because that is generated
+ * per log directory in CM. Unlike the topic and replica metrics, log directory metrics are
+ * registered under several groups and types, so the context keeps them.
+ */
+public class LogDirectoryMetrics {
+
+    private LogDirectoryMetrics() {}
+
+    // LogCleanerManager
+    private static final String LOG_CLEANER_MANAGER_CONTEXT_FORMAT = "kafka.log.LogCleanerManager::%s";
+
+    private static final CodahaleMetric UNCLEANABLE_PARTITIONS_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_directory_uncleanable_partitions")
+                    .setLabel("Uncleanable Partitions")
+                    .setDescription("The number of compacted partitions of the log directory that the cleaner " +
+                            "gave up on after an error. They are no longer compacted and grow without bound.")
+                    .setNumerator(UnitConstants.partitions)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_CLEANER_MANAGER_CONTEXT_FORMAT, "uncleanable-partitions-count"))
+                    .build();
+
+    private static final CodahaleMetric UNCLEANABLE_BYTES_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_directory_uncleanable_bytes")
+                    .setLabel("Uncleanable Bytes")
+                    .setDescription("The size of the uncleanable partitions of the log directory that could be compacted")
+                    .setNumerator(UnitConstants.bytes)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_CLEANER_MANAGER_CONTEXT_FORMAT, "uncleanable-bytes"))
+                    .build();
+
+    // LogManager
+    private static final String LOG_MANAGER_CONTEXT_FORMAT = ReporterCatalog.LOG_DIRECTORY_ROOT + "::%s";
+
+    private static final CodahaleMetric OFFLINE_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_directory_offline")
+                    .setLabel("Log Directory Offline")
+                    .setDescription("1 if the broker took the log directory offline after an IO error, 0 otherwise. " +
+                            "The replicas of an offline log directory are offline until the broker restarts.")
+                    .setNumerator(UnitConstants.state)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_MANAGER_CONTEXT_FORMAT, "LogDirectoryOffline"))
+                    .build();
+
+    private static final CodahaleMetric REPLICAS_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_directory_replicas")
+                    .setLabel("Log Directory Replicas")
+                    .setDescription("Number of replicas in the log directory")
+                    .setNumerator(UnitConstants.replicas)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_MANAGER_CONTEXT_FORMAT, LogDirectoryRollup.REPLICAS))
+                    .build();
+
+    private static final CodahaleMetric SIZE_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_directory_size")
+                    .setLabel("Log Directory Size")
+                    .setDescription("Total size of the replicas in the log directory")
+                    .setNumerator(UnitConstants.bytes)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_MANAGER_CONTEXT_FORMAT, LogDirectoryRollup.SIZE))
+                    .build();
+
+    private static final CodahaleMetric LOG_SEGMENTS_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_directory_log_segments")
+                    .setLabel("Log Directory Log Segments")
+                    .setDescription("Total number of log segments of the replicas in the log directory")
+                    .setNumerator(UnitConstants.segments)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_MANAGER_CONTEXT_FORMAT, LogDirectoryRollup.NUM_LOG_SEGMENTS))
+                    .build();
+
+    private static final CodahaleMetric APPENDED_BYTES_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_directory_appended_bytes")
+                    .setLabel("Log Directory Bytes Appended")
+                    .setDescription("Amount of data appended to the replicas in the log directory, measured as the " +
+                            "growth of their size")
+                    .setNumerator(UnitConstants.bytes)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_MANAGER_CONTEXT_FORMAT, LogDirectoryRollup.APPENDED_BYTES))
+                    .build();
+
+    private static final CodahaleMetric USABLE_BYTES_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_directory_usable_bytes")
+                    .setLabel("Log Directory Free Space")
+                    .setDescription("Space the broker can still use on the file system of the log directory")
+                    .setNumerator(UnitConstants.bytes)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_MANAGER_CONTEXT_FORMAT, LogDirectoryRollup.USABLE_BYTES))
+                    .build();
+
+    private static final CodahaleMetric USABLE_PERCENT_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_directory_usable_percent")
+                    .setLabel("Log Directory Free Space Percent")
+                    .setDescription("Space the broker can still use on the file system of the log directory, as a " +
+                            "percentage of its capacity")
+                    .setNumerator(UnitConstants.percent)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_MANAGER_CONTEXT_FORMAT, LogDirectoryRollup.USABLE_PERCENT))
+                    .build();
+
+    private static final CodahaleMetric DISK_READ_BYTES_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_directory_disk_read_bytes")
+                    .setLabel("Log Directory Disk Bytes Read")
+                    .setDescription("Amount of data read from the device of the log directory. Reads that the page " +
+                            "cache serves do not reach the device.")
+                    .setNumerator(UnitConstants.bytes)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_MANAGER_CONTEXT_FORMAT, LogDirectoryRollup.DISK_READ_BYTES))
+                    .build();
+
+    private static final CodahaleMetric DISK_WRITE_BYTES_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_directory_disk_write_bytes")
+                    .setLabel("Log Directory Disk Bytes Written")
+                    .setDescription("Amount of data written to the device of the log directory")
+                    .setNumerator(UnitConstants.bytes)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_MANAGER_CONTEXT_FORMAT, LogDirectoryRollup.DISK_WRITE_BYTES))
+                    .build();
+
+    private static final CodahaleMetric DISK_READ_TIME_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_directory_disk_read_time")
+                    .setLabel("Log Directory Disk Read Time")
+                    .setDescription("Average time the device of the log directory took to complete a read")
+                    .setNumerator(UnitConstants.ms)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_MANAGER_CONTEXT_FORMAT, LogDirectoryRollup.DISK_READ_TIME))
+                    .build();
+
+    private static final CodahaleMetric DISK_WRITE_TIME_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_directory_disk_write_time")
+                    .setLabel("Log Directory Disk Write Time")
+                    .setDescription("Average time the device of the log directory took to complete a write. Log " +
+                            "flushes and page cache writeback of the log directory wait on these writes.")
+                    .setNumerator(UnitConstants.ms)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_MANAGER_CONTEXT_FORMAT, LogDirectoryRollup.DISK_WRITE_TIME))
+                    .build();
+
+    // Rollups of the log directories to the broker
+    private static final CodahaleMetric MIN_USABLE_PERCENT_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_directories_min_usable_percent")
+                    .setLabel("Log Directories Minimum Free Space Percent")
+                    .setDescription("Lowest free space percentage of the log directories of the broker")
+                    .setNumerator(UnitConstants.percent)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_MANAGER_CONTEXT_FORMAT, LogDirectoryRollup.MIN_USABLE_PERCENT))
+                    .build();
+
+    private static final CodahaleMetric MAX_DISK_WRITE_TIME_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("log_directories_max_disk_write_time")
+                    .setLabel("Log Directories Maximum Disk Write Time")
+                    .setDescription("Highest average write time of the devices of the log directories of the broker")
+                    .setNumerator(UnitConstants.ms)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(LOG_MANAGER_CONTEXT_FORMAT, LogDirectoryRollup.MAX_DISK_WRITE_TIME))
+                    .build();
+
+    /**
+     * Get the metrics Kafka registers per log directory.
+     */
+    public static List<CodahaleMetric> getMetrics() {
+        return Arrays.asList(
+                UNCLEANABLE_PARTITIONS_METRIC,
+                UNCLEANABLE_BYTES_METRIC,
+                OFFLINE_METRIC
+        );
+    }
+
+    /**
+     * Get the metrics of the KAFKA_LOG_DIRECTORY entity that the reporter rolls up from the
+     * replicas and the device of the log directory.
+     */
+    public static List<CodahaleMetric> getRollupMetrics() {
+        return Arrays.asList(
+                REPLICAS_METRIC,
+                SIZE_METRIC,
+                LOG_SEGMENTS_METRIC,
+                APPENDED_BYTES_METRIC,
+                USABLE_BYTES_METRIC,
+                USABLE_PERCENT_METRIC,
+                DISK_READ_BYTES_METRIC,
+                DISK_WRITE_BYTES_METRIC,
+                DISK_READ_TIME_METRIC,
+                DISK_WRITE_TIME_METRIC
+        );
+    }
+
+    /**
+     * Get the rollups of the log directories to the KAFKA_BROKER role.
+     */
+    public static List<CodahaleMetric> getBrokerRollupMetrics() {
+        return Arrays.asList(
+                MIN_USABLE_PERCENT_METRIC,
+                MAX_DISK_WRITE_TIME_METRIC
+        );
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.network;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
+import org.apache.kafka.metrics.UnitConstants;
+import org.apache.kafka.metrics.reporter.ReporterCatalog;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Metrics of a network processor, bridged from the Kafka metrics of the socket server by
+ * org.apache.kafka.metrics.reporter.SocketServerMetricsBridge.
+ *
+ * Note: The context is missing its "root" because that is generated per network processor in CM
+ */
+public class NetworkProcessorMetrics {
+
+    private NetworkProcessorMetrics() {}
+
+    /**
+     * The group and type the per network processor Yammer metrics are registered under in the broker.
+     */
+    public static final String YAMMER_ROOT = ReporterCatalog.NETWORK_PROCESSOR_ROOT;
+
+    private static final CodahaleMetric IDLE_RATIO_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("network_processor_idle_ratio")
+                    .setLabel("Network Processor Idle Ratio")
+                    .setDescription("The fraction of time the network processor was idle, waiting for its "
+                            + "connections to be ready. Kafka reports it as the IO wait ratio.")
+                    .setNumerator(UnitConstants.ratio)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext("IdleRatio")
+                    .build();
+
+    private static final CodahaleMetric IO_RATIO_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("network_processor_io_ratio")
+                    .setLabel("Network Processor IO Ratio")
+                    .setDescription("The fraction of time the network processor spent reading from and writing "
+                            + "to its connections")
+                    .setNumerator(UnitConstants.ratio)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext("IoRatio")
+                    .build();
+
+    private static final CodahaleMetric IO_WAIT_TIME_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("network_processor_io_wait_time_avg")
+                    .setLabel("Network Processor Average IO Wait Time")
+                    .setDescription("The average time the network processor waited for its connections to be ready")
+                    .setNumerator(UnitConstants.nanoseconds)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext("IoWaitTimeNsAvg")
+                    .build();
+
+    private static final CodahaleMetric CONNECTION_COUNT_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("network_processor_connections")
+                    .setLabel("Network Processor Connections")
+                    .setDescription("The number of connections open on the network processor")
+                    .setNumerator(UnitConstants.connections)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext("ConnectionCount")
+                    .build();
+
+    private static final CodahaleMetric CONNECTION_CREATION_RATE_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("network_processor_connection_creation_rate")
+                    .setLabel("Network Processor Connection Creation Rate")
+                    .setDescription("The rate of new connections on the network processor, for the listener it "
+                            + "serves. Aggregate by the listener name for the rate of a listener.")
+                    .setNumerator(UnitConstants.connections)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext("ConnectionCreationRate")
+                    .build();
+
+    public static List<CodahaleMetric> getMetrics() {
+        return Arrays.asList(
+                IDLE_RATIO_METRIC,
+                IO_RATIO_METRIC,
+                IO_WAIT_TIME_METRIC,
+                CONNECTION_COUNT_METRIC,
+                CONNECTION_CREATION_RATE_METRIC
+        );
+    }
+
+    /**
+     * Get the metrics that show the saturation of the network processor.
+     */
+    public static List<CodahaleMetric> getHotMetrics() {
+        return Arrays.asList(
+                IDLE_RATIO_METRIC
+        );
+    }
+}
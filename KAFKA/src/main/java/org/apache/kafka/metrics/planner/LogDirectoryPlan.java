@@ -0,0 +1,239 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.planner;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The replica moves planned by {@link LogDirectoryPlanner}, in the order they should run.
+ *
+ * The plan is written as the input of kafka-reassign-partitions, which moves a replica
+ * between the log directories of its broker when it names the log directory, and as a
+ * throttle schedule. Kafka copies the replicas being moved at up to
+ * replica.alter.log.dirs.io.max.bytes.per.second, shared by the moves in progress, so
+ * the schedule runs the moves one at a time. A replica that keeps growing during its
+ * copy is caught up at the throttle rate less its growth rate, so its throttle is raised
+ * to at least twice its growth rate for the copy to finish.
+ */
+public final class LogDirectoryPlan {
+
+    private static final String ANY_LOG_DIR = "any";
+
+    private final ReplicaSnapshot snapshot;
+    private final int[] replicas;
+    private final int[] sources;
+    private final int[] destinations;
+    private final double[] initialLoads;
+    private final double[] finalLoads;
+    private final double[] targets;
+
+    private LogDirectoryPlan(final Builder builder, final double[] finalLoads) {
+        snapshot = builder.snapshot;
+        replicas = Arrays.copyOf(builder.replicas, builder.size);
+        sources = Arrays.copyOf(builder.sources, builder.size);
+        destinations = Arrays.copyOf(builder.destinations, builder.size);
+        initialLoads = builder.initialLoads;
+        targets = builder.targets;
+        this.finalLoads = Arrays.copyOf(finalLoads, finalLoads.length);
+    }
+
+    public int getMoveCount() {
+        return replicas.length;
+    }
+
+    public long getMovedBytes() {
+        long ret = 0;
+        for (int replica : replicas) {
+            ret += snapshot.sizes[replica];
+        }
+        return ret;
+    }
+
+    int getReplica(final int move) {
+        return replicas[move];
+    }
+
+    int getSource(final int move) {
+        return sources[move];
+    }
+
+    int getDestination(final int move) {
+        return destinations[move];
+    }
+
+    double getTarget(final int dir) {
+        return targets[dir];
+    }
+
+    double getInitialLoad(final int dir) {
+        return initialLoads[dir];
+    }
+
+    double getFinalLoad(final int dir) {
+        return finalLoads[dir];
+    }
+
+    /**
+     * Write the plan in the reassignment JSON format of kafka-reassign-partitions. The
+     * replicas of a partition must be listed in their current order for the reassignment
+     * to only move them between log directories, and the log directory of the other
+     * brokers is left as "any".
+     * @param brokerId the id of the broker the plan is for
+     * @param assignments the current replicas of every partition, keyed by "topic-partition".
+     *                    Moves of partitions without an assignment are left out.
+     * @return the number of moves written
+     */
+    public int writeReassignment(final Writer out, final int brokerId, final Map<String, int[]> assignments)
+            throws IOException {
+        int ret = 0;
+        out.write("{\"version\":1,\"partitions\":[");
+        for (int move = 0; move < replicas.length; move++) {
+            final int replica = replicas[move];
+            final int[] assignment = assignments.get(snapshot.topics[replica] + "-" + snapshot.partitions[replica]);
+            if (assignment == null || indexOf(assignment, brokerId) < 0) {
+                continue;
+            }
+            if (ret > 0) {
+                out.write(',');
+            }
+            out.write("\n{\"topic\":");
+            writeString(out, snapshot.topics[replica]);
+            out.write(",\"partition\":" + snapshot.partitions[replica] + ",\"replicas\":[");
+            for (int i = 0; i < assignment.length; i++) {
+                out.write((i > 0 ? "," : "") + assignment[i]);
+            }
+            out.write("],\"log_dirs\":[");
+            for (int i = 0; i < assignment.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                writeString(out, assignment[i] == brokerId ? snapshot.dirs[destinations[move]] : ANY_LOG_DIR);
+            }
+            out.write("]}");
+            ret++;
+        }
+        out.write("\n]}\n");
+        out.flush();
+        return ret;
+    }
+
+    /**
+     * Write the throttle schedule of the moves, tab separated, one line per move.
+     * @param throttle the throttle of a move, in bytes per second
+     * @return the estimated time to run every move, in seconds
+     */
+    public double writeThrottleSchedule(final Writer out, final double throttle) throws IOException {
+        if (throttle <= 0) {
+            throw new IllegalArgumentException("The throttle must be positive");
+        }
+        out.write("#move\ttopic\tpartition\tfrom\tto\tbytes\tgrowth_bytes_per_sec\t"
+                + "throttle_bytes_per_sec\tstart_secs\tduration_secs\n");
+        double start = 0;
+        for (int move = 0; move < replicas.length; move++) {
+            final int replica = replicas[move];
+            final double growth = Math.max(0, snapshot.growths[replica]);
+            final double rate = Math.max(throttle, 2 * growth);
+            final double duration = snapshot.sizes[replica] / (rate - growth);
+            out.write((move + 1) + "\t" + snapshot.topics[replica] + '\t' + snapshot.partitions[replica] + '\t'
+                    + snapshot.dirs[sources[move]] + '\t' + snapshot.dirs[destinations[move]] + '\t'
+                    + snapshot.sizes[replica] + '\t' + Math.round(growth) + '\t' + Math.round(rate) + '\t'
+                    + Math.round(start) + '\t' + Math.round(Math.ceil(duration)) + '\n');
+            start += duration;
+        }
+        out.flush();
+        return start;
+    }
+
+    /**
+     * Write the load of every log directory before and after the moves, and its target.
+     */
+    public void writeSummary(final Writer out) throws IOException {
+        out.write("#log_dir\tcapacity_bytes\ttarget_bytes\tbefore_bytes\tafter_bytes\n");
+        for (int dir = 0; dir < snapshot.getDirCount(); dir++) {
+            out.write(snapshot.dirs[dir] + '\t' + snapshot.capacities[dir] + '\t' + Math.round(targets[dir]) + '\t'
+                    + Math.round(initialLoads[dir]) + '\t' + Math.round(finalLoads[dir]) + '\n');
+        }
+        out.write("# " + replicas.length + " of " + snapshot.getReplicaCount() + " replicas moved, "
+                + getMovedBytes() + " bytes\n");
+        out.flush();
+    }
+
+    private static int indexOf(final int[] values, final int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void writeString(final Writer out, final String s) throws IOException {
+        out.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+
+    static final class Builder {
+        private final ReplicaSnapshot snapshot;
+        private final double[] initialLoads;
+        private final double[] targets;
+        private int[] replicas = new int[64];
+        private int[] sources = new int[64];
+        private int[] destinations = new int[64];
+        private int size;
+
+        Builder(final ReplicaSnapshot snapshot, final double[] initialLoads, final double[] targets) {
+            this.snapshot = snapshot;
+            this.initialLoads = initialLoads;
+            this.targets = targets;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void addMove(final int replica, final int source, final int destination) {
+            if (size == replicas.length) {
+                replicas = Arrays.copyOf(replicas, size * 2);
+                sources = Arrays.copyOf(sources, size * 2);
+                destinations = Arrays.copyOf(destinations, size * 2);
+            }
+            replicas[size] = replica;
+            sources[size] = source;
+            destinations[size] = destination;
+            size++;
+        }
+
+        LogDirectoryPlan build(final double[] finalLoads) {
+            return new LogDirectoryPlan(this, finalLoads);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.planner;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Plans the moves of replicas between the log directories of a broker that even out their
+ * utilization with as few bytes moved as possible.
+ *
+ * The load of a replica is its size projected over the planning horizon at its growth rate.
+ * Every log directory has a target load proportional to its capacity, or an equal share
+ * when a capacity is unknown. Moves are planned with a best fit heuristic: the log directory
+ * furthest above its target gives up its largest replica that fits in what the log
+ * directory furthest below its target can take without either overshooting its target.
+ * When no replica fits, the smallest replica is moved if that still reduces the imbalance.
+ * A replica is only moved into a log directory with usable space for its load, counting the
+ * moves into it planned before, when the usable space is known. Planning stops when the
+ * fullest log directory is within the tolerance of its target, or no move reduces the
+ * imbalance. A replica is moved at most once.
+ *
+ * The replicas of a log directory are sorted by load once. Moved replicas are skipped with
+ * path compressed links, so planning takes O(n log n) for n replicas.
+ */
+public final class LogDirectoryPlanner {
+
+    private final double horizonSeconds;
+    private final double tolerancePercent;
+    private final int maxMoves;
+
+    /**
+     * @param horizonSeconds how far ahead to project the growth of the replicas
+     * @param tolerancePercent how far above its target a log directory may stay, in percent of its capacity,
+     *                         or of its target when its capacity is unknown
+     * @param maxMoves the maximum number of moves to plan, 0 for no limit
+     */
+    public LogDirectoryPlanner(final double horizonSeconds, final double tolerancePercent, final int maxMoves) {
+        if (horizonSeconds < 0 || tolerancePercent < 0 || maxMoves < 0) {
+            throw new IllegalArgumentException("The horizon, tolerance and maximum moves must not be negative");
+        }
+        this.horizonSeconds = horizonSeconds;
+        this.tolerancePercent = tolerancePercent;
+        this.maxMoves = maxMoves;
+    }
+
+    public LogDirectoryPlan plan(final ReplicaSnapshot snapshot) {
+        final int dirCount = snapshot.getDirCount();
+        final int replicaCount = snapshot.getReplicaCount();
+
+        final double[] loads = new double[replicaCount];
+        final double[] dirLoads = new double[dirCount];
+        final int[] dirReplicaCounts = new int[dirCount];
+        double totalLoad = 0;
+        for (int replica = 0; replica < replicaCount; replica++) {
+            loads[replica] = snapshot.sizes[replica] + Math.max(0, snapshot.growths[replica]) * horizonSeconds;
+            dirLoads[snapshot.replicaDirs[replica]] += loads[replica];
+            dirReplicaCounts[snapshot.replicaDirs[replica]]++;
+            totalLoad += loads[replica];
+        }
+        final double[] initialLoads = Arrays.copyOf(dirLoads, dirCount);
+        // The space left for moves into each log directory. The space of the replicas moved out
+        // is not counted, as the moves into a log directory may run before those out of it
+        final double[] usables = new double[dirCount];
+        for (int dir = 0; dir < dirCount; dir++) {
+            usables[dir] = snapshot.usables[dir] < 0 ? Double.POSITIVE_INFINITY : snapshot.usables[dir];
+        }
+        final double[] targets = targets(snapshot, totalLoad);
+        final double[] tolerances = new double[dirCount];
+        for (int dir = 0; dir < dirCount; dir++) {
+            final double base = knownCapacities(snapshot) ? snapshot.capacities[dir] : targets[dir];
+            tolerances[dir] = base * tolerancePercent / 100;
+        }
+
+        final int[] positions = new int[replicaCount];
+        final DirReplicas[] candidates = new DirReplicas[dirCount];
+        for (int dir = 0; dir < dirCount; dir++) {
+            candidates[dir] = new DirReplicas(snapshot, loads, positions, dir, dirReplicaCounts[dir]);
+        }
+
+        final LogDirectoryPlan.Builder plan = new LogDirectoryPlan.Builder(snapshot, initialLoads, targets);
+        while (maxMoves == 0 || plan.size() < maxMoves) {
+            int source = -1;
+            int destination = -1;
+            for (int dir = 0; dir < dirCount; dir++) {
+                final double excess = dirLoads[dir] - targets[dir];
+                if (source < 0 || excess > dirLoads[source] - targets[source]) {
+                    source = dir;
+                }
+                if (destination < 0 || excess < dirLoads[destination] - targets[destination]) {
+                    destination = dir;
+                }
+            }
+            if (source < 0 || source == destination) {
+                break;
+            }
+            final double sourceExcess = dirLoads[source] - targets[source];
+            final double destinationRoom = targets[destination] - dirLoads[destination];
+            if (sourceExcess <= tolerances[source] || destinationRoom <= 0) {
+                break;
+            }
+
+            // Moving a load strictly below the sum of the excess and the room reduces the
+            // sum of the squared distances of the two log directories to their targets
+            int replica = candidates[source].largestAtMost(
+                    Math.min(Math.min(sourceExcess, destinationRoom), usables[destination]));
+            if (replica < 0) {
+                replica = candidates[source].smallest();
+                if (replica < 0 || loads[replica] >= sourceExcess + destinationRoom
+                        || loads[replica] > usables[destination]) {
+                    break;
+                }
+            }
+            candidates[source].remove(replica);
+            dirLoads[source] -= loads[replica];
+            dirLoads[destination] += loads[replica];
+            usables[destination] -= loads[replica];
+            plan.addMove(replica, source, destination);
+        }
+        return plan.build(dirLoads);
+    }
+
+    private static boolean knownCapacities(final ReplicaSnapshot snapshot) {
+        for (long capacity : snapshot.capacities) {
+            if (capacity <= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double[] targets(final ReplicaSnapshot snapshot, final double totalLoad) {
+        final int dirCount = snapshot.getDirCount();
+        final double[] ret = new double[dirCount];
+        if (knownCapacities(snapshot)) {
+            double totalCapacity = 0;
+            for (long capacity : snapshot.capacities) {
+                totalCapacity += capacity;
+            }
+            for (int dir = 0; dir < dirCount; dir++) {
+                ret[dir] = totalLoad * snapshot.capacities[dir] / totalCapacity;
+            }
+        } else {
+            Arrays.fill(ret, dirCount == 0 ? 0 : totalLoad / dirCount);
+        }
+        return ret;
+    }
+
+    /**
+     * The replicas of a log directory that were not moved yet, sorted by load.
+     */
+    private static final class DirReplicas {
+        private final int[] positions;
+        private final int[] replicas;
+        private final double[] sortedLoads;
+        // The position of the nearest replica that was not moved at or below a position,
+        // or -1, compressed on lookup
+        private final int[] below;
+        private int first;
+
+        /**
+         * @param positions filled with the position of every replica of the log directory
+         */
+        DirReplicas(final ReplicaSnapshot snapshot, final double[] loads, final int[] positions,
+                    final int dir, final int count) {
+            this.positions = positions;
+            final Integer[] sorted = new Integer[count];
+            int position = 0;
+            for (int replica = 0; replica < snapshot.getReplicaCount(); replica++) {
+                if (snapshot.replicaDirs[replica] == dir) {
+                    sorted[position++] = replica;
+                }
+            }
+            Arrays.sort(sorted, new Comparator<Integer>() {
+                @Override
+                public int compare(final Integer a, final Integer b) {
+                    return Double.compare(loads[a], loads[b]);
+                }
+            });
+            replicas = new int[count];
+            sortedLoads = new double[count];
+            below = new int[count];
+            for (int i = 0; i < count; i++) {
+                replicas[i] = sorted[i];
+                sortedLoads[i] = loads[sorted[i]];
+                below[i] = i;
+                positions[sorted[i]] = i;
+            }
+        }
+
+        /**
+         * @return the largest replica with a load of at most the limit, or -1
+         */
+        int largestAtMost(final double limit) {
+            // The last position with a load of at most the limit
+            int low = 0;
+            int high = sortedLoads.length;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (sortedLoads[middle] <= limit) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            final int position = find(low - 1);
+            return position < 0 ? -1 : replicas[position];
+        }
+
+        /**
+         * @return the smallest replica, or -1
+         */
+        int smallest() {
+            while (first < replicas.length && below[first] != first) {
+                first++;
+            }
+            return first < replicas.length ? replicas[first] : -1;
+        }
+
+        void remove(final int replica) {
+            final int position = positions[replica];
+            below[position] = position - 1;
+        }
+
+        private int find(final int position) {
+            int root = position;
+            while (root >= 0 && below[root] != root) {
+                root = below[root];
+            }
+            int current = position;
+            while (current >= 0 && below[current] != current) {
+                final int next = below[current];
+                below[current] = root;
+                current = next;
+            }
+            return root;
+        }
+    }
+}
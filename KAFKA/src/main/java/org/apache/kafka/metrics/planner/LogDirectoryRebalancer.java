@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.planner;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Plans the moves that balance the log directories of a broker, from a snapshot recorded
+ * on the broker or from a recorded snapshot file, so that plans can be made without a
+ * cluster. Run by the Rebalance Log Directories command of the Kafka Broker role:
+ * <pre>
+ * LogDirectoryRebalancer [--broker-config kafka.properties] [--broker-id id]
+ *     [--snapshot file | --metrics-url url [--interval-secs n] [--record file]]
+ *     [--assignments kafka-topics-describe-output] [--output-dir dir]
+ *     [--tolerance-percent p] [--horizon-hours h] [--max-moves n] [--throttle-bytes-per-sec b]
+ * </pre>
+ * The output directory gets the reassignment JSON, the throttle schedule and a summary of
+ * the log directories before and after the moves. The reassignment JSON is only written
+ * with the current assignments, from the output of kafka-topics --describe.
+ */
+public final class LogDirectoryRebalancer {
+
+    static final String REASSIGNMENT_FILE = "log-dirs-reassignment.json";
+    static final String THROTTLE_SCHEDULE_FILE = "log-dirs-throttle-schedule.tsv";
+    static final String SUMMARY_FILE = "log-dirs-summary.tsv";
+
+    private static final String LOG_DIRS_PROPERTY = "log.dirs";
+    private static final String LOG_DIR_PROPERTY = "log.dir";
+    private static final String BROKER_ID_PROPERTY = "broker.id";
+    private static final String DEFAULT_LOG_DIR = "/tmp/kafka-logs";
+
+    private static final int DEFAULT_INTERVAL_SECS = 60;
+    private static final double DEFAULT_TOLERANCE_PERCENT = 5;
+    private static final double DEFAULT_HORIZON_HOURS = 24;
+    private static final double DEFAULT_THROTTLE_BYTES_PER_SEC = 50 * 1024 * 1024;
+
+    private static final String UTF_8 = "UTF-8";
+
+    private LogDirectoryRebalancer() {}
+
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> options;
+        try {
+            options = parseOptions(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        final Properties brokerConfig = new Properties();
+        if (options.containsKey("broker-config")) {
+            final Reader in = new InputStreamReader(new FileInputStream(options.get("broker-config")), UTF_8);
+            try {
+                brokerConfig.load(in);
+            } finally {
+                in.close();
+            }
+        }
+
+        final long start = System.nanoTime();
+        final ReplicaSnapshot snapshot;
+        if (options.containsKey("snapshot")) {
+            final Reader in = new InputStreamReader(new FileInputStream(options.get("snapshot")), UTF_8);
+            try {
+                snapshot = ReplicaSnapshot.read(in);
+            } finally {
+                in.close();
+            }
+        } else {
+            final SnapshotRecorder recorder = new SnapshotRecorder(
+                    parseLogDirs(brokerConfig.getProperty(LOG_DIRS_PROPERTY), brokerConfig.getProperty(LOG_DIR_PROPERTY)),
+                    options.get("metrics-url"));
+            snapshot = recorder.record(intOption(options, "interval-secs", DEFAULT_INTERVAL_SECS));
+            if (options.containsKey("record")) {
+                final Writer out = new OutputStreamWriter(new FileOutputStream(options.get("record")), UTF_8);
+                try {
+                    snapshot.write(out);
+                } finally {
+                    out.close();
+                }
+            }
+        }
+
+        final long planStart = System.nanoTime();
+        final LogDirectoryPlan plan = new LogDirectoryPlanner(
+                doubleOption(options, "horizon-hours", DEFAULT_HORIZON_HOURS) * 3600,
+                doubleOption(options, "tolerance-percent", DEFAULT_TOLERANCE_PERCENT),
+                intOption(options, "max-moves", 0)).plan(snapshot);
+        final double planMillis = (System.nanoTime() - planStart) / 1e6;
+
+        final File outputDir = new File(options.containsKey("output-dir") ? options.get("output-dir") : ".");
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Unable to create " + outputDir);
+        }
+        final PrintWriter stdout = new PrintWriter(new OutputStreamWriter(System.out, UTF_8));
+        plan.writeSummary(stdout);
+
+        Writer out = new OutputStreamWriter(new FileOutputStream(new File(outputDir, SUMMARY_FILE)), UTF_8);
+        try {
+            plan.writeSummary(out);
+        } finally {
+            out.close();
+        }
+        final double seconds;
+        out = new OutputStreamWriter(new FileOutputStream(new File(outputDir, THROTTLE_SCHEDULE_FILE)), UTF_8);
+        try {
+            seconds = plan.writeThrottleSchedule(out,
+                    doubleOption(options, "throttle-bytes-per-sec", DEFAULT_THROTTLE_BYTES_PER_SEC));
+        } finally {
+            out.close();
+        }
+        stdout.println("# Planned in " + Math.round(planMillis) + " ms, " + Math.round((planStart - start) / 1e6)
+                + " ms to record or read the snapshot. The moves take about " + Math.round(seconds) + " s.");
+
+        final String brokerId = options.containsKey("broker-id")
+                ? options.get("broker-id")
+                : brokerConfig.getProperty(BROKER_ID_PROPERTY);
+        if (options.containsKey("assignments") && brokerId != null) {
+            final Map<String, int[]> assignments = readAssignments(new File(options.get("assignments")));
+            out = new OutputStreamWriter(new FileOutputStream(new File(outputDir, REASSIGNMENT_FILE)), UTF_8);
+            final int written;
+            try {
+                written = plan.writeReassignment(out, Integer.parseInt(brokerId.trim()), assignments);
+            } finally {
+                out.close();
+            }
+            if (written < plan.getMoveCount()) {
+                stdout.println("# " + (plan.getMoveCount() - written)
+                        + " moves are left out of the reassignment, their partitions were not in the assignments");
+            }
+        } else {
+            stdout.println("# No reassignment written, it needs the broker id and the current assignments");
+        }
+        stdout.println("# Output written to " + outputDir.getAbsolutePath());
+        stdout.flush();
+    }
+
+    /**
+     * The log directories of the broker configuration, log.dirs or else log.dir.
+     */
+    static List<String> parseLogDirs(final String logDirs, final String logDir) {
+        final List<String> ret = new ArrayList<String>();
+        final String value = logDirs != null ? logDirs : logDir != null ? logDir : DEFAULT_LOG_DIR;
+        for (String path : value.split(",")) {
+            if (!path.trim().isEmpty()) {
+                ret.add(path.trim());
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Read the current replicas of every partition, keyed by "topic-partition", from the
+     * output of kafka-topics --describe, which has a line per partition like
+     * "Topic: t	Partition: 0	Leader: 1	Replicas: 1,2,3	Isr: 1,2".
+     */
+    static Map<String, int[]> readAssignments(final File file) throws IOException {
+        final Map<String, int[]> ret = new HashMap<String, int[]>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String topic = fieldOf(line, "Topic:");
+                final String partition = fieldOf(line, "Partition:");
+                final String replicas = fieldOf(line, "Replicas:");
+                if (topic == null || partition == null || replicas == null) {
+                    continue;
+                }
+                final String[] ids = replicas.split(",");
+                final int[] assignment = new int[ids.length];
+                try {
+                    for (int i = 0; i < ids.length; i++) {
+                        assignment[i] = Integer.parseInt(ids[i].trim());
+                    }
+                    ret.put(topic + "-" + Integer.parseInt(partition), assignment);
+                } catch (NumberFormatException e) {
+                    // Not a partition line
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return ret;
+    }
+
+    private static String fieldOf(final String line, final String label) {
+        final int start = line.indexOf(label);
+        if (start < 0) {
+            return null;
+        }
+        final String rest = line.substring(start + label.length()).trim();
+        int end = 0;
+        while (end < rest.length() && !Character.isWhitespace(rest.charAt(end))) {
+            end++;
+        }
+        return end == 0 ? null : rest.substring(0, end);
+    }
+
+    private static Map<String, String> parseOptions(final String[] args) {
+        final Map<String, String> ret = new HashMap<String, String>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --option value pairs, got " + args[i]);
+            }
+            // Empty values, such as unset role parameters, fall back to the defaults
+            if (!args[i + 1].isEmpty()) {
+                ret.put(args[i].substring(2), args[i + 1]);
+            }
+            i++;
+        }
+        return ret;
+    }
+
+    private static int intOption(final Map<String, String> options, final String name, final int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+
+    private static double doubleOption(final Map<String, String> options, final String name,
+                                       final double defaultValue) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : defaultValue;
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.planner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The log directories of a broker and the size and growth rate of the replicas in each,
+ * as recorded by {@link SnapshotRecorder} or read back from a file.
+ *
+ * The file is tab separated, one line per log directory followed by one line per replica:
+ * <pre>
+ * dir      &lt;path&gt;  &lt;capacity bytes&gt;  [&lt;usable bytes&gt;]
+ * replica  &lt;topic&gt; &lt;partition&gt; &lt;path&gt; &lt;size bytes&gt; &lt;growth bytes/s&gt;
+ * </pre>
+ * Lines starting with # are comments. A capacity of 0 is unknown, and so are negative or
+ * missing usable bytes.
+ *
+ * Replicas are held in primitive arrays, in the order they were added.
+ */
+public final class ReplicaSnapshot {
+
+    private static final String DIR = "dir";
+    private static final String REPLICA = "replica";
+    private static final char SEPARATOR = '\t';
+
+    public static final long UNKNOWN_USABLE = -1;
+
+    final String[] dirs;
+    final long[] capacities;
+    final long[] usables;
+
+    final String[] topics;
+    final int[] partitions;
+    final int[] replicaDirs;
+    final long[] sizes;
+    final double[] growths;
+
+    private ReplicaSnapshot(final Builder builder) {
+        dirs = Arrays.copyOf(builder.dirs, builder.dirCount);
+        capacities = Arrays.copyOf(builder.capacities, builder.dirCount);
+        usables = Arrays.copyOf(builder.usables, builder.dirCount);
+        topics = Arrays.copyOf(builder.topics, builder.replicaCount);
+        partitions = Arrays.copyOf(builder.partitions, builder.replicaCount);
+        replicaDirs = Arrays.copyOf(builder.replicaDirs, builder.replicaCount);
+        sizes = Arrays.copyOf(builder.sizes, builder.replicaCount);
+        growths = Arrays.copyOf(builder.growths, builder.replicaCount);
+    }
+
+    public int getDirCount() {
+        return dirs.length;
+    }
+
+    public int getReplicaCount() {
+        return topics.length;
+    }
+
+    /**
+     * Read a snapshot from a recorded file.
+     * @throws IOException if the file could not be read or is malformed
+     */
+    public static ReplicaSnapshot read(final Reader in) throws IOException {
+        final BufferedReader reader = new BufferedReader(in);
+        final Builder builder = new Builder();
+        final Map<String, Integer> dirs = new HashMap<String, Integer>();
+        String line;
+        int number = 0;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            final String[] fields = line.split(String.valueOf(SEPARATOR));
+            try {
+                if (DIR.equals(fields[0]) && (fields.length == 3 || fields.length == 4)) {
+                    dirs.put(fields[1], builder.dirCount);
+                    builder.addDir(fields[1], Long.parseLong(fields[2]),
+                            fields.length == 4 ? Long.parseLong(fields[3]) : UNKNOWN_USABLE);
+                } else if (REPLICA.equals(fields[0]) && fields.length == 6) {
+                    final Integer dir = dirs.get(fields[3]);
+                    if (dir == null) {
+                        throw new IOException("Line " + number + ": unknown log directory " + fields[3]);
+                    }
+                    builder.addReplica(fields[1], Integer.parseInt(fields[2]), dir,
+                            Long.parseLong(fields[4]), Double.parseDouble(fields[5]));
+                } else {
+                    throw new IOException("Line " + number + ": expected a dir or replica line");
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + number + ": " + e.getMessage());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Write the snapshot in the format {@link #read} reads.
+     */
+    public void write(final Writer out) throws IOException {
+        out.write("# Log directories and replicas of the broker\n");
+        for (int dir = 0; dir < dirs.length; dir++) {
+            out.write(DIR + SEPARATOR + dirs[dir] + SEPARATOR + capacities[dir] + SEPARATOR + usables[dir] + '\n');
+        }
+        for (int replica = 0; replica < topics.length; replica++) {
+            out.write(REPLICA + SEPARATOR + topics[replica] + SEPARATOR + partitions[replica] + SEPARATOR
+                    + dirs[replicaDirs[replica]] + SEPARATOR + sizes[replica] + SEPARATOR + growths[replica] + '\n');
+        }
+        out.flush();
+    }
+
+    public static class Builder {
+        private String[] dirs = new String[4];
+        private long[] capacities = new long[4];
+        private long[] usables = new long[4];
+        private int dirCount;
+
+        private String[] topics = new String[1024];
+        private int[] partitions = new int[1024];
+        private int[] replicaDirs = new int[1024];
+        private long[] sizes = new long[1024];
+        private double[] growths = new double[1024];
+        private int replicaCount;
+
+        /**
+         * Add a log directory whose usable space is unknown.
+         * @return the index of the log directory
+         */
+        public int addDir(final String path, final long capacity) {
+            return addDir(path, capacity, UNKNOWN_USABLE);
+        }
+
+        /**
+         * @param usable the bytes replicas can still be moved into, or {@link #UNKNOWN_USABLE}
+         * @return the index of the log directory
+         */
+        public int addDir(final String path, final long capacity, final long usable) {
+            if (dirCount == dirs.length) {
+                dirs = Arrays.copyOf(dirs, dirCount * 2);
+                capacities = Arrays.copyOf(capacities, dirCount * 2);
+                usables = Arrays.copyOf(usables, dirCount * 2);
+            }
+            dirs[dirCount] = path;
+            capacities[dirCount] = capacity;
+            usables[dirCount] = usable;
+            return dirCount++;
+        }
+
+        /**
+         * @param dir the index of the log directory of the replica
+         * @param growth the growth of the replica in bytes per second
+         */
+        public Builder addReplica(final String topic, final int partition, final int dir,
+                                  final long size, final double growth) {
+            if (dir < 0 || dir >= dirCount) {
+                throw new IllegalArgumentException("Unknown log directory " + dir);
+            }
+            if (replicaCount == topics.length) {
+                final int length = replicaCount * 2;
+                topics = Arrays.copyOf(topics, length);
+                partitions = Arrays.copyOf(partitions, length);
+                replicaDirs = Arrays.copyOf(replicaDirs, length);
+                sizes = Arrays.copyOf(sizes, length);
+                growths = Arrays.copyOf(growths, length);
+            }
+            topics[replicaCount] = topic;
+            partitions[replicaCount] = partition;
+            replicaDirs[replicaCount] = dir;
+            sizes[replicaCount] = size;
+            growths[replicaCount] = growth;
+            replicaCount++;
+            return this;
+        }
+
+        public ReplicaSnapshot build() {
+            return new ReplicaSnapshot(this);
+        }
+    }
+}
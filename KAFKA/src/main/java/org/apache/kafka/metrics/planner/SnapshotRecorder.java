@@ -0,0 +1,372 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.planner;
+
+import org.apache.kafka.metrics.reporter.ReporterCatalog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records a {@link ReplicaSnapshot} of the broker it runs on.
+ *
+ * The replicas of a log directory are the "&lt;topic&gt;-&lt;partition&gt;" directories in it.
+ * Their sizes are read twice, an interval apart, to compute their growth rates. Sizes are
+ * read from the Size gauges of the metrics endpoint of
+ * org.apache.kafka.metrics.reporter.CatalogMetricsReporter, and from the sizes of the
+ * files of the partition directory for the replicas it does not report individually, or
+ * when there is no endpoint.
+ */
+public final class SnapshotRecorder {
+
+    private static final String SIZE = "Size";
+    private static final String VALUE = "value";
+    private static final String REPLICA_GROUP_PREFIX = ReporterCatalog.REPLICA_ROOT + ".partition.";
+    private static final String TOPIC_SCOPE = ".topic.";
+    private static final int TIMEOUT_MS = 30000;
+
+    private final List<String> logDirs;
+    private final String metricsUrl;
+
+    /**
+     * @param logDirs the log directories of the broker
+     * @param metricsUrl the URL of the metrics endpoint, or null to read the sizes from disk
+     */
+    public SnapshotRecorder(final List<String> logDirs, final String metricsUrl) {
+        this.logDirs = logDirs;
+        this.metricsUrl = metricsUrl;
+    }
+
+    /**
+     * Record the replicas of the broker.
+     * @param intervalSeconds the time between the two reads of the sizes of the replicas
+     */
+    public ReplicaSnapshot record(final int intervalSeconds) throws IOException, InterruptedException {
+        final ReplicaSnapshot.Builder builder = new ReplicaSnapshot.Builder();
+        final List<File> partitionDirs = new ArrayList<File>();
+        final List<Integer> replicaDirs = new ArrayList<Integer>();
+        for (String path : logDirs) {
+            final File logDir = new File(path);
+            // Both are 0 for a log directory that does not exist
+            final long capacity = logDir.getTotalSpace();
+            final int dir = builder.addDir(path, capacity,
+                    capacity > 0 ? logDir.getUsableSpace() : ReplicaSnapshot.UNKNOWN_USABLE);
+            final File[] children = logDir.listFiles();
+            if (children == null) {
+                continue;
+            }
+            for (File child : children) {
+                if (child.isDirectory() && partitionOf(child.getName()) >= 0) {
+                    partitionDirs.add(child);
+                    replicaDirs.add(dir);
+                }
+            }
+        }
+
+        final long start = System.nanoTime();
+        final long[] firstSizes = readSizes(partitionDirs);
+        Thread.sleep(intervalSeconds * 1000L);
+        final long[] sizes = readSizes(partitionDirs);
+        final double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        for (int replica = 0; replica < partitionDirs.size(); replica++) {
+            final String name = partitionDirs.get(replica).getName();
+            final int separator = name.lastIndexOf('-');
+            final double growth = elapsedSeconds > 0 ? (sizes[replica] - firstSizes[replica]) / elapsedSeconds : 0;
+            builder.addReplica(name.substring(0, separator), partitionOf(name), replicaDirs.get(replica),
+                    sizes[replica], growth);
+        }
+        return builder.build();
+    }
+
+    private long[] readSizes(final List<File> partitionDirs) throws IOException {
+        final Map<String, Double> reported = metricsUrl == null
+                ? new HashMap<String, Double>()
+                : readReportedSizes(metricsUrl);
+        final long[] ret = new long[partitionDirs.size()];
+        for (int replica = 0; replica < ret.length; replica++) {
+            final String name = partitionDirs.get(replica).getName();
+            final int separator = name.lastIndexOf('-');
+            final Double size = reported.get(REPLICA_GROUP_PREFIX + name.substring(separator + 1)
+                    + TOPIC_SCOPE + name.substring(0, separator).replace('.', '_'));
+            ret[replica] = size != null ? size.longValue() : sizeOnDisk(partitionDirs.get(replica));
+        }
+        return ret;
+    }
+
+    /**
+     * The partition of a partition directory. Partitions being moved or deleted have a
+     * suffix after their partition and are skipped.
+     * @return the partition, or -1 if the directory is not a partition directory
+     */
+    static int partitionOf(final String name) {
+        final int separator = name.lastIndexOf('-');
+        if (separator <= 0 || separator == name.length() - 1 || name.length() - separator > 10) {
+            return -1;
+        }
+        for (int i = separator + 1; i < name.length(); i++) {
+            if (name.charAt(i) < '0' || name.charAt(i) > '9') {
+                return -1;
+            }
+        }
+        return Integer.parseInt(name.substring(separator + 1));
+    }
+
+    private static long sizeOnDisk(final File partitionDir) {
+        long ret = 0;
+        final File[] files = partitionDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                ret += file.length();
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Read the Size gauges of the replicas from the metrics endpoint, keyed by group.
+     */
+    static Map<String, Double> readReportedSizes(final String url) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final InputStream in = connection.getInputStream();
+        try {
+            final byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                body.write(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return parseReportedSizes(body.toString("UTF-8"));
+    }
+
+    /**
+     * Read the Size gauges of the replicas from a render of the metrics endpoint, which
+     * groups the metrics by group and then by name.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Double> parseReportedSizes(final String json) throws IOException {
+        final Map<String, Double> ret = new HashMap<String, Double>();
+        final Object root = new JsonParser(json).parse();
+        if (!(root instanceof Map)) {
+            throw new IOException("Expected the metrics to be a JSON object");
+        }
+        for (Map.Entry<String, Object> group : ((Map<String, Object>) root).entrySet()) {
+            if (!group.getKey().startsWith(REPLICA_GROUP_PREFIX) || !(group.getValue() instanceof Map)) {
+                continue;
+            }
+            final Object metric = ((Map<String, Object>) group.getValue()).get(SIZE);
+            if (metric instanceof Map) {
+                final Object value = ((Map<String, Object>) metric).get(VALUE);
+                if (value instanceof Double) {
+                    ret.put(group.getKey(), (Double) value);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Parses the JSON the metrics endpoint renders into maps, lists, strings, doubles,
+     * booleans and nulls.
+     */
+    private static final class JsonParser {
+        private final String json;
+        private int position;
+
+        JsonParser(final String json) {
+            this.json = json;
+        }
+
+        Object parse() throws IOException {
+            final Object ret = value();
+            skipSpaces();
+            if (position != json.length()) {
+                throw error("Unexpected content after the value");
+            }
+            return ret;
+        }
+
+        private Object value() throws IOException {
+            skipSpaces();
+            if (position == json.length()) {
+                throw error("Unexpected end");
+            }
+            final char c = json.charAt(position);
+            if (c == '{') {
+                return object();
+            } else if (c == '[') {
+                return array();
+            } else if (c == '"') {
+                return string();
+            } else if (json.startsWith("null", position)) {
+                position += 4;
+                return null;
+            } else if (json.startsWith("true", position)) {
+                position += 4;
+                return Boolean.TRUE;
+            } else if (json.startsWith("false", position)) {
+                position += 5;
+                return Boolean.FALSE;
+            }
+            return number();
+        }
+
+        private Map<String, Object> object() throws IOException {
+            final Map<String, Object> ret = new HashMap<String, Object>();
+            position++;
+            skipSpaces();
+            if (peek() == '}') {
+                position++;
+                return ret;
+            }
+            while (true) {
+                skipSpaces();
+                final String key = string();
+                skipSpaces();
+                expect(':');
+                ret.put(key, value());
+                skipSpaces();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect('}');
+                    return ret;
+                }
+            }
+        }
+
+        private List<Object> array() throws IOException {
+            final List<Object> ret = new ArrayList<Object>();
+            position++;
+            skipSpaces();
+            if (peek() == ']') {
+                position++;
+                return ret;
+            }
+            while (true) {
+                ret.add(value());
+                skipSpaces();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect(']');
+                    return ret;
+                }
+            }
+        }
+
+        private String string() throws IOException {
+            expect('"');
+            final StringBuilder ret = new StringBuilder();
+            while (true) {
+                final char c = next();
+                if (c == '"') {
+                    return ret.toString();
+                } else if (c != '\\') {
+                    ret.append(c);
+                    continue;
+                }
+                final char escaped = next();
+                switch (escaped) {
+                    case 'b':
+                        ret.append('\b');
+                        break;
+                    case 'f':
+                        ret.append('\f');
+                        break;
+                    case 'n':
+                        ret.append('\n');
+                        break;
+                    case 'r':
+                        ret.append('\r');
+                        break;
+                    case 't':
+                        ret.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > json.length()) {
+                            throw error("Truncated unicode escape");
+                        }
+                        try {
+                            ret.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid unicode escape");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        ret.append(escaped);
+                }
+            }
+        }
+
+        private Double number() throws IOException {
+            final int start = position;
+            while (position < json.length() && "+-0123456789.eE".indexOf(json.charAt(position)) >= 0) {
+                position++;
+            }
+            try {
+                return Double.valueOf(json.substring(start, position));
+            } catch (NumberFormatException e) {
+                throw error("Invalid value");
+            }
+        }
+
+        private void skipSpaces() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                position++;
+            }
+        }
+
+        private char peek() throws IOException {
+            if (position == json.length()) {
+                throw error("Unexpected end");
+            }
+            return json.charAt(position);
+        }
+
+        private char next() throws IOException {
+            final char ret = peek();
+            position++;
+            return ret;
+        }
+
+        private void expect(final char c) throws IOException {
+            if (next() != c) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        private IOException error(final String message) {
+            return new IOException(message + " at position " + position + " of the metrics");
+        }
+    }
+}
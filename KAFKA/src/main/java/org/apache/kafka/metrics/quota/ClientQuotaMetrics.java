@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.quota;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
+import org.apache.kafka.metrics.UnitConstants;
+import org.apache.kafka.metrics.reporter.ReporterCatalog;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Quota metrics of a client of a broker, by user and client-id, bridged from the Kafka metrics
+ * of the quota managers by org.apache.kafka.metrics.reporter.ClientQuotaMetricsBridge.
+ *
+ * Note: The context is missing its "root" because that is generated per client in CM
+ */
+public class ClientQuotaMetrics {
+
+    private ClientQuotaMetrics() {}
+
+    /**
+     * The group and type the per client Yammer metrics are registered under in the broker.
+     */
+    public static final String YAMMER_ROOT = ReporterCatalog.CLIENT_QUOTA_ROOT;
+
+    private static final CodahaleMetric PRODUCE_BYTE_RATE_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("client_produce_byte_rate")
+                    .setLabel("Client Produce Byte Rate")
+                    .setDescription("The bytes the client produced to the broker per second, which its producer " +
+                            "quota applies to")
+                    .setNumerator(UnitConstants.bytes)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext("ProduceByteRate")
+                    .build();
+
+    private static final CodahaleMetric FETCH_BYTE_RATE_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("client_fetch_byte_rate")
+                    .setLabel("Client Fetch Byte Rate")
+                    .setDescription("The bytes the client fetched from the broker per second, which its consumer " +
+                            "quota applies to")
+                    .setNumerator(UnitConstants.bytes)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext("FetchByteRate")
+                    .build();
+
+    private static final CodahaleMetric PRODUCE_THROTTLE_TIME_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("client_produce_throttle_time_avg")
+                    .setLabel("Client Average Produce Throttle Time")
+                    .setDescription("The average time the produce responses of the client were delayed for " +
+                            "exceeding its producer quota")
+                    .setNumerator(UnitConstants.ms)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext("ProduceThrottleTimeMsAvg")
+                    .build();
+
+    private static final CodahaleMetric FETCH_THROTTLE_TIME_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("client_fetch_throttle_time_avg")
+                    .setLabel("Client Average Fetch Throttle Time")
+                    .setDescription("The average time the fetch responses of the client were delayed for " +
+                            "exceeding its consumer quota")
+                    .setNumerator(UnitConstants.ms)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext("FetchThrottleTimeMsAvg")
+                    .build();
+
+    private static final CodahaleMetric REQUEST_TIME_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("client_request_time_percent")
+                    .setLabel("Client Request Time Percentage")
+                    .setDescription("The percentage of the time of the network and request handler threads " +
+                            "spent on the requests of the client, which its request quota applies to. Kafka 0.11 " +
+                            "and later.")
+                    .setNumerator(UnitConstants.percent)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext("RequestTimePercent")
+                    .build();
+
+    private static final CodahaleMetric REQUEST_THROTTLE_TIME_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("client_request_throttle_time_avg")
+                    .setLabel("Client Average Request Throttle Time")
+                    .setDescription("The average time the responses of the client were delayed for exceeding its " +
+                            "request quota. Kafka 0.11 and later.")
+                    .setNumerator(UnitConstants.ms)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext("RequestThrottleTimeMsAvg")
+                    .build();
+
+    public static List<CodahaleMetric> getMetrics() {
+        return Arrays.asList(
+                PRODUCE_BYTE_RATE_METRIC,
+                FETCH_BYTE_RATE_METRIC,
+                PRODUCE_THROTTLE_TIME_METRIC,
+                FETCH_THROTTLE_TIME_METRIC,
+                REQUEST_TIME_METRIC,
+                REQUEST_THROTTLE_TIME_METRIC
+        );
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.kafka.metrics.replica;
 import com.cloudera.csd.tools.codahale.CodahaleMetric;
 import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
 import org.apache.kafka.metrics.UnitConstants;
+import org.apache.kafka.metrics.reporter.ReporterCatalog;
 
 import java.util.Arrays;
 import java.util.List;
@@ -31,6 +32,11 @@ public class ReplicaMetrics {
 
     private ReplicaMetrics() {}
 
+    /**
+     * The group and type the per replica Yammer metrics are registered under in the broker.
+     */
+    public static final String YAMMER_ROOT = ReporterCatalog.REPLICA_ROOT;
+
     private static final CodahaleMetric LOG_END_OFFSET_METRIC =
             new CodahaleMetric.Builder()
                     .setName("log_end_offset")
@@ -79,4 +85,15 @@ public class ReplicaMetrics {
                 SIZE_METRIC
         );
     }
+
+    /**
+     * Get the replica metrics of the cold collection tier, which change slowly enough
+     * for the in-broker reporter to snapshot them less often than the others.
+     */
+    public static List<CodahaleMetric> getColdMetrics() {
+        return Arrays.asList(
+                LOG_START_OFFSET_METRIC,
+                NUM_LOG_SEGMENTS_METRIC
+        );
+    }
 }
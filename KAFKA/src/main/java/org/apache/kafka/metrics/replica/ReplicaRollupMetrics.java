@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.replica;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
+import org.apache.kafka.metrics.UnitConstants;
+import org.apache.kafka.metrics.reporter.ReplicaRollup;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rollups of the replica metrics, computed by the in-broker reporter rather than registered
+ * by Kafka. The topic rollups include every replica of the topic on the broker, the other
+ * replicas rollup only the replicas the reporter does not export individually.
+ *
+ * Note: The context is missing its "root" because that is generated per entity in CM
+ */
+public class ReplicaRollupMetrics {
+
+    private ReplicaRollupMetrics() {}
+
+    private static final CodahaleMetric TOPIC_REPLICAS_SIZE_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("replicas_size")
+                    .setLabel("Replicas Size")
+                    .setDescription("Total size of the replicas of the topic on this broker")
+                    .setNumerator(UnitConstants.bytes)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(ReplicaRollup.REPLICAS_SIZE)
+                    .build();
+
+    private static final CodahaleMetric TOPIC_REPLICAS_SIZE_GROWTH_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("replicas_size_growth")
+                    .setLabel("Replicas Size Growth")
+                    .setDescription("Growth of the total size of the replicas of the topic on this broker")
+                    .setNumerator(UnitConstants.bytes)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(ReplicaRollup.REPLICAS_SIZE_GROWTH)
+                    .build();
+
+    private static final CodahaleMetric TOPIC_REPLICAS_LOG_END_OFFSET_GROWTH_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("replicas_log_end_offset_growth")
+                    .setLabel("Replicas Log End Offset Growth")
+                    .setDescription("Sum of the log end offset growth of the replicas of the topic on this broker")
+                    .setNumerator(UnitConstants.messages)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(ReplicaRollup.REPLICAS_LOG_END_OFFSET_GROWTH)
+                    .build();
+
+    private static final CodahaleMetric OTHER_REPLICAS_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("other_replicas")
+                    .setLabel("Other Replicas")
+                    .setDescription("Number of replicas on this broker that are not among the top replicas reported individually")
+                    .setNumerator(UnitConstants.replicas)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(ReplicaRollup.OTHER_REPLICAS)
+                    .build();
+
+    private static final CodahaleMetric OTHER_REPLICAS_SIZE_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("other_replicas_size")
+                    .setLabel("Other Replicas Size")
+                    .setDescription("Total size of the replicas on this broker that are not reported individually")
+                    .setNumerator(UnitConstants.bytes)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(ReplicaRollup.REPLICAS_SIZE)
+                    .build();
+
+    private static final CodahaleMetric OTHER_REPLICAS_SIZE_GROWTH_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("other_replicas_size_growth")
+                    .setLabel("Other Replicas Size Growth")
+                    .setDescription("Growth of the total size of the replicas on this broker that are not reported individually")
+                    .setNumerator(UnitConstants.bytes)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(ReplicaRollup.REPLICAS_SIZE_GROWTH)
+                    .build();
+
+    private static final CodahaleMetric OTHER_REPLICAS_LOG_END_OFFSET_GROWTH_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("other_replicas_log_end_offset_growth")
+                    .setLabel("Other Replicas Log End Offset Growth")
+                    .setDescription("Sum of the log end offset growth of the replicas on this broker that are not reported individually")
+                    .setNumerator(UnitConstants.messages)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(ReplicaRollup.REPLICAS_LOG_END_OFFSET_GROWTH)
+                    .build();
+
+    /**
+     * The rollups of the KAFKA_BROKER_TOPIC entity.
+     */
+    public static List<CodahaleMetric> getTopicMetrics() {
+        return Arrays.asList(
+                TOPIC_REPLICAS_SIZE_METRIC,
+                TOPIC_REPLICAS_SIZE_GROWTH_METRIC,
+                TOPIC_REPLICAS_LOG_END_OFFSET_GROWTH_METRIC
+        );
+    }
+
+    /**
+     * The rollups of the KAFKA_OTHER_REPLICAS entity.
+     */
+    public static List<CodahaleMetric> getOtherReplicasMetrics() {
+        return Arrays.asList(
+                OTHER_REPLICAS_METRIC,
+                OTHER_REPLICAS_SIZE_METRIC,
+                OTHER_REPLICAS_SIZE_GROWTH_METRIC,
+                OTHER_REPLICAS_LOG_END_OFFSET_GROWTH_METRIC
+        );
+    }
+}
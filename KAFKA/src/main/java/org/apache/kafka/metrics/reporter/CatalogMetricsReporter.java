@@ -0,0 +1,222 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.sun.net.httpserver.HttpServer;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.MetricsRegistry;
+import kafka.metrics.KafkaMetricsReporter;
+import kafka.utils.VerifiableProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * Kafka metrics reporter that only exports the metrics Cloudera Manager collects.
+ *
+ * The contexts of BrokerMetrics, TopicMetrics and ReplicaMetrics are resolved against the
+ * Yammer registry once, snapshotted into primitive arrays on a single thread every
+ * kafka.metrics.polling.interval.secs, and served as JSON on kafka.http.metrics.port.
+ * Metrics of the hot and cold collection tiers of the catalog are snapshotted every
+ * kafka.metrics.hot.polling.interval.secs and kafka.metrics.cold.polling.interval.secs.
+ * Consumers that request /api/metrics?mode=delta&amp;consumer=&lt;id&gt; only get what changed
+ * since their previous request, see {@link MetricsHttpHandler} and {@link DeltaExport}.
+ * It can replace nl.techop.kafka.KafkaHttpMetricsReporter, which walks and serializes the
+ * whole registry on every request.
+ *
+ * The other features the snapshots include are installed by their own installer: the JVM and
+ * ZooKeeper gauges by {@link MetricSetInstaller}, the log directory device statistics by
+ * {@link DiskStatsInstaller}, the HDR request time histograms by {@link LatencyInstaller},
+ * the throughput skew by {@link ThroughputSkewInstaller} and the consumer lag by
+ * {@link ConsumerLagInstaller}. Their threads are owned by {@link ReporterSchedulers}.
+ */
+public class CatalogMetricsReporter implements KafkaMetricsReporter, CatalogMetricsReporterMBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CatalogMetricsReporter.class);
+
+    static final String HOST_PROPERTY = "kafka.http.metrics.host";
+    static final String PORT_PROPERTY = "kafka.http.metrics.port";
+    static final String POLLING_INTERVAL_PROPERTY = "kafka.metrics.polling.interval.secs";
+    static final String HOT_POLLING_INTERVAL_PROPERTY = "kafka.metrics.hot.polling.interval.secs";
+    static final String COLD_POLLING_INTERVAL_PROPERTY = "kafka.metrics.cold.polling.interval.secs";
+    static final String REPLICA_TOP_K_PROPERTY = "kafka.metrics.replica.top.k";
+    static final String REPLICA_TOP_K_BY_PROPERTY = "kafka.metrics.replica.top.k.by";
+    static final String REPLICA_SKETCH_ERROR_PROPERTY = "kafka.metrics.replica.sketch.error";
+    static final String DELTA_KEYFRAME_INTERVAL_PROPERTY = "kafka.metrics.delta.keyframe.interval";
+
+    private static final String DEFAULT_HOST = "0.0.0.0";
+    private static final int DEFAULT_PORT = 24042;
+    private static final int DEFAULT_POLLING_INTERVAL_SECS = 10;
+    private static final int DEFAULT_HOT_POLLING_INTERVAL_SECS = 2;
+    private static final int DEFAULT_COLD_POLLING_INTERVAL_SECS = 60;
+    private static final int DEFAULT_REPLICA_TOP_K = 0;
+    private static final double DEFAULT_REPLICA_SKETCH_ERROR = 0.001;
+    private static final int DEFAULT_DELTA_KEYFRAME_INTERVAL = 30;
+
+    static final String METRICS_PATH = "/api/metrics";
+
+    private static final String SNAPSHOT_THREAD = "kafka-metrics-snapshot";
+
+    private final MetricsRegistry registry;
+
+    private ReporterCatalog catalog;
+    private String host;
+    private int port;
+    private int replicaTopK;
+    private boolean replicaByGrowth;
+    private double replicaSketchError;
+    private int deltaKeyframeInterval;
+    private int hotPollingIntervalSecs;
+    private int coldPollingIntervalSecs;
+    private LatencyHistograms latency;
+    private ThroughputSkew skew;
+    private ConsumerGroupLag lag;
+    private DiskStats disks;
+
+    private MetricSnapshotter snapshotter;
+    private ReporterSchedulers schedulers;
+    private HttpServer server;
+
+    public CatalogMetricsReporter() {
+        this(Metrics.defaultRegistry());
+    }
+
+    CatalogMetricsReporter(final MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public synchronized void init(final VerifiableProperties props) {
+        if (catalog != null) {
+            return;
+        }
+        try {
+            init(props, ReporterCatalog.load());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load the reporter catalog", e);
+        }
+    }
+
+    /**
+     * Initialize the reporter with a given catalog rather than the packaged one.
+     */
+    synchronized void init(final VerifiableProperties props, final ReporterCatalog reporterCatalog) {
+        if (catalog != null) {
+            return;
+        }
+        catalog = reporterCatalog;
+        host = props.getString(HOST_PROPERTY, DEFAULT_HOST);
+        port = props.getInt(PORT_PROPERTY, DEFAULT_PORT);
+        replicaTopK = props.getInt(REPLICA_TOP_K_PROPERTY, DEFAULT_REPLICA_TOP_K);
+        final String replicaTopKBy = props.getString(REPLICA_TOP_K_BY_PROPERTY, ReplicaRollup.BY_GROWTH);
+        if (!ReplicaRollup.BY_GROWTH.equals(replicaTopKBy) && !ReplicaRollup.BY_SIZE.equals(replicaTopKBy)) {
+            throw new IllegalArgumentException(REPLICA_TOP_K_BY_PROPERTY + " must be "
+                    + ReplicaRollup.BY_GROWTH + " or " + ReplicaRollup.BY_SIZE + ": " + replicaTopKBy);
+        }
+        replicaByGrowth = ReplicaRollup.BY_GROWTH.equals(replicaTopKBy);
+        replicaSketchError = props.getDouble(REPLICA_SKETCH_ERROR_PROPERTY, DEFAULT_REPLICA_SKETCH_ERROR);
+        // Validates the error bound now rather than on the first snapshot
+        SpaceSavingSketch.capacityFor(replicaSketchError);
+        deltaKeyframeInterval = props.getInt(DELTA_KEYFRAME_INTERVAL_PROPERTY, DEFAULT_DELTA_KEYFRAME_INTERVAL);
+        if (deltaKeyframeInterval < 1) {
+            throw new IllegalArgumentException(DELTA_KEYFRAME_INTERVAL_PROPERTY + " must be positive: "
+                    + deltaKeyframeInterval);
+        }
+
+        hotPollingIntervalSecs = props.getInt(HOT_POLLING_INTERVAL_PROPERTY, DEFAULT_HOT_POLLING_INTERVAL_SECS);
+        coldPollingIntervalSecs = props.getInt(COLD_POLLING_INTERVAL_PROPERTY, DEFAULT_COLD_POLLING_INTERVAL_SECS);
+        if (hotPollingIntervalSecs < 1 || coldPollingIntervalSecs < 1) {
+            throw new IllegalArgumentException(HOT_POLLING_INTERVAL_PROPERTY + " and " + COLD_POLLING_INTERVAL_PROPERTY
+                    + " must be positive: " + hotPollingIntervalSecs + ", " + coldPollingIntervalSecs);
+        }
+
+        final List<String> peers = ReporterPeers.parse(props);
+        MetricSetInstaller.install(registry, props);
+        disks = DiskStatsInstaller.install(props);
+        // Kafka creates its request histograms after the reporters are initialized
+        latency = LatencyInstaller.install(registry, catalog, peers);
+        skew = ThroughputSkewInstaller.install(props, peers);
+        lag = ConsumerLagInstaller.install(props, peers);
+        startReporter(props.getInt(POLLING_INTERVAL_PROPERTY, DEFAULT_POLLING_INTERVAL_SECS));
+    }
+
+    @Override
+    public synchronized void startReporter(final long pollingPeriodInSeconds) {
+        if (catalog == null) {
+            throw new IllegalStateException("The reporter was not initialized");
+        }
+        if (server != null) {
+            return;
+        }
+
+        snapshotter = new MetricSnapshotter(registry, catalog, latency, disks, skew, lag, replicaTopK,
+                replicaByGrowth, replicaSketchError);
+        registry.addListener(snapshotter);
+        schedulers = new ReporterSchedulers();
+        schedulers.schedule(SNAPSHOT_THREAD, snapshotter.getTask(ReporterCatalog.TIER_DEFAULT),
+                0, pollingPeriodInSeconds, "Unable to snapshot the metrics");
+        // Hot metrics are never collected less often, nor cold ones more often, than the others
+        final long hotPeriod = Math.min(hotPollingIntervalSecs, pollingPeriodInSeconds);
+        final long coldPeriod = Math.max(coldPollingIntervalSecs, pollingPeriodInSeconds);
+        schedulers.schedule(SNAPSHOT_THREAD, snapshotter.getTask(ReporterCatalog.TIER_HOT),
+                hotPeriod, hotPeriod, "Unable to snapshot the hot metrics");
+        schedulers.schedule(SNAPSHOT_THREAD, snapshotter.getTask(ReporterCatalog.TIER_COLD),
+                coldPeriod, coldPeriod, "Unable to snapshot the cold metrics");
+
+        try {
+            server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        } catch (IOException e) {
+            stopReporter();
+            throw new IllegalStateException("Unable to listen on " + host + ":" + port, e);
+        }
+        server.setExecutor(schedulers.getHttpExecutor());
+        server.createContext(METRICS_PATH, new MetricsHttpHandler(snapshotter, deltaKeyframeInterval));
+        LatencyInstaller.start(latency, server, schedulers, pollingPeriodInSeconds);
+        ThroughputSkewInstaller.start(skew, server, schedulers, pollingPeriodInSeconds);
+        ConsumerLagInstaller.start(lag, server, schedulers, pollingPeriodInSeconds);
+        server.start();
+
+        LOG.info("Serving metrics on {}:{}{} every {} seconds, hot ones every {} and cold ones every {}",
+                new Object[] { host, port, METRICS_PATH, pollingPeriodInSeconds, hotPeriod, coldPeriod });
+    }
+
+    @Override
+    public synchronized void stopReporter() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (schedulers != null) {
+            schedulers.shutdown();
+            schedulers = null;
+            ConsumerLagInstaller.stop(lag);
+        }
+        if (snapshotter != null) {
+            registry.removeListener(snapshotter);
+            snapshotter = null;
+        }
+    }
+
+    @Override
+    public String getMBeanName() {
+        return "kafka:type=" + getClass().getName();
+    }
+}
@@ -0,0 +1,371 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.apache.kafka.common.metrics.KafkaMetric;
+import org.apache.kafka.common.metrics.MetricsReporter;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Kafka metrics reporter, set with metric.reporters, that copies the quota metrics of the
+ * clients of the broker into the Yammer registry, so that they are exported by the Kafka
+ * metrics reporters of kafka.metrics.reporters.
+ *
+ * The quota managers register these metrics in Kafka's own metrics library, from Kafka 0.9,
+ * in the Produce, Fetch and, from Kafka 0.11, Request groups, tagged with the client-id and,
+ * from Kafka 0.10.1, the user. They are registered as gauges of
+ * kafka.server.ClientQuotaMetrics with the scope "user.&lt;user&gt;.clientId.&lt;id&gt;",
+ * where a missing or empty user or client-id is written as "*":
+ * <ul>
+ *   <li>ProduceByteRate, FetchByteRate: byte-rate, the bytes per second produced or fetched</li>
+ *   <li>ProduceThrottleTimeMsAvg, FetchThrottleTimeMsAvg, RequestThrottleTimeMsAvg:
+ *       throttle-time, the average time the responses of the client were delayed</li>
+ *   <li>RequestTimePercent: request-time, the percentage of the time of the network and
+ *       request handler threads spent on the requests of the client</li>
+ * </ul>
+ * Kafka only tracks the average throttle time of a client; the distribution of the throttle
+ * times is in the ThrottleTimeMs histograms of the requests.
+ *
+ * At most kafka.metrics.client.quota.max.clients clients are copied, the first ones Kafka
+ * registers metrics for; the slot of a client is given to a waiting one when Kafka expires
+ * its metrics. Clients are told apart by their user and client-id, but distinct ones can
+ * share a scope, such as the client-ids "app.a" and "app_a": a client whose scope is
+ * already copied for another client waits for that client to expire. All clients count
+ * towards the gauges without a scope:
+ * <ul>
+ *   <li>ThrottledClients: the number of clients with a throttle time</li>
+ *   <li>MaxThrottleTimeMs: the highest average throttle time of a client</li>
+ *   <li>TrackedClients, UntrackedClients: the number of clients copied and left out</li>
+ *   <li>ProduceThrottleQueueSize, FetchThrottleQueueSize, RequestThrottleQueueSize:
+ *       queue-size, the number of responses being delayed</li>
+ * </ul>
+ */
+public class ClientQuotaMetricsBridge implements MetricsReporter {
+
+    static final String YAMMER_GROUP = "kafka.server";
+    static final String YAMMER_TYPE = "ClientQuotaMetrics";
+
+    static final String MAX_CLIENTS_PROPERTY = "kafka.metrics.client.quota.max.clients";
+    static final int DEFAULT_MAX_CLIENTS = 200;
+
+    static final String USER_TAG = "user";
+    static final String CLIENT_ID_TAG = "client-id";
+    static final String ANY = "*";
+
+    static final String THROTTLED_CLIENTS = "ThrottledClients";
+    static final String MAX_THROTTLE_TIME = "MaxThrottleTimeMs";
+    static final String TRACKED_CLIENTS = "TrackedClients";
+    static final String UNTRACKED_CLIENTS = "UntrackedClients";
+
+    private static final String[] KAFKA_GROUPS = { "Produce", "Fetch", "Request" };
+    private static final String[] KAFKA_RATE_NAMES = { "byte-rate", "byte-rate", "request-time" };
+    private static final String THROTTLE_TIME = "throttle-time";
+    private static final String QUEUE_SIZE = "queue-size";
+
+    // Indexed by group * 2, for the rate, and group * 2 + 1, for the throttle time
+    private static final String[] CLIENT_NAMES = {
+            "ProduceByteRate", "ProduceThrottleTimeMsAvg",
+            "FetchByteRate", "FetchThrottleTimeMsAvg",
+            "RequestTimePercent", "RequestThrottleTimeMsAvg" };
+    private static final String[] QUEUE_NAMES = {
+            "ProduceThrottleQueueSize", "FetchThrottleQueueSize", "RequestThrottleQueueSize" };
+    private static final String[] ROLLUP_NAMES = {
+            THROTTLED_CLIENTS, MAX_THROTTLE_TIME, TRACKED_CLIENTS, UNTRACKED_CLIENTS };
+
+    private final MetricsRegistry registry;
+    private int maxClients = DEFAULT_MAX_CLIENTS;
+
+    private final Map<List<String>, Client> clients = new ConcurrentHashMap<List<String>, Client>();
+    private final AtomicReferenceArray<KafkaMetric> queues = new AtomicReferenceArray<KafkaMetric>(QUEUE_NAMES.length);
+    // Guarded by this
+    private final Set<Client> waiting = new LinkedHashSet<Client>();
+    private final Set<MetricName> registered = new HashSet<MetricName>();
+    private final Set<String> trackedScopes = new HashSet<String>();
+    private volatile int trackedClients;
+
+    public ClientQuotaMetricsBridge() {
+        this(Metrics.defaultRegistry());
+    }
+
+    ClientQuotaMetricsBridge(final MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void configure(final Map<String, ?> configs) {
+        final Object value = configs.get(MAX_CLIENTS_PROPERTY);
+        if (value != null) {
+            maxClients = Integer.parseInt(value.toString().trim());
+            if (maxClients < 0) {
+                throw new IllegalArgumentException(MAX_CLIENTS_PROPERTY + " must not be negative");
+            }
+        }
+    }
+
+    @Override
+    public synchronized void init(final List<KafkaMetric> metrics) {
+        for (int i = 0; i < ROLLUP_NAMES.length; i++) {
+            final int rollup = i;
+            register(new MetricName(YAMMER_GROUP, YAMMER_TYPE, ROLLUP_NAMES[i]), new Gauge<Double>() {
+                @Override
+                public Double value() {
+                    return getRollup(rollup);
+                }
+            });
+        }
+        for (KafkaMetric metric : metrics) {
+            metricChange(metric);
+        }
+    }
+
+    @Override
+    public synchronized void metricChange(final KafkaMetric metric) {
+        final org.apache.kafka.common.MetricName kafkaName = metric.metricName();
+        final int group = indexOf(KAFKA_GROUPS, kafkaName.group());
+        if (group < 0) {
+            return;
+        }
+        if (QUEUE_SIZE.equals(kafkaName.name()) && kafkaName.tags().isEmpty()) {
+            // Kafka replaces a metric by registering it again, the gauge reads the latest one
+            if (queues.getAndSet(group, metric) == null) {
+                register(new MetricName(YAMMER_GROUP, YAMMER_TYPE, QUEUE_NAMES[group]), new Gauge<Double>() {
+                    @Override
+                    public Double value() {
+                        final KafkaMetric current = queues.get(group);
+                        return current == null ? Double.NaN : current.value();
+                    }
+                });
+            }
+            return;
+        }
+        final int index = clientIndex(group, kafkaName.name());
+        final String clientId = kafkaName.tags().get(CLIENT_ID_TAG);
+        if (index < 0 || clientId == null) {
+            return;
+        }
+        final String user = kafkaName.tags().get(USER_TAG);
+        final List<String> key = toKey(user, clientId);
+        Client client = clients.get(key);
+        if (client == null) {
+            client = new Client(key, toScope(user, clientId));
+            clients.put(key, client);
+            if (trackedClients < maxClients && trackedScopes.add(client.scope)) {
+                client.tracked = true;
+                trackedClients++;
+            } else {
+                waiting.add(client);
+            }
+        }
+        if (client.metrics.getAndSet(index, metric) == null) {
+            client.count++;
+            if (client.tracked) {
+                registerClientMetric(client, index);
+            }
+        }
+    }
+
+    // Declared by MetricsReporter from Kafka 0.9, the pinned 0.8.2 clients never call it
+    public synchronized void metricRemoval(final KafkaMetric metric) {
+        final org.apache.kafka.common.MetricName kafkaName = metric.metricName();
+        final int group = indexOf(KAFKA_GROUPS, kafkaName.group());
+        if (group < 0) {
+            return;
+        }
+        if (QUEUE_SIZE.equals(kafkaName.name()) && kafkaName.tags().isEmpty()) {
+            if (queues.getAndSet(group, null) != null) {
+                unregister(new MetricName(YAMMER_GROUP, YAMMER_TYPE, QUEUE_NAMES[group]));
+            }
+            return;
+        }
+        final int index = clientIndex(group, kafkaName.name());
+        final String clientId = kafkaName.tags().get(CLIENT_ID_TAG);
+        if (index < 0 || clientId == null) {
+            return;
+        }
+        final Client client = clients.get(toKey(kafkaName.tags().get(USER_TAG), clientId));
+        if (client == null || client.metrics.getAndSet(index, null) == null) {
+            return;
+        }
+        client.count--;
+        if (client.tracked) {
+            unregister(toYammerName(client.scope, index));
+        }
+        if (client.count > 0) {
+            return;
+        }
+        // Kafka expired the metrics of the client, which had no requests for a while
+        clients.remove(client.key);
+        if (!client.tracked) {
+            waiting.remove(client);
+            return;
+        }
+        trackedClients--;
+        trackedScopes.remove(client.scope);
+        // Promote the first waiting client whose scope is not copied for another client
+        final Iterator<Client> next = waiting.iterator();
+        while (trackedClients < maxClients && next.hasNext()) {
+            final Client promoted = next.next();
+            if (!trackedScopes.add(promoted.scope)) {
+                continue;
+            }
+            next.remove();
+            promoted.tracked = true;
+            trackedClients++;
+            for (int i = 0; i < CLIENT_NAMES.length; i++) {
+                if (promoted.metrics.get(i) != null) {
+                    registerClientMetric(promoted, i);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (MetricName name : registered) {
+            registry.removeMetric(name);
+        }
+        registered.clear();
+        trackedScopes.clear();
+        clients.clear();
+        waiting.clear();
+        trackedClients = 0;
+        for (int i = 0; i < QUEUE_NAMES.length; i++) {
+            queues.set(i, null);
+        }
+    }
+
+    /**
+     * @return the value of a gauge without a scope, computed over all the clients
+     */
+    double getRollup(final int rollup) {
+        if (ROLLUP_NAMES[rollup].equals(TRACKED_CLIENTS)) {
+            return trackedClients;
+        }
+        if (ROLLUP_NAMES[rollup].equals(UNTRACKED_CLIENTS)) {
+            return Math.max(0, clients.size() - trackedClients);
+        }
+        int throttled = 0;
+        double max = 0;
+        for (Client client : clients.values()) {
+            double clientMax = 0;
+            for (int i = 1; i < CLIENT_NAMES.length; i += 2) {
+                final KafkaMetric metric = client.metrics.get(i);
+                final double value = metric == null ? Double.NaN : metric.value();
+                if (value > clientMax) {
+                    clientMax = value;
+                }
+            }
+            if (clientMax > 0) {
+                throttled++;
+                max = Math.max(max, clientMax);
+            }
+        }
+        return ROLLUP_NAMES[rollup].equals(THROTTLED_CLIENTS) ? throttled : max;
+    }
+
+    private void registerClientMetric(final Client client, final int index) {
+        register(toYammerName(client.scope, index), new Gauge<Double>() {
+            @Override
+            public Double value() {
+                final KafkaMetric current = client.metrics.get(index);
+                return current == null ? Double.NaN : current.value();
+            }
+        });
+    }
+
+    private void register(final MetricName name, final Gauge<Double> gauge) {
+        if (registered.add(name)) {
+            registry.newGauge(name, gauge);
+        }
+    }
+
+    private void unregister(final MetricName name) {
+        if (registered.remove(name)) {
+            registry.removeMetric(name);
+        }
+    }
+
+    static MetricName toYammerName(final String scope, final int index) {
+        return new MetricName(YAMMER_GROUP, YAMMER_TYPE, CLIENT_NAMES[index], scope);
+    }
+
+    /**
+     * @return the key of a client, where a missing user is the same as an empty one
+     */
+    static List<String> toKey(final String user, final String clientId) {
+        return Arrays.asList(user == null ? "" : user, clientId);
+    }
+
+    /**
+     * @return the scope of the metrics of a client, with the user and client-id scoped the
+     *         way Kafka scopes its topic metrics
+     */
+    static String toScope(final String user, final String clientId) {
+        return "user." + scopeOf(user) + ".clientId." + scopeOf(clientId);
+    }
+
+    private static String scopeOf(final String name) {
+        return name == null || name.isEmpty() ? ANY : ConsumerGroupLag.scopeOf(name);
+    }
+
+    /**
+     * @return the index of a per client metric, or -1 if it is not bridged
+     */
+    private static int clientIndex(final int group, final String name) {
+        if (KAFKA_RATE_NAMES[group].equals(name)) {
+            return group * 2;
+        }
+        return THROTTLE_TIME.equals(name) ? group * 2 + 1 : -1;
+    }
+
+    private static int indexOf(final String[] values, final String value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].equals(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final class Client {
+        final List<String> key;
+        final String scope;
+        final AtomicReferenceArray<KafkaMetric> metrics = new AtomicReferenceArray<KafkaMetric>(CLIENT_NAMES.length);
+        // Guarded by the bridge
+        int count;
+        boolean tracked;
+
+        Client(final List<String> key, final String scope) {
+            this.key = key;
+            this.scope = scope;
+        }
+    }
+}
@@ -0,0 +1,459 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.core.Metric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The lag of the consumer groups, reported by the active controller.
+ *
+ * Every snapshot publishes the LogEndOffset of the replicas of this broker, which are
+ * served on {@link #PATH}. While this broker is the active controller, the lag thread reads
+ * the log end offsets of its peers, keeping the highest of the replicas of each partition,
+ * and the offsets committed since its previous read from the {@link OffsetSource}. Both are
+ * joined in a {@link ConsumerLagTable}, which only updates the partitions whose offsets
+ * changed.
+ *
+ * The lag of each group is reported under {@link #ROOT}, scoped as "group.&lt;group&gt;",
+ * and the lag of all groups on each topic under {@link ThroughputSkew#CLUSTER_ROOT}, scoped
+ * as "topic.&lt;topic&gt;". Group and topic names are scoped the way Kafka scopes topics, with
+ * dots replaced by underscores. Partitions whose log end offset no broker reported are left
+ * out of the lag and counted next to it, as the lag of the active controller without peers
+ * only covers its own replicas. Groups and topics that got their first or lost their last
+ * committed offset are added or removed when the index is rebuilt.
+ */
+public final class ConsumerGroupLag {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConsumerGroupLag.class);
+
+    public static final String ROOT = "kafka.server.ConsumerGroupMetrics";
+
+    public static final String TOTAL_LAG = "TotalLag";
+    public static final String MAX_LAG = "MaxLag";
+    public static final String PARTITIONS = "Partitions";
+    public static final String UNKNOWN_LAG_PARTITIONS = "UnknownLagPartitions";
+    public static final String TOPIC_TOTAL_LAG = "ConsumerTotalLag";
+    public static final String TOPIC_MAX_LAG = "ConsumerMaxLag";
+    public static final String TOPIC_UNKNOWN_LAG_PARTITIONS = "ConsumerUnknownLagPartitions";
+
+    private static final String[] GROUP_NAMES = { TOTAL_LAG, MAX_LAG, PARTITIONS, UNKNOWN_LAG_PARTITIONS };
+    private static final String[] TOPIC_NAMES = { TOPIC_TOTAL_LAG, TOPIC_MAX_LAG, TOPIC_UNKNOWN_LAG_PARTITIONS };
+
+    static final String PATH = "/api/offsets";
+
+    private static final String GROUP_GROUP_PREFIX = ROOT + ".group.";
+    private static final String TOPIC_GROUP_PREFIX = ThroughputSkew.CLUSTER_ROOT + ".topic.";
+    private static final String REPLICA_GROUP_PREFIX = ReporterCatalog.REPLICA_ROOT + ".partition.";
+    private static final String TOPIC_SCOPE = ".topic.";
+    private static final String LOG_END_OFFSET = "LogEndOffset";
+
+    private static final int TIMEOUT_MS = 5000;
+
+    private final List<String> peers;
+    private final int brokerId;
+    private final OffsetSource source;
+
+    private volatile LocalOffsets localOffsets;
+    private volatile boolean controller;
+
+    // Lag thread state
+    private final ConsumerLagTable table = new ConsumerLagTable();
+    private final OffsetSource.Listener listener = new OffsetSource.Listener() {
+        @Override
+        public void reset() {
+            table.clear();
+        }
+
+        @Override
+        public void committed(final String group, final String topic, final int partition, final long offset) {
+            table.setCommitted(scopeOf(group), scopeOf(topic), partition, offset);
+        }
+
+        @Override
+        public void removed(final String group, final String topic, final int partition) {
+            table.removeCommitted(scopeOf(group), scopeOf(topic), partition);
+        }
+    };
+    private int publishedTableVersion = -1;
+
+    private volatile Results results = new Results(new String[0], new double[0], new String[0], new double[0], 0);
+
+    /**
+     * @param peers the host:port of the reporters of the other brokers, or an empty list
+     * @param brokerId the id of this broker, to recognize it among the peers
+     * @param source the committed offsets, or null to not report the lag
+     */
+    ConsumerGroupLag(final List<String> peers, final int brokerId, final OffsetSource source) {
+        this.peers = peers;
+        this.brokerId = brokerId;
+        this.source = source;
+    }
+
+    boolean isEnabled() {
+        return source != null;
+    }
+
+    /**
+     * Add the lag slots of the groups and topics of the last merge to the resolved metrics.
+     * Rollup slots have no metric.
+     */
+    void addSlots(final SortedMap<String, SortedMap<String, Metric>> resolved) {
+        final Results merged = results;
+        for (String group : merged.groups) {
+            addSlots(resolved, GROUP_GROUP_PREFIX + group, GROUP_NAMES);
+        }
+        for (String topic : merged.topics) {
+            addSlots(resolved, TOPIC_GROUP_PREFIX + topic, TOPIC_NAMES);
+        }
+    }
+
+    private static void addSlots(final SortedMap<String, SortedMap<String, Metric>> resolved, final String group,
+                                 final String[] names) {
+        SortedMap<String, Metric> metrics = resolved.get(group);
+        if (metrics == null) {
+            metrics = new TreeMap<String, Metric>();
+            resolved.put(group, metrics);
+        }
+        for (String name : names) {
+            metrics.put(name, null);
+        }
+    }
+
+    /**
+     * Find the slots of an index that the log end offsets are read from and the lag is
+     * written to.
+     */
+    Binding bind(final SnapshotIndex index) {
+        return new Binding(index, results);
+    }
+
+    /**
+     * Write the log end offsets of the replicas of the last snapshot.
+     */
+    void write(final DataOutput out) throws IOException {
+        final LocalOffsets offsets = localOffsets;
+        out.writeInt(brokerId);
+        if (offsets == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(offsets.topics.length);
+        for (int i = 0; i < offsets.topics.length; i++) {
+            out.writeUTF(offsets.topics[i]);
+            out.writeInt(offsets.partitions[i]);
+            out.writeLong(offsets.logEndOffsets[i]);
+        }
+    }
+
+    /**
+     * Update the lag from the log end offsets of this broker and of its peers and from the
+     * committed offsets, and publish it. Brokers other than the active controller forget the
+     * committed offsets and publish no lag. Runs on its own thread because peers and the
+     * offset source may be slow to answer.
+     */
+    void merge() {
+        if (!controller) {
+            table.clear();
+            source.close();
+            publish();
+            return;
+        }
+        table.beginLogEndOffsets();
+        final LocalOffsets offsets = localOffsets;
+        if (offsets != null) {
+            for (int i = 0; i < offsets.topics.length; i++) {
+                if (offsets.logEndOffsets[i] >= 0) {
+                    table.offerLogEndOffset(offsets.topics[i], offsets.partitions[i], offsets.logEndOffsets[i]);
+                }
+            }
+        }
+        for (String peer : peers) {
+            try {
+                readPeer(peer);
+            } catch (IOException e) {
+                LOG.warn("Unable to read log end offsets from " + peer + ", the lag of its partitions is unknown", e);
+            }
+        }
+        table.endLogEndOffsets();
+        try {
+            source.read(listener);
+        } catch (IOException e) {
+            LOG.warn("Unable to read the committed offsets, reporting the offsets read before", e);
+        }
+        publish();
+    }
+
+    private void readPeer(final String peer) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL("http://" + peer + PATH).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        final InputStream in = connection.getInputStream();
+        try {
+            final DataInputStream data = new DataInputStream(in);
+            if (data.readInt() == brokerId) {
+                // This broker is in its own peer list
+                return;
+            }
+            final int count = data.readInt();
+            for (int i = 0; i < count; i++) {
+                final String topic = data.readUTF();
+                final int partition = data.readInt();
+                final long logEndOffset = data.readLong();
+                if (logEndOffset >= 0) {
+                    table.offerLogEndOffset(topic, partition, logEndOffset);
+                }
+            }
+        } finally {
+            in.close();
+            connection.disconnect();
+        }
+    }
+
+    private void publish() {
+        final List<String> groups = new ArrayList<String>();
+        final List<Integer> groupIds = new ArrayList<Integer>();
+        for (int groupId = 0; groupId < table.getGroupCapacity(); groupId++) {
+            if (table.getGroupName(groupId) != null) {
+                groups.add(table.getGroupName(groupId));
+                groupIds.add(groupId);
+            }
+        }
+        final double[] groupValues = new double[groups.size() * GROUP_NAMES.length];
+        for (int i = 0; i < groups.size(); i++) {
+            final int groupId = groupIds.get(i);
+            groupValues[i * GROUP_NAMES.length] = lagValue(table.getGroupTotalLag(groupId));
+            groupValues[i * GROUP_NAMES.length + 1] = lagValue(table.getGroupMaxLag(groupId));
+            groupValues[i * GROUP_NAMES.length + 2] = table.getGroupPartitions(groupId);
+            groupValues[i * GROUP_NAMES.length + 3] = table.getGroupUnknownLags(groupId);
+        }
+
+        final List<String> topics = new ArrayList<String>();
+        final List<Double> topicLags = new ArrayList<Double>();
+        for (int topicId = 0; topicId < table.getTopicCount(); topicId++) {
+            if (table.getTopicEntries(topicId) > 0) {
+                topics.add(table.getTopicName(topicId));
+                topicLags.add(lagValue(table.getTopicTotalLag(topicId)));
+                topicLags.add(lagValue(table.getTopicMaxLag(topicId)));
+                topicLags.add((double) table.getTopicUnknownLags(topicId));
+            }
+        }
+        final double[] topicValues = new double[topicLags.size()];
+        for (int i = 0; i < topicValues.length; i++) {
+            topicValues[i] = topicLags.get(i);
+        }
+
+        final Results previous = results;
+        final String[] groupNames = groups.toArray(new String[groups.size()]);
+        final String[] topicNames = topics.toArray(new String[topics.size()]);
+        // Groups and topics keep their order while the table does not add or remove any
+        final boolean sameNames = table.getVersion() == publishedTableVersion
+                || (Arrays.equals(groupNames, previous.groups) && Arrays.equals(topicNames, previous.topics));
+        publishedTableVersion = table.getVersion();
+        results = new Results(groupNames, groupValues, topicNames, topicValues,
+                sameNames ? previous.version : previous.version + 1);
+    }
+
+    private static double lagValue(final long lag) {
+        return lag < 0 ? Double.NaN : lag;
+    }
+
+    /**
+     * Scope a group or topic name the way Kafka scopes its topic metrics.
+     */
+    static String scopeOf(final String name) {
+        return name.replace('.', '_');
+    }
+
+    void close() {
+        if (source != null) {
+            source.close();
+        }
+    }
+
+    /**
+     * The log end offsets of the replicas of this broker in a snapshot, -1 if unknown.
+     */
+    private static final class LocalOffsets {
+        final String[] topics;
+        final int[] partitions;
+        final long[] logEndOffsets;
+
+        LocalOffsets(final String[] topics, final int[] partitions) {
+            this.topics = topics;
+            this.partitions = partitions;
+            logEndOffsets = new long[topics.length];
+        }
+    }
+
+    /**
+     * The lag published by the lag thread. The version changes with the groups and topics.
+     */
+    private static final class Results {
+        final String[] groups;
+        final double[] groupValues;
+        final String[] topics;
+        final double[] topicValues;
+        final int version;
+
+        Results(final String[] groups, final double[] groupValues, final String[] topics, final double[] topicValues,
+                final int version) {
+            this.groups = groups;
+            this.groupValues = groupValues;
+            this.topics = topics;
+            this.topicValues = topicValues;
+            this.version = version;
+        }
+    }
+
+    /**
+     * The slots of an index, used on the snapshot thread.
+     */
+    final class Binding {
+        private final int version;
+        private final int[] logEndOffsetOffsets;
+        private int activeControllerOffset = -1;
+
+        // The log end offsets are published alternately from two buffers, which are only
+        // overwritten one polling interval after they were published
+        private final LocalOffsets first;
+        private final LocalOffsets second;
+
+        // The offsets of the lag of the groups and topics of the results, or -1
+        private final int[] groupOffsets;
+        private final int[] topicOffsets;
+
+        private Binding(final SnapshotIndex index, final Results bound) {
+            version = bound.version;
+            final Map<String, Integer> groups = new HashMap<String, Integer>();
+            for (int i = 0; i < bound.groups.length; i++) {
+                groups.put(GROUP_GROUP_PREFIX + bound.groups[i], i);
+            }
+            final Map<String, Integer> topics = new HashMap<String, Integer>();
+            for (int i = 0; i < bound.topics.length; i++) {
+                topics.put(TOPIC_GROUP_PREFIX + bound.topics[i], i);
+            }
+            groupOffsets = filled(bound.groups.length * GROUP_NAMES.length);
+            topicOffsets = filled(bound.topics.length * TOPIC_NAMES.length);
+
+            final List<String> replicaTopics = new ArrayList<String>();
+            final List<Integer> replicaPartitions = new ArrayList<Integer>();
+            final List<Integer> replicaOffsets = new ArrayList<Integer>();
+            for (int i = 0; i < index.size(); i++) {
+                final String group = index.groups[i];
+                final String name = index.names[i];
+                if (LOG_END_OFFSET.equals(name) && group.startsWith(REPLICA_GROUP_PREFIX)) {
+                    final int topicScope = group.indexOf(TOPIC_SCOPE, REPLICA_GROUP_PREFIX.length());
+                    if (topicScope < 0) {
+                        continue;
+                    }
+                    try {
+                        replicaPartitions.add(Integer.parseInt(group.substring(REPLICA_GROUP_PREFIX.length(), topicScope)));
+                    } catch (NumberFormatException e) {
+                        continue;
+                    }
+                    replicaTopics.add(group.substring(topicScope + TOPIC_SCOPE.length()));
+                    replicaOffsets.add(index.offsets[i]);
+                } else if (ThroughputSkew.CONTROLLER_GROUP.equals(group)
+                        && ThroughputSkew.ACTIVE_CONTROLLER_COUNT.equals(name)) {
+                    activeControllerOffset = index.offsets[i];
+                } else if (index.kinds[i] == SnapshotIndex.ROLLUP) {
+                    final Integer groupId = groups.get(group);
+                    final Integer topicId = topics.get(group);
+                    if (groupId != null) {
+                        final int position = Arrays.asList(GROUP_NAMES).indexOf(name);
+                        if (position >= 0) {
+                            groupOffsets[groupId * GROUP_NAMES.length + position] = index.offsets[i];
+                        }
+                    } else if (topicId != null) {
+                        final int position = Arrays.asList(TOPIC_NAMES).indexOf(name);
+                        if (position >= 0) {
+                            topicOffsets[topicId * TOPIC_NAMES.length + position] = index.offsets[i];
+                        }
+                    }
+                }
+            }
+
+            final int[] partitions = new int[replicaPartitions.size()];
+            logEndOffsetOffsets = new int[partitions.length];
+            for (int i = 0; i < partitions.length; i++) {
+                partitions[i] = replicaPartitions.get(i);
+                logEndOffsetOffsets[i] = replicaOffsets.get(i);
+            }
+            first = new LocalOffsets(replicaTopics.toArray(new String[partitions.length]), partitions);
+            second = new LocalOffsets(first.topics, partitions);
+        }
+
+        /**
+         * @return whether the lag thread added or removed groups or topics since the binding
+         */
+        boolean isStale() {
+            return results.version != version;
+        }
+
+        /**
+         * Publish the log end offsets of the replicas of this broker from the values of a
+         * snapshot, and write the last merged lag.
+         */
+        void update(final double[] values) {
+            final LocalOffsets offsets = localOffsets == first ? second : first;
+            for (int replica = 0; replica < logEndOffsetOffsets.length; replica++) {
+                final double value = values[logEndOffsetOffsets[replica]];
+                offsets.logEndOffsets[replica] = Double.isNaN(value) ? -1 : (long) value;
+            }
+            localOffsets = offsets;
+            controller = activeControllerOffset >= 0 && values[activeControllerOffset] == 1;
+
+            final Results merged = results;
+            if (merged.version != version) {
+                return;
+            }
+            for (int i = 0; i < groupOffsets.length; i++) {
+                if (groupOffsets[i] >= 0) {
+                    values[groupOffsets[i]] = merged.groupValues[i];
+                }
+            }
+            for (int i = 0; i < topicOffsets.length; i++) {
+                if (topicOffsets[i] >= 0) {
+                    values[topicOffsets[i]] = merged.topicValues[i];
+                }
+            }
+        }
+    }
+
+    private static int[] filled(final int length) {
+        final int[] ret = new int[length];
+        Arrays.fill(ret, -1);
+        return ret;
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.sun.net.httpserver.HttpServer;
+import kafka.utils.VerifiableProperties;
+
+import java.util.List;
+
+/**
+ * Installs the {@link ConsumerGroupLag} of the consumer groups that commit their offsets to
+ * ZooKeeper, read with a {@link ZooKeeperOffsetSource}.
+ *
+ * Every broker serves the log end offsets of its replicas on {@link ConsumerGroupLag#PATH}.
+ * When kafka.metrics.consumer.lag.enabled is set and zookeeper.connect is known, the lag is
+ * merged on its own thread, since the offset reads wait on ZooKeeper, and only the active
+ * controller reports it. It is off by default: the controller then watches every committed
+ * offset under /consumers, which is ZooKeeper load operators should opt in to.
+ */
+final class ConsumerLagInstaller {
+
+    static final String CONSUMER_LAG_PROPERTY = "kafka.metrics.consumer.lag.enabled";
+
+    private ConsumerLagInstaller() {}
+
+    static ConsumerGroupLag install(final VerifiableProperties props, final List<String> peers) {
+        final String zooKeeperConnect = props.getString(ZooKeeperOffsetSource.CONNECT_PROPERTY, null);
+        return new ConsumerGroupLag(peers, props.getInt(ThroughputSkewInstaller.BROKER_ID_PROPERTY, -1),
+                props.getBoolean(CONSUMER_LAG_PROPERTY, false) && zooKeeperConnect != null
+                        ? new ZooKeeperOffsetSource(zooKeeperConnect, props.getInt(
+                                ZooKeeperMetricSet.SESSION_TIMEOUT_PROPERTY, ZooKeeperMetricSet.DEFAULT_SESSION_TIMEOUT_MS))
+                        : null);
+    }
+
+    static void start(final ConsumerGroupLag lag, final HttpServer server, final ReporterSchedulers schedulers,
+                      final long pollingPeriodInSeconds) {
+        server.createContext(ConsumerGroupLag.PATH, new LogEndOffsetHttpHandler(lag));
+        if (lag.isEnabled()) {
+            schedulers.schedule("kafka-metrics-consumer-lag", new Runnable() {
+                @Override
+                public void run() {
+                    lag.merge();
+                }
+            }, pollingPeriodInSeconds, pollingPeriodInSeconds, "Unable to compute the consumer lag");
+        }
+    }
+
+    /**
+     * Close the offset source, after the lag thread stopped.
+     */
+    static void stop(final ConsumerGroupLag lag) {
+        lag.close();
+    }
+}
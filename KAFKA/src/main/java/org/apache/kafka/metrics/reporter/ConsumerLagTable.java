@@ -0,0 +1,590 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The lag of consumer groups, joining their committed offsets with the log end offsets of
+ * the partitions, rolled up to the total and maximum lag of each group and of each topic.
+ *
+ * A partition of a topic has a slot with its log end offset, and a group that committed an
+ * offset for a partition has an entry with the offset and its lag. Entries are linked both
+ * to the other entries of their slot and to the other entries of their group, so a changed
+ * offset only updates the entries it affects and the rollups of their group and topic.
+ * Totals are kept exact. A maximum that decreases is rescanned when it is read, at most once
+ * per read however many of its entries changed. Freed groups and entries are reused.
+ *
+ * The lag of a partition whose log end offset is unknown is left out of the totals and
+ * maximums, and counted as unknown instead. All state is in primitive arrays. Not thread safe.
+ */
+final class ConsumerLagTable {
+
+    private static final int NONE = -1;
+    private static final long UNKNOWN = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Topics, which are never removed
+    private final Map<String, Integer> topicIds = new HashMap<String, Integer>();
+    private String[] topicNames = new String[INITIAL_CAPACITY];
+    private int[][] topicSlots = new int[INITIAL_CAPACITY][];
+    private int[] topicEntries = new int[INITIAL_CAPACITY];
+    private int[] topicLagged = new int[INITIAL_CAPACITY];
+    private long[] topicTotalLags = new long[INITIAL_CAPACITY];
+    private long[] topicMaxLags = new long[INITIAL_CAPACITY];
+    private boolean[] topicMaxStale = new boolean[INITIAL_CAPACITY];
+    private int topicCount;
+
+    // Partition slots, which are never removed
+    private int[] slotTopics = new int[INITIAL_CAPACITY];
+    private int[] slotFirstEntries = new int[INITIAL_CAPACITY];
+    private long[] logEndOffsets = new long[INITIAL_CAPACITY];
+    private long[] offeredLogEndOffsets = new long[INITIAL_CAPACITY];
+    private int[] offeredStamps = new int[INITIAL_CAPACITY];
+    private int slotCount;
+    private int offerStamp;
+
+    // Groups
+    private final Map<String, Integer> groupIds = new HashMap<String, Integer>();
+    private String[] groupNames = new String[INITIAL_CAPACITY];
+    private int[] groupFirstEntries = new int[INITIAL_CAPACITY];
+    private int[] groupEntries = new int[INITIAL_CAPACITY];
+    private int[] groupLagged = new int[INITIAL_CAPACITY];
+    private long[] groupTotalLags = new long[INITIAL_CAPACITY];
+    private long[] groupMaxLags = new long[INITIAL_CAPACITY];
+    private boolean[] groupMaxStale = new boolean[INITIAL_CAPACITY];
+    private int[] freeGroups = new int[INITIAL_CAPACITY];
+    private int freeGroupCount;
+    private int groupCount;
+
+    // Entries, linked to the other entries of their slot and of their group
+    private final EntryTable entryTable = new EntryTable();
+    private int[] entryGroups = new int[INITIAL_CAPACITY];
+    private int[] entrySlots = new int[INITIAL_CAPACITY];
+    private long[] committedOffsets = new long[INITIAL_CAPACITY];
+    private long[] lags = new long[INITIAL_CAPACITY];
+    private int[] nextInSlot = new int[INITIAL_CAPACITY];
+    private int[] previousInSlot = new int[INITIAL_CAPACITY];
+    private int[] nextInGroup = new int[INITIAL_CAPACITY];
+    private int[] previousInGroup = new int[INITIAL_CAPACITY];
+    private int entryCount;
+    private int firstFreeEntry = NONE;
+    private int liveEntries;
+
+    private int version;
+
+    /**
+     * Set the offset a group committed for a partition.
+     */
+    void setCommitted(final String group, final String topic, final int partition, final long offset) {
+        final int slot = slotOf(topic, partition, true);
+        Integer groupId = groupIds.get(group);
+        if (groupId == null) {
+            groupId = newGroup(group);
+        }
+        final int entry = entryTable.get(key(groupId, slot));
+        if (entry == NONE) {
+            newEntry(groupId, slot, offset);
+        } else if (committedOffsets[entry] != offset) {
+            committedOffsets[entry] = offset;
+            setLag(entry, lagOf(slot, offset));
+        }
+    }
+
+    /**
+     * Remove the offset a group committed for a partition, if any.
+     */
+    void removeCommitted(final String group, final String topic, final int partition) {
+        final Integer groupId = groupIds.get(group);
+        final int slot = slotOf(topic, partition, false);
+        if (groupId == null || slot == NONE) {
+            return;
+        }
+        final int entry = entryTable.get(key(groupId, slot));
+        if (entry != NONE) {
+            removeEntry(entry);
+        }
+    }
+
+    /**
+     * Remove all committed offsets. The log end offsets are kept.
+     */
+    void clear() {
+        if (liveEntries == 0) {
+            return;
+        }
+        for (int groupId = 0; groupId < groupCount; groupId++) {
+            while (groupNames[groupId] != null) {
+                removeEntry(groupFirstEntries[groupId]);
+            }
+        }
+    }
+
+    /**
+     * Start offering the log end offsets of the partitions. Partitions that are not offered
+     * before {@link #endLogEndOffsets()} get an unknown log end offset.
+     */
+    void beginLogEndOffsets() {
+        offerStamp++;
+    }
+
+    /**
+     * Offer the log end offset of a replica of a partition. The highest offer of a partition
+     * wins, which is the log end offset of its leader.
+     */
+    void offerLogEndOffset(final String topic, final int partition, final long logEndOffset) {
+        final int slot = slotOf(topic, partition, true);
+        if (offeredStamps[slot] != offerStamp || logEndOffset > offeredLogEndOffsets[slot]) {
+            offeredStamps[slot] = offerStamp;
+            offeredLogEndOffsets[slot] = logEndOffset;
+        }
+    }
+
+    /**
+     * Update the lag of the entries of the partitions whose log end offset changed.
+     * @return the number of partitions whose log end offset changed
+     */
+    int endLogEndOffsets() {
+        int ret = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            final long logEndOffset = offeredStamps[slot] == offerStamp ? offeredLogEndOffsets[slot] : UNKNOWN;
+            if (logEndOffset == logEndOffsets[slot]) {
+                continue;
+            }
+            logEndOffsets[slot] = logEndOffset;
+            ret++;
+            for (int entry = slotFirstEntries[slot]; entry != NONE; entry = nextInSlot[entry]) {
+                setLag(entry, lagOf(slot, committedOffsets[entry]));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return a number that changes whenever a group or topic gets its first committed
+     *         offset or loses its last one
+     */
+    int getVersion() {
+        return version;
+    }
+
+    int getEntryCount() {
+        return liveEntries;
+    }
+
+    /**
+     * @return the upper bound of the group ids
+     */
+    int getGroupCapacity() {
+        return groupCount;
+    }
+
+    /**
+     * @return the name of the group, or null if the group id is free
+     */
+    String getGroupName(final int groupId) {
+        return groupNames[groupId];
+    }
+
+    /**
+     * @return the number of partitions the group committed offsets for
+     */
+    int getGroupPartitions(final int groupId) {
+        return groupEntries[groupId];
+    }
+
+    /**
+     * @return the total lag of the partitions of the group with a known lag, or -1 if none
+     */
+    long getGroupTotalLag(final int groupId) {
+        return groupLagged[groupId] == 0 ? UNKNOWN : groupTotalLags[groupId];
+    }
+
+    /**
+     * @return the number of partitions of the group whose lag is unknown
+     */
+    int getGroupUnknownLags(final int groupId) {
+        return groupEntries[groupId] - groupLagged[groupId];
+    }
+
+    /**
+     * @return the highest lag of the partitions of the group, or -1 if none is known
+     */
+    long getGroupMaxLag(final int groupId) {
+        if (groupMaxStale[groupId]) {
+            groupMaxStale[groupId] = false;
+            long max = UNKNOWN;
+            for (int entry = groupFirstEntries[groupId]; entry != NONE; entry = nextInGroup[entry]) {
+                max = Math.max(max, lags[entry]);
+            }
+            groupMaxLags[groupId] = max;
+        }
+        return groupMaxLags[groupId];
+    }
+
+    int getTopicCount() {
+        return topicCount;
+    }
+
+    String getTopicName(final int topicId) {
+        return topicNames[topicId];
+    }
+
+    /**
+     * @return the number of offsets committed by all groups for the partitions of the topic
+     */
+    int getTopicEntries(final int topicId) {
+        return topicEntries[topicId];
+    }
+
+    /**
+     * @return the total lag of all groups on the topic, or -1 if none is known
+     */
+    long getTopicTotalLag(final int topicId) {
+        return topicLagged[topicId] == 0 ? UNKNOWN : topicTotalLags[topicId];
+    }
+
+    /**
+     * @return the number of offsets committed for the partitions of the topic whose lag is unknown
+     */
+    int getTopicUnknownLags(final int topicId) {
+        return topicEntries[topicId] - topicLagged[topicId];
+    }
+
+    /**
+     * @return the highest lag of a group on a partition of the topic, or -1 if none is known
+     */
+    long getTopicMaxLag(final int topicId) {
+        if (topicMaxStale[topicId]) {
+            topicMaxStale[topicId] = false;
+            long max = UNKNOWN;
+            for (int slot : topicSlots[topicId]) {
+                if (slot == NONE) {
+                    continue;
+                }
+                for (int entry = slotFirstEntries[slot]; entry != NONE; entry = nextInSlot[entry]) {
+                    max = Math.max(max, lags[entry]);
+                }
+            }
+            topicMaxLags[topicId] = max;
+        }
+        return topicMaxLags[topicId];
+    }
+
+    private long lagOf(final int slot, final long committedOffset) {
+        final long logEndOffset = logEndOffsets[slot];
+        return logEndOffset < 0 ? UNKNOWN : Math.max(0, logEndOffset - committedOffset);
+    }
+
+    /**
+     * Set the lag of an entry and update the rollups of its group and topic.
+     */
+    private void setLag(final int entry, final long lag) {
+        final long old = lags[entry];
+        if (old == lag) {
+            return;
+        }
+        lags[entry] = lag;
+        final int groupId = entryGroups[entry];
+        final int topicId = slotTopics[entrySlots[entry]];
+        if (old >= 0) {
+            groupTotalLags[groupId] -= old;
+            groupLagged[groupId]--;
+            topicTotalLags[topicId] -= old;
+            topicLagged[topicId]--;
+        }
+        if (lag >= 0) {
+            groupTotalLags[groupId] += lag;
+            groupLagged[groupId]++;
+            topicTotalLags[topicId] += lag;
+            topicLagged[topicId]++;
+        }
+        // A stale maximum is an upper bound until it is rescanned
+        if (lag > groupMaxLags[groupId]) {
+            groupMaxLags[groupId] = lag;
+        } else if (old == groupMaxLags[groupId]) {
+            groupMaxStale[groupId] = true;
+        }
+        if (lag > topicMaxLags[topicId]) {
+            topicMaxLags[topicId] = lag;
+        } else if (old == topicMaxLags[topicId]) {
+            topicMaxStale[topicId] = true;
+        }
+    }
+
+    /**
+     * The slot of a partition.
+     * @param create whether to add the slot, and its topic, if the partition has none
+     * @return the slot, or -1 if the partition has none and create is false
+     */
+    private int slotOf(final String topic, final int partition, final boolean create) {
+        Integer topicId = topicIds.get(topic);
+        if (topicId == null) {
+            if (!create) {
+                return NONE;
+            }
+            topicId = newTopic(topic);
+        }
+        int[] slots = topicSlots[topicId];
+        if (partition >= slots.length) {
+            if (!create) {
+                return NONE;
+            }
+            final int length = slots.length;
+            slots = Arrays.copyOf(slots, Math.max(partition + 1, length * 2));
+            Arrays.fill(slots, length, slots.length, NONE);
+            topicSlots[topicId] = slots;
+        }
+        if (slots[partition] == NONE && create) {
+            if (slotCount == slotTopics.length) {
+                final int capacity = slotCount * 2;
+                slotTopics = Arrays.copyOf(slotTopics, capacity);
+                slotFirstEntries = Arrays.copyOf(slotFirstEntries, capacity);
+                logEndOffsets = Arrays.copyOf(logEndOffsets, capacity);
+                offeredLogEndOffsets = Arrays.copyOf(offeredLogEndOffsets, capacity);
+                offeredStamps = Arrays.copyOf(offeredStamps, capacity);
+            }
+            slotTopics[slotCount] = topicId;
+            slotFirstEntries[slotCount] = NONE;
+            logEndOffsets[slotCount] = UNKNOWN;
+            offeredStamps[slotCount] = offerStamp - 1;
+            slots[partition] = slotCount++;
+        }
+        return slots[partition];
+    }
+
+    private int newTopic(final String topic) {
+        if (topicCount == topicNames.length) {
+            final int capacity = topicCount * 2;
+            topicNames = Arrays.copyOf(topicNames, capacity);
+            topicSlots = Arrays.copyOf(topicSlots, capacity);
+            topicEntries = Arrays.copyOf(topicEntries, capacity);
+            topicLagged = Arrays.copyOf(topicLagged, capacity);
+            topicTotalLags = Arrays.copyOf(topicTotalLags, capacity);
+            topicMaxLags = Arrays.copyOf(topicMaxLags, capacity);
+            topicMaxStale = Arrays.copyOf(topicMaxStale, capacity);
+        }
+        final int ret = topicCount++;
+        topicNames[ret] = topic;
+        topicSlots[ret] = new int[0];
+        topicMaxLags[ret] = UNKNOWN;
+        topicIds.put(topic, ret);
+        return ret;
+    }
+
+    private int newGroup(final String group) {
+        final int ret;
+        if (freeGroupCount > 0) {
+            ret = freeGroups[--freeGroupCount];
+        } else {
+            if (groupCount == groupNames.length) {
+                final int capacity = groupCount * 2;
+                groupNames = Arrays.copyOf(groupNames, capacity);
+                groupFirstEntries = Arrays.copyOf(groupFirstEntries, capacity);
+                groupEntries = Arrays.copyOf(groupEntries, capacity);
+                groupLagged = Arrays.copyOf(groupLagged, capacity);
+                groupTotalLags = Arrays.copyOf(groupTotalLags, capacity);
+                groupMaxLags = Arrays.copyOf(groupMaxLags, capacity);
+                groupMaxStale = Arrays.copyOf(groupMaxStale, capacity);
+                freeGroups = Arrays.copyOf(freeGroups, capacity);
+            }
+            ret = groupCount++;
+        }
+        groupNames[ret] = group;
+        groupFirstEntries[ret] = NONE;
+        groupEntries[ret] = 0;
+        groupLagged[ret] = 0;
+        groupTotalLags[ret] = 0;
+        groupMaxLags[ret] = UNKNOWN;
+        groupMaxStale[ret] = false;
+        groupIds.put(group, ret);
+        version++;
+        return ret;
+    }
+
+    private void newEntry(final int groupId, final int slot, final long offset) {
+        final int entry;
+        if (firstFreeEntry != NONE) {
+            entry = firstFreeEntry;
+            firstFreeEntry = nextInGroup[entry];
+        } else {
+            if (entryCount == entryGroups.length) {
+                final int capacity = entryCount * 2;
+                entryGroups = Arrays.copyOf(entryGroups, capacity);
+                entrySlots = Arrays.copyOf(entrySlots, capacity);
+                committedOffsets = Arrays.copyOf(committedOffsets, capacity);
+                lags = Arrays.copyOf(lags, capacity);
+                nextInSlot = Arrays.copyOf(nextInSlot, capacity);
+                previousInSlot = Arrays.copyOf(previousInSlot, capacity);
+                nextInGroup = Arrays.copyOf(nextInGroup, capacity);
+                previousInGroup = Arrays.copyOf(previousInGroup, capacity);
+            }
+            entry = entryCount++;
+        }
+        entryGroups[entry] = groupId;
+        entrySlots[entry] = slot;
+        committedOffsets[entry] = offset;
+        lags[entry] = UNKNOWN;
+        entryTable.put(key(groupId, slot), entry);
+
+        previousInSlot[entry] = NONE;
+        nextInSlot[entry] = slotFirstEntries[slot];
+        if (slotFirstEntries[slot] != NONE) {
+            previousInSlot[slotFirstEntries[slot]] = entry;
+        }
+        slotFirstEntries[slot] = entry;
+        previousInGroup[entry] = NONE;
+        nextInGroup[entry] = groupFirstEntries[groupId];
+        if (groupFirstEntries[groupId] != NONE) {
+            previousInGroup[groupFirstEntries[groupId]] = entry;
+        }
+        groupFirstEntries[groupId] = entry;
+
+        groupEntries[groupId]++;
+        if (topicEntries[slotTopics[slot]]++ == 0) {
+            version++;
+        }
+        liveEntries++;
+        setLag(entry, lagOf(slot, offset));
+    }
+
+    private void removeEntry(final int entry) {
+        setLag(entry, UNKNOWN);
+        final int groupId = entryGroups[entry];
+        final int slot = entrySlots[entry];
+        entryTable.remove(key(groupId, slot));
+
+        if (previousInSlot[entry] != NONE) {
+            nextInSlot[previousInSlot[entry]] = nextInSlot[entry];
+        } else {
+            slotFirstEntries[slot] = nextInSlot[entry];
+        }
+        if (nextInSlot[entry] != NONE) {
+            previousInSlot[nextInSlot[entry]] = previousInSlot[entry];
+        }
+        if (previousInGroup[entry] != NONE) {
+            nextInGroup[previousInGroup[entry]] = nextInGroup[entry];
+        } else {
+            groupFirstEntries[groupId] = nextInGroup[entry];
+        }
+        if (nextInGroup[entry] != NONE) {
+            previousInGroup[nextInGroup[entry]] = previousInGroup[entry];
+        }
+        nextInGroup[entry] = firstFreeEntry;
+        firstFreeEntry = entry;
+        liveEntries--;
+
+        if (--topicEntries[slotTopics[slot]] == 0) {
+            version++;
+        }
+        if (--groupEntries[groupId] == 0) {
+            groupIds.remove(groupNames[groupId]);
+            groupNames[groupId] = null;
+            freeGroups[freeGroupCount++] = groupId;
+            version++;
+        }
+    }
+
+    private static long key(final int groupId, final int slot) {
+        return ((long) groupId << 32) | (slot & 0xffffffffL);
+    }
+
+    /**
+     * Open addressing map of the entries by group and slot, with linear probing.
+     */
+    private static final class EntryTable {
+        private long[] keys = new long[INITIAL_CAPACITY * 2];
+        private int[] values = filled(INITIAL_CAPACITY * 2);
+        private int size;
+
+        int get(final long key) {
+            final int mask = keys.length - 1;
+            for (int i = indexOf(key, mask); values[i] != NONE; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return NONE;
+        }
+
+        void put(final long key, final int value) {
+            if (2 * (size + 1) > keys.length) {
+                resize();
+            }
+            final int mask = keys.length - 1;
+            int i = indexOf(key, mask);
+            while (values[i] != NONE && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (values[i] == NONE) {
+                size++;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        void remove(final long key) {
+            final int mask = keys.length - 1;
+            int i = indexOf(key, mask);
+            while (values[i] != NONE && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (values[i] == NONE) {
+                return;
+            }
+            size--;
+            // Shift back the following keys that probed past the removed one
+            int hole = i;
+            for (int j = (i + 1) & mask; values[j] != NONE; j = (j + 1) & mask) {
+                final int home = indexOf(keys[j], mask);
+                if (((j - home) & mask) >= ((j - hole) & mask)) {
+                    keys[hole] = keys[j];
+                    values[hole] = values[j];
+                    hole = j;
+                }
+            }
+            values[hole] = NONE;
+        }
+
+        private void resize() {
+            final long[] oldKeys = keys;
+            final int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = filled(oldKeys.length * 2);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != NONE) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int indexOf(final long key, final int mask) {
+            final long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        private static int[] filled(final int length) {
+            final int[] ret = new int[length];
+            Arrays.fill(ret, NONE);
+            return ret;
+        }
+    }
+}
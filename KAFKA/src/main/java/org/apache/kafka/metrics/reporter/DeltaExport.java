@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import java.util.Arrays;
+
+/**
+ * The values of the last delta export of a consumer, so that its next one only sends the
+ * gauges that changed and the difference of the counters and meters that did. A meter
+ * whose count did not change is still sent while its rates decay.
+ *
+ * Values are kept by context in an open addressing map of primitive arrays, {@link #WIDTH}
+ * values per context: the value of gauges and rollups, the count of counters, and the count
+ * and rates of meters, in their slot order. They survive the index being rebuilt when
+ * partitions move. Each slot of the index is bound to its position in the map once, and
+ * exports only read and write the arrays. Every keyframe interval exports, and after the
+ * index was rebuilt, the export is a keyframe that sends everything, so a consumer that
+ * missed an export or a removed metric catches up. Used by the single HTTP thread only.
+ */
+final class DeltaExport {
+
+    // A NaN that Double.doubleToLongBits never returns, marks contexts that were not exported yet
+    static final long MISSING = 0x7ff0000000000001L;
+
+    // The values kept per context, enough for the count and rates of a meter
+    static final int WIDTH = SnapshotIndex.METERED_WIDTH;
+
+    private final int keyframeInterval;
+
+    private SnapshotIndex index;
+    // The position of each slot in the map, or -1 if it is always exported in full
+    private int[] positions = new int[0];
+    private String[] keys = new String[0];
+    private long[] lastValues = new long[0];
+    private long[] pendingValues = new long[0];
+    private int exportsSinceKeyframe;
+    private boolean keyframe;
+
+    /**
+     * @param keyframeInterval the number of exports from one keyframe to the next
+     */
+    DeltaExport(final int keyframeInterval) {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("Keyframe interval must be positive: " + keyframeInterval);
+        }
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    /**
+     * Start an export.
+     * @param forceKeyframe whether the consumer asked for a keyframe
+     */
+    void beginExport(final boolean forceKeyframe) {
+        keyframe = forceKeyframe || exportsSinceKeyframe + 1 >= keyframeInterval;
+    }
+
+    /**
+     * Start rendering a snapshot of an export. Called again when the render is retried.
+     */
+    void beginRender(final SnapshotIndex snapshotIndex) {
+        if (snapshotIndex != index) {
+            bind(snapshotIndex);
+            keyframe = true;
+        }
+        System.arraycopy(lastValues, 0, pendingValues, 0, lastValues.length);
+    }
+
+    /**
+     * Remember the values of the last render as exported.
+     */
+    void commit() {
+        final long[] committed = lastValues;
+        lastValues = pendingValues;
+        pendingValues = committed;
+        exportsSinceKeyframe = keyframe ? 0 : exportsSinceKeyframe + 1;
+    }
+
+    boolean isKeyframe() {
+        return keyframe;
+    }
+
+    /**
+     * The position of a slot in the map, or -1 if the slot is always exported in full.
+     */
+    int positionOf(final int slot) {
+        return positions[slot];
+    }
+
+    /**
+     * The value bits last exported at a position, or {@link #MISSING}.
+     * @param field the value of the slot, 0 for its count or value
+     */
+    long lastValue(final int position, final int field) {
+        return lastValues[position * WIDTH + field];
+    }
+
+    void setValue(final int position, final int field, final long bits) {
+        pendingValues[position * WIDTH + field] = bits;
+    }
+
+    /**
+     * Rebuild the map for the delta exportable slots of a new index, keeping the last
+     * values of the contexts that are still registered.
+     */
+    private void bind(final SnapshotIndex snapshotIndex) {
+        int count = 0;
+        for (int i = 0; i < snapshotIndex.size(); i++) {
+            if (snapshotIndex.deltaExportable[i]) {
+                count++;
+            }
+        }
+        // At most half full, so probe sequences stay short
+        int capacity = 2;
+        while (capacity < count * 2) {
+            capacity <<= 1;
+        }
+
+        final String[] newKeys = new String[capacity];
+        final long[] newValues = new long[capacity * WIDTH];
+        final int[] newPositions = new int[snapshotIndex.size()];
+        for (int i = 0; i < snapshotIndex.size(); i++) {
+            if (!snapshotIndex.deltaExportable[i]) {
+                newPositions[i] = -1;
+                continue;
+            }
+            final String key = snapshotIndex.groups[i] + "::" + snapshotIndex.names[i];
+            final int position = probe(newKeys, key);
+            newKeys[position] = key;
+            final int previous = probe(keys, key);
+            if (previous >= 0 && keys[previous] != null) {
+                System.arraycopy(lastValues, previous * WIDTH, newValues, position * WIDTH, WIDTH);
+            } else {
+                Arrays.fill(newValues, position * WIDTH, (position + 1) * WIDTH, MISSING);
+            }
+            newPositions[i] = position;
+        }
+
+        index = snapshotIndex;
+        keys = newKeys;
+        lastValues = newValues;
+        pendingValues = new long[capacity * WIDTH];
+        positions = newPositions;
+    }
+
+    /**
+     * Find the position of a key, or the empty position it would be inserted at.
+     * @return the position, or -1 if the table is empty
+     */
+    private static int probe(final String[] table, final String key) {
+        if (table.length == 0) {
+            return -1;
+        }
+        final int mask = table.length - 1;
+        int position = mix(key.hashCode()) & mask;
+        while (table[position] != null && !table[position].equals(key)) {
+            position = (position + 1) & mask;
+        }
+        return position;
+    }
+
+    // Spread the bits of String.hashCode, which differ little between similar contexts
+    private static int mix(final int hash) {
+        final int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
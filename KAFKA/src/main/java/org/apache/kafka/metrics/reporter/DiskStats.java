@@ -0,0 +1,338 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The space and IO of the devices the log directories of the broker are on.
+ *
+ * The device of a log directory is the one mounted at the longest mount point that
+ * contains it, from /proc/self/mountinfo, and is resolved once. Its counters are read
+ * from /proc/diskstats on every update, into preallocated arrays. On other platforms,
+ * or for devices without IO statistics, the IO rates and times are NaN. Log directories
+ * on the same device report the same IO.
+ */
+final class DiskStats {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DiskStats.class);
+
+    static final String LOG_DIRS_PROPERTY = "log.dirs";
+    static final String LOG_DIR_PROPERTY = "log.dir";
+    static final String DEFAULT_LOG_DIR = "/tmp/kafka-logs";
+
+    private static final String MOUNT_INFO = "/proc/self/mountinfo";
+    private static final String DISK_STATS = "/proc/diskstats";
+    private static final int SECTOR_SIZE = 512;
+
+    // Fields of a /proc/diskstats line after the device numbers and name
+    private static final int READS = 0;
+    private static final int SECTORS_READ = 2;
+    private static final int READ_MS = 3;
+    private static final int WRITES = 4;
+    private static final int SECTORS_WRITTEN = 6;
+    private static final int WRITE_MS = 7;
+    private static final int FIELDS = 8;
+
+    private final String[] paths;
+    private final File[] dirs;
+    private final int[] majors;
+    private final int[] minors;
+    private final File diskStatsFile;
+
+    private final long[] counters;
+    private final long[] previous;
+    private final long[] fields = new long[FIELDS];
+    private final boolean[] found;
+    private byte[] buffer = new byte[16 * 1024];
+    private long timestamp;
+    private boolean primed;
+
+    final double[] readBytesRates;
+    final double[] writeBytesRates;
+    final double[] readTimes;
+    final double[] writeTimes;
+    final double[] usableBytes;
+    final double[] usablePercents;
+
+    DiskStats(final List<String> paths) {
+        this(paths, new File(MOUNT_INFO), new File(DISK_STATS));
+    }
+
+    DiskStats(final List<String> paths, final File mountInfoFile, final File diskStatsFile) {
+        this.paths = paths.toArray(new String[paths.size()]);
+        this.diskStatsFile = diskStatsFile;
+        final int size = this.paths.length;
+        dirs = new File[size];
+        majors = new int[size];
+        minors = new int[size];
+        counters = new long[size * FIELDS];
+        previous = new long[size * FIELDS];
+        found = new boolean[size];
+        readBytesRates = new double[size];
+        writeBytesRates = new double[size];
+        readTimes = new double[size];
+        writeTimes = new double[size];
+        usableBytes = new double[size];
+        usablePercents = new double[size];
+        Arrays.fill(majors, -1);
+        Arrays.fill(minors, -1);
+
+        final List<String[]> mounts = readMounts(mountInfoFile);
+        for (int dir = 0; dir < size; dir++) {
+            dirs[dir] = new File(this.paths[dir]);
+            String path;
+            try {
+                path = dirs[dir].getCanonicalPath();
+            } catch (IOException e) {
+                path = dirs[dir].getAbsolutePath();
+            }
+            int longest = -1;
+            for (String[] mount : mounts) {
+                final String mountPoint = mount[1];
+                if (mountPoint.length() > longest && contains(mountPoint, path)) {
+                    final int separator = mount[0].indexOf(':');
+                    majors[dir] = Integer.parseInt(mount[0].substring(0, separator));
+                    minors[dir] = Integer.parseInt(mount[0].substring(separator + 1));
+                    longest = mountPoint.length();
+                }
+            }
+        }
+    }
+
+    /**
+     * The log directories of the broker configuration, log.dirs or else log.dir.
+     */
+    static List<String> parseLogDirs(final String logDirs, final String logDir) {
+        final List<String> ret = new ArrayList<String>();
+        final String value = logDirs != null ? logDirs : logDir != null ? logDir : DEFAULT_LOG_DIR;
+        for (String path : value.split(",")) {
+            if (!path.trim().isEmpty()) {
+                ret.add(path.trim());
+            }
+        }
+        return ret;
+    }
+
+    int size() {
+        return paths.length;
+    }
+
+    String getPath(final int dir) {
+        return paths[dir];
+    }
+
+    File getDir(final int dir) {
+        return dirs[dir];
+    }
+
+    /**
+     * Read the usable space of the log directories and the counters of their devices, and
+     * compute the IO since the previous update.
+     */
+    void update() {
+        for (int dir = 0; dir < dirs.length; dir++) {
+            final long total = dirs[dir].getTotalSpace();
+            final long usable = dirs[dir].getUsableSpace();
+            usableBytes[dir] = total > 0 ? usable : Double.NaN;
+            usablePercents[dir] = total > 0 ? 100.0 * usable / total : Double.NaN;
+        }
+
+        final long now = System.nanoTime();
+        System.arraycopy(counters, 0, previous, 0, counters.length);
+        final boolean read = readCounters();
+        final double elapsedSeconds = (now - timestamp) / 1e9;
+        for (int dir = 0; dir < dirs.length; dir++) {
+            final int base = dir * FIELDS;
+            if (!read || !primed || !found[dir] || elapsedSeconds <= 0) {
+                readBytesRates[dir] = Double.NaN;
+                writeBytesRates[dir] = Double.NaN;
+                readTimes[dir] = Double.NaN;
+                writeTimes[dir] = Double.NaN;
+                continue;
+            }
+            final long reads = counters[base + READS] - previous[base + READS];
+            final long writes = counters[base + WRITES] - previous[base + WRITES];
+            readBytesRates[dir] = SECTOR_SIZE * (counters[base + SECTORS_READ] - previous[base + SECTORS_READ])
+                    / elapsedSeconds;
+            writeBytesRates[dir] = SECTOR_SIZE * (counters[base + SECTORS_WRITTEN] - previous[base + SECTORS_WRITTEN])
+                    / elapsedSeconds;
+            readTimes[dir] = reads > 0 ? (double) (counters[base + READ_MS] - previous[base + READ_MS]) / reads : 0;
+            writeTimes[dir] = writes > 0 ? (double) (counters[base + WRITE_MS] - previous[base + WRITE_MS]) / writes : 0;
+        }
+        primed = read;
+        timestamp = now;
+    }
+
+    /**
+     * Parse /proc/diskstats into the counters of the log directories without allocating
+     * once the buffer is large enough.
+     * @return false if the statistics could not be read
+     */
+    private boolean readCounters() {
+        int length = 0;
+        try {
+            final InputStream in = new FileInputStream(diskStatsFile);
+            try {
+                int n;
+                while ((n = in.read(buffer, length, buffer.length - length)) > 0) {
+                    length += n;
+                    if (length == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+
+        Arrays.fill(found, false);
+        int position = 0;
+        while (position < length) {
+            int end = position;
+            while (end < length && buffer[end] != '\n') {
+                end++;
+            }
+            parseLine(position, end);
+            position = end + 1;
+        }
+        return true;
+    }
+
+    private void parseLine(final int start, final int end) {
+        int position = skipSpaces(start, end);
+        final long major = parseLong(position, end);
+        position = skipSpaces(skipToken(position, end), end);
+        final long minor = parseLong(position, end);
+        // Skip the device name
+        position = skipSpaces(skipToken(position, end), end);
+        position = skipSpaces(skipToken(position, end), end);
+        for (int field = 0; field < FIELDS; field++) {
+            if (position >= end) {
+                return;
+            }
+            fields[field] = parseLong(position, end);
+            position = skipSpaces(skipToken(position, end), end);
+        }
+        for (int dir = 0; dir < majors.length; dir++) {
+            if (majors[dir] == major && minors[dir] == minor) {
+                System.arraycopy(fields, 0, counters, dir * FIELDS, FIELDS);
+                found[dir] = true;
+            }
+        }
+    }
+
+    private int skipSpaces(int position, final int end) {
+        while (position < end && (buffer[position] == ' ' || buffer[position] == '\t')) {
+            position++;
+        }
+        return position;
+    }
+
+    private int skipToken(int position, final int end) {
+        while (position < end && buffer[position] != ' ' && buffer[position] != '\t') {
+            position++;
+        }
+        return position;
+    }
+
+    private long parseLong(int position, final int end) {
+        long value = 0;
+        while (position < end && buffer[position] >= '0' && buffer[position] <= '9') {
+            value = value * 10 + (buffer[position] - '0');
+            position++;
+        }
+        return value;
+    }
+
+    /**
+     * @return the device number and mount point of every mount, or none if they could not be read
+     */
+    private static List<String[]> readMounts(final File mountInfoFile) {
+        final List<String[]> mounts = new ArrayList<String[]>();
+        try {
+            final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(mountInfoFile), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final String[] fields = line.split(" ");
+                    if (fields.length > 4 && fields[2].indexOf(':') > 0) {
+                        mounts.add(new String[] { fields[2], unescape(fields[4]) });
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            LOG.info("Unable to read {}, log directory IO is not reported: {}", mountInfoFile, e.toString());
+        } catch (NumberFormatException e) {
+            LOG.info("Unable to parse {}, log directory IO is not reported: {}", mountInfoFile, e.toString());
+        }
+        return mounts;
+    }
+
+    private static boolean contains(final String mountPoint, final String path) {
+        return path.equals(mountPoint) || "/".equals(mountPoint) || path.startsWith(mountPoint + "/");
+    }
+
+    /**
+     * Mount points escape spaces, tabs, newlines and backslashes as octal, for example \040.
+     */
+    static String unescape(final String mountPoint) {
+        if (mountPoint.indexOf('\\') < 0) {
+            return mountPoint;
+        }
+        final StringBuilder ret = new StringBuilder(mountPoint.length());
+        for (int i = 0; i < mountPoint.length(); i++) {
+            final char c = mountPoint.charAt(i);
+            if (c == '\\' && isOctal(mountPoint, i + 1, 3)) {
+                ret.append((char) Integer.parseInt(mountPoint.substring(i + 1, i + 4), 8));
+                i += 3;
+            } else {
+                ret.append(c);
+            }
+        }
+        return ret.toString();
+    }
+
+    private static boolean isOctal(final String s, final int start, final int length) {
+        if (start + length > s.length()) {
+            return false;
+        }
+        for (int i = start; i < start + length; i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '7') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import kafka.utils.VerifiableProperties;
+
+/**
+ * Creates the {@link DiskStats} of the log directories of the broker configuration, log.dirs
+ * or else log.dir.
+ *
+ * The statistics are read by the snapshotter thread with the default tier and rolled up by
+ * {@link LogDirectoryRollup}, so they need neither a thread nor an HTTP context.
+ */
+final class DiskStatsInstaller {
+
+    private DiskStatsInstaller() {}
+
+    static DiskStats install(final VerifiableProperties props) {
+        return new DiskStats(DiskStats.parseLogDirs(props.getString(DiskStats.LOG_DIRS_PROPERTY, null),
+                props.getString(DiskStats.LOG_DIR_PROPERTY, null)));
+    }
+}
@@ -0,0 +1,299 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.core.Metric;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Rolls the replica fetcher metrics up to their fetcher thread and to the broker.
+ *
+ * Kafka registers the byte and request rates of a fetcher thread as meters of
+ * kafka.server.FetcherStats, scoped as
+ * "brokerHost.&lt;host&gt;.brokerPort.&lt;port&gt;.clientId.&lt;thread&gt;", and the lag of every
+ * partition it fetches as a ConsumerLag gauge of kafka.server.FetcherLagMetrics, scoped as
+ * "clientId.&lt;thread&gt;.partition.&lt;id&gt;.topic.&lt;topic&gt;". The partition lags are read to
+ * compute the maximum lag of the thread and are not exported themselves.
+ *
+ * Fetcher threads that fetch with a SimpleConsumer, as in Kafka 0.8.2, time their fetch
+ * requests in the FetchRequestRateAndTimeMs timer of
+ * kafka.consumer.FetchRequestAndResponseMetrics, scoped as
+ * "brokerHost.&lt;host&gt;.brokerPort.&lt;port&gt;.clientId.&lt;thread&gt;" and, for all brokers, as
+ * "clientId.&lt;thread&gt;". The fetch time of a thread is the 99th percentile of that timer,
+ * and NaN without it. It includes the time the leader held the request for
+ * replica.fetch.wait.max.ms when the follower was caught up. The timers are read and not
+ * exported themselves.
+ *
+ * A rollup is built for every snapshot index, so it starts over when fetcher threads are
+ * added or removed.
+ */
+public final class FetcherRollup {
+
+    public static final String CONSUMER_LAG = "ConsumerLag";
+
+    // Contexts of the rollups of a fetcher thread, relative to the fetcher root
+    public static final String MAX_LAG = "MaxLag";
+    public static final String FETCH_TIME = "FetchRequestTimeMsP99";
+
+    // Contexts of the rollups of the broker, relative to the broker root
+    public static final String BROKER_BYTES = "ReplicaFetchersBytesPerSec";
+    public static final String BROKER_REQUESTS = "ReplicaFetchersRequestsPerSec";
+    public static final String BROKER_MAX_FETCH_TIME = "ReplicaFetchersMaxFetchRequestTimeMsP99";
+
+    public static final String BROKER_ROOT = ReporterCatalog.FETCHER_ROOT;
+
+    private static final String BYTES = "BytesPerSec";
+    private static final String REQUESTS = "RequestsPerSec";
+    public static final String FETCH_REQUEST_TIMER = "FetchRequestRateAndTimeMs";
+
+    // The 99th percentile of a timer, after its metered and the first eight sampled values
+    private static final int P99 = SnapshotIndex.METERED_WIDTH + 8;
+
+    private static final String FETCHER_GROUP_PREFIX = ReporterCatalog.FETCHER_ROOT + ".";
+    private static final String LAG_GROUP_PREFIX = ReporterCatalog.FETCHER_LAG_ROOT + ".clientId.";
+    private static final String TIMER_GROUP_PREFIX = ReporterCatalog.FETCHER_REQUEST_ROOT + ".";
+    private static final String BROKER_HOST_SCOPE = ".brokerHost.";
+    private static final String CLIENT_ID_SCOPE = ".clientId.";
+    private static final String PARTITION_SCOPE = ".partition.";
+
+    private final int[] bytesOffsets;
+    private final int[] requestsOffsets;
+    private final int[] maxLagOffsets;
+    private final int[] fetchTimeOffsets;
+    private final int[] timerOffsets;
+
+    // The fetch request timer slots, which are not exported
+    private final int[] timerSlots;
+
+    // The ConsumerLag slot of each partition and the fetcher thread it belongs to
+    private final int[] lagSlots;
+    private final int[] lagOffsets;
+    private final int[] lagFetchers;
+
+    private int brokerBytesOffset = -1;
+    private int brokerRequestsOffset = -1;
+    private int brokerMaxFetchTimeOffset = -1;
+
+    /**
+     * @param index the index, with the slots added by {@link #addSlots}
+     */
+    FetcherRollup(final SnapshotIndex index) {
+        final Map<String, Integer> fetchers = new HashMap<String, Integer>();
+        int lags = 0;
+        int timers = 0;
+        for (int i = 0; i < index.size(); i++) {
+            final String group = index.groups[i];
+            if (isFetcherGroup(group)) {
+                final String clientId = clientIdOf(group);
+                if (!fetchers.containsKey(clientId)) {
+                    fetchers.put(clientId, fetchers.size());
+                }
+            } else if (isLagSlot(index, i)) {
+                lags++;
+            } else if (isTimerSlot(index, i)) {
+                timers++;
+            }
+        }
+
+        bytesOffsets = filled(fetchers.size());
+        requestsOffsets = filled(fetchers.size());
+        maxLagOffsets = filled(fetchers.size());
+        fetchTimeOffsets = filled(fetchers.size());
+        timerOffsets = filled(fetchers.size());
+        timerSlots = new int[timers];
+        lagSlots = new int[lags];
+        lagOffsets = new int[lags];
+        lagFetchers = new int[lags];
+
+        int lag = 0;
+        int timer = 0;
+        for (int i = 0; i < index.size(); i++) {
+            final String group = index.groups[i];
+            final String name = index.names[i];
+            final int offset = index.offsets[i];
+            if (isFetcherGroup(group)) {
+                final int fetcher = fetchers.get(clientIdOf(group));
+                if (BYTES.equals(name) && index.kinds[i] == SnapshotIndex.METER) {
+                    bytesOffsets[fetcher] = offset;
+                } else if (REQUESTS.equals(name) && index.kinds[i] == SnapshotIndex.METER) {
+                    requestsOffsets[fetcher] = offset;
+                } else if (MAX_LAG.equals(name) && index.kinds[i] == SnapshotIndex.ROLLUP) {
+                    maxLagOffsets[fetcher] = offset;
+                } else if (FETCH_TIME.equals(name) && index.kinds[i] == SnapshotIndex.ROLLUP) {
+                    fetchTimeOffsets[fetcher] = offset;
+                }
+            } else if (isLagSlot(index, i)) {
+                final Integer fetcher = fetchers.get(lagClientIdOf(group));
+                lagSlots[lag] = i;
+                lagOffsets[lag] = offset;
+                lagFetchers[lag] = fetcher == null ? -1 : fetcher;
+                lag++;
+            } else if (isTimerSlot(index, i)) {
+                timerSlots[timer++] = i;
+                final Integer fetcher = fetchers.get(clientIdOf(group));
+                // A thread fetches from one broker, so both scopes time the same requests
+                if (fetcher != null && (timerOffsets[fetcher] < 0 || group.indexOf(BROKER_HOST_SCOPE) > 0)) {
+                    timerOffsets[fetcher] = offset;
+                }
+            } else if (BROKER_ROOT.equals(group) && index.kinds[i] == SnapshotIndex.ROLLUP) {
+                if (BROKER_BYTES.equals(name)) {
+                    brokerBytesOffset = offset;
+                } else if (BROKER_REQUESTS.equals(name)) {
+                    brokerRequestsOffset = offset;
+                } else if (BROKER_MAX_FETCH_TIME.equals(name)) {
+                    brokerMaxFetchTimeOffset = offset;
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the rollup slots of the fetcher threads and, if there are any, of the broker to
+     * the resolved metrics. Rollup slots have no metric.
+     */
+    static void addSlots(final SortedMap<String, SortedMap<String, Metric>> resolved) {
+        final SortedSet<String> fetcherGroups = new TreeSet<String>();
+        for (String group : resolved.keySet()) {
+            if (isFetcherGroup(group)) {
+                fetcherGroups.add(group);
+            }
+        }
+        if (fetcherGroups.isEmpty()) {
+            return;
+        }
+        for (String group : fetcherGroups) {
+            addSlots(resolved, group, MAX_LAG, FETCH_TIME);
+        }
+        addSlots(resolved, BROKER_ROOT, BROKER_BYTES, BROKER_REQUESTS, BROKER_MAX_FETCH_TIME);
+    }
+
+    private static void addSlots(final SortedMap<String, SortedMap<String, Metric>> resolved,
+                                 final String group, final String... names) {
+        SortedMap<String, Metric> metrics = resolved.get(group);
+        if (metrics == null) {
+            metrics = new TreeMap<String, Metric>();
+            resolved.put(group, metrics);
+        }
+        for (String name : names) {
+            metrics.put(name, null);
+        }
+    }
+
+    /**
+     * Update the rollups from the fetcher values of a snapshot.
+     * @param values the values of the snapshot
+     * @param exported set to false for the partition lag and fetch request timer slots
+     */
+    void update(final double[] values, final boolean[] exported) {
+        for (int fetcher = 0; fetcher < maxLagOffsets.length; fetcher++) {
+            values[maxLagOffsets[fetcher]] = 0;
+        }
+        for (int timer = 0; timer < timerSlots.length; timer++) {
+            exported[timerSlots[timer]] = false;
+        }
+        for (int lag = 0; lag < lagSlots.length; lag++) {
+            exported[lagSlots[lag]] = false;
+            final int fetcher = lagFetchers[lag];
+            if (fetcher >= 0) {
+                final double value = valueAt(values, lagOffsets[lag]);
+                if (value > values[maxLagOffsets[fetcher]]) {
+                    values[maxLagOffsets[fetcher]] = value;
+                }
+            }
+        }
+
+        if (brokerBytesOffset < 0) {
+            return;
+        }
+        values[brokerBytesOffset] = 0;
+        values[brokerRequestsOffset] = 0;
+        values[brokerMaxFetchTimeOffset] = Double.NaN;
+        for (int fetcher = 0; fetcher < fetchTimeOffsets.length; fetcher++) {
+            final double fetchTime = timerOffsets[fetcher] < 0 ? Double.NaN : values[timerOffsets[fetcher] + P99];
+            values[fetchTimeOffsets[fetcher]] = fetchTime;
+            values[brokerBytesOffset] += oneMinuteRateAt(values, bytesOffsets[fetcher]);
+            values[brokerRequestsOffset] += oneMinuteRateAt(values, requestsOffsets[fetcher]);
+            // The maximum stays NaN while no thread has a fetch time
+            if (!Double.isNaN(fetchTime) && !(fetchTime <= values[brokerMaxFetchTimeOffset])) {
+                values[brokerMaxFetchTimeOffset] = fetchTime;
+            }
+        }
+    }
+
+    /**
+     * The one minute rate of a meter, the third of its slot values.
+     */
+    private static double oneMinuteRateAt(final double[] values, final int offset) {
+        return offset < 0 ? 0 : valueAt(values, offset + 2);
+    }
+
+    private static double valueAt(final double[] values, final int offset) {
+        if (offset < 0 || Double.isNaN(values[offset])) {
+            return 0;
+        }
+        return values[offset];
+    }
+
+    private static int[] filled(final int length) {
+        final int[] ret = new int[length];
+        Arrays.fill(ret, -1);
+        return ret;
+    }
+
+    private static boolean isFetcherGroup(final String group) {
+        return group.startsWith(FETCHER_GROUP_PREFIX) && group.indexOf(CLIENT_ID_SCOPE) > 0;
+    }
+
+    /**
+     * The fetcher scope ends with the client id, its last tag in alphabetical order.
+     */
+    private static String clientIdOf(final String fetcherGroup) {
+        return fetcherGroup.substring(fetcherGroup.indexOf(CLIENT_ID_SCOPE) + CLIENT_ID_SCOPE.length());
+    }
+
+    private static boolean isTimerSlot(final SnapshotIndex index, final int slot) {
+        return FETCH_REQUEST_TIMER.equals(index.names[slot]) && index.groups[slot].startsWith(TIMER_GROUP_PREFIX)
+                && index.groups[slot].indexOf(CLIENT_ID_SCOPE) >= 0 && index.kinds[slot] == SnapshotIndex.TIMER;
+    }
+
+    private static boolean isLagSlot(final SnapshotIndex index, final int slot) {
+        return CONSUMER_LAG.equals(index.names[slot]) && index.groups[slot].startsWith(LAG_GROUP_PREFIX)
+                && index.kinds[slot] != SnapshotIndex.ROLLUP;
+    }
+
+    /**
+     * The lag scope starts with the client id, its first tag in alphabetical order.
+     */
+    private static String lagClientIdOf(final String lagGroup) {
+        final int end = lagGroup.indexOf(PARTITION_SCOPE, LAG_GROUP_PREFIX.length());
+        return end < 0
+                ? lagGroup.substring(LAG_GROUP_PREFIX.length())
+                : lagGroup.substring(LAG_GROUP_PREFIX.length(), end);
+    }
+
+    int getFetcherCount() {
+        return maxLagOffsets.length;
+    }
+}
@@ -0,0 +1,288 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import java.util.Arrays;
+
+/**
+ * Renders a snapshot as JSON into a reusable byte buffer, in the layout of the Yammer
+ * metrics servlet: metrics grouped by "group.type[.scope]" and then by name.
+ *
+ * Numbers are formatted by hand so that rendering does not allocate once the buffer has
+ * grown to the size of a snapshot. Not thread safe.
+ *
+ * A delta render leaves out the delta exportable metrics that did not change since the
+ * previous export, and writes counters and meters that did with a "delta" field in place
+ * of their count. A meter changed if its count or any of its rates did. Keyframes and
+ * metrics that were not exported before are written in full.
+ */
+final class JsonRenderer {
+
+    private static final String[] METERED_FIELDS = { "count", "mean", "m1", "m5", "m15" };
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String[] SAMPLED_FIELDS =
+            { "min", "max", "mean", "std_dev", "median", "p75", "p95", "p98", "p99", "p999" };
+
+    // Values that are not integral are written with six decimals
+    private static final long SCALE = 1000000L;
+    // Larger values do not fit a long once scaled and fall back to Double.toString
+    private static final double MAX_FIXED = 1e12;
+
+    private final byte[] digits = new byte[20];
+    private byte[] buffer = new byte[64 * 1024];
+    private int length;
+
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Render a snapshot.
+     * @return the number of bytes written to the buffer
+     */
+    int render(final SnapshotBuffer snapshot) {
+        return render(snapshot, null);
+    }
+
+    /**
+     * Render a snapshot as part of a delta export.
+     * @param delta the delta export the render was begun on, or null for a full render
+     * @return the number of bytes written to the buffer
+     */
+    int render(final SnapshotBuffer snapshot, final DeltaExport delta) {
+        length = 0;
+        write('{');
+        if (snapshot != null) {
+            final SnapshotIndex index = snapshot.index;
+            final double[] values = snapshot.values;
+            String group = null;
+            for (int i = 0; i < index.size(); i++) {
+                if (!snapshot.exported[i]) {
+                    continue;
+                }
+                final byte kind = index.kinds[i];
+                final int offset = index.offsets[i];
+                final int position = delta == null ? -1 : delta.positionOf(i);
+                boolean relative = false;
+                double change = 0;
+                if (position >= 0) {
+                    final long bits = Double.doubleToLongBits(values[offset]);
+                    final long last = delta.lastValue(position, 0);
+                    delta.setValue(position, 0, bits);
+                    boolean changed = bits != last;
+                    if (kind == SnapshotIndex.METER) {
+                        // The rates decay while the count does not change
+                        for (int field = 1; field < SnapshotIndex.METERED_WIDTH; field++) {
+                            final long fieldBits = Double.doubleToLongBits(values[offset + field]);
+                            changed |= fieldBits != delta.lastValue(position, field);
+                            delta.setValue(position, field, fieldBits);
+                        }
+                    }
+                    if (!delta.isKeyframe() && last != DeltaExport.MISSING) {
+                        if (!changed) {
+                            continue;
+                        }
+                        if (kind == SnapshotIndex.COUNTER || kind == SnapshotIndex.METER) {
+                            relative = true;
+                            change = values[offset] - Double.longBitsToDouble(last);
+                        }
+                    }
+                }
+                if (!index.groups[i].equals(group)) {
+                    if (group != null) {
+                        write('}');
+                        write(',');
+                    }
+                    group = index.groups[i];
+                    writeString(group);
+                    write(':');
+                    write('{');
+                } else {
+                    write(',');
+                }
+                writeString(index.names[i]);
+                write(':');
+                if (relative) {
+                    writeDelta(kind, values, offset, change);
+                } else {
+                    writeMetric(kind, values, offset);
+                }
+            }
+            if (group != null) {
+                write('}');
+            }
+        }
+        write('}');
+        return length;
+    }
+
+    private void writeMetric(final byte kind, final double[] values, final int offset) {
+        switch (kind) {
+            case SnapshotIndex.GAUGE:
+            case SnapshotIndex.ROLLUP:
+                writeAscii("{\"type\":\"gauge\",\"value\":");
+                writeNumber(values[offset]);
+                write('}');
+                break;
+            case SnapshotIndex.COUNTER:
+                writeAscii("{\"type\":\"counter\",\"count\":");
+                writeNumber(values[offset]);
+                write('}');
+                break;
+            case SnapshotIndex.METER:
+                writeAscii("{\"type\":\"meter\"");
+                writeFields(METERED_FIELDS, values, offset);
+                write('}');
+                break;
+            case SnapshotIndex.HISTOGRAM:
+                writeAscii("{\"type\":\"histogram\",\"count\":");
+                writeNumber(values[offset]);
+                writeFields(SAMPLED_FIELDS, values, offset + 1);
+                write('}');
+                break;
+            case SnapshotIndex.TIMER:
+                writeAscii("{\"type\":\"timer\",\"rate\":{\"unit\":\"seconds\"");
+                writeFields(METERED_FIELDS, values, offset);
+                writeAscii("},\"duration\":{\"unit\":\"milliseconds\"");
+                writeFields(SAMPLED_FIELDS, values, offset + SnapshotIndex.METERED_WIDTH);
+                writeAscii("}}");
+                break;
+            default:
+                throw new IllegalStateException("Unknown metric kind " + kind);
+        }
+    }
+
+    private void writeDelta(final byte kind, final double[] values, final int offset, final double change) {
+        if (kind == SnapshotIndex.COUNTER) {
+            writeAscii("{\"type\":\"counter\",\"delta\":");
+            writeNumber(change);
+        } else {
+            writeAscii("{\"type\":\"meter\",\"delta\":");
+            writeNumber(change);
+            // Every field but the count
+            writeFields(METERED_FIELDS, 1, values, offset);
+        }
+        write('}');
+    }
+
+    private void writeFields(final String[] fields, final double[] values, final int offset) {
+        writeFields(fields, 0, values, offset);
+    }
+
+    private void writeFields(final String[] fields, final int first, final double[] values, final int offset) {
+        for (int i = first; i < fields.length; i++) {
+            write(',');
+            writeString(fields[i]);
+            write(':');
+            writeNumber(values[offset + i]);
+        }
+    }
+
+    void writeNumber(final double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writeAscii("null");
+        } else if (Math.abs(value) >= MAX_FIXED) {
+            writeAscii(Double.toString(value));
+        } else if (value == (long) value) {
+            writeLong((long) value);
+        } else {
+            long scaled = Math.round(value * SCALE);
+            if (scaled < 0) {
+                write('-');
+                scaled = -scaled;
+            }
+            writeLong(scaled / SCALE);
+            write('.');
+            final long fraction = scaled % SCALE;
+            for (long divisor = SCALE / 10; divisor > 0; divisor /= 10) {
+                write((byte) ('0' + (fraction / divisor) % 10));
+            }
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value < 0) {
+            write('-');
+            value = -value;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        while (count > 0) {
+            write(digits[--count]);
+        }
+    }
+
+    /**
+     * Write a string as UTF-8 without allocating. Client ids and consumer groups may hold
+     * any character: control characters are escaped and unpaired surrogates are written
+     * as '?', as String.getBytes does.
+     */
+    private void writeString(final String value) {
+        write('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                write('\\');
+                write(c);
+            } else if (c < 0x20) {
+                writeAscii("\\u00");
+                write(HEX[c >> 4]);
+                write(HEX[c & 0xf]);
+            } else if (c < 0x80) {
+                write(c);
+            } else if (c < 0x800) {
+                write((byte) (0xc0 | c >> 6));
+                write((byte) (0x80 | c & 0x3f));
+            } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                write((byte) (0xe0 | c >> 12));
+                write((byte) (0x80 | c >> 6 & 0x3f));
+                write((byte) (0x80 | c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                write((byte) (0xf0 | codePoint >> 18));
+                write((byte) (0x80 | codePoint >> 12 & 0x3f));
+                write((byte) (0x80 | codePoint >> 6 & 0x3f));
+                write((byte) (0x80 | codePoint & 0x3f));
+            } else {
+                write('?');
+            }
+        }
+        write('"');
+    }
+
+    private void writeAscii(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            write((byte) value.charAt(i));
+        }
+    }
+
+    private void write(final char c) {
+        write((byte) c);
+    }
+
+    private void write(final byte b) {
+        if (length == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[length++] = b;
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gauges of the JVM resources Kafka depends on, registered in the Yammer registry under
+ * "kafka.jvm" so that they are exported with the Kafka metrics.
+ *
+ * <ul>
+ *   <li>BufferPool: the count, used memory and capacity of the direct buffers, used by the
+ *       network layer, and of the mapped buffers, used by the offset and time indexes</li>
+ *   <li>GarbageCollector: the count and time of the young and old generation collections,
+ *       and the percentage of the time spent collecting</li>
+ *   <li>FileDescriptor: the open and maximum file descriptors and the percentage in use</li>
+ *   <li>Safepoint: the count and time of safepoints, and the percentage of the time spent
+ *       in them. Only available on HotSpot JVMs that export sun.management.</li>
+ * </ul>
+ * Values that the JVM does not provide are NaN.
+ */
+final class JvmMetricSet {
+
+    static final String GROUP = "kafka.jvm";
+    static final String BUFFER_POOL = "BufferPool";
+    static final String GARBAGE_COLLECTOR = "GarbageCollector";
+    static final String FILE_DESCRIPTOR = "FileDescriptor";
+    static final String SAFEPOINT = "Safepoint";
+
+    private static final String[] BUFFER_POOLS = { "direct", "mapped" };
+    private static final String[] BUFFER_POOL_PREFIXES = { "Direct", "Mapped" };
+
+    // Collectors of the young generation, the others are counted as old generation collectors
+    private static final String[] YOUNG_COLLECTORS = { "Copy", "PS Scavenge", "ParNew", "G1 Young Generation" };
+
+    // Percentages are computed over intervals of at least this length
+    private static final long MIN_INTERVAL_MS = 1000;
+
+    private JvmMetricSet() {}
+
+    /**
+     * Register the gauges. Gauges that are already registered are left as they are.
+     * @return the contexts of the gauges
+     */
+    static List<String> register(final MetricsRegistry registry) {
+        final List<String> contexts = new ArrayList<String>();
+
+        for (int i = 0; i < BUFFER_POOLS.length; i++) {
+            final BufferPoolMXBean pool = findBufferPool(BUFFER_POOLS[i]);
+            final String prefix = BUFFER_POOL_PREFIXES[i];
+            add(registry, contexts, BUFFER_POOL, prefix + "Count", new Gauge<Double>() {
+                @Override
+                public Double value() {
+                    return pool == null ? Double.NaN : pool.getCount();
+                }
+            });
+            add(registry, contexts, BUFFER_POOL, prefix + "MemoryUsed", new Gauge<Double>() {
+                @Override
+                public Double value() {
+                    return pool == null ? Double.NaN : pool.getMemoryUsed();
+                }
+            });
+            add(registry, contexts, BUFFER_POOL, prefix + "TotalCapacity", new Gauge<Double>() {
+                @Override
+                public Double value() {
+                    return pool == null ? Double.NaN : pool.getTotalCapacity();
+                }
+            });
+        }
+
+        final List<GarbageCollectorMXBean> young = new ArrayList<GarbageCollectorMXBean>();
+        final List<GarbageCollectorMXBean> old = new ArrayList<GarbageCollectorMXBean>();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            (isYoung(collector.getName()) ? young : old).add(collector);
+        }
+        add(registry, contexts, GARBAGE_COLLECTOR, "YoungCollectionCount", collectionGauge(young, false));
+        add(registry, contexts, GARBAGE_COLLECTOR, "YoungCollectionTime", collectionGauge(young, true));
+        add(registry, contexts, GARBAGE_COLLECTOR, "OldCollectionCount", collectionGauge(old, false));
+        add(registry, contexts, GARBAGE_COLLECTOR, "OldCollectionTime", collectionGauge(old, true));
+        final List<GarbageCollectorMXBean> all = new ArrayList<GarbageCollectorMXBean>(young);
+        all.addAll(old);
+        add(registry, contexts, GARBAGE_COLLECTOR, "TimePercent", new TimePercent(collectionGauge(all, true)));
+
+        final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        final Gauge<Double> open = fileDescriptorGauge(os, "getOpenFileDescriptorCount");
+        final Gauge<Double> max = fileDescriptorGauge(os, "getMaxFileDescriptorCount");
+        add(registry, contexts, FILE_DESCRIPTOR, "OpenFileDescriptorCount", open);
+        add(registry, contexts, FILE_DESCRIPTOR, "MaxFileDescriptorCount", max);
+        add(registry, contexts, FILE_DESCRIPTOR, "Usage", new Gauge<Double>() {
+            @Override
+            public Double value() {
+                return 100 * open.value() / max.value();
+            }
+        });
+
+        final Object runtime = getHotspotRuntime();
+        final Gauge<Double> safepointTime = hotspotGauge(runtime, "getTotalSafepointTime");
+        add(registry, contexts, SAFEPOINT, "Count", hotspotGauge(runtime, "getSafepointCount"));
+        add(registry, contexts, SAFEPOINT, "Time", safepointTime);
+        add(registry, contexts, SAFEPOINT, "TimePercent", new TimePercent(safepointTime));
+        return contexts;
+    }
+
+    static boolean isYoung(final String collector) {
+        for (String name : YOUNG_COLLECTORS) {
+            if (name.equals(collector)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void add(final MetricsRegistry registry, final List<String> contexts, final String type,
+                            final String name, final Gauge<Double> gauge) {
+        registry.newGauge(new MetricName(GROUP, type, name), gauge);
+        contexts.add(GROUP + "." + type + "::" + name);
+    }
+
+    private static BufferPoolMXBean findBufferPool(final String name) {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (name.equals(pool.getName())) {
+                return pool;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The total count, or time in milliseconds, of the collections of some collectors.
+     */
+    private static Gauge<Double> collectionGauge(final List<GarbageCollectorMXBean> collectors, final boolean time) {
+        return new Gauge<Double>() {
+            @Override
+            public Double value() {
+                double total = 0;
+                for (GarbageCollectorMXBean collector : collectors) {
+                    // Collectors that do not count return -1
+                    total += Math.max(0, time ? collector.getCollectionTime() : collector.getCollectionCount());
+                }
+                return total;
+            }
+        };
+    }
+
+    /**
+     * A file descriptor count of com.sun.management.UnixOperatingSystemMXBean, which is
+     * looked up by name as it is not available on every platform.
+     */
+    private static Gauge<Double> fileDescriptorGauge(final OperatingSystemMXBean os, final String getter) {
+        final Method method = findMethod("com.sun.management.UnixOperatingSystemMXBean", getter);
+        return new Gauge<Double>() {
+            @Override
+            public Double value() {
+                return method == null || !method.getDeclaringClass().isInstance(os) ? Double.NaN : invoke(method, os);
+            }
+        };
+    }
+
+    private static Object getHotspotRuntime() {
+        final Method method = findMethod("sun.management.ManagementFactoryHelper", "getHotspotRuntimeMBean");
+        if (method == null) {
+            return null;
+        }
+        try {
+            return method.invoke(null);
+        } catch (Exception e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    private static Gauge<Double> hotspotGauge(final Object runtime, final String getter) {
+        final Method method = runtime == null ? null : findMethod("sun.management.HotspotRuntimeMBean", getter);
+        return new Gauge<Double>() {
+            @Override
+            public Double value() {
+                return method == null ? Double.NaN : invoke(method, runtime);
+            }
+        };
+    }
+
+    private static Method findMethod(final String className, final String name) {
+        try {
+            final Method method = Class.forName(className).getMethod(name);
+            method.setAccessible(true);
+            return method;
+        } catch (Exception e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    private static double invoke(final Method method, final Object target) {
+        try {
+            return ((Number) method.invoke(target)).doubleValue();
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * The percentage of the wall clock time that a cumulative time in milliseconds grew by,
+     * over the interval since the previous value. Several exporters may read it, so the
+     * previous value is returned until the interval is long enough to compute a new one.
+     */
+    static final class TimePercent extends Gauge<Double> {
+        private final Gauge<Double> time;
+        private long lastWallTime = -1;
+        private double lastTime;
+        private double percent = Double.NaN;
+
+        TimePercent(final Gauge<Double> time) {
+            this.time = time;
+        }
+
+        @Override
+        public synchronized Double value() {
+            final long now = System.nanoTime() / 1000000;
+            if (lastWallTime >= 0 && now - lastWallTime < MIN_INTERVAL_MS) {
+                return percent;
+            }
+            final double current = time.value();
+            if (lastWallTime >= 0) {
+                percent = Math.max(0, Math.min(100, 100 * (current - lastTime) / (now - lastWallTime)));
+            }
+            lastWallTime = now;
+            lastTime = current;
+            return percent;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.Metrics;
+import kafka.utils.VerifiableProperties;
+
+import java.util.Properties;
+
+/**
+ * Java agent that serves the JVM gauges of {@link JvmMetricSet} the way
+ * {@link CatalogMetricsReporter} serves the broker metrics, for Kafka processes that do not
+ * start Kafka metrics reporters, such as MirrorMaker with the new consumer.
+ *
+ * The agent arguments are the reporter properties as comma separated key=value pairs, for
+ * example -javaagent:kafka-cm-metrics-reporter.jar=kafka.http.metrics.port=24043.
+ */
+public final class JvmMetricsAgent {
+
+    private JvmMetricsAgent() {}
+
+    public static void premain(final String args) {
+        final Properties props = new Properties();
+        if (args != null) {
+            for (String pair : args.split(",")) {
+                final int separator = pair.indexOf('=');
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Malformed agent argument: " + pair);
+                }
+                props.setProperty(pair.substring(0, separator).trim(), pair.substring(separator + 1).trim());
+            }
+        }
+
+        final ReporterCatalog catalog = new ReporterCatalog();
+        for (String context : JvmMetricSet.register(Metrics.defaultRegistry())) {
+            catalog.add(ReporterCatalog.KAFKA_MIRROR_MAKER, "GAUGE", context, true, ReporterCatalog.TIER_DEFAULT);
+        }
+        new CatalogMetricsReporter(Metrics.defaultRegistry()).init(new VerifiableProperties(props), catalog);
+    }
+}
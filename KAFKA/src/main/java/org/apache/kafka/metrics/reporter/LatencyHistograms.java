@@ -0,0 +1,368 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.core.Metric;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.RecordingHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * HDR latency histograms of the request times of RequestMetrics.
+ *
+ * A recording histogram is registered for the TotalTimeMs histogram of every request of the
+ * catalog when the reporter starts, before Kafka creates its own. Every snapshot reports the
+ * p50, p99, p999 and max of the values recorded since the previous snapshot next to the Yammer
+ * histogram, as "&lt;name&gt;P50" and so on. The other request times keep their Yammer
+ * histograms only.
+ *
+ * The cumulative bucket counts are served on {@link #PATH}. The active controller, when
+ * configured with the addresses of the other brokers, merges their TotalTimeMs histograms of
+ * the {@link #CLUSTER_REQUESTS} with its own and reports the p99 and p999 of the whole cluster
+ * under {@link #CLUSTER_ROOT}, so that each cluster percentile has a single source. The other
+ * brokers only keep the baselines of their peers.
+ */
+public final class LatencyHistograms {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LatencyHistograms.class);
+
+    public static final String P50 = "P50";
+    public static final String P99 = "P99";
+    public static final String P999 = "P999";
+    public static final String MAX = "Max";
+
+    private static final String[] SUFFIXES = { P50, P99, P999, MAX };
+    private static final double[] PERCENTILES = { 50, 99, 99.9 };
+
+    public static final String REQUEST_ROOT = "kafka.network.RequestMetrics.request.";
+    public static final String CLUSTER_ROOT = "kafka.network.ClusterRequestMetrics.request.";
+    // Only the total time is recorded, the other histograms of RequestMetrics keep their reservoirs
+    public static final String CLUSTER_METRIC = "TotalTimeMs";
+    // The client requests whose latency is an SLO, the only ones merged across brokers
+    public static final List<String> CLUSTER_REQUESTS =
+            Collections.unmodifiableList(Arrays.asList("FetchConsumer", "Produce"));
+
+    private static final String[] CLUSTER_SUFFIXES = { P99, P999 };
+    private static final double[] CLUSTER_PERCENTILES = { 99, 99.9 };
+
+    static final String PATH = "/api/latency";
+
+    private static final String HISTOGRAM = "HISTOGRAM";
+    private static final int TIMEOUT_MS = 5000;
+
+    private final String[] contexts;
+    private final String[] groups;
+    private final String[] names;
+    private final LatencyRecorder[] recorders;
+    private final long[][] previous;
+    private final LatencySnapshot interval = new LatencySnapshot();
+
+    private final List<String> peers;
+    // Recorders merged across brokers, and the values the merge thread published for them
+    private final int[] clusterRecorders;
+    private final Map<String, Integer> clusterIndexByContext = new HashMap<String, Integer>();
+    private final long[][] clusterPrevious;
+    private final Map<String, long[]> peerPrevious = new HashMap<String, long[]>();
+    private final long[] peerCounts = new long[LatencyRecorder.BUCKET_COUNT];
+    private final LatencySnapshot discarded = new LatencySnapshot();
+    private volatile double[] clusterValues;
+    // Set by the snapshot thread from the ActiveControllerCount of the broker
+    private volatile boolean controller;
+
+    private LatencyHistograms(final List<String> contexts, final List<LatencyRecorder> recorders,
+                              final List<String> peers) {
+        final int size = contexts.size();
+        this.contexts = contexts.toArray(new String[size]);
+        this.groups = new String[size];
+        this.names = new String[size];
+        this.recorders = recorders.toArray(new LatencyRecorder[size]);
+        this.previous = new long[size][LatencyRecorder.BUCKET_COUNT];
+        final List<Integer> cluster = new ArrayList<Integer>();
+        for (int i = 0; i < size; i++) {
+            final int separator = this.contexts[i].indexOf("::");
+            groups[i] = this.contexts[i].substring(0, separator);
+            names[i] = this.contexts[i].substring(separator + 2);
+            if (!peers.isEmpty() && isClusterRequest(groups[i])) {
+                clusterIndexByContext.put(this.contexts[i], cluster.size());
+                cluster.add(i);
+            }
+        }
+        this.peers = peers;
+        this.clusterRecorders = new int[cluster.size()];
+        for (int i = 0; i < clusterRecorders.length; i++) {
+            clusterRecorders[i] = cluster.get(i);
+        }
+        this.clusterPrevious = new long[clusterRecorders.length][LatencyRecorder.BUCKET_COUNT];
+    }
+
+    /**
+     * Register a recording histogram for every request total time histogram of the catalog.
+     * @param peers the host:port of the reporters of the other brokers, to merge cluster
+     *              percentiles from, or an empty list
+     */
+    static LatencyHistograms install(final MetricsRegistry registry, final ReporterCatalog catalog,
+                                     final List<String> peers) {
+        final List<String> contexts = new ArrayList<String>();
+        final List<LatencyRecorder> recorders = new ArrayList<LatencyRecorder>();
+        for (ReporterCatalog.Entry entry : catalog.getEntries()) {
+            if (!ReporterCatalog.KAFKA_BROKER.equals(entry.getEntity()) || !HISTOGRAM.equals(entry.getType())
+                    || !entry.getContext().startsWith(REQUEST_ROOT)
+                    || !entry.getContext().endsWith("::" + CLUSTER_METRIC)) {
+                continue;
+            }
+            final LatencyRecorder recorder = new LatencyRecorder();
+            if (RecordingHistogram.register(registry, toMetricName(entry.getContext()), recorder)) {
+                contexts.add(entry.getContext());
+                recorders.add(recorder);
+            } else {
+                LOG.warn("{} was registered before the reporter started, its HDR percentiles are not reported",
+                        entry.getContext());
+            }
+        }
+        return new LatencyHistograms(contexts, recorders, peers);
+    }
+
+    private static boolean isClusterRequest(final String group) {
+        return CLUSTER_REQUESTS.contains(group.substring(REQUEST_ROOT.length()));
+    }
+
+    /**
+     * The name Kafka registers a request histogram under, for example
+     * kafka.network:type=RequestMetrics,name=TotalTimeMs,request=Produce for
+     * kafka.network.RequestMetrics.request.Produce::TotalTimeMs.
+     */
+    static MetricName toMetricName(final String context) {
+        final int separator = context.indexOf("::");
+        final String request = context.substring(REQUEST_ROOT.length(), separator);
+        final String name = context.substring(separator + 2);
+        return new MetricName("kafka.network", "RequestMetrics", name, "request." + request,
+                "kafka.network:type=RequestMetrics,name=" + name + ",request=" + request);
+    }
+
+    /**
+     * Add the percentile slots to the resolved metrics.
+     */
+    void addSlots(final SortedMap<String, SortedMap<String, Metric>> resolved) {
+        for (int i = 0; i < contexts.length; i++) {
+            addSlots(resolved, groups[i], names[i]);
+        }
+        for (int recorder : clusterRecorders) {
+            addSlots(resolved, clusterGroupOf(recorder), names[recorder], CLUSTER_SUFFIXES);
+        }
+    }
+
+    private static void addSlots(final SortedMap<String, SortedMap<String, Metric>> resolved,
+                                 final String group, final String name) {
+        addSlots(resolved, group, name, SUFFIXES);
+    }
+
+    private static void addSlots(final SortedMap<String, SortedMap<String, Metric>> resolved,
+                                 final String group, final String name, final String[] suffixes) {
+        SortedMap<String, Metric> metrics = resolved.get(group);
+        if (metrics == null) {
+            metrics = new TreeMap<String, Metric>();
+            resolved.put(group, metrics);
+        }
+        for (String suffix : suffixes) {
+            metrics.put(name + suffix, null);
+        }
+    }
+
+    private String clusterGroupOf(final int recorder) {
+        return CLUSTER_ROOT + groups[recorder].substring(REQUEST_ROOT.length());
+    }
+
+    /**
+     * Find the slots of an index that the percentiles are written to.
+     */
+    Binding bind(final SnapshotIndex index) {
+        return new Binding(index);
+    }
+
+    private static int writePercentiles(final LatencySnapshot snapshot, final double[] values,
+                                        final int[] offsets, int slot) {
+        for (double percentile : PERCENTILES) {
+            values[offsets[slot++]] = snapshot.valueAtPercentile(percentile);
+        }
+        values[offsets[slot++]] = snapshot.maxValue();
+        return slot;
+    }
+
+    /**
+     * Write the cumulative counts of every recorder, keyed by context.
+     */
+    void write(final DataOutput out) throws IOException {
+        out.writeInt(recorders.length);
+        for (int i = 0; i < recorders.length; i++) {
+            out.writeUTF(contexts[i]);
+            recorders[i].write(out);
+        }
+    }
+
+    boolean hasPeers() {
+        return !peers.isEmpty() && clusterRecorders.length > 0;
+    }
+
+    /**
+     * Merge the TotalTimeMs intervals of this broker and of its peers, and publish their
+     * percentiles. Runs on its own thread because peers may be slow to answer. A broker that
+     * is not the active controller only moves its own baselines and forgets the ones of its
+     * peers, so that it starts from a single interval if it becomes the controller.
+     */
+    void mergePeers() {
+        if (!controller) {
+            for (int i = 0; i < clusterRecorders.length; i++) {
+                discarded.clear();
+                discarded.addInterval(recorders[clusterRecorders[i]], clusterPrevious[i]);
+            }
+            peerPrevious.clear();
+            clusterValues = null;
+            return;
+        }
+        final LatencySnapshot[] merged = new LatencySnapshot[clusterRecorders.length];
+        for (int i = 0; i < merged.length; i++) {
+            merged[i] = new LatencySnapshot();
+            merged[i].addInterval(recorders[clusterRecorders[i]], clusterPrevious[i]);
+        }
+        for (String peer : peers) {
+            try {
+                readPeer(peer, merged);
+            } catch (IOException e) {
+                LOG.warn("Unable to read latency histograms from " + peer + ", leaving it out of the cluster percentiles", e);
+            }
+        }
+        final double[] values = new double[merged.length * CLUSTER_SUFFIXES.length];
+        int slot = 0;
+        for (LatencySnapshot snapshot : merged) {
+            for (double percentile : CLUSTER_PERCENTILES) {
+                values[slot++] = snapshot.valueAtPercentile(percentile);
+            }
+        }
+        clusterValues = values;
+    }
+
+    private void readPeer(final String peer, final LatencySnapshot[] merged) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL("http://" + peer + PATH).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        final InputStream in = connection.getInputStream();
+        try {
+            final DataInputStream data = new DataInputStream(in);
+            final int count = data.readInt();
+            for (int i = 0; i < count; i++) {
+                final String context = data.readUTF();
+                LatencyRecorder.read(data, peerCounts);
+                final Integer cluster = clusterIndexByContext.get(context);
+                if (cluster == null) {
+                    continue;
+                }
+                final String key = peer + "/" + context;
+                final long[] last = peerPrevious.get(key);
+                if (last == null) {
+                    // The first read only sets the baseline of the peer
+                    peerPrevious.put(key, Arrays.copyOf(peerCounts, peerCounts.length));
+                } else {
+                    merged[cluster].addInterval(peerCounts, last);
+                }
+            }
+        } finally {
+            in.close();
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * The slots of an index, used on the snapshot thread.
+     */
+    final class Binding {
+        // Four offsets per recorder
+        private final int[] offsets;
+        // The slots and offsets of the cluster percentiles, two per merged recorder
+        private final int[] clusterSlots;
+        private final int[] clusterOffsets;
+        private int activeControllerOffset = -1;
+
+        private Binding(final SnapshotIndex index) {
+            final Map<String, Integer> slots = new HashMap<String, Integer>();
+            for (int i = 0; i < index.size(); i++) {
+                if (index.kinds[i] == SnapshotIndex.ROLLUP) {
+                    slots.put(index.groups[i] + "::" + index.names[i], i);
+                } else if (ThroughputSkew.CONTROLLER_GROUP.equals(index.groups[i])
+                        && ThroughputSkew.ACTIVE_CONTROLLER_COUNT.equals(index.names[i])) {
+                    activeControllerOffset = index.offsets[i];
+                }
+            }
+            offsets = new int[contexts.length * SUFFIXES.length];
+            int slot = 0;
+            for (String context : contexts) {
+                for (String suffix : SUFFIXES) {
+                    offsets[slot++] = index.offsets[slots.get(context + suffix)];
+                }
+            }
+            clusterSlots = new int[clusterRecorders.length * CLUSTER_SUFFIXES.length];
+            clusterOffsets = new int[clusterSlots.length];
+            slot = 0;
+            for (int recorder : clusterRecorders) {
+                for (String suffix : CLUSTER_SUFFIXES) {
+                    clusterSlots[slot] = slots.get(clusterGroupOf(recorder) + "::" + names[recorder] + suffix);
+                    clusterOffsets[slot] = index.offsets[clusterSlots[slot]];
+                    slot++;
+                }
+            }
+        }
+
+        /**
+         * Write the percentiles of the values recorded since the previous call, and the last
+         * merged cluster percentiles.
+         * @param values the values of the snapshot
+         * @param exported set to false for the cluster percentile slots unless this broker
+         *                 is the active controller
+         */
+        void update(final double[] values, final boolean[] exported) {
+            int slot = 0;
+            for (int i = 0; i < recorders.length; i++) {
+                interval.clear();
+                interval.addInterval(recorders[i], previous[i]);
+                slot = writePercentiles(interval, values, offsets, slot);
+            }
+            controller = activeControllerOffset >= 0 && values[activeControllerOffset] == 1;
+            final double[] cluster = clusterValues;
+            for (int i = 0; i < clusterSlots.length; i++) {
+                values[clusterOffsets[i]] = cluster == null ? Double.NaN : cluster[i];
+                exported[clusterSlots[i]] = controller;
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.sun.net.httpserver.HttpServer;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import java.util.List;
+
+/**
+ * Installs the HDR request time histograms of {@link LatencyHistograms}.
+ *
+ * The recording histograms replace the Yammer request time histograms, so they must be
+ * installed before Kafka creates its request metrics, that is from the reporter init. The
+ * histograms are served to the peers on {@link LatencyHistograms#PATH}, and the peer
+ * histograms are merged into the cluster percentiles on the peer merge thread.
+ */
+final class LatencyInstaller {
+
+    static final String PEER_MERGE_THREAD = "kafka-metrics-peer-merge";
+
+    private LatencyInstaller() {}
+
+    static LatencyHistograms install(final MetricsRegistry registry, final ReporterCatalog catalog,
+                                     final List<String> peers) {
+        return LatencyHistograms.install(registry, catalog, peers);
+    }
+
+    static void start(final LatencyHistograms latency, final HttpServer server, final ReporterSchedulers schedulers,
+                      final long pollingPeriodInSeconds) {
+        server.createContext(LatencyHistograms.PATH, new LatencyHttpHandler(latency));
+        if (latency.hasPeers()) {
+            schedulers.schedule(PEER_MERGE_THREAD, new Runnable() {
+                @Override
+                public void run() {
+                    latency.mergePeers();
+                }
+            }, pollingPeriodInSeconds, pollingPeriodInSeconds, "Unable to merge latency histograms");
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency recorder with HDR histogram buckets.
+ *
+ * Values are counted in log-linear buckets: 128 buckets below 128, then 64 buckets per
+ * power of two, so every value is recorded with two significant digits. Counts are
+ * cumulative. Readers take the difference of two reads to get an interval, which makes
+ * histograms of any number of recorders, or brokers, mergeable by adding their counts.
+ */
+public final class LatencyRecorder {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_BITS;
+
+    // Larger values, 24 days in milliseconds, are recorded as this one
+    static final long MAX_VALUE = Integer.MAX_VALUE;
+
+    static final int BUCKET_COUNT = bucketOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    public void record(final long value) {
+        counts.incrementAndGet(bucketOf(value < 0 ? 0 : Math.min(value, MAX_VALUE)));
+    }
+
+    long count(final int bucket) {
+        return counts.get(bucket);
+    }
+
+    static int bucketOf(final long value) {
+        final int shift = Math.max(0, 63 - SUB_BUCKET_BITS - Long.numberOfLeadingZeros(value));
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * The largest value counted in a bucket.
+     */
+    static long highestValueOf(final int bucket) {
+        final int shift = bucket < 2 * SUB_BUCKET_HALF_COUNT ? 0 : (bucket >> SUB_BUCKET_BITS) - 1;
+        final long subBucket = bucket - (shift << SUB_BUCKET_BITS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Write the cumulative counts as (gap, count) pairs of varints for the non empty buckets.
+     */
+    void write(final DataOutput out) throws IOException {
+        int nonEmpty = 0;
+        final long[] snapshot = new long[BUCKET_COUNT];
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            snapshot[bucket] = counts.get(bucket);
+            if (snapshot[bucket] != 0) {
+                nonEmpty++;
+            }
+        }
+        writeVarLong(out, nonEmpty);
+        int previous = -1;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            if (snapshot[bucket] != 0) {
+                writeVarLong(out, bucket - previous - 1);
+                writeVarLong(out, snapshot[bucket]);
+                previous = bucket;
+            }
+        }
+    }
+
+    /**
+     * Read counts written by {@link #write}.
+     * @param counts the counts, overwritten
+     */
+    static void read(final DataInput in, final long[] counts) throws IOException {
+        Arrays.fill(counts, 0);
+        final long nonEmpty = readVarLong(in);
+        int bucket = -1;
+        for (long i = 0; i < nonEmpty; i++) {
+            bucket += (int) readVarLong(in) + 1;
+            if (bucket >= BUCKET_COUNT) {
+                throw new IOException("Bucket out of range: " + bucket);
+            }
+            counts[bucket] = readVarLong(in);
+        }
+    }
+
+    static void writeVarLong(final DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(final DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import java.util.Arrays;
+
+/**
+ * Bucket counts of an interval of one or more latency recorders.
+ */
+final class LatencySnapshot {
+
+    final long[] counts = new long[LatencyRecorder.BUCKET_COUNT];
+    private long total;
+
+    void clear() {
+        Arrays.fill(counts, 0);
+        total = 0;
+    }
+
+    long getTotal() {
+        return total;
+    }
+
+    /**
+     * Add the counts recorded since the previous call.
+     * @param cumulative the current cumulative counts
+     * @param previous the cumulative counts of the previous call, updated
+     */
+    void addInterval(final long[] cumulative, final long[] previous) {
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            long count = cumulative[bucket] - previous[bucket];
+            if (count < 0) {
+                // The recorder was restarted, for example with its broker
+                count = cumulative[bucket];
+            }
+            counts[bucket] += count;
+            total += count;
+            previous[bucket] = cumulative[bucket];
+        }
+    }
+
+    /**
+     * Add the counts a recorder recorded since the previous call.
+     * @param recorder the recorder
+     * @param previous the cumulative counts of the previous call, updated
+     */
+    void addInterval(final LatencyRecorder recorder, final long[] previous) {
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            final long cumulative = recorder.count(bucket);
+            final long count = cumulative - previous[bucket];
+            counts[bucket] += count;
+            total += count;
+            previous[bucket] = cumulative;
+        }
+    }
+
+    /**
+     * The highest value of the bucket the given percentile of the values falls in, or NaN if
+     * the snapshot is empty.
+     */
+    double valueAtPercentile(final double percentile) {
+        if (total == 0) {
+            return Double.NaN;
+        }
+        final long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= target) {
+                return LatencyRecorder.highestValueOf(bucket);
+            }
+        }
+        return maxValue();
+    }
+
+    /**
+     * The highest value of the highest non empty bucket, or NaN if the snapshot is empty.
+     */
+    double maxValue() {
+        for (int bucket = counts.length - 1; bucket >= 0; bucket--) {
+            if (counts[bucket] != 0) {
+                return LatencyRecorder.highestValueOf(bucket);
+            }
+        }
+        return Double.NaN;
+    }
+}
@@ -0,0 +1,292 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.core.Metric;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Rolls the replica metrics up to their log directory, and reports the space and IO of
+ * the device of every log directory, see {@link DiskStats}.
+ *
+ * Kafka registers its log directory metrics under kafka.log.LogManager, scoped as
+ * "logDirectory.&lt;absolute path&gt;", and the rollups are added to the same scope. The log
+ * directory of a replica is the one that holds its "&lt;topic&gt;-&lt;partition&gt;"
+ * directory when the index is built. Appended bytes are the growth of the size of the
+ * replicas, not counting the segments deleted in the meantime.
+ *
+ * A rollup is built for every snapshot index, so it starts over when partitions are added
+ * to or removed from the broker, which is also when they move between log directories.
+ */
+public final class LogDirectoryRollup {
+
+    // Contexts of the rollups of a log directory, relative to the log directory root
+    public static final String REPLICAS = "Replicas";
+    public static final String SIZE = "Size";
+    public static final String NUM_LOG_SEGMENTS = "NumLogSegments";
+    public static final String APPENDED_BYTES = "AppendedBytesPerSec";
+    public static final String USABLE_BYTES = "UsableBytes";
+    public static final String USABLE_PERCENT = "UsablePercent";
+    public static final String DISK_READ_BYTES = "DiskReadBytesPerSec";
+    public static final String DISK_WRITE_BYTES = "DiskWriteBytesPerSec";
+    public static final String DISK_READ_TIME = "DiskReadTimeMs";
+    public static final String DISK_WRITE_TIME = "DiskWriteTimeMs";
+
+    // Contexts of the rollups of the broker, relative to the log directory root
+    public static final String MIN_USABLE_PERCENT = "MinLogDirectoryUsablePercent";
+    public static final String MAX_DISK_WRITE_TIME = "MaxLogDirectoryDiskWriteTimeMs";
+
+    private static final String[] NAMES = {
+            REPLICAS, SIZE, NUM_LOG_SEGMENTS, APPENDED_BYTES, USABLE_BYTES, USABLE_PERCENT,
+            DISK_READ_BYTES, DISK_WRITE_BYTES, DISK_READ_TIME, DISK_WRITE_TIME };
+    private static final int REPLICAS_POSITION = 0;
+    private static final int SIZE_POSITION = 1;
+    private static final int NUM_LOG_SEGMENTS_POSITION = 2;
+    private static final int APPENDED_BYTES_POSITION = 3;
+    private static final int USABLE_BYTES_POSITION = 4;
+    private static final int USABLE_PERCENT_POSITION = 5;
+    private static final int DISK_READ_BYTES_POSITION = 6;
+    private static final int DISK_WRITE_BYTES_POSITION = 7;
+    private static final int DISK_READ_TIME_POSITION = 8;
+    private static final int DISK_WRITE_TIME_POSITION = 9;
+
+    private static final String SCOPE = ".logDirectory.";
+    private static final String REPLICA_GROUP_PREFIX = ReporterCatalog.REPLICA_ROOT + ".partition.";
+    private static final String TOPIC_SCOPE = ".topic.";
+
+    private final DiskStats disks;
+
+    // The offsets of the rollups of each log directory, indexed like NAMES
+    private final int[][] dirOffsets;
+    private int minUsablePercentOffset = -1;
+    private int maxDiskWriteTimeOffset = -1;
+
+    private final int[] replicaDirs;
+    private final int[] sizeOffsets;
+    private final int[] segmentsOffsets;
+    private final double[] lastSizes;
+    private boolean primed;
+
+    /**
+     * @param index the index, with the slots added by {@link #addSlots}
+     * @param disks the log directories of the broker
+     */
+    LogDirectoryRollup(final SnapshotIndex index, final DiskStats disks) {
+        this.disks = disks;
+        final Map<String, Integer> groups = new HashMap<String, Integer>();
+        for (int dir = 0; dir < disks.size(); dir++) {
+            groups.put(groupOf(disks.getPath(dir)), dir);
+        }
+        final Map<String, Integer> replicaGroups = listReplicas(disks);
+
+        int replicas = 0;
+        String previous = null;
+        for (int i = 0; i < index.size(); i++) {
+            if (replicaGroups.containsKey(index.groups[i]) && !index.groups[i].equals(previous)) {
+                replicas++;
+            }
+            previous = index.groups[i];
+        }
+        replicaDirs = new int[replicas];
+        sizeOffsets = new int[replicas];
+        segmentsOffsets = new int[replicas];
+        lastSizes = new double[replicas];
+
+        dirOffsets = new int[disks.size()][NAMES.length];
+        for (int[] offsets : dirOffsets) {
+            Arrays.fill(offsets, -1);
+        }
+
+        // Replica slots are contiguous because the index is sorted by group
+        int replica = -1;
+        previous = null;
+        for (int i = 0; i < index.size(); i++) {
+            final String group = index.groups[i];
+            final String name = index.names[i];
+            final Integer replicaDir = replicaGroups.get(group);
+            if (replicaDir != null) {
+                if (!group.equals(previous)) {
+                    replica++;
+                    replicaDirs[replica] = replicaDir;
+                    sizeOffsets[replica] = -1;
+                    segmentsOffsets[replica] = -1;
+                }
+                if (SIZE.equals(name)) {
+                    sizeOffsets[replica] = index.offsets[i];
+                } else if (NUM_LOG_SEGMENTS.equals(name)) {
+                    segmentsOffsets[replica] = index.offsets[i];
+                }
+            } else if (index.kinds[i] == SnapshotIndex.ROLLUP) {
+                final Integer dir = groups.get(group);
+                if (dir != null) {
+                    final int position = Arrays.asList(NAMES).indexOf(name);
+                    if (position >= 0) {
+                        dirOffsets[dir][position] = index.offsets[i];
+                    }
+                } else if (ReporterCatalog.LOG_DIRECTORY_ROOT.equals(group)) {
+                    if (MIN_USABLE_PERCENT.equals(name)) {
+                        minUsablePercentOffset = index.offsets[i];
+                    } else if (MAX_DISK_WRITE_TIME.equals(name)) {
+                        maxDiskWriteTimeOffset = index.offsets[i];
+                    }
+                }
+            }
+            previous = group;
+        }
+    }
+
+    /**
+     * Add the rollup slots of the log directories and of the broker to the resolved metrics.
+     * Rollup slots have no metric.
+     */
+    static void addSlots(final SortedMap<String, SortedMap<String, Metric>> resolved, final DiskStats disks) {
+        if (disks.size() == 0) {
+            return;
+        }
+        for (int dir = 0; dir < disks.size(); dir++) {
+            addSlots(resolved, groupOf(disks.getPath(dir)), NAMES);
+        }
+        addSlots(resolved, ReporterCatalog.LOG_DIRECTORY_ROOT, MIN_USABLE_PERCENT, MAX_DISK_WRITE_TIME);
+    }
+
+    private static void addSlots(final SortedMap<String, SortedMap<String, Metric>> resolved,
+                                 final String group, final String... names) {
+        SortedMap<String, Metric> metrics = resolved.get(group);
+        if (metrics == null) {
+            metrics = new TreeMap<String, Metric>();
+            resolved.put(group, metrics);
+        }
+        for (String name : names) {
+            metrics.put(name, null);
+        }
+    }
+
+    /**
+     * Update the rollups from the replica values of a snapshot and the devices of the log
+     * directories.
+     * @param values the values of the snapshot
+     * @param elapsedSeconds the time since the previous snapshot
+     */
+    void update(final double[] values, final double elapsedSeconds) {
+        if (dirOffsets.length == 0) {
+            return;
+        }
+        for (int[] offsets : dirOffsets) {
+            values[offsets[REPLICAS_POSITION]] = 0;
+            values[offsets[SIZE_POSITION]] = 0;
+            values[offsets[NUM_LOG_SEGMENTS_POSITION]] = 0;
+            values[offsets[APPENDED_BYTES_POSITION]] = 0;
+        }
+
+        final double rate = elapsedSeconds > 0 ? 1 / elapsedSeconds : 0;
+        for (int replica = 0; replica < replicaDirs.length; replica++) {
+            final int[] offsets = dirOffsets[replicaDirs[replica]];
+            final double size = valueAt(values, sizeOffsets[replica]);
+            final double growth = primed ? size - lastSizes[replica] : 0;
+            lastSizes[replica] = size;
+            values[offsets[REPLICAS_POSITION]]++;
+            values[offsets[SIZE_POSITION]] += size;
+            values[offsets[NUM_LOG_SEGMENTS_POSITION]] += valueAt(values, segmentsOffsets[replica]);
+            if (growth > 0) {
+                values[offsets[APPENDED_BYTES_POSITION]] += growth * rate;
+            }
+        }
+        primed = true;
+
+        disks.update();
+        double minUsablePercent = Double.NaN;
+        double maxDiskWriteTime = Double.NaN;
+        for (int dir = 0; dir < dirOffsets.length; dir++) {
+            final int[] offsets = dirOffsets[dir];
+            values[offsets[USABLE_BYTES_POSITION]] = disks.usableBytes[dir];
+            values[offsets[USABLE_PERCENT_POSITION]] = disks.usablePercents[dir];
+            values[offsets[DISK_READ_BYTES_POSITION]] = disks.readBytesRates[dir];
+            values[offsets[DISK_WRITE_BYTES_POSITION]] = disks.writeBytesRates[dir];
+            values[offsets[DISK_READ_TIME_POSITION]] = disks.readTimes[dir];
+            values[offsets[DISK_WRITE_TIME_POSITION]] = disks.writeTimes[dir];
+            final double usablePercent = disks.usablePercents[dir];
+            if (!Double.isNaN(usablePercent) && (Double.isNaN(minUsablePercent) || usablePercent < minUsablePercent)) {
+                minUsablePercent = usablePercent;
+            }
+            final double diskWriteTime = disks.writeTimes[dir];
+            if (!Double.isNaN(diskWriteTime) && (Double.isNaN(maxDiskWriteTime) || diskWriteTime > maxDiskWriteTime)) {
+                maxDiskWriteTime = diskWriteTime;
+            }
+        }
+        values[minUsablePercentOffset] = minUsablePercent;
+        values[maxDiskWriteTimeOffset] = maxDiskWriteTime;
+    }
+
+    private static double valueAt(final double[] values, final int offset) {
+        if (offset < 0 || Double.isNaN(values[offset])) {
+            return 0;
+        }
+        return values[offset];
+    }
+
+    /**
+     * The group of the rollups of a log directory. Kafka scopes its log directory metrics by
+     * the absolute path of the directory, and replaces the dots of scope values with
+     * underscores.
+     */
+    static String groupOf(final String path) {
+        return ReporterCatalog.LOG_DIRECTORY_ROOT + SCOPE + new File(path).getAbsolutePath().replace('.', '_');
+    }
+
+    /**
+     * Map the replica groups to the log directory that holds their partition directory.
+     * Partitions being moved or deleted have a suffix after their partition and are skipped.
+     */
+    private static Map<String, Integer> listReplicas(final DiskStats disks) {
+        final Map<String, Integer> ret = new HashMap<String, Integer>();
+        for (int dir = 0; dir < disks.size(); dir++) {
+            final String[] children = disks.getDir(dir).list();
+            if (children == null) {
+                continue;
+            }
+            for (String child : children) {
+                final int separator = child.lastIndexOf('-');
+                if (separator <= 0 || separator == child.length() - 1 || !isDigits(child, separator + 1)) {
+                    continue;
+                }
+                final String topic = child.substring(0, separator).replace('.', '_');
+                ret.put(REPLICA_GROUP_PREFIX + child.substring(separator + 1) + TOPIC_SCOPE + topic, dir);
+            }
+        }
+        return ret;
+    }
+
+    private static boolean isDigits(final String s, final int start) {
+        for (int i = start; i < s.length(); i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int getLogDirectoryCount() {
+        return dirOffsets.length;
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.core.MetricsRegistry;
+import kafka.utils.VerifiableProperties;
+
+/**
+ * Registers the gauges of {@link JvmMetricSet} and {@link ZooKeeperMetricSet}.
+ *
+ * The gauges are plain Yammer gauges, snapshotted with the other catalog metrics, so they
+ * need neither a thread nor an HTTP context. Brokers that serve their metrics with another
+ * reporter register them with {@link JvmMetricsReporter} and {@link ZooKeeperMetricsReporter}.
+ */
+final class MetricSetInstaller {
+
+    private MetricSetInstaller() {}
+
+    static void install(final MetricsRegistry registry, final VerifiableProperties props) {
+        JvmMetricSet.register(registry);
+        ZooKeeperMetricSet.register(registry, props.getInt(ZooKeeperMetricSet.SESSION_TIMEOUT_PROPERTY,
+                ZooKeeperMetricSet.DEFAULT_SESSION_TIMEOUT_MS));
+    }
+}
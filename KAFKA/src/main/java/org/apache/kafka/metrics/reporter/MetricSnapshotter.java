@@ -0,0 +1,260 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.Metered;
+import com.yammer.metrics.core.Metric;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.MetricsRegistryListener;
+import com.yammer.metrics.core.Sampling;
+import com.yammer.metrics.core.Summarizable;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.stats.Snapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies the values of the catalog metrics into preallocated arrays. Runs on a single
+ * scheduler thread.
+ *
+ * Each collection tier of the catalog is snapshotted by its own task: a snapshot copies the
+ * values of its tier and carries the other values over from the previous snapshot. The
+ * replica, fetcher and log directory rollups, latency percentiles, throughput skew and consumer lag
+ * are computed with the default tier.
+ *
+ * The index is only rebuilt after metrics were added to or removed from the registry,
+ * for example when partitions move, so the steady state loop does not allocate. Gauges
+ * box their values and histogram percentiles copy their samples inside Yammer, which
+ * this class cannot avoid.
+ */
+final class MetricSnapshotter implements MetricsRegistryListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricSnapshotter.class);
+
+    private final MetricsRegistry registry;
+    private final ReporterCatalog catalog;
+    private final LatencyHistograms latency;
+    private final DiskStats disks;
+    private final ThroughputSkew skew;
+    private final ConsumerGroupLag lag;
+    private final int replicaTopK;
+    private final boolean replicaByGrowth;
+    private final double replicaSketchError;
+
+    private volatile boolean stale = true;
+    private ReplicaRollup rollup;
+    private FetcherRollup fetcherRollup;
+    private LogDirectoryRollup logDirectoryRollup;
+    private LatencyHistograms.Binding latencyBinding;
+    private ThroughputSkew.Binding skewBinding;
+    private ConsumerGroupLag.Binding lagBinding;
+    private long rollupTimestamp;
+    private SnapshotBuffer first;
+    private SnapshotBuffer second;
+    private volatile SnapshotBuffer published;
+
+    /**
+     * @param registry the registry to snapshot
+     * @param catalog the metrics to snapshot
+     * @param latency the latency histograms to report the percentiles of
+     * @param disks the log directories to report the replicas, space and IO of
+     * @param skew the throughput skew to publish the topic rates to and report
+     * @param lag the consumer lag to publish the log end offsets to and report
+     * @param replicaTopK the number of replicas to export individually, or 0 for all of them
+     * @param replicaByGrowth whether to select the replicas by growth rather than by size
+     * @param replicaSketchError the error bound of the replica growth sketch
+     */
+    MetricSnapshotter(final MetricsRegistry registry, final ReporterCatalog catalog, final LatencyHistograms latency,
+                      final DiskStats disks, final ThroughputSkew skew, final ConsumerGroupLag lag,
+                      final int replicaTopK, final boolean replicaByGrowth, final double replicaSketchError) {
+        this.registry = registry;
+        this.catalog = catalog;
+        this.latency = latency;
+        this.disks = disks;
+        this.skew = skew;
+        this.lag = lag;
+        this.replicaTopK = replicaTopK;
+        this.replicaByGrowth = replicaByGrowth;
+        this.replicaSketchError = replicaSketchError;
+    }
+
+    /**
+     * The last complete snapshot, or null before the first one.
+     */
+    SnapshotBuffer getPublished() {
+        return published;
+    }
+
+    @Override
+    public void onMetricAdded(final MetricName name, final Metric metric) {
+        stale = true;
+    }
+
+    @Override
+    public void onMetricRemoved(final MetricName name) {
+        stale = true;
+    }
+
+    /**
+     * Get the task that snapshots the metrics of a collection tier.
+     * @param tier the tier, one of the ReporterCatalog TIER constants
+     */
+    Runnable getTask(final int tier) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                // An exception would cancel the schedule, so log it and try again next time
+                try {
+                    snapshot(tier);
+                } catch (RuntimeException e) {
+                    LOG.warn("Unable to snapshot " + ReporterCatalog.TIER_NAMES[tier] + " metrics", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Snapshot the metrics of all tiers.
+     */
+    void snapshot() {
+        snapshot(-1);
+    }
+
+    /**
+     * Snapshot the metrics of a tier, or of all tiers if the tier is negative or the index
+     * changed since the previous snapshot.
+     */
+    void snapshot(final int tier) {
+        // The skew and lag go stale when their merged topics or groups change
+        if (stale || skewBinding.isStale() || lagBinding.isStale()) {
+            stale = false;
+            final SnapshotIndex index = SnapshotIndex.build(registry.allMetrics(), catalog, latency, disks, skew, lag);
+            rollup = new ReplicaRollup(index, replicaTopK, replicaByGrowth, replicaSketchError, rollup);
+            fetcherRollup = new FetcherRollup(index);
+            logDirectoryRollup = new LogDirectoryRollup(index, disks);
+            latencyBinding = latency.bind(index);
+            skewBinding = skew.bind(index);
+            lagBinding = lag.bind(index);
+            first = new SnapshotBuffer(index);
+            second = new SnapshotBuffer(index);
+            LOG.info("Exporting {} metrics of {} replicas and {} replica fetchers", new Object[] {
+                    index.size(), rollup.getReplicaCount(), fetcherRollup.getFetcherCount() });
+        }
+
+        final SnapshotBuffer previous = published;
+        final SnapshotBuffer target = previous == first ? second : first;
+        final SnapshotIndex index = target.index;
+        final long now = System.currentTimeMillis();
+        final boolean full = tier < 0 || previous == null || previous.index != index;
+        target.sequence++;
+        if (full) {
+            for (int[] slots : index.tierSlots) {
+                copyValues(index, slots, target.values);
+            }
+        } else {
+            System.arraycopy(previous.values, 0, target.values, 0, index.width);
+            System.arraycopy(previous.exported, 0, target.exported, 0, index.size());
+            copyValues(index, index.tierSlots[tier], target.values);
+        }
+        if (full || tier == ReporterCatalog.TIER_DEFAULT) {
+            final double elapsedSeconds = previous != null && previous.index == index
+                    ? (now - rollupTimestamp) / 1000.0 : 0;
+            rollup.update(target.values, target.exported, elapsedSeconds);
+            fetcherRollup.update(target.values, target.exported);
+            logDirectoryRollup.update(target.values, elapsedSeconds);
+            latencyBinding.update(target.values, target.exported);
+            skewBinding.update(target.values, target.exported);
+            lagBinding.update(target.values);
+            rollupTimestamp = now;
+        }
+        target.timestamp = now;
+        target.sequence++;
+        published = target;
+    }
+
+    private static void copyValues(final SnapshotIndex index, final int[] slots, final double[] values) {
+        final Metric[] metrics = index.metrics;
+        final byte[] kinds = index.kinds;
+        final int[] offsets = index.offsets;
+        for (final int i : slots) {
+            final int offset = offsets[i];
+            switch (kinds[i]) {
+                case SnapshotIndex.GAUGE:
+                    values[offset] = gaugeValue((Gauge<?>) metrics[i]);
+                    break;
+                case SnapshotIndex.COUNTER:
+                    values[offset] = ((Counter) metrics[i]).count();
+                    break;
+                case SnapshotIndex.METER:
+                    copyMetered((Metered) metrics[i], values, offset);
+                    break;
+                case SnapshotIndex.HISTOGRAM:
+                    final Histogram histogram = (Histogram) metrics[i];
+                    values[offset] = histogram.count();
+                    copySampled(histogram, histogram, values, offset + 1);
+                    break;
+                case SnapshotIndex.TIMER:
+                    final Timer timer = (Timer) metrics[i];
+                    copyMetered(timer, values, offset);
+                    copySampled(timer, timer, values, offset + SnapshotIndex.METERED_WIDTH);
+                    break;
+                case SnapshotIndex.ROLLUP:
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown metric kind " + kinds[i]);
+            }
+        }
+    }
+
+    private static double gaugeValue(final Gauge<?> gauge) {
+        final Object value = gauge.value();
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof Boolean) {
+            return ((Boolean) value) ? 1 : 0;
+        }
+        return Double.NaN;
+    }
+
+    private static void copyMetered(final Metered metered, final double[] values, final int offset) {
+        values[offset] = metered.count();
+        values[offset + 1] = metered.meanRate();
+        values[offset + 2] = metered.oneMinuteRate();
+        values[offset + 3] = metered.fiveMinuteRate();
+        values[offset + 4] = metered.fifteenMinuteRate();
+    }
+
+    private static void copySampled(final Summarizable summary, final Sampling sampling,
+                                    final double[] values, final int offset) {
+        values[offset] = summary.min();
+        values[offset + 1] = summary.max();
+        values[offset + 2] = summary.mean();
+        values[offset + 3] = summary.stdDev();
+        final Snapshot snapshot = sampling.getSnapshot();
+        values[offset + 4] = snapshot.getMedian();
+        values[offset + 5] = snapshot.get75thPercentile();
+        values[offset + 6] = snapshot.get95thPercentile();
+        values[offset + 7] = snapshot.get98thPercentile();
+        values[offset + 8] = snapshot.get99thPercentile();
+        values[offset + 9] = snapshot.get999thPercentile();
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Serves the last published snapshot. The HTTP server runs handlers on a single thread,
+ * so the renderer and its buffer are reused across requests.
+ *
+ * With mode=delta the snapshot is rendered relative to the previous delta export of the
+ * consumer named by the consumer parameter, and the X-Kafka-Metrics-Keyframe header tells
+ * whether it is a keyframe. Each consumer has its own {@link DeltaExport}, so that two
+ * scrapers do not render against each other's values. A delta request without a consumer,
+ * or from more than {@link #MAX_DELTA_CONSUMERS} consumers, is refused. A consumer that
+ * restarted requests keyframe=true.
+ */
+final class MetricsHttpHandler implements HttpHandler {
+
+    // A snapshot is only overwritten one polling interval after it was published,
+    // so a render rarely has to be retried
+    private static final int MAX_RENDER_ATTEMPTS = 3;
+
+    static final String KEYFRAME_HEADER = "X-Kafka-Metrics-Keyframe";
+
+    // Each consumer keeps the last values of every delta exportable metric
+    static final int MAX_DELTA_CONSUMERS = 4;
+
+    private static final String DELTA_PARAMETER = "mode=delta";
+    private static final String KEYFRAME_PARAMETER = "keyframe=true";
+    private static final String CONSUMER_PARAMETER = "consumer=";
+
+    private final MetricSnapshotter snapshotter;
+    private final int keyframeInterval;
+    private final Map<String, DeltaExport> deltas = new HashMap<String, DeltaExport>();
+    private final JsonRenderer renderer = new JsonRenderer();
+
+    /**
+     * @param keyframeInterval the number of delta exports of a consumer from one keyframe to
+     *                         the next
+     */
+    MetricsHttpHandler(final MetricSnapshotter snapshotter, final int keyframeInterval) {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("Keyframe interval must be positive: " + keyframeInterval);
+        }
+        this.snapshotter = snapshotter;
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    @Override
+    public void handle(final HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            final String query = exchange.getRequestURI().getRawQuery();
+            final int length;
+            if (hasParameter(query, DELTA_PARAMETER)) {
+                final String consumer = parameterValue(query, CONSUMER_PARAMETER);
+                if (consumer == null) {
+                    sendError(exchange, 400, "A delta export needs a consumer parameter");
+                    return;
+                }
+                final DeltaExport delta = deltaOf(consumer);
+                if (delta == null) {
+                    sendError(exchange, 409, "More than " + MAX_DELTA_CONSUMERS + " delta consumers");
+                    return;
+                }
+                delta.beginExport(hasParameter(query, KEYFRAME_PARAMETER));
+                length = render(delta);
+                exchange.getResponseHeaders().set(KEYFRAME_HEADER, String.valueOf(delta.isKeyframe()));
+            } else {
+                length = render(null);
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, length);
+            exchange.getResponseBody().write(renderer.getBuffer(), 0, length);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return the delta export of a consumer, created on its first request, or null if there
+     *         are already {@link #MAX_DELTA_CONSUMERS} other consumers
+     */
+    DeltaExport deltaOf(final String consumer) {
+        DeltaExport ret = deltas.get(consumer);
+        if (ret == null && deltas.size() < MAX_DELTA_CONSUMERS) {
+            ret = new DeltaExport(keyframeInterval);
+            deltas.put(consumer, ret);
+        }
+        return ret;
+    }
+
+    private static void sendError(final HttpExchange exchange, final int code, final String message)
+            throws IOException {
+        final byte[] bytes = message.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * Render the published snapshot, in full if the delta export is null.
+     */
+    private int render(final DeltaExport export) {
+        int length = 0;
+        for (int attempt = 0; attempt < MAX_RENDER_ATTEMPTS; attempt++) {
+            final SnapshotBuffer snapshot = snapshotter.getPublished();
+            if (snapshot == null) {
+                return renderer.render(null);
+            }
+            final int sequence = snapshot.sequence;
+            if (export != null) {
+                export.beginRender(snapshot.index);
+            }
+            length = renderer.render(snapshot, export);
+            if ((sequence & 1) == 0 && snapshot.sequence == sequence) {
+                break;
+            }
+        }
+        // The values of the last attempt are the ones sent, even if it was torn
+        if (export != null) {
+            export.commit();
+        }
+        return length;
+    }
+
+    /**
+     * @return the decoded value of the first parameter with a prefix, or null if it is
+     *         missing or empty
+     */
+    static String parameterValue(final String query, final String prefix) throws UnsupportedEncodingException {
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(prefix) && pair.length() > prefix.length()) {
+                return URLDecoder.decode(pair.substring(prefix.length()), "UTF-8");
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasParameter(final String query, final String parameter) {
+        if (query == null) {
+            return false;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.equals(parameter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A source of the offsets committed by consumer groups, read incrementally.
+ */
+interface OffsetSource extends Closeable {
+
+    /**
+     * Report the committed offsets that changed since the previous read. The first read,
+     * and any read after the source lost track of the changes, starts with
+     * {@link Listener#reset()} and reports all offsets.
+     */
+    void read(Listener listener) throws IOException;
+
+    /**
+     * Release the connections of the source. The next read starts over.
+     */
+    @Override
+    void close();
+
+    interface Listener {
+
+        /**
+         * Forget all offsets reported so far.
+         */
+        void reset();
+
+        void committed(String group, String topic, int partition, long offset);
+
+        void removed(String group, String topic, int partition);
+    }
+}
@@ -0,0 +1,351 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.core.Metric;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Bounds the number of replica series a broker exports.
+ *
+ * The Size and LogEndOffset gauges of all replicas are rolled up to their topic exactly,
+ * as the current size and the growth of both per second. Only the top K replicas, by
+ * growth or by size, are exported individually. The others are rolled up into a single
+ * "other replicas" entity. Growth is tracked with a Space-Saving sketch, so the memory
+ * used does not depend on how long the broker has been running. The growth decays with a
+ * half-life of GROWTH_HALF_LIFE_SECS, so replicas that stopped growing give way to the
+ * ones growing now.
+ *
+ * A rollup is built for every snapshot index. The growth sketch of the previous rollup is
+ * carried over to the replicas that are still on the broker.
+ */
+public final class ReplicaRollup {
+
+    // Contexts of the rollups, relative to the topic or the other replicas root
+    public static final String REPLICAS_SIZE = "ReplicasSize";
+    public static final String REPLICAS_SIZE_GROWTH = "ReplicasSizeGrowth";
+    public static final String REPLICAS_LOG_END_OFFSET_GROWTH = "ReplicasLogEndOffsetGrowth";
+    public static final String OTHER_REPLICAS = "Replicas";
+
+    public static final String OTHER_REPLICAS_ROOT = ReporterCatalog.REPLICA_ROOT + ".other";
+
+    public static final String BY_GROWTH = "growth";
+    public static final String BY_SIZE = "size";
+
+    private static final String SIZE = "Size";
+    private static final String LOG_END_OFFSET = "LogEndOffset";
+
+    // Same horizon as the five minute rates of the Kafka meters
+    static final double GROWTH_HALF_LIFE_SECS = 300;
+
+    private static final String REPLICA_GROUP_PREFIX = ReporterCatalog.REPLICA_ROOT + ".partition.";
+    private static final String TOPIC_SCOPE = ".topic.";
+
+    private final int topK;
+    private final SpaceSavingSketch sketch;
+
+    private final String[] replicaGroups;
+    private final int[] firstSlots;
+    private final int[] endSlots;
+    private final int[] sizeOffsets;
+    private final int[] logEndOffsetOffsets;
+    private final int[] replicaTopics;
+    private final double[] lastSizes;
+    private final double[] lastLogEndOffsets;
+    private final double[] sizeGrowths;
+    private final double[] logEndOffsetGrowths;
+    private final boolean[] selected;
+    private final long[] scratch;
+    private boolean primed;
+
+    private final int[] topicSizeOffsets;
+    private final int[] topicSizeGrowthOffsets;
+    private final int[] topicLogEndOffsetGrowthOffsets;
+
+    private int otherCountOffset = -1;
+    private int otherSizeOffset = -1;
+    private int otherSizeGrowthOffset = -1;
+    private int otherLogEndOffsetGrowthOffset = -1;
+
+    /**
+     * @param index the index, with the slots added by {@link #addSlots}
+     * @param topK the number of replicas to export individually, or 0 to export all of them
+     * @param byGrowth whether to select replicas by growth rather than by size
+     * @param sketchError the error bound of the growth sketch, relative to the total growth
+     * @param previous the rollup of the previous index, to carry the growth sketch over from,
+     *                 or null
+     */
+    ReplicaRollup(final SnapshotIndex index, final int topK, final boolean byGrowth, final double sketchError,
+                  final ReplicaRollup previous) {
+        int replicas = 0;
+        for (int i = 0; i < index.size(); i++) {
+            if (isReplicaGroup(index.groups[i]) && (i == 0 || !index.groups[i].equals(index.groups[i - 1]))) {
+                replicas++;
+            }
+        }
+
+        replicaGroups = new String[replicas];
+        firstSlots = new int[replicas];
+        endSlots = new int[replicas];
+        sizeOffsets = new int[replicas];
+        logEndOffsetOffsets = new int[replicas];
+        replicaTopics = new int[replicas];
+        lastSizes = new double[replicas];
+        lastLogEndOffsets = new double[replicas];
+        sizeGrowths = new double[replicas];
+        logEndOffsetGrowths = new double[replicas];
+        selected = new boolean[replicas];
+        scratch = new long[replicas];
+
+        // Replica slots are contiguous because the index is sorted by group
+        final Map<String, Integer> topics = new HashMap<String, Integer>();
+        int replica = -1;
+        String previousGroup = null;
+        for (int i = 0; i < index.size(); i++) {
+            final String group = index.groups[i];
+            if (isReplicaGroup(group)) {
+                if (!group.equals(previousGroup)) {
+                    replica++;
+                    replicaGroups[replica] = group;
+                    firstSlots[replica] = i;
+                    sizeOffsets[replica] = -1;
+                    logEndOffsetOffsets[replica] = -1;
+                    final String topicGroup = topicGroupOf(group);
+                    Integer topic = topics.get(topicGroup);
+                    if (topic == null) {
+                        topic = topics.size();
+                        topics.put(topicGroup, topic);
+                    }
+                    replicaTopics[replica] = topic;
+                }
+                endSlots[replica] = i + 1;
+                if (SIZE.equals(index.names[i])) {
+                    sizeOffsets[replica] = index.offsets[i];
+                } else if (LOG_END_OFFSET.equals(index.names[i])) {
+                    logEndOffsetOffsets[replica] = index.offsets[i];
+                }
+            }
+            previousGroup = group;
+        }
+
+        topicSizeOffsets = new int[topics.size()];
+        topicSizeGrowthOffsets = new int[topics.size()];
+        topicLogEndOffsetGrowthOffsets = new int[topics.size()];
+        for (int i = 0; i < index.size(); i++) {
+            if (index.kinds[i] != SnapshotIndex.ROLLUP) {
+                continue;
+            }
+            final String name = index.names[i];
+            final int offset = index.offsets[i];
+            final Integer topic = topics.get(index.groups[i]);
+            if (topic != null) {
+                if (REPLICAS_SIZE.equals(name)) {
+                    topicSizeOffsets[topic] = offset;
+                } else if (REPLICAS_SIZE_GROWTH.equals(name)) {
+                    topicSizeGrowthOffsets[topic] = offset;
+                } else if (REPLICAS_LOG_END_OFFSET_GROWTH.equals(name)) {
+                    topicLogEndOffsetGrowthOffsets[topic] = offset;
+                }
+            } else if (OTHER_REPLICAS_ROOT.equals(index.groups[i])) {
+                if (OTHER_REPLICAS.equals(name)) {
+                    otherCountOffset = offset;
+                } else if (REPLICAS_SIZE.equals(name)) {
+                    otherSizeOffset = offset;
+                } else if (REPLICAS_SIZE_GROWTH.equals(name)) {
+                    otherSizeGrowthOffset = offset;
+                } else if (REPLICAS_LOG_END_OFFSET_GROWTH.equals(name)) {
+                    otherLogEndOffsetGrowthOffset = offset;
+                }
+            }
+        }
+
+        this.topK = topK;
+        if (topK > 0 && topK < replicas && byGrowth) {
+            final int capacity = Math.min(replicas, Math.max(topK, SpaceSavingSketch.capacityFor(sketchError)));
+            sketch = new SpaceSavingSketch(capacity, replicas);
+            if (previous != null && previous.sketch != null) {
+                sketch.carryOver(previous.sketch, previous.keyMapTo(replicaGroups));
+            }
+        } else {
+            sketch = null;
+        }
+    }
+
+    /**
+     * The replica of every replica of this rollup among the given replica groups, or -1.
+     * @param groups the sorted groups of the replicas of another rollup
+     */
+    private int[] keyMapTo(final String[] groups) {
+        final int[] keyMap = new int[replicaGroups.length];
+        for (int replica = 0; replica < replicaGroups.length; replica++) {
+            final int key = Arrays.binarySearch(groups, replicaGroups[replica]);
+            keyMap[replica] = key >= 0 ? key : -1;
+        }
+        return keyMap;
+    }
+
+    /**
+     * Add the rollup slots of the topics and of the other replicas to the resolved metrics.
+     * Rollup slots have no metric.
+     */
+    static void addSlots(final SortedMap<String, SortedMap<String, Metric>> resolved) {
+        final SortedSet<String> topicGroups = new TreeSet<String>();
+        for (String group : resolved.keySet()) {
+            if (isReplicaGroup(group)) {
+                topicGroups.add(topicGroupOf(group));
+            }
+        }
+        if (topicGroups.isEmpty()) {
+            return;
+        }
+        for (String topicGroup : topicGroups) {
+            addSlots(resolved, topicGroup, REPLICAS_SIZE, REPLICAS_SIZE_GROWTH, REPLICAS_LOG_END_OFFSET_GROWTH);
+        }
+        addSlots(resolved, OTHER_REPLICAS_ROOT,
+                OTHER_REPLICAS, REPLICAS_SIZE, REPLICAS_SIZE_GROWTH, REPLICAS_LOG_END_OFFSET_GROWTH);
+    }
+
+    private static void addSlots(final SortedMap<String, SortedMap<String, Metric>> resolved,
+                                 final String group, final String... names) {
+        SortedMap<String, Metric> metrics = resolved.get(group);
+        if (metrics == null) {
+            metrics = new TreeMap<String, Metric>();
+            resolved.put(group, metrics);
+        }
+        for (String name : names) {
+            metrics.put(name, null);
+        }
+    }
+
+    /**
+     * Update the rollups from the replica values of a snapshot and select the replicas
+     * to export.
+     * @param values the values of the snapshot
+     * @param exported set to false for the slots of the replicas that are not exported
+     * @param elapsedSeconds the time since the previous snapshot
+     */
+    void update(final double[] values, final boolean[] exported, final double elapsedSeconds) {
+        for (int topic = 0; topic < topicSizeOffsets.length; topic++) {
+            values[topicSizeOffsets[topic]] = 0;
+            values[topicSizeGrowthOffsets[topic]] = 0;
+            values[topicLogEndOffsetGrowthOffsets[topic]] = 0;
+        }
+
+        final double rate = elapsedSeconds > 0 ? 1 / elapsedSeconds : 0;
+        if (sketch != null && elapsedSeconds > 0) {
+            sketch.decay(Math.pow(0.5, elapsedSeconds / GROWTH_HALF_LIFE_SECS));
+        }
+        for (int replica = 0; replica < firstSlots.length; replica++) {
+            final double size = valueAt(values, sizeOffsets[replica]);
+            final double logEndOffset = valueAt(values, logEndOffsetOffsets[replica]);
+            sizeGrowths[replica] = primed ? size - lastSizes[replica] : 0;
+            logEndOffsetGrowths[replica] = primed ? logEndOffset - lastLogEndOffsets[replica] : 0;
+            lastSizes[replica] = size;
+            lastLogEndOffsets[replica] = logEndOffset;
+
+            final int topic = replicaTopics[replica];
+            values[topicSizeOffsets[topic]] += size;
+            values[topicSizeGrowthOffsets[topic]] += sizeGrowths[replica] * rate;
+            values[topicLogEndOffsetGrowthOffsets[topic]] += logEndOffsetGrowths[replica] * rate;
+
+            if (sketch != null && sizeGrowths[replica] > 0) {
+                sketch.offer(replica, (long) sizeGrowths[replica]);
+            }
+        }
+        primed = true;
+
+        select();
+
+        if (otherCountOffset < 0) {
+            return;
+        }
+        values[otherCountOffset] = 0;
+        values[otherSizeOffset] = 0;
+        values[otherSizeGrowthOffset] = 0;
+        values[otherLogEndOffsetGrowthOffset] = 0;
+        for (int replica = 0; replica < firstSlots.length; replica++) {
+            Arrays.fill(exported, firstSlots[replica], endSlots[replica], selected[replica]);
+            if (!selected[replica]) {
+                values[otherCountOffset]++;
+                values[otherSizeOffset] += lastSizes[replica];
+                values[otherSizeGrowthOffset] += sizeGrowths[replica] * rate;
+                values[otherLogEndOffsetGrowthOffset] += logEndOffsetGrowths[replica] * rate;
+            }
+        }
+    }
+
+    private void select() {
+        final int replicas = firstSlots.length;
+        if (topK <= 0 || topK >= replicas) {
+            Arrays.fill(selected, true);
+            return;
+        }
+        Arrays.fill(selected, false);
+        if (sketch != null) {
+            sketch.selectTop(topK, selected);
+            return;
+        }
+        for (int replica = 0; replica < replicas; replica++) {
+            scratch[replica] = (long) lastSizes[replica];
+        }
+        final long threshold = SpaceSavingSketch.kthLargest(scratch, replicas, topK);
+        int remaining = topK;
+        for (int replica = 0; replica < replicas; replica++) {
+            if ((long) lastSizes[replica] > threshold) {
+                selected[replica] = true;
+                remaining--;
+            }
+        }
+        for (int replica = 0; replica < replicas && remaining > 0; replica++) {
+            if ((long) lastSizes[replica] == threshold) {
+                selected[replica] = true;
+                remaining--;
+            }
+        }
+    }
+
+    private static double valueAt(final double[] values, final int offset) {
+        if (offset < 0 || Double.isNaN(values[offset])) {
+            return 0;
+        }
+        return values[offset];
+    }
+
+    /**
+     * Replica metrics are scoped as "partition.&lt;id&gt;.topic.&lt;topic&gt;".
+     */
+    private static boolean isReplicaGroup(final String group) {
+        return group.startsWith(REPLICA_GROUP_PREFIX) && group.indexOf(TOPIC_SCOPE, REPLICA_GROUP_PREFIX.length()) > 0;
+    }
+
+    private static String topicGroupOf(final String replicaGroup) {
+        final int topicScope = replicaGroup.indexOf(TOPIC_SCOPE, REPLICA_GROUP_PREFIX.length());
+        return ReporterCatalog.TOPIC_ROOT + replicaGroup.substring(topicScope);
+    }
+
+    int getReplicaCount() {
+        return firstSlots.length;
+    }
+}
@@ -0,0 +1,233 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The contexts the in-broker reporter exports, one tab separated line per metric:
+ * entity, Codahale metric type, context, export mode and collection tier.
+ *
+ * The catalog is written by the schema generator from the same metric classes that the
+ * fixture is generated from, and is read by the reporter inside the broker, so this class
+ * only depends on the JDK. Metrics of entities other than the KAFKA_BROKER and
+ * KAFKA_MIRROR_MAKER roles are registered once per topic, replica, network processor, replica
+ * fetcher or log directory with a scope, and their context is written as "group.type::name" without it.
+ *
+ * The export mode is {@link #EXPORT_DELTA} for metrics that may be left out of a delta
+ * export while they do not change, and {@link #EXPORT_FULL} for the others.
+ *
+ * The collection tier sets how often a metric is snapshotted: hot metrics, such as queue
+ * sizes, more often than the polling interval and cold metrics, such as log segment counts,
+ * less often. Catalogs without the tier column collect every metric at the default tier.
+ */
+public final class ReporterCatalog {
+
+    public static final String RESOURCE_NAME = "kafka_reporter_catalog.tsv";
+
+    public static final String KAFKA_BROKER = "KAFKA_BROKER";
+    public static final String KAFKA_MIRROR_MAKER = "KAFKA_MIRROR_MAKER";
+
+    // The group and type the per topic, per replica, per network processor, per fetcher, per log directory and
+    // per client quota Yammer metrics are registered under
+    public static final String TOPIC_ROOT = "kafka.server.BrokerTopicMetrics";
+    public static final String REPLICA_ROOT = "kafka.log.Log";
+    public static final String NETWORK_PROCESSOR_ROOT = "kafka.network.SocketServerMetrics";
+    public static final String FETCHER_ROOT = "kafka.server.FetcherStats";
+    public static final String FETCHER_LAG_ROOT = "kafka.server.FetcherLagMetrics";
+    public static final String FETCHER_REQUEST_ROOT = "kafka.consumer.FetchRequestAndResponseMetrics";
+    public static final String LOG_DIRECTORY_ROOT = "kafka.log.LogManager";
+    public static final String CLIENT_QUOTA_ROOT = "kafka.server.ClientQuotaMetrics";
+
+    public static final String EXPORT_FULL = "full";
+    public static final String EXPORT_DELTA = "delta";
+
+    public static final int TIER_HOT = 0;
+    public static final int TIER_DEFAULT = 1;
+    public static final int TIER_COLD = 2;
+    static final String[] TIER_NAMES = { "hot", "default", "cold" };
+
+    private static final String SEPARATOR = "\t";
+    private static final String CHARSET = "UTF-8";
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private final Map<String, Entry> roleContexts = new HashMap<String, Entry>();
+    private final Map<String, Entry> scopedContexts = new HashMap<String, Entry>();
+
+    /**
+     * Add a metric to the catalog.
+     * @param entity the role or entity type of the metric
+     * @param type the Codahale metric type
+     * @param context the full context, including the group and type for scoped entities
+     * @param deltaExportable whether the metric may be delta exported
+     * @param tier the collection tier of the metric, one of the TIER constants
+     */
+    public void add(final String entity, final String type, final String context, final boolean deltaExportable,
+                    final int tier) {
+        if (tier < 0 || tier >= TIER_NAMES.length) {
+            throw new IllegalArgumentException("Unknown collection tier " + tier);
+        }
+        final Entry entry = new Entry(entity, type, context, deltaExportable, tier);
+        entries.add(entry);
+        if (KAFKA_BROKER.equals(entity) || KAFKA_MIRROR_MAKER.equals(entity)) {
+            roleContexts.put(context, entry);
+        } else {
+            scopedContexts.put(context, entry);
+        }
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Find the catalog entry of a registered metric.
+     * @param context the context of the metric, including its scope
+     * @param unscopedContext the context of the metric without its scope, or null if it has none
+     * @return the entry, or null if the metric is not exported
+     */
+    Entry lookup(final String context, final String unscopedContext) {
+        final Entry entry = roleContexts.get(context);
+        if (entry != null || unscopedContext == null) {
+            return entry;
+        }
+        return scopedContexts.get(unscopedContext);
+    }
+
+    /**
+     * Write the catalog to a file.
+     */
+    public void write(final File file) throws IOException {
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), CHARSET);
+        try {
+            for (Entry entry : entries) {
+                writer.write(entry.entity + SEPARATOR + entry.type + SEPARATOR + entry.context + SEPARATOR
+                        + (entry.deltaExportable ? EXPORT_DELTA : EXPORT_FULL) + SEPARATOR
+                        + TIER_NAMES[entry.tier] + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Read a catalog.
+     * @throws IOException if a line is not made of four or five fields, or has an unknown
+     *                     export mode or collection tier
+     */
+    public static ReporterCatalog read(final Reader reader) throws IOException {
+        final ReporterCatalog catalog = new ReporterCatalog();
+        final BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            final String[] fields = line.split(SEPARATOR);
+            final int tier = fields.length == 5 ? tierOf(fields[4]) : TIER_DEFAULT;
+            if (fields.length < 4 || fields.length > 5 || tier < 0
+                    || !(EXPORT_FULL.equals(fields[3]) || EXPORT_DELTA.equals(fields[3]))) {
+                throw new IOException("Malformed reporter catalog line: " + line);
+            }
+            catalog.add(fields[0], fields[1], fields[2], EXPORT_DELTA.equals(fields[3]), tier);
+        }
+        return catalog;
+    }
+
+    /**
+     * The name of a collection tier in the catalog and fixtures.
+     */
+    public static String getTierName(final int tier) {
+        return TIER_NAMES[tier];
+    }
+
+    private static int tierOf(final String name) {
+        for (int tier = 0; tier < TIER_NAMES.length; tier++) {
+            if (TIER_NAMES[tier].equals(name)) {
+                return tier;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Load the catalog packaged with the reporter.
+     * @throws IOException if it is missing from the classpath
+     */
+    public static ReporterCatalog load() throws IOException {
+        final InputStream in = ReporterCatalog.class.getClassLoader().getResourceAsStream(RESOURCE_NAME);
+        if (in == null) {
+            throw new IOException(RESOURCE_NAME + " not found on the classpath");
+        }
+        try {
+            return read(new InputStreamReader(in, CHARSET));
+        } finally {
+            in.close();
+        }
+    }
+
+    public static final class Entry {
+        private final String entity;
+        private final String type;
+        private final String context;
+        private final boolean deltaExportable;
+        private final int tier;
+
+        private Entry(final String entity, final String type, final String context, final boolean deltaExportable,
+                      final int tier) {
+            this.entity = entity;
+            this.type = type;
+            this.context = context;
+            this.deltaExportable = deltaExportable;
+            this.tier = tier;
+        }
+
+        public String getEntity() {
+            return entity;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getContext() {
+            return context;
+        }
+
+        public boolean isDeltaExportable() {
+            return deltaExportable;
+        }
+
+        public int getTier() {
+            return tier;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import kafka.utils.VerifiableProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The host:port of the catalog reporters of the other brokers, that the latency histograms,
+ * throughput skew and consumer lag are merged from, see {@link LatencyInstaller},
+ * {@link ThroughputSkewInstaller} and {@link ConsumerLagInstaller}.
+ */
+final class ReporterPeers {
+
+    static final String PEERS_PROPERTY = "kafka.metrics.peers";
+
+    private ReporterPeers() {}
+
+    /**
+     * @return the comma separated peers of the broker configuration, or an empty list
+     */
+    static List<String> parse(final VerifiableProperties props) {
+        final String value = props.getString(PEERS_PROPERTY, "");
+        final List<String> peers = new ArrayList<String>();
+        for (String peer : value.split(",")) {
+            if (!peer.trim().isEmpty()) {
+                peers.add(peer.trim());
+            }
+        }
+        return Collections.unmodifiableList(peers);
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The daemon threads of {@link CatalogMetricsReporter} and of its features.
+ *
+ * Tasks scheduled under the same thread name share a single thread, so for example the
+ * latency histograms and the throughput skew are merged from the peers one after the other.
+ * A task that fails is logged and runs again at its next period.
+ */
+final class ReporterSchedulers {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReporterSchedulers.class);
+
+    private final Map<String, ScheduledExecutorService> schedulers = new LinkedHashMap<String, ScheduledExecutorService>();
+    private ExecutorService httpExecutor;
+
+    /**
+     * Run a task every period, on the thread of the given name.
+     * @param delay the delay of the first run, in seconds
+     * @param period the period, in seconds
+     * @param failure what to log when the task fails
+     */
+    synchronized void schedule(final String thread, final Runnable task, final long delay, final long period,
+                               final String failure) {
+        ScheduledExecutorService scheduler = schedulers.get(thread);
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(thread));
+            schedulers.put(thread, scheduler);
+        }
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LOG.warn(failure, e);
+                }
+            }
+        }, delay, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return the single thread executor of the HTTP server
+     */
+    synchronized ExecutorService getHttpExecutor() {
+        if (httpExecutor == null) {
+            httpExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("kafka-metrics-http"));
+        }
+        return httpExecutor;
+    }
+
+    /**
+     * Stop all the threads without waiting for the running tasks.
+     */
+    synchronized void shutdown() {
+        if (httpExecutor != null) {
+            httpExecutor.shutdownNow();
+            httpExecutor = null;
+        }
+        for (ScheduledExecutorService scheduler : schedulers.values()) {
+            scheduler.shutdownNow();
+        }
+        schedulers.clear();
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+
+        private DaemonThreadFactory(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import java.util.Arrays;
+
+/**
+ * The max to mean ratio and the Gini coefficient of series of values across a fixed number
+ * of columns, updated incrementally as single values change.
+ *
+ * Every series keeps the count, sum and maximum of its present values, and the sum of the
+ * absolute differences of all pairs of them. Changing a value updates the pair sum against
+ * the other values of its series, in O(columns), and only rescans the series when its
+ * maximum decreases. The Gini coefficient is the pair sum divided by the count times the
+ * sum: 0 when the values are even, approaching 1 when one column has them all.
+ *
+ * Values are held in a row per series, so series can be added without moving the others.
+ * Not thread safe.
+ */
+final class SkewStats {
+
+    private final int columns;
+    private double[] values = new double[0];
+    private boolean[] present = new boolean[0];
+    private int[] counts = new int[0];
+    private double[] sums = new double[0];
+    private double[] pairSums = new double[0];
+    private double[] maxima = new double[0];
+    private int series;
+
+    SkewStats(final int columns) {
+        this.columns = columns;
+    }
+
+    int getColumns() {
+        return columns;
+    }
+
+    int getSeriesCount() {
+        return series;
+    }
+
+    /**
+     * @return the index of the new series, without values
+     */
+    int addSeries() {
+        if (series == counts.length) {
+            final int capacity = Math.max(16, series * 2);
+            values = Arrays.copyOf(values, capacity * columns);
+            present = Arrays.copyOf(present, capacity * columns);
+            counts = Arrays.copyOf(counts, capacity);
+            sums = Arrays.copyOf(sums, capacity);
+            pairSums = Arrays.copyOf(pairSums, capacity);
+            maxima = Arrays.copyOf(maxima, capacity);
+        }
+        return series++;
+    }
+
+    boolean isPresent(final int row, final int column) {
+        return present[row * columns + column];
+    }
+
+    /**
+     * Set the value of a column of a series. NaN values are removed.
+     */
+    void set(final int row, final int column, final double value) {
+        if (Double.isNaN(value)) {
+            remove(row, column);
+            return;
+        }
+        final int slot = row * columns + column;
+        if (present[slot]) {
+            final double old = values[slot];
+            if (old == value) {
+                return;
+            }
+            pairSums[row] += differenceSum(row, column, value) - differenceSum(row, column, old);
+            sums[row] += value - old;
+            values[slot] = value;
+            if (value >= maxima[row]) {
+                maxima[row] = value;
+            } else if (old == maxima[row]) {
+                maxima[row] = scanMaximum(row);
+            }
+        } else {
+            pairSums[row] += differenceSum(row, column, value);
+            sums[row] += value;
+            counts[row]++;
+            values[slot] = value;
+            present[slot] = true;
+            if (counts[row] == 1 || value > maxima[row]) {
+                maxima[row] = value;
+            }
+        }
+    }
+
+    void remove(final int row, final int column) {
+        final int slot = row * columns + column;
+        if (!present[slot]) {
+            return;
+        }
+        final double old = values[slot];
+        present[slot] = false;
+        counts[row]--;
+        if (counts[row] == 0) {
+            // Also clears the rounding errors accumulated by the series
+            sums[row] = 0;
+            pairSums[row] = 0;
+            maxima[row] = 0;
+            return;
+        }
+        pairSums[row] -= differenceSum(row, column, old);
+        sums[row] -= old;
+        if (old == maxima[row]) {
+            maxima[row] = scanMaximum(row);
+        }
+    }
+
+    int getCount(final int row) {
+        return counts[row];
+    }
+
+    double getSum(final int row) {
+        return sums[row];
+    }
+
+    /**
+     * @return the largest value of the series divided by the mean of its values, 1 if they
+     *         are all 0, or NaN if the series has no values
+     */
+    double maxMeanRatio(final int row) {
+        if (counts[row] == 0) {
+            return Double.NaN;
+        }
+        // Idle topics are even, rather than dividing by a zero mean
+        return sums[row] <= 0 ? 1 : maxima[row] * counts[row] / sums[row];
+    }
+
+    /**
+     * @return the Gini coefficient of the values of the series, 0 if they are all 0, or NaN
+     *         if the series has no values
+     */
+    double gini(final int row) {
+        if (counts[row] == 0) {
+            return Double.NaN;
+        }
+        return sums[row] <= 0 ? 0 : Math.max(0, Math.min(1, pairSums[row] / (counts[row] * sums[row])));
+    }
+
+    /**
+     * The sum of the absolute differences of a value to the present values of the other
+     * columns of its series.
+     */
+    private double differenceSum(final int row, final int column, final double value) {
+        double ret = 0;
+        final int base = row * columns;
+        for (int other = 0; other < columns; other++) {
+            if (other != column && present[base + other]) {
+                ret += Math.abs(value - values[base + other]);
+            }
+        }
+        return ret;
+    }
+
+    private double scanMaximum(final int row) {
+        double ret = 0;
+        final int base = row * columns;
+        for (int column = 0; column < columns; column++) {
+            if (present[base + column] && values[base + column] > ret) {
+                ret = values[base + column];
+            }
+        }
+        return ret;
+    }
+}
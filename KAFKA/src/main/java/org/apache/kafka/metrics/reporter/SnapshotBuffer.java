@@ -0,0 +1,43 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import java.util.Arrays;
+
+/**
+ * The values of one snapshot of the metrics of an index.
+ *
+ * The snapshot thread increments the sequence before and after it writes the values, so
+ * a reader that sees the same even sequence before and after reading saw a complete snapshot.
+ */
+final class SnapshotBuffer {
+
+    final SnapshotIndex index;
+    final double[] values;
+    // Whether each slot of the index is rendered
+    final boolean[] exported;
+    volatile int sequence;
+    volatile long timestamp;
+
+    SnapshotBuffer(final SnapshotIndex index) {
+        this.index = index;
+        this.values = new double[index.width];
+        this.exported = new boolean[index.size()];
+        Arrays.fill(exported, true);
+    }
+}
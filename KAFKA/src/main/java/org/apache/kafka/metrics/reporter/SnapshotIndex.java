@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.Metered;
+import com.yammer.metrics.core.Metric;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.Timer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The registered metrics that are in the catalog, resolved once and laid out as slots of a
+ * primitive value array. Slots are sorted by group and name, which is the order they are
+ * rendered in.
+ *
+ * A delta export compares the slots of delta exportable metrics with the previous export:
+ * the value of gauges and rollups, the count of counters, and the count and rates of meters.
+ * Slots are also grouped by the collection tier of their metric, rollups are computed at the
+ * default tier.
+ */
+final class SnapshotIndex {
+
+    static final byte GAUGE = 0;
+    static final byte COUNTER = 1;
+    static final byte METER = 2;
+    static final byte HISTOGRAM = 3;
+    static final byte TIMER = 4;
+    // Computed by the replica, fetcher or log directory rollup, the latency histograms, the throughput skew or
+    // the consumer lag, has no metric
+    static final byte ROLLUP = 5;
+
+    // count, mean, m1, m5, m15
+    static final int METERED_WIDTH = 5;
+    // min, max, mean, std_dev, median, p75, p95, p98, p99, p999
+    static final int SAMPLED_WIDTH = 10;
+
+    final String[] groups;
+    final String[] names;
+    final Metric[] metrics;
+    final byte[] kinds;
+    final int[] offsets;
+    final boolean[] deltaExportable;
+    // The slots of the metrics of each collection tier, indexed by tier
+    final int[][] tierSlots;
+    final int width;
+
+    private SnapshotIndex(final SortedMap<String, SortedMap<String, Metric>> resolved,
+                          final Map<String, ReporterCatalog.Entry> entries) {
+        int size = 0;
+        for (SortedMap<String, Metric> group : resolved.values()) {
+            size += group.size();
+        }
+        groups = new String[size];
+        names = new String[size];
+        metrics = new Metric[size];
+        kinds = new byte[size];
+        offsets = new int[size];
+        deltaExportable = new boolean[size];
+        final int[] tiers = new int[size];
+        final int[] tierSizes = new int[ReporterCatalog.TIER_NAMES.length];
+
+        int slot = 0;
+        int offset = 0;
+        for (Map.Entry<String, SortedMap<String, Metric>> group : resolved.entrySet()) {
+            for (Map.Entry<String, Metric> metric : group.getValue().entrySet()) {
+                groups[slot] = group.getKey();
+                names[slot] = metric.getKey();
+                metrics[slot] = metric.getValue();
+                kinds[slot] = metric.getValue() == null ? ROLLUP : kindOf(metric.getValue());
+                offsets[slot] = offset;
+                final ReporterCatalog.Entry entry = entries.get(group.getKey() + "::" + metric.getKey());
+                // Rollups are gauges computed from delta exportable metrics
+                deltaExportable[slot] = kinds[slot] == ROLLUP || entry.isDeltaExportable();
+                tiers[slot] = kinds[slot] == ROLLUP ? ReporterCatalog.TIER_DEFAULT : entry.getTier();
+                tierSizes[tiers[slot]]++;
+                offset += widthOf(kinds[slot]);
+                slot++;
+            }
+        }
+        width = offset;
+
+        tierSlots = new int[tierSizes.length][];
+        for (int tier = 0; tier < tierSizes.length; tier++) {
+            tierSlots[tier] = new int[tierSizes[tier]];
+            tierSizes[tier] = 0;
+        }
+        for (slot = 0; slot < size; slot++) {
+            tierSlots[tiers[slot]][tierSizes[tiers[slot]]++] = slot;
+        }
+    }
+
+    int size() {
+        return metrics.length;
+    }
+
+    /**
+     * Resolve the metrics of the catalog against the registered metrics, and add the
+     * slots of the replica, fetcher and log directory rollups, of the latency percentiles, of
+     * the throughput skew and of the consumer lag.
+     */
+    static SnapshotIndex build(final Map<MetricName, Metric> registered, final ReporterCatalog catalog,
+                               final LatencyHistograms latency, final DiskStats disks, final ThroughputSkew skew,
+                               final ConsumerGroupLag lag) {
+        final SortedMap<String, SortedMap<String, Metric>> resolved = new TreeMap<String, SortedMap<String, Metric>>();
+        final Map<String, ReporterCatalog.Entry> entries = new HashMap<String, ReporterCatalog.Entry>();
+        for (Map.Entry<MetricName, Metric> entry : registered.entrySet()) {
+            final MetricName name = entry.getKey();
+            if (kindOf(entry.getValue()) < 0) {
+                continue;
+            }
+            final String root = name.getGroup() + "." + name.getType();
+            final String group = name.hasScope() ? root + "." + name.getScope() : root;
+            final String unscoped = name.hasScope() ? root + "::" + name.getName() : null;
+            final String context = group + "::" + name.getName();
+            final ReporterCatalog.Entry catalogEntry = catalog.lookup(context, unscoped);
+            if (catalogEntry == null) {
+                continue;
+            }
+            entries.put(context, catalogEntry);
+            SortedMap<String, Metric> metrics = resolved.get(group);
+            if (metrics == null) {
+                metrics = new TreeMap<String, Metric>();
+                resolved.put(group, metrics);
+            }
+            metrics.put(name.getName(), entry.getValue());
+        }
+        ReplicaRollup.addSlots(resolved);
+        FetcherRollup.addSlots(resolved);
+        LogDirectoryRollup.addSlots(resolved, disks);
+        latency.addSlots(resolved);
+        skew.addSlots(resolved);
+        lag.addSlots(resolved);
+        return new SnapshotIndex(resolved, entries);
+    }
+
+    static int widthOf(final byte kind) {
+        switch (kind) {
+            case METER:
+                return METERED_WIDTH;
+            case HISTOGRAM:
+                return 1 + SAMPLED_WIDTH;
+            case TIMER:
+                return METERED_WIDTH + SAMPLED_WIDTH;
+            default:
+                return 1;
+        }
+    }
+
+    private static byte kindOf(final Metric metric) {
+        if (metric instanceof Gauge) {
+            return GAUGE;
+        } else if (metric instanceof Counter) {
+            return COUNTER;
+        } else if (metric instanceof Timer) {
+            return TIMER;
+        } else if (metric instanceof Metered) {
+            return METER;
+        } else if (metric instanceof Histogram) {
+            return HISTOGRAM;
+        }
+        return -1;
+    }
+}
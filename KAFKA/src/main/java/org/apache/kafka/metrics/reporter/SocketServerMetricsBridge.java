@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.apache.kafka.common.metrics.KafkaMetric;
+import org.apache.kafka.common.metrics.MetricsReporter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Kafka metrics reporter, set with metric.reporters, that copies the per network processor
+ * metrics of the broker socket server into the Yammer registry, so that they are exported
+ * by the Kafka metrics reporters of kafka.metrics.reporters.
+ *
+ * The socket server registers these metrics in Kafka's own metrics library from Kafka 0.9,
+ * whose network layer replaced the 0.8 one, so on older brokers the bridge copies nothing.
+ * They are in the socket-server-metrics group and tagged with the network processor and,
+ * from Kafka 1.0, its listener. They are registered as gauges of kafka.network.SocketServerMetrics with the
+ * scope "listener.&lt;listener&gt;.networkProcessor.&lt;id&gt;", or "networkProcessor.&lt;id&gt;"
+ * without a listener:
+ * <ul>
+ *   <li>IdleRatio: io-wait-ratio, the fraction of time the selector waited for connections
+ *       to be ready, which is the time the processor was idle</li>
+ *   <li>IoRatio: io-ratio, the fraction of time spent reading and writing</li>
+ *   <li>IoWaitTimeNsAvg: io-wait-time-ns-avg, the average time of a wait</li>
+ *   <li>ConnectionCount: connection-count, the number of open connections</li>
+ *   <li>ConnectionCreationRate: connection-creation-rate, new connections per second</li>
+ * </ul>
+ * MinIdleRatio, without a scope, is the lowest idle ratio of all processors: a single busy
+ * processor delays every connection assigned to it even if the average looks healthy.
+ */
+public class SocketServerMetricsBridge implements MetricsReporter {
+
+    static final String YAMMER_GROUP = "kafka.network";
+    static final String YAMMER_TYPE = "SocketServerMetrics";
+
+    static final String KAFKA_GROUP = "socket-server-metrics";
+    static final String PROCESSOR_TAG = "networkProcessor";
+    static final String LISTENER_TAG = "listener";
+    static final String MIN_IDLE_RATIO = "MinIdleRatio";
+
+    private static final String IDLE_RATIO = "io-wait-ratio";
+    private static final String[] KAFKA_NAMES = {
+            IDLE_RATIO, "io-ratio", "io-wait-time-ns-avg", "connection-count", "connection-creation-rate" };
+    private static final String[] YAMMER_NAMES = {
+            "IdleRatio", "IoRatio", "IoWaitTimeNsAvg", "ConnectionCount", "ConnectionCreationRate" };
+
+    private final MetricsRegistry registry;
+    private final Map<MetricName, KafkaMetric> bridged = new ConcurrentHashMap<MetricName, KafkaMetric>();
+    private final Map<MetricName, KafkaMetric> idleRatios = new ConcurrentHashMap<MetricName, KafkaMetric>();
+
+    public SocketServerMetricsBridge() {
+        this(Metrics.defaultRegistry());
+    }
+
+    SocketServerMetricsBridge(final MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void configure(final Map<String, ?> configs) {
+    }
+
+    @Override
+    public void init(final List<KafkaMetric> metrics) {
+        registry.newGauge(new MetricName(YAMMER_GROUP, YAMMER_TYPE, MIN_IDLE_RATIO), new Gauge<Double>() {
+            @Override
+            public Double value() {
+                return getMinIdleRatio();
+            }
+        });
+        for (KafkaMetric metric : metrics) {
+            metricChange(metric);
+        }
+    }
+
+    @Override
+    public void metricChange(final KafkaMetric metric) {
+        final MetricName name = toYammerName(metric.metricName());
+        if (name == null) {
+            return;
+        }
+        // Kafka replaces a metric by registering it again, the gauge reads the latest one
+        if (bridged.put(name, metric) == null) {
+            registry.newGauge(name, new Gauge<Double>() {
+                @Override
+                public Double value() {
+                    final KafkaMetric current = bridged.get(name);
+                    return current == null ? Double.NaN : current.value();
+                }
+            });
+        }
+        if (IDLE_RATIO.equals(metric.metricName().name())) {
+            idleRatios.put(name, metric);
+        }
+    }
+
+    // Declared by MetricsReporter from Kafka 0.9, the pinned 0.8.2 clients never call it
+    public void metricRemoval(final KafkaMetric metric) {
+        final MetricName name = toYammerName(metric.metricName());
+        if (name != null && bridged.remove(name) != null) {
+            idleRatios.remove(name);
+            registry.removeMetric(name);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (MetricName name : bridged.keySet()) {
+            registry.removeMetric(name);
+        }
+        bridged.clear();
+        idleRatios.clear();
+        registry.removeMetric(new MetricName(YAMMER_GROUP, YAMMER_TYPE, MIN_IDLE_RATIO));
+    }
+
+    /**
+     * @return the lowest idle ratio of the network processors, or NaN before any is registered
+     */
+    double getMinIdleRatio() {
+        double min = Double.NaN;
+        for (KafkaMetric metric : idleRatios.values()) {
+            final double value = metric.value();
+            if (!Double.isNaN(value) && (Double.isNaN(min) || value < min)) {
+                min = value;
+            }
+        }
+        return min;
+    }
+
+    /**
+     * @return the Yammer name of a bridged metric, or null if the metric is not bridged
+     */
+    static MetricName toYammerName(final org.apache.kafka.common.MetricName name) {
+        if (!KAFKA_GROUP.equals(name.group())) {
+            return null;
+        }
+        final String processor = name.tags().get(PROCESSOR_TAG);
+        if (processor == null) {
+            return null;
+        }
+        for (int i = 0; i < KAFKA_NAMES.length; i++) {
+            if (KAFKA_NAMES[i].equals(name.name())) {
+                final String listener = name.tags().get(LISTENER_TAG);
+                final String scope = listener == null
+                        ? PROCESSOR_TAG + "." + processor
+                        : LISTENER_TAG + "." + listener + "." + PROCESSOR_TAG + "." + processor;
+                return new MetricName(YAMMER_GROUP, YAMMER_TYPE, YAMMER_NAMES[i], scope);
+            }
+        }
+        return null;
+    }
+}
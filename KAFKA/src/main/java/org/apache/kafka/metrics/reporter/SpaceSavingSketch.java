@@ -0,0 +1,265 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import java.util.Arrays;
+
+/**
+ * Space-Saving heavy hitter sketch over dense integer keys.
+ *
+ * At most capacity keys are monitored, in a min-heap ordered by count. An unmonitored key
+ * replaces the key with the smallest count and inherits that count as its error, so every
+ * count overestimates the real weight by at most total weight / capacity.
+ *
+ * Counts only grow with offers, so {@link #decay} scales them down between offers to make
+ * the sketch favour the recent weights, and {@link #carryOver} moves the monitored keys to
+ * a sketch over a different key numbering.
+ */
+final class SpaceSavingSketch {
+
+    private final int capacity;
+    private final int[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    // Heap position of every key, or -1 if it is not monitored
+    private final int[] positions;
+    private final long[] scratch;
+    private int size;
+
+    /**
+     * @param capacity the number of keys to monitor
+     * @param keyCount keys are in [0, keyCount)
+     */
+    SpaceSavingSketch(final int capacity, final int keyCount) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.keys = new int[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.scratch = new long[capacity];
+        this.positions = new int[keyCount];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * The capacity that bounds the error of every count by epsilon times the total weight.
+     */
+    static int capacityFor(final double epsilon) {
+        if (epsilon <= 0 || epsilon > 1) {
+            throw new IllegalArgumentException("Error bound must be in (0, 1]: " + epsilon);
+        }
+        return (int) Math.ceil(1 / epsilon);
+    }
+
+    void offer(final int key, final long weight) {
+        int position = positions[key];
+        if (position >= 0) {
+            counts[position] += weight;
+        } else if (size < capacity) {
+            position = size++;
+            keys[position] = key;
+            counts[position] = weight;
+            errors[position] = 0;
+            positions[key] = position;
+            siftUp(position);
+            return;
+        } else {
+            // Replace the key with the smallest count, which is the root of the heap
+            position = 0;
+            positions[keys[0]] = -1;
+            errors[0] = counts[0];
+            counts[0] += weight;
+            keys[0] = key;
+            positions[key] = 0;
+        }
+        siftDown(position);
+    }
+
+    /**
+     * Scale all the counts and errors, for example by 0.5 every half-life for exponentially
+     * decaying weights. Scaling preserves the order of the counts, so the heap stays valid.
+     * @param factor the scale, in [0, 1]
+     */
+    void decay(final double factor) {
+        if (factor < 0 || factor > 1) {
+            throw new IllegalArgumentException("Decay factor must be in [0, 1]: " + factor);
+        }
+        for (int i = 0; i < size; i++) {
+            counts[i] = (long) (counts[i] * factor);
+            errors[i] = (long) (errors[i] * factor);
+        }
+    }
+
+    /**
+     * Monitor the keys of another sketch with their counts and errors, renumbered. If they
+     * do not all fit, the keys with the largest counts are kept.
+     * @param other the sketch to copy
+     * @param keyMap the key in this sketch of every key of the other sketch, or -1 to drop it
+     */
+    void carryOver(final SpaceSavingSketch other, final int[] keyMap) {
+        if (size != 0) {
+            throw new IllegalStateException("Only an empty sketch can carry over another one");
+        }
+        for (int i = 0; i < other.size; i++) {
+            final int key = keyMap[other.keys[i]];
+            if (key < 0) {
+                continue;
+            }
+            if (size < capacity) {
+                final int position = size++;
+                keys[position] = key;
+                counts[position] = other.counts[i];
+                errors[position] = other.errors[i];
+                positions[key] = position;
+                siftUp(position);
+            } else if (other.counts[i] > counts[0]) {
+                positions[keys[0]] = -1;
+                keys[0] = key;
+                counts[0] = other.counts[i];
+                errors[0] = other.errors[i];
+                positions[key] = 0;
+                siftDown(0);
+            }
+        }
+    }
+
+    /**
+     * The estimated weight of a key, or 0 if it is not monitored.
+     */
+    long count(final int key) {
+        final int position = positions[key];
+        return position < 0 ? 0 : counts[position];
+    }
+
+    /**
+     * The maximum overestimation of the weight of a key.
+     */
+    long error(final int key) {
+        final int position = positions[key];
+        return position < 0 ? 0 : errors[position];
+    }
+
+    /**
+     * Select the k monitored keys with the largest counts.
+     * @param k the number of keys to select
+     * @param selected set to true for the selected keys, and left untouched for the others
+     */
+    void selectTop(final int k, final boolean[] selected) {
+        if (size <= k) {
+            for (int i = 0; i < size; i++) {
+                selected[keys[i]] = true;
+            }
+            return;
+        }
+        System.arraycopy(counts, 0, scratch, 0, size);
+        final long threshold = kthLargest(scratch, size, k);
+        int remaining = k;
+        for (int i = 0; i < size; i++) {
+            if (counts[i] > threshold) {
+                selected[keys[i]] = true;
+                remaining--;
+            }
+        }
+        for (int i = 0; i < size && remaining > 0; i++) {
+            if (counts[i] == threshold) {
+                selected[keys[i]] = true;
+                remaining--;
+            }
+        }
+    }
+
+    /**
+     * Find the k-th largest of the first length values, reordering them.
+     */
+    static long kthLargest(final long[] values, final int length, final int k) {
+        final int target = length - k;
+        int low = 0;
+        int high = length - 1;
+        while (low < high) {
+            final long pivot = values[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    final long tmp = values[i];
+                    values[i] = values[j];
+                    values[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (target <= j) {
+                high = j;
+            } else if (target >= i) {
+                low = i;
+            } else {
+                break;
+            }
+        }
+        return values[target];
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            final int parent = (position - 1) >>> 1;
+            if (counts[parent] <= counts[position]) {
+                break;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            final int left = 2 * position + 1;
+            if (left >= size) {
+                break;
+            }
+            final int right = left + 1;
+            final int child = right < size && counts[right] < counts[left] ? right : left;
+            if (counts[position] <= counts[child]) {
+                break;
+            }
+            swap(position, child);
+            position = child;
+        }
+    }
+
+    private void swap(final int a, final int b) {
+        final int key = keys[a];
+        final long count = counts[a];
+        final long error = errors[a];
+        keys[a] = keys[b];
+        counts[a] = counts[b];
+        errors[a] = errors[b];
+        keys[b] = key;
+        counts[b] = count;
+        errors[b] = error;
+        positions[keys[a]] = a;
+        positions[keys[b]] = b;
+    }
+}
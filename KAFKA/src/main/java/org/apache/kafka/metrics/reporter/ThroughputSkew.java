@@ -0,0 +1,475 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.core.Metric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The skew of the bytes in and out of the brokers, per topic and for the whole cluster.
+ *
+ * Every snapshot publishes the one minute BytesInPerSec and BytesOutPerSec rates of the
+ * topics of this broker, and of the broker as a whole, which are served on {@link #PATH}.
+ * A broker configured with the addresses of the other brokers reads their rates on the
+ * merge thread and keeps the max to mean ratio and the Gini coefficient of every topic
+ * across the brokers that report it, and of the broker totals, in {@link SkewStats}. Only
+ * the rates that changed since the previous merge update them.
+ *
+ * The cluster skew is reported under {@link #CLUSTER_ROOT}, and the topic skew under
+ * {@link #CLUSTER_ROOT} scoped as "topic.&lt;topic&gt;". Both are reported by the active
+ * controller only, so that the service and each topic have a single source. Topics that no
+ * broker reported before the index was built are added when the index is rebuilt.
+ */
+public final class ThroughputSkew {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ThroughputSkew.class);
+
+    public static final String CLUSTER_ROOT = "kafka.server.ClusterTopicMetrics";
+
+    public static final String BYTES_IN_MAX_MEAN_RATIO = "BytesInMaxMeanRatio";
+    public static final String BYTES_IN_GINI = "BytesInGini";
+    public static final String BYTES_OUT_MAX_MEAN_RATIO = "BytesOutMaxMeanRatio";
+    public static final String BYTES_OUT_GINI = "BytesOutGini";
+
+    private static final String[] NAMES = { BYTES_IN_MAX_MEAN_RATIO, BYTES_IN_GINI, BYTES_OUT_MAX_MEAN_RATIO, BYTES_OUT_GINI };
+
+    static final String PATH = "/api/throughput";
+
+    private static final String BYTES_IN = "BytesInPerSec";
+    private static final String BYTES_OUT = "BytesOutPerSec";
+    private static final String TOPIC_SCOPE = ".topic.";
+    private static final String TOPIC_GROUP_PREFIX = ReporterCatalog.TOPIC_ROOT + TOPIC_SCOPE;
+    private static final String CLUSTER_TOPIC_GROUP_PREFIX = CLUSTER_ROOT + TOPIC_SCOPE;
+    static final String CONTROLLER_GROUP = "kafka.controller.KafkaController";
+    static final String ACTIVE_CONTROLLER_COUNT = "ActiveControllerCount";
+
+    private static final int TIMEOUT_MS = 5000;
+
+    private final List<String> peers;
+    private final int brokerId;
+
+    private volatile LocalRates localRates;
+
+    // Merge thread state. Column 0 is this broker, the others are the peers in order.
+    private final SkewStats topicBytesIn;
+    private final SkewStats topicBytesOut;
+    private final SkewStats brokerBytesIn;
+    private final SkewStats brokerBytesOut;
+    private final Map<String, Integer> topicRows = new HashMap<String, Integer>();
+    private final List<String> topicNames = new ArrayList<String>();
+    private int[] seen = new int[0];
+    private int stamp;
+
+    private volatile Results results = new Results(new String[0], new double[0], nanValues(), 0);
+
+    /**
+     * @param peers the host:port of the reporters of the other brokers, or an empty list
+     * @param brokerId the id of this broker, to recognize it among the peers
+     */
+    ThroughputSkew(final List<String> peers, final int brokerId) {
+        this.peers = peers;
+        this.brokerId = brokerId;
+        final int columns = peers.size() + 1;
+        topicBytesIn = new SkewStats(columns);
+        topicBytesOut = new SkewStats(columns);
+        brokerBytesIn = new SkewStats(columns);
+        brokerBytesOut = new SkewStats(columns);
+        brokerBytesIn.addSeries();
+        brokerBytesOut.addSeries();
+    }
+
+    boolean hasPeers() {
+        return !peers.isEmpty();
+    }
+
+    /**
+     * Add the skew slots of the cluster and of the topics merged so far to the resolved
+     * metrics. Rollup slots have no metric.
+     */
+    void addSlots(final SortedMap<String, SortedMap<String, Metric>> resolved) {
+        if (!hasPeers()) {
+            return;
+        }
+        addSlots(resolved, CLUSTER_ROOT);
+        for (String topic : results.topics) {
+            addSlots(resolved, CLUSTER_TOPIC_GROUP_PREFIX + topic);
+        }
+    }
+
+    private static void addSlots(final SortedMap<String, SortedMap<String, Metric>> resolved, final String group) {
+        SortedMap<String, Metric> metrics = resolved.get(group);
+        if (metrics == null) {
+            metrics = new TreeMap<String, Metric>();
+            resolved.put(group, metrics);
+        }
+        for (String name : NAMES) {
+            metrics.put(name, null);
+        }
+    }
+
+    /**
+     * Find the slots of an index that the rates are read from and the skew is written to.
+     */
+    Binding bind(final SnapshotIndex index) {
+        return new Binding(index, results);
+    }
+
+    /**
+     * Write the rates of the last snapshot.
+     */
+    void write(final DataOutput out) throws IOException {
+        final LocalRates rates = localRates;
+        out.writeInt(brokerId);
+        if (rates == null) {
+            out.writeDouble(Double.NaN);
+            out.writeDouble(Double.NaN);
+            out.writeInt(0);
+            return;
+        }
+        out.writeDouble(rates.totalIn);
+        out.writeDouble(rates.totalOut);
+        out.writeInt(rates.topics.length);
+        for (int i = 0; i < rates.topics.length; i++) {
+            out.writeUTF(rates.topics[i]);
+            out.writeDouble(rates.bytesIn[i]);
+            out.writeDouble(rates.bytesOut[i]);
+        }
+    }
+
+    /**
+     * Read the rates of this broker and of its peers into the skew statistics and publish
+     * the skew. Runs on its own thread because peers may be slow to answer.
+     */
+    void mergePeers() {
+        final LocalRates rates = localRates;
+        if (rates == null) {
+            removeColumn(0);
+        } else {
+            beginColumn();
+            for (int i = 0; i < rates.topics.length; i++) {
+                setTopic(rates.topics[i], 0, rates.bytesIn[i], rates.bytesOut[i]);
+            }
+            endColumn(0, rates.totalIn, rates.totalOut);
+        }
+        for (int peer = 0; peer < peers.size(); peer++) {
+            try {
+                readPeer(peers.get(peer), peer + 1);
+            } catch (IOException e) {
+                LOG.warn("Unable to read throughput from " + peers.get(peer) + ", leaving it out of the skew", e);
+                removeColumn(peer + 1);
+            }
+        }
+        publish();
+    }
+
+    private void readPeer(final String peer, final int column) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL("http://" + peer + PATH).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        final InputStream in = connection.getInputStream();
+        try {
+            final DataInputStream data = new DataInputStream(in);
+            if (data.readInt() == brokerId) {
+                // This broker is in its own peer list
+                removeColumn(column);
+                return;
+            }
+            final double totalIn = data.readDouble();
+            final double totalOut = data.readDouble();
+            final int count = data.readInt();
+            beginColumn();
+            for (int i = 0; i < count; i++) {
+                final String topic = data.readUTF();
+                setTopic(topic, column, data.readDouble(), data.readDouble());
+            }
+            endColumn(column, totalIn, totalOut);
+        } finally {
+            in.close();
+            connection.disconnect();
+        }
+    }
+
+    private void beginColumn() {
+        stamp++;
+    }
+
+    private void setTopic(final String topic, final int column, final double bytesIn, final double bytesOut) {
+        Integer row = topicRows.get(topic);
+        if (row == null) {
+            row = topicBytesIn.addSeries();
+            topicBytesOut.addSeries();
+            topicRows.put(topic, row);
+            topicNames.add(topic);
+            if (row == seen.length) {
+                seen = Arrays.copyOf(seen, Math.max(16, row * 2));
+            }
+        }
+        topicBytesIn.set(row, column, bytesIn);
+        topicBytesOut.set(row, column, bytesOut);
+        seen[row] = stamp;
+    }
+
+    /**
+     * Remove the topics the column no longer reports, and set its broker totals.
+     */
+    private void endColumn(final int column, final double totalIn, final double totalOut) {
+        for (int row = 0; row < topicNames.size(); row++) {
+            if (seen[row] != stamp) {
+                topicBytesIn.remove(row, column);
+                topicBytesOut.remove(row, column);
+            }
+        }
+        brokerBytesIn.set(0, column, totalIn);
+        brokerBytesOut.set(0, column, totalOut);
+    }
+
+    private void removeColumn(final int column) {
+        beginColumn();
+        endColumn(column, Double.NaN, Double.NaN);
+    }
+
+    private void publish() {
+        int count = 0;
+        for (int row = 0; row < topicNames.size(); row++) {
+            if (topicBytesIn.getCount(row) > 0 || topicBytesOut.getCount(row) > 0) {
+                count++;
+            }
+        }
+        final String[] topics = new String[count];
+        final double[] values = new double[count * NAMES.length];
+        int topic = 0;
+        for (int row = 0; row < topicNames.size(); row++) {
+            if (topicBytesIn.getCount(row) > 0 || topicBytesOut.getCount(row) > 0) {
+                topics[topic] = topicNames.get(row);
+                writeSkew(topicBytesIn, topicBytesOut, row, values, topic * NAMES.length);
+                topic++;
+            }
+        }
+        final double[] cluster = new double[NAMES.length];
+        writeSkew(brokerBytesIn, brokerBytesOut, 0, cluster, 0);
+
+        final Results previous = results;
+        final int version = Arrays.equals(topics, previous.topics) ? previous.version : previous.version + 1;
+        results = new Results(topics, values, cluster, version);
+    }
+
+    private static void writeSkew(final SkewStats bytesIn, final SkewStats bytesOut, final int row,
+                                  final double[] values, final int offset) {
+        values[offset] = bytesIn.maxMeanRatio(row);
+        values[offset + 1] = bytesIn.gini(row);
+        values[offset + 2] = bytesOut.maxMeanRatio(row);
+        values[offset + 3] = bytesOut.gini(row);
+    }
+
+    private static double[] nanValues() {
+        final double[] ret = new double[NAMES.length];
+        Arrays.fill(ret, Double.NaN);
+        return ret;
+    }
+
+    /**
+     * The one minute rates of the topics of this broker in a snapshot.
+     */
+    private static final class LocalRates {
+        final String[] topics;
+        final double[] bytesIn;
+        final double[] bytesOut;
+        double totalIn;
+        double totalOut;
+
+        LocalRates(final String[] topics) {
+            this.topics = topics;
+            bytesIn = new double[topics.length];
+            bytesOut = new double[topics.length];
+        }
+    }
+
+    /**
+     * The skew published by the merge thread. The version changes with the set of topics.
+     */
+    private static final class Results {
+        final String[] topics;
+        final double[] values;
+        final double[] cluster;
+        final int version;
+
+        Results(final String[] topics, final double[] values, final double[] cluster, final int version) {
+            this.topics = topics;
+            this.values = values;
+            this.cluster = cluster;
+            this.version = version;
+        }
+    }
+
+    /**
+     * The slots of an index, used on the snapshot thread.
+     */
+    final class Binding {
+        private final int version;
+        private final int[] bytesInOffsets;
+        private final int[] bytesOutOffsets;
+        private int totalInOffset = -1;
+        private int totalOutOffset = -1;
+        private int activeControllerOffset = -1;
+
+        // The rates are published alternately from two buffers, which are only overwritten
+        // one polling interval after they were published
+        private final LocalRates first;
+        private final LocalRates second;
+
+        // The slots and offsets of the skew of each topic of the results, or -1
+        private final int[] topicSlots;
+        private final int[] topicOffsets;
+        private final int[] clusterSlots;
+        private final int[] clusterOffsets;
+
+        private Binding(final SnapshotIndex index, final Results bound) {
+            version = bound.version;
+            final Map<String, Integer> localTopics = new HashMap<String, Integer>();
+            final Map<String, Integer> skewTopics = new HashMap<String, Integer>();
+            for (int i = 0; i < bound.topics.length; i++) {
+                skewTopics.put(bound.topics[i], i);
+            }
+            final List<String> names = new ArrayList<String>();
+            for (int i = 0; i < index.size(); i++) {
+                final String group = index.groups[i];
+                if (group.startsWith(TOPIC_GROUP_PREFIX) && index.kinds[i] == SnapshotIndex.METER
+                        && !localTopics.containsKey(group)) {
+                    localTopics.put(group, names.size());
+                    names.add(group.substring(TOPIC_GROUP_PREFIX.length()));
+                }
+            }
+            first = new LocalRates(names.toArray(new String[names.size()]));
+            second = new LocalRates(first.topics);
+            bytesInOffsets = filled(names.size());
+            bytesOutOffsets = filled(names.size());
+            topicSlots = filled(bound.topics.length * NAMES.length);
+            topicOffsets = filled(bound.topics.length * NAMES.length);
+            clusterSlots = filled(NAMES.length);
+            clusterOffsets = filled(NAMES.length);
+
+            for (int i = 0; i < index.size(); i++) {
+                final String group = index.groups[i];
+                final String name = index.names[i];
+                final int offset = index.offsets[i];
+                final Integer local = localTopics.get(group);
+                if (local != null) {
+                    if (BYTES_IN.equals(name)) {
+                        bytesInOffsets[local] = offset;
+                    } else if (BYTES_OUT.equals(name)) {
+                        bytesOutOffsets[local] = offset;
+                    }
+                } else if (ReporterCatalog.TOPIC_ROOT.equals(group) && index.kinds[i] == SnapshotIndex.METER) {
+                    if (BYTES_IN.equals(name)) {
+                        totalInOffset = offset;
+                    } else if (BYTES_OUT.equals(name)) {
+                        totalOutOffset = offset;
+                    }
+                } else if (CONTROLLER_GROUP.equals(group) && ACTIVE_CONTROLLER_COUNT.equals(name)) {
+                    activeControllerOffset = offset;
+                } else if (index.kinds[i] == SnapshotIndex.ROLLUP && CLUSTER_ROOT.equals(group)) {
+                    final int position = Arrays.asList(NAMES).indexOf(name);
+                    if (position >= 0) {
+                        clusterSlots[position] = i;
+                        clusterOffsets[position] = offset;
+                    }
+                } else if (index.kinds[i] == SnapshotIndex.ROLLUP && group.startsWith(CLUSTER_TOPIC_GROUP_PREFIX)) {
+                    final Integer topic = skewTopics.get(group.substring(CLUSTER_TOPIC_GROUP_PREFIX.length()));
+                    final int position = Arrays.asList(NAMES).indexOf(name);
+                    if (topic != null && position >= 0) {
+                        topicSlots[topic * NAMES.length + position] = i;
+                        topicOffsets[topic * NAMES.length + position] = offset;
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return whether the merge thread found topics this binding has no slots for, or
+         *         no longer reports topics it has slots for
+         */
+        boolean isStale() {
+            return hasPeers() && results.version != version;
+        }
+
+        /**
+         * Publish the rates of this broker from the values of a snapshot, and write the last
+         * merged skew.
+         * @param values the values of the snapshot
+         * @param exported set to false for the topic and cluster skew slots unless this
+         *                 broker is the active controller
+         */
+        void update(final double[] values, final boolean[] exported) {
+            final LocalRates rates = localRates == first ? second : first;
+            for (int topic = 0; topic < rates.topics.length; topic++) {
+                rates.bytesIn[topic] = oneMinuteRateAt(values, bytesInOffsets[topic]);
+                rates.bytesOut[topic] = oneMinuteRateAt(values, bytesOutOffsets[topic]);
+            }
+            rates.totalIn = oneMinuteRateAt(values, totalInOffset);
+            rates.totalOut = oneMinuteRateAt(values, totalOutOffset);
+            localRates = rates;
+
+            if (!hasPeers()) {
+                return;
+            }
+            final Results merged = results;
+            final boolean sameTopics = merged.version == version;
+            final boolean controller = activeControllerOffset >= 0 && values[activeControllerOffset] == 1;
+            for (int i = 0; i < topicSlots.length; i++) {
+                if (topicSlots[i] >= 0) {
+                    values[topicOffsets[i]] = sameTopics ? merged.values[i] : Double.NaN;
+                    exported[topicSlots[i]] = controller;
+                }
+            }
+            for (int position = 0; position < NAMES.length; position++) {
+                if (clusterSlots[position] >= 0) {
+                    values[clusterOffsets[position]] = merged.cluster[position];
+                    exported[clusterSlots[position]] = controller;
+                }
+            }
+        }
+    }
+
+    /**
+     * The one minute rate of a meter, the third of its slot values, or NaN.
+     */
+    private static double oneMinuteRateAt(final double[] values, final int offset) {
+        return offset < 0 ? Double.NaN : values[offset + 2];
+    }
+
+    private static int[] filled(final int length) {
+        final int[] ret = new int[length];
+        Arrays.fill(ret, -1);
+        return ret;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.sun.net.httpserver.HttpServer;
+import kafka.utils.VerifiableProperties;
+
+import java.util.List;
+
+/**
+ * Installs the {@link ThroughputSkew} of the topic bytes in and out across brokers.
+ *
+ * The topic rates of this broker are served to the peers on {@link ThroughputSkew#PATH}, and
+ * the peer rates are merged on the peer merge thread it shares with {@link LatencyInstaller}.
+ */
+final class ThroughputSkewInstaller {
+
+    static final String BROKER_ID_PROPERTY = "broker.id";
+
+    private ThroughputSkewInstaller() {}
+
+    static ThroughputSkew install(final VerifiableProperties props, final List<String> peers) {
+        return new ThroughputSkew(peers, props.getInt(BROKER_ID_PROPERTY, -1));
+    }
+
+    static void start(final ThroughputSkew skew, final HttpServer server, final ReporterSchedulers schedulers,
+                      final long pollingPeriodInSeconds) {
+        server.createContext(ThroughputSkew.PATH, new ThroughputHttpHandler(skew));
+        if (skew.hasPeers()) {
+            schedulers.schedule(LatencyInstaller.PEER_MERGE_THREAD, new Runnable() {
+                @Override
+                public void run() {
+                    skew.mergePeers();
+                }
+            }, pollingPeriodInSeconds, pollingPeriodInSeconds, "Unable to merge throughput skew");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.Metric;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+
+/**
+ * Gauge of the ZooKeeper request latency relative to the session timeout of the broker,
+ * registered next to the ZooKeeperClientMetrics of Kafka.
+ *
+ * ZooKeeper expires the session of a broker it does not hear from within
+ * zookeeper.session.timeout.ms, and a controller whose session expires resigns. The gauge is
+ * the 99th percentile of ZooKeeperRequestLatencyMs as a percentage of that timeout, so a
+ * single threshold fits every timeout. It is NaN until Kafka registers the histogram, and
+ * always on Kafka versions before 2.0, which do not time ZooKeeper requests.
+ */
+final class ZooKeeperMetricSet {
+
+    static final String GROUP = "kafka.server";
+    static final String TYPE = "ZooKeeperClientMetrics";
+    static final String LATENCY = "ZooKeeperRequestLatencyMs";
+    static final String SESSION_TIMEOUT_PERCENT = "ZooKeeperRequestLatencySessionTimeoutPercent";
+
+    static final String SESSION_TIMEOUT_PROPERTY = "zookeeper.session.timeout.ms";
+    static final int DEFAULT_SESSION_TIMEOUT_MS = 6000;
+
+    private ZooKeeperMetricSet() {}
+
+    /**
+     * Register the gauge. A gauge that is already registered is left as it is.
+     * @param sessionTimeoutMs the ZooKeeper session timeout of the broker
+     */
+    static void register(final MetricsRegistry registry, final int sessionTimeoutMs) {
+        if (sessionTimeoutMs <= 0) {
+            throw new IllegalArgumentException(SESSION_TIMEOUT_PROPERTY + " must be positive: " + sessionTimeoutMs);
+        }
+        final MetricName latency = new MetricName(GROUP, TYPE, LATENCY);
+        registry.newGauge(new MetricName(GROUP, TYPE, SESSION_TIMEOUT_PERCENT), new Gauge<Double>() {
+            @Override
+            public Double value() {
+                // Kafka creates the histogram with its ZooKeeper client, after the reporters start
+                final Metric metric = registry.allMetrics().get(latency);
+                if (!(metric instanceof Histogram)) {
+                    return Double.NaN;
+                }
+                return 100 * ((Histogram) metric).getSnapshot().get99thPercentile() / sessionTimeoutMs;
+            }
+        });
+    }
+}
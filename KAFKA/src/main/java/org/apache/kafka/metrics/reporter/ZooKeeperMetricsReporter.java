@@ -0,0 +1,37 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.Metrics;
+import kafka.metrics.KafkaMetricsReporter;
+import kafka.utils.VerifiableProperties;
+
+/**
+ * Kafka metrics reporter that only registers the gauge of {@link ZooKeeperMetricSet}, for
+ * brokers whose metrics are served by another reporter such as
+ * nl.techop.kafka.KafkaHttpMetricsReporter. {@link CatalogMetricsReporter} registers it
+ * itself.
+ */
+public class ZooKeeperMetricsReporter implements KafkaMetricsReporter {
+
+    @Override
+    public void init(final VerifiableProperties props) {
+        ZooKeeperMetricSet.register(Metrics.defaultRegistry(), props.getInt(
+                ZooKeeperMetricSet.SESSION_TIMEOUT_PROPERTY, ZooKeeperMetricSet.DEFAULT_SESSION_TIMEOUT_MS));
+    }
+}
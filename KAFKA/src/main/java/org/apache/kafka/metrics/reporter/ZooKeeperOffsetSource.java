@@ -0,0 +1,262 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads the offsets that consumers committing to ZooKeeper store under
+ * /consumers/&lt;group&gt;/offsets/&lt;topic&gt;/&lt;partition&gt;.
+ *
+ * The first read walks the whole tree and leaves a watch on every node it reads. Later
+ * reads only read the nodes whose watch fired since, and set their watch again, so the
+ * cost of a read is proportional to the offsets committed since the previous one. The
+ * whole tree is read again after the session expires or a read fails.
+ */
+final class ZooKeeperOffsetSource implements OffsetSource {
+
+    static final String CONNECT_PROPERTY = "zookeeper.connect";
+
+    private static final String CONSUMERS = "/consumers";
+    private static final String OFFSETS = "offsets";
+
+    // The depth of the nodes of the tree, as their number of path separators
+    private static final int GROUP_DEPTH = 2;
+    private static final int TOPIC_DEPTH = 4;
+    private static final int PARTITION_DEPTH = 5;
+
+    private final String connect;
+    private final int sessionTimeoutMs;
+
+    // Paths whose watch fired, filled by the ZooKeeper event thread
+    private final Set<String> changedChildren = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<String> changedData = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean expired;
+    private final Watcher watcher = new Watcher() {
+        @Override
+        public void process(final WatchedEvent event) {
+            switch (event.getType()) {
+                case NodeChildrenChanged:
+                    changedChildren.add(event.getPath());
+                    break;
+                case NodeDataChanged:
+                    changedData.add(event.getPath());
+                    break;
+                case None:
+                    if (event.getState() == Event.KeeperState.Expired) {
+                        expired = true;
+                    }
+                    break;
+                default:
+                    // Deleted nodes are removed when the children of their parent change
+            }
+        }
+    };
+
+    private ZooKeeper zooKeeper;
+    private boolean complete;
+    // The children read from each node of the tree above the partitions, by path
+    private final Map<String, Set<String>> known = new HashMap<String, Set<String>>();
+
+    /**
+     * @param connect the ZooKeeper connect string of the broker, with its chroot
+     * @param sessionTimeoutMs the session timeout of the broker
+     */
+    ZooKeeperOffsetSource(final String connect, final int sessionTimeoutMs) {
+        this.connect = connect;
+        this.sessionTimeoutMs = sessionTimeoutMs;
+    }
+
+    @Override
+    public void read(final Listener listener) throws IOException {
+        if (zooKeeper == null || expired) {
+            close();
+            expired = false;
+            zooKeeper = new ZooKeeper(connect, sessionTimeoutMs, watcher);
+        }
+        try {
+            if (!complete) {
+                changedChildren.clear();
+                changedData.clear();
+                known.clear();
+                listener.reset();
+                readChildren(CONSUMERS, listener);
+                // Without the node there is no watch on it, so look again on the next read
+                complete = known.containsKey(CONSUMERS);
+                return;
+            }
+            for (Iterator<String> it = changedChildren.iterator(); it.hasNext();) {
+                final String path = it.next();
+                it.remove();
+                if (known.containsKey(path)) {
+                    readChildren(path, listener);
+                }
+            }
+            for (Iterator<String> it = changedData.iterator(); it.hasNext();) {
+                final String path = it.next();
+                it.remove();
+                final Set<String> siblings = known.get(parentOf(path));
+                if (depthOf(path) == PARTITION_DEPTH && siblings != null && siblings.contains(nameOf(path))) {
+                    readOffset(path, listener);
+                }
+            }
+        } catch (KeeperException e) {
+            complete = false;
+            throw new IOException("Unable to read the consumer offsets from ZooKeeper", e);
+        } catch (InterruptedException e) {
+            complete = false;
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading the consumer offsets from ZooKeeper", e);
+        }
+    }
+
+    /**
+     * Read the children of a node, and the nodes below the children that were added.
+     */
+    private void readChildren(final String path, final Listener listener)
+            throws IOException, KeeperException, InterruptedException {
+        final List<String> children;
+        try {
+            children = zooKeeper.getChildren(path, watcher);
+        } catch (KeeperException.NoNodeException e) {
+            removeTree(path, listener);
+            return;
+        }
+        final int depth = depthOf(path);
+        final Set<String> current = new HashSet<String>();
+        for (String child : children) {
+            // Groups also have ids and owners, and partitions are numbers
+            if ((depth != GROUP_DEPTH || OFFSETS.equals(child)) && (depth != TOPIC_DEPTH || isPartition(child))) {
+                current.add(child);
+            }
+        }
+        final Set<String> previous = known.put(path, current);
+        for (String child : current) {
+            if (previous == null || !previous.contains(child)) {
+                if (depth + 1 == PARTITION_DEPTH) {
+                    readOffset(path + "/" + child, listener);
+                } else {
+                    readChildren(path + "/" + child, listener);
+                }
+            }
+        }
+        if (previous != null) {
+            for (String child : previous) {
+                if (!current.contains(child)) {
+                    removeChild(path + "/" + child, listener);
+                }
+            }
+        }
+    }
+
+    private void readOffset(final String path, final Listener listener)
+            throws IOException, KeeperException, InterruptedException {
+        final byte[] data;
+        try {
+            data = zooKeeper.getData(path, watcher, null);
+        } catch (KeeperException.NoNodeException e) {
+            // Removed when the children of the topic change
+            return;
+        }
+        if (data == null) {
+            return;
+        }
+        final String[] parts = path.split("/");
+        try {
+            listener.committed(parts[2], parts[4], Integer.parseInt(parts[5]),
+                    Long.parseLong(new String(data, "UTF-8").trim()));
+        } catch (NumberFormatException e) {
+            // Not an offset
+        }
+    }
+
+    private void removeChild(final String path, final Listener listener) {
+        if (depthOf(path) == PARTITION_DEPTH) {
+            final String[] parts = path.split("/");
+            listener.removed(parts[2], parts[4], Integer.parseInt(parts[5]));
+        } else {
+            removeTree(path, listener);
+        }
+    }
+
+    private void removeTree(final String path, final Listener listener) {
+        final Set<String> children = known.remove(path);
+        if (children != null) {
+            for (String child : children) {
+                removeChild(path + "/" + child, listener);
+            }
+        }
+    }
+
+    private static boolean isPartition(final String name) {
+        if (name.isEmpty() || name.length() > 9) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) < '0' || name.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int depthOf(final String path) {
+        int ret = 0;
+        for (int i = 0; i < path.length(); i++) {
+            if (path.charAt(i) == '/') {
+                ret++;
+            }
+        }
+        return ret;
+    }
+
+    private static String parentOf(final String path) {
+        return path.substring(0, path.lastIndexOf('/'));
+    }
+
+    private static String nameOf(final String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public void close() {
+        complete = false;
+        if (zooKeeper == null) {
+            return;
+        }
+        try {
+            zooKeeper.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        zooKeeper = null;
+    }
+}
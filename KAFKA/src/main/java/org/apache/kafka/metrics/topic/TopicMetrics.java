@@ -20,6 +20,7 @@ package org.apache.kafka.metrics.topic;
 import com.cloudera.csd.tools.codahale.CodahaleMetric;
 import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
 import org.apache.kafka.metrics.UnitConstants;
+import org.apache.kafka.metrics.reporter.ReporterCatalog;
 
 import java.util.Arrays;
 import java.util.List;
@@ -29,6 +30,11 @@ import java.util.List;
  */
 public class TopicMetrics {
 
+    /**
+     * The group and type the per topic Yammer metrics are registered under in the broker.
+     */
+    public static final String YAMMER_ROOT = ReporterCatalog.TOPIC_ROOT;
+
     private static final CodahaleMetric MESSAGES_RECEIVED_METRIC =
             new CodahaleMetric.Builder()
                     .setName("messages_received")
@@ -95,6 +101,30 @@ public class TopicMetrics {
                     .setContext("FailedFetchRequestsPerSec")
                     .build();
 
+    private static final CodahaleMetric PRODUCE_MESSAGE_CONVERSIONS_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("produce_message_conversions")
+                    .setLabel("Produce Message Conversions")
+                    .setDescription("Number of messages written to topic on this broker that were converted from the " +
+                            "message format of older producers")
+                    .setNumerator(UnitConstants.messages)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.METER)
+                    .setContext("ProduceMessageConversionsPerSec")
+                    .build();
+
+    private static final CodahaleMetric FETCH_MESSAGE_CONVERSIONS_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("fetch_message_conversions")
+                    .setLabel("Fetch Message Conversions")
+                    .setDescription("Number of messages fetched from this topic on this broker that were converted to " +
+                            "the message format of older consumers, which cannot be sent with zero-copy")
+                    .setNumerator(UnitConstants.messages)
+                    .setDenominator(UnitConstants.second)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.METER)
+                    .setContext("FetchMessageConversionsPerSec")
+                    .build();
+
     public static List<CodahaleMetric> getMetrics() {
         return Arrays.asList(
                 MESSAGES_RECEIVED_METRIC,
@@ -102,7 +132,9 @@ public class TopicMetrics {
                 BYTES_FETCHED_METRIC,
                 BYTES_REJECTED_METRIC,
                 REJECTED_MESSAGE_BATCHES_METRIC,
-                FETCH_REQUEST_FAILURES_METRIC
+                FETCH_REQUEST_FAILURES_METRIC,
+                PRODUCE_MESSAGE_CONVERSIONS_METRIC,
+                FETCH_MESSAGE_CONVERSIONS_METRIC
         );
     }
 }
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.topic;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
+import org.apache.kafka.metrics.UnitConstants;
+import org.apache.kafka.metrics.reporter.ThroughputSkew;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The skew of the topic bytes in and out across the brokers, computed by the in-broker
+ * reporter from the KAFKA_BROKER_TOPIC metrics of every broker, see
+ * org.apache.kafka.metrics.reporter.ThroughputSkew. A max to mean ratio of 1 and a Gini
+ * coefficient of 0 mean the brokers take even shares.
+ *
+ * Note: The context of the KAFKA_TOPIC metrics is missing its "root" because that is
+ * generated per topic in CM. Like the topic metrics, the cluster metrics are only reported
+ * by the active controller, so they are service metrics.
+ */
+public class TopicSkewMetrics {
+
+    private TopicSkewMetrics() {}
+
+    /**
+     * The group and type the skew is reported under by the reporter.
+     */
+    public static final String YAMMER_ROOT = ThroughputSkew.CLUSTER_ROOT;
+
+    private static final String CLUSTER_CONTEXT_FORMAT = YAMMER_ROOT + "::%s";
+
+    private static final CodahaleMetric BYTES_RECEIVED_MAX_MEAN_RATIO_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("bytes_received_max_mean_ratio")
+                    .setLabel("Bytes Received Max to Mean Ratio")
+                    .setDescription("Bytes received by the broker that receives the most data of the topic, " +
+                            "divided by the mean across the brokers that receive data of the topic")
+                    .setNumerator(UnitConstants.ratio)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(ThroughputSkew.BYTES_IN_MAX_MEAN_RATIO)
+                    .build();
+
+    private static final CodahaleMetric BYTES_RECEIVED_GINI_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("bytes_received_gini")
+                    .setLabel("Bytes Received Gini Coefficient")
+                    .setDescription("Gini coefficient of the bytes of the topic received by each broker, from 0 " +
+                            "when the brokers receive even shares to 1 when a single broker receives them all")
+                    .setNumerator(UnitConstants.ratio)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(ThroughputSkew.BYTES_IN_GINI)
+                    .build();
+
+    private static final CodahaleMetric BYTES_FETCHED_MAX_MEAN_RATIO_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("bytes_fetched_max_mean_ratio")
+                    .setLabel("Bytes Fetched Max to Mean Ratio")
+                    .setDescription("Bytes fetched from the broker that serves the most data of the topic, " +
+                            "divided by the mean across the brokers that serve data of the topic")
+                    .setNumerator(UnitConstants.ratio)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(ThroughputSkew.BYTES_OUT_MAX_MEAN_RATIO)
+                    .build();
+
+    private static final CodahaleMetric BYTES_FETCHED_GINI_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("bytes_fetched_gini")
+                    .setLabel("Bytes Fetched Gini Coefficient")
+                    .setDescription("Gini coefficient of the bytes of the topic fetched from each broker, from 0 " +
+                            "when the brokers serve even shares to 1 when a single broker serves them all")
+                    .setNumerator(UnitConstants.ratio)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(ThroughputSkew.BYTES_OUT_GINI)
+                    .build();
+
+    private static final CodahaleMetric CLUSTER_BYTES_RECEIVED_MAX_MEAN_RATIO_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("cluster_bytes_received_max_mean_ratio")
+                    .setLabel("Cluster Bytes Received Max to Mean Ratio")
+                    .setDescription("Bytes received by the broker that receives the most data, divided by the " +
+                            "mean across the brokers of the cluster")
+                    .setNumerator(UnitConstants.ratio)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(CLUSTER_CONTEXT_FORMAT, ThroughputSkew.BYTES_IN_MAX_MEAN_RATIO))
+                    .build();
+
+    private static final CodahaleMetric CLUSTER_BYTES_RECEIVED_GINI_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("cluster_bytes_received_gini")
+                    .setLabel("Cluster Bytes Received Gini Coefficient")
+                    .setDescription("Gini coefficient of the bytes received by each broker of the cluster")
+                    .setNumerator(UnitConstants.ratio)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(CLUSTER_CONTEXT_FORMAT, ThroughputSkew.BYTES_IN_GINI))
+                    .build();
+
+    private static final CodahaleMetric CLUSTER_BYTES_FETCHED_MAX_MEAN_RATIO_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("cluster_bytes_fetched_max_mean_ratio")
+                    .setLabel("Cluster Bytes Fetched Max to Mean Ratio")
+                    .setDescription("Bytes fetched from the broker that serves the most data, divided by the " +
+                            "mean across the brokers of the cluster")
+                    .setNumerator(UnitConstants.ratio)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(CLUSTER_CONTEXT_FORMAT, ThroughputSkew.BYTES_OUT_MAX_MEAN_RATIO))
+                    .build();
+
+    private static final CodahaleMetric CLUSTER_BYTES_FETCHED_GINI_METRIC =
+            new CodahaleMetric.Builder()
+                    .setName("cluster_bytes_fetched_gini")
+                    .setLabel("Cluster Bytes Fetched Gini Coefficient")
+                    .setDescription("Gini coefficient of the bytes fetched from each broker of the cluster")
+                    .setNumerator(UnitConstants.ratio)
+                    .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                    .setContext(String.format(CLUSTER_CONTEXT_FORMAT, ThroughputSkew.BYTES_OUT_GINI))
+                    .build();
+
+    /**
+     * Get the skew metrics of the KAFKA_TOPIC entity.
+     */
+    public static List<CodahaleMetric> getMetrics() {
+        return Arrays.asList(
+                BYTES_RECEIVED_MAX_MEAN_RATIO_METRIC,
+                BYTES_RECEIVED_GINI_METRIC,
+                BYTES_FETCHED_MAX_MEAN_RATIO_METRIC,
+                BYTES_FETCHED_GINI_METRIC
+        );
+    }
+
+    /**
+     * Get the skew of the broker totals, which only the active controller reports, so they
+     * are service metrics rather than broker metrics.
+     */
+    public static List<CodahaleMetric> getClusterMetrics() {
+        return Arrays.asList(
+                CLUSTER_BYTES_RECEIVED_MAX_MEAN_RATIO_METRIC,
+                CLUSTER_BYTES_RECEIVED_GINI_METRIC,
+                CLUSTER_BYTES_FETCHED_MAX_MEAN_RATIO_METRIC,
+                CLUSTER_BYTES_FETCHED_GINI_METRIC
+        );
+    }
+}
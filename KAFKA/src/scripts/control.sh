@@ -43,6 +43,7 @@ echo "JMX_PORT: $JMX_PORT"
 echo "SSL_PORT: $SSL_PORT"
 echo "ENABLE_MONITORING: ${ENABLE_MONITORING}"
 echo "METRIC_REPORTERS: ${METRIC_REPORTERS}"
+echo "KAFKA_METRIC_REPORTERS: ${KAFKA_METRIC_REPORTERS}"
 echo "BROKER_HEAP_SIZE: ${BROKER_HEAP_SIZE}"
 echo "BROKER_JAVA_OPTS: ${BROKER_JAVA_OPTS}"
 echo "BROKER_SSL_ENABLED: ${BROKER_SSL_ENABLED}"
@@ -106,6 +107,18 @@ else
     perl -pi -e "s#\#kafka.metrics.reporters={{METRIC_REPORTERS}}##" $CONF_DIR/kafka.properties
 fi
 
+# Same for metric.reporters, the reporters of the metrics of Kafka's own metrics library
+if [[ ${ENABLE_MONITORING} == "true" && -n ${KAFKA_METRIC_REPORTERS} ]]; then
+    perl -pi -e "s#\#metric.reporters={{KAFKA_METRIC_REPORTERS}}#metric.reporters=${KAFKA_METRIC_REPORTERS}#" $CONF_DIR/kafka.properties
+else
+    perl -pi -e "s#\#metric.reporters={{KAFKA_METRIC_REPORTERS}}##" $CONF_DIR/kafka.properties
+fi
+
+# Make the metrics reporter shipped with the CSD available to the broker
+if [[ -f ${CONF_DIR}/aux/kafka-cm-metrics-reporter.jar ]]; then
+    export CLASSPATH="${CLASSPATH}:${CONF_DIR}/aux/kafka-cm-metrics-reporter.jar"
+fi
+
 # Add SSL parameters
 if [[ ${BROKER_SSL_ENABLED} == "true" ]]; then
     # Make sure kafka version is greater than or equal to 2.0.0
@@ -178,6 +178,11 @@ ${SSL_SERVER_CONFIGS}"
     fi
 fi
 
+# MirrorMaker does not start Kafka metrics reporters, so serve its JVM metrics from an agent
+if [[ ${ENABLE_MONITORING} == "true" && -f ${CONF_DIR}/aux/kafka-cm-metrics-reporter.jar ]]; then
+    export KAFKA_OPTS="${KAFKA_OPTS} -javaagent:${CONF_DIR}/aux/kafka-cm-metrics-reporter.jar=kafka.http.metrics.host=${METRICS_HOST},kafka.http.metrics.port=${METRICS_PORT}"
+fi
+
 # Propagating logger information to Kafka
 export KAFKA_LOG4J_OPTS="-Dlog4j.configuration=file:$CONF_DIR/log4j.properties"
 
@@ -0,0 +1,82 @@
+#!/bin/bash
+##
+# Licensed to Cloudera, Inc. under one
+# or more contributor license agreements.  See the NOTICE file
+# distributed with this work for additional information
+# regarding copyright ownership.  Cloudera, Inc. licenses this file
+# to you under the Apache License, Version 2.0 (the
+# "License"); you may not use this file except in compliance
+# with the License.  You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+# Plans the replica moves that balance the log directories of the broker. The plan is
+# written to the process directory; it is not executed.
+
+# for debugging
+set -x
+
+DEFAULT_KAFKA_HOME=/usr/lib/kafka
+KAFKA_HOME=${KAFKA_HOME:-$DEFAULT_KAFKA_HOME}
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+PLANNER_JAR=${CONF_DIR}/aux/kafka-cm-metrics-reporter.jar
+OUTPUT_DIR=${CONF_DIR}/log-dirs-plan
+
+echo ""
+echo "Date: `date`"
+echo "Host: $HOST"
+echo "CONF_DIR: $CONF_DIR"
+echo "KAFKA_HOME: $KAFKA_HOME"
+echo "Zookeeper Quorum: $ZK_QUORUM"
+echo "Zookeeper Chroot: $CHROOT"
+echo "METRICS_PORT: ${METRICS_PORT}"
+echo "ENABLE_MONITORING: ${ENABLE_MONITORING}"
+echo "TOLERANCE_PERCENT: ${TOLERANCE_PERCENT}"
+echo "HORIZON_HOURS: ${HORIZON_HOURS}"
+echo "MAX_MOVES: ${MAX_MOVES}"
+echo "THROTTLE: ${THROTTLE}"
+
+if [[ ! -f ${PLANNER_JAR} ]]; then
+    echo "${PLANNER_JAR} not found"
+    exit 1
+fi
+
+# Generating Zookeeper quorum
+QUORUM=$ZK_QUORUM
+if [[ -n $CHROOT ]]; then
+    QUORUM="${QUORUM}${CHROOT}"
+fi
+echo "Final Zookeeper Quorum is $QUORUM"
+
+mkdir -p ${OUTPUT_DIR}
+
+# The current assignments, without which only the throttle schedule and summary are written
+ASSIGNMENTS=${OUTPUT_DIR}/assignments.txt
+if ! $KAFKA_HOME/bin/kafka-topics.sh --zookeeper ${QUORUM} --describe > ${ASSIGNMENTS}; then
+    echo "Unable to describe the topics, the reassignment will not be written"
+    ASSIGNMENTS=
+fi
+
+# Sizes are read from the metrics reporter shipped with the CSD when it is enabled
+METRICS_URL=
+if [[ ${ENABLE_MONITORING} == "true" ]]; then
+    METRICS_URL="http://localhost:${METRICS_PORT}/api/metrics"
+fi
+
+exec ${JAVA} -cp ${PLANNER_JAR} org.apache.kafka.metrics.planner.LogDirectoryRebalancer \
+    --broker-config ${CONF_DIR}/kafka.properties \
+    --metrics-url "${METRICS_URL}" \
+    --record ${OUTPUT_DIR}/log-dirs-snapshot.tsv \
+    --assignments "${ASSIGNMENTS}" \
+    --output-dir ${OUTPUT_DIR} \
+    --tolerance-percent "${TOLERANCE_PERCENT}" \
+    --horizon-hours "${HORIZON_HOURS}" \
+    --max-moves "${MAX_MOVES}" \
+    --throttle-bytes-per-sec "${THROTTLE}"
@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricDefinitionFixture;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.kafka.metrics.broker.BrokerMetrics;
+import org.apache.kafka.metrics.fixture.BinaryFixtureReader;
+import org.apache.kafka.metrics.fixture.BinaryFixtureWriter;
+import org.apache.kafka.metrics.fixture.FixtureCompactor;
+import org.apache.kafka.metrics.fixture.FixtureWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class KafkaServiceMetricsSchemaGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The binary fixture has to read back as the JSON fixture CM reads.
+     */
+    @Test
+    public void testBinaryFixtureReadsBackAsJson() throws Exception {
+        final CodahaleMetricDefinitionFixture expected = KafkaServiceMetricsSchemaGenerator.buildFixture(
+                new FixtureCompactor(), BrokerMetrics.getMetrics());
+        final File json = folder.newFile("fixture.json");
+        final File binary = folder.newFile("fixture.bin");
+        FixtureWriter.write(json, expected, false);
+        BinaryFixtureWriter.write(binary, expected);
+        final CodahaleMetricDefinitionFixture actual = BinaryFixtureReader.open(binary).read();
+
+        assertEquals(expected.getServiceName(), actual.getServiceName());
+        assertMetricsEqual(expected.getServiceName(), expected.getServiceMetrics(), actual.getServiceMetrics());
+        assertMetricsEqual(expected.getRolesMetrics(), actual.getRolesMetrics());
+        assertMetricsEqual(expected.getAdditionalServiceEntityTypesMetrics(),
+                actual.getAdditionalServiceEntityTypesMetrics());
+        assertEquals(FixtureWriter.readTree(json), FixtureWriter.toTree(actual));
+    }
+
+    private static void assertMetricsEqual(final Map<String, List<CodahaleMetric>> expected,
+                                           final Map<String, List<CodahaleMetric>> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, List<CodahaleMetric>> entry : expected.entrySet()) {
+            assertMetricsEqual(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+        }
+    }
+
+    private static void assertMetricsEqual(final String entity, final List<CodahaleMetric> expected,
+                                           final List<CodahaleMetric> actual) {
+        assertEquals(entity, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            final JsonNode metric = FixtureWriter.toTree(expected.get(i));
+            assertEquals(entity + " " + metric.get("name"), metric, FixtureWriter.toTree(actual.get(i)));
+        }
+    }
+}
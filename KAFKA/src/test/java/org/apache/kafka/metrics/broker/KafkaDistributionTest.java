@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.broker;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class KafkaDistributionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSnapshotVersionFallsBackToSnapshot() throws Exception {
+        final KafkaDistribution distribution = new KafkaDistribution(KafkaRequestNames.KAFKA_VERSION,
+                Collections.singletonList(emptyJar()));
+        assertEquals(KafkaRequestNames.REQUEST_NAMES, distribution.loadRequestNames());
+    }
+
+    @Test
+    public void testOtherVersionIsUnsupported() throws Exception {
+        final KafkaDistribution distribution = new KafkaDistribution("9.9.9",
+                Collections.singletonList(emptyJar()));
+        try {
+            distribution.loadRequestNames();
+            fail("Expected an unsupported Kafka version");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Unsupported Kafka version 9.9.9"));
+        }
+    }
+
+    private File emptyJar() throws Exception {
+        final File jar = folder.newFile("empty.jar");
+        new JarOutputStream(new FileOutputStream(jar)).close();
+        return jar;
+    }
+}
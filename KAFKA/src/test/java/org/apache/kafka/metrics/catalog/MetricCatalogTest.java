@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.catalog;
+
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricTypes;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricCatalogTest {
+
+    private static final CodahaleMetric UNDER_REPLICATED =
+            metric("kafka.server.ReplicaManager::UnderReplicatedPartitions");
+    private static final CodahaleMetric ISR_SHRINKS = metric("kafka.server.ReplicaManager::IsrShrinksPerSec");
+    private static final CodahaleMetric ISR_EXPANDS = metric("kafka.server.ReplicaManager::IsrExpandsPerSec");
+    private static final CodahaleMetric BYTES_IN = metric("BytesInPerSec");
+    private static final CodahaleMetric BYTES_OUT = metric("BytesOutPerSec");
+    private static final CodahaleMetric LOG_END_OFFSET = metric("LogEndOffset");
+    private static final CodahaleMetric SIZE = metric("Size");
+
+    private final MetricCatalog catalog = new MetricCatalog.Builder()
+            .addBrokerMetrics(Lists.newArrayList(UNDER_REPLICATED, ISR_SHRINKS, ISR_EXPANDS))
+            .addTopicMetrics(Lists.newArrayList(BYTES_IN, BYTES_OUT))
+            .addReplicaMetrics(Lists.newArrayList(LOG_END_OFFSET, SIZE))
+            .build();
+    private final MetricCatalog.Match match = new MetricCatalog.Match();
+
+    @Test
+    public void testBrokerMetrics() {
+        assertEquals(7, catalog.size());
+        assertTrue(catalog.lookup("kafka.server.ReplicaManager::UnderReplicatedPartitions", match));
+        assertSame(UNDER_REPLICATED, match.getMetric());
+        assertEquals(MetricCatalog.KAFKA_BROKER, match.getEntity());
+        assertFalse(match.hasTopic());
+        assertEquals(-1, match.getPartition());
+
+        assertTrue(catalog.lookup("kafka.server:type=ReplicaManager,name=IsrShrinksPerSec", match));
+        assertSame(ISR_SHRINKS, match.getMetric());
+        assertTrue(catalog.lookup("kafka.server:type=ReplicaManager,name=IsrExpandsPerSec", match));
+        assertSame(ISR_EXPANDS, match.getMetric());
+    }
+
+    @Test
+    public void testTopicMetrics() {
+        assertTrue(catalog.lookup("kafka.server.BrokerTopicMetrics.topic.events::BytesInPerSec", match));
+        assertSame(BYTES_IN, match.getMetric());
+        assertEquals(MetricCatalog.KAFKA_BROKER_TOPIC, match.getEntity());
+        assertEquals("events", match.getTopic());
+        assertEquals(-1, match.getPartition());
+
+        final String name = "kafka.server:type=BrokerTopicMetrics,name=BytesOutPerSec,topic=events";
+        assertTrue(catalog.lookup(name, match));
+        assertSame(BYTES_OUT, match.getMetric());
+        assertEquals("events", match.getTopic());
+        assertEquals(name.length() - "events".length(), match.getTopicStart());
+        assertEquals(name.length(), match.getTopicEnd());
+    }
+
+    @Test
+    public void testReplicaMetrics() {
+        assertTrue(catalog.lookup("kafka.log.Log.partition.12.topic.events::LogEndOffset", match));
+        assertSame(LOG_END_OFFSET, match.getMetric());
+        assertEquals(MetricCatalog.KAFKA_REPLICA, match.getEntity());
+        assertEquals("events", match.getTopic());
+        assertEquals(12, match.getPartition());
+
+        assertTrue(catalog.lookup("kafka.log:type=Log,name=Size,topic=events,partition=3", match));
+        assertSame(SIZE, match.getMetric());
+        assertEquals("events", match.getTopic());
+        assertEquals(3, match.getPartition());
+    }
+
+    @Test
+    public void testTopicsWithDots() {
+        assertTrue(catalog.lookup("kafka.server.BrokerTopicMetrics.topic.app.events.v2::BytesInPerSec", match));
+        assertEquals("app.events.v2", match.getTopic());
+        assertTrue(catalog.lookup("kafka.log.Log.partition.0.topic.app.events::Size", match));
+        assertEquals("app.events", match.getTopic());
+        assertEquals(0, match.getPartition());
+        assertTrue(catalog.lookup("kafka.log:type=Log,name=LogEndOffset,topic=app.events,partition=7", match));
+        assertEquals("app.events", match.getTopic());
+        assertEquals(7, match.getPartition());
+    }
+
+    @Test
+    public void testSharedPrefixMismatch() {
+        // Prefixes of a metric and names that leave a shared prefix midway through a label
+        assertFalse(catalog.lookup("kafka.server.ReplicaManager::UnderReplicated", match));
+        assertFalse(catalog.lookup("kafka.server.ReplicaManager::UnderReplicatedPartitionz", match));
+        assertFalse(catalog.lookup("kafka.server.ReplicaManager::UnderReplicatedPartitionsPerSec", match));
+        assertFalse(catalog.lookup("kafka.server.ReplicaManager::IsrChangesPerSec", match));
+        assertFalse(catalog.lookup("kafka.server:type=ReplicaManager,name=IsrShrinks", match));
+        assertFalse(catalog.lookup("kafka.server.BrokerTopicMetrics.topic.events::BytesIn", match));
+        // The placeholders need a topic and a partition
+        assertFalse(catalog.lookup("kafka.server.BrokerTopicMetrics.topic.::BytesInPerSec", match));
+        assertFalse(catalog.lookup("kafka.log.Log.partition.x.topic.events::Size", match));
+        assertNull(match.getMetric());
+        assertNull(match.getTopic());
+        assertEquals(-1, match.getPartition());
+    }
+
+    @Test
+    public void testUnknownNames() {
+        assertFalse(catalog.lookup("", match));
+        assertFalse(catalog.lookup("kafka.server.KafkaServer::BrokerState", match));
+        assertFalse(catalog.lookup("kafka.controller:type=KafkaController,name=ActiveControllerCount", match));
+        assertFalse(catalog.lookup("kafka.log.Log.partition.0.topic.events::NumLogSegments", match));
+        assertNull(match.getMetric());
+        assertNull(match.getEntity());
+    }
+
+    @Test
+    public void testMatchIsClearedBetweenLookups() {
+        assertTrue(catalog.lookup("kafka.log.Log.partition.3.topic.events::Size", match));
+        assertTrue(catalog.lookup("kafka.server.ReplicaManager::UnderReplicatedPartitions", match));
+        assertFalse(match.hasTopic());
+        assertEquals(-1, match.getPartition());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateContext() {
+        new MetricCatalog.Builder()
+                .addTopicMetrics(Lists.newArrayList(BYTES_IN, metric("BytesInPerSec")))
+                .build();
+    }
+
+    @Test
+    public void testBuildsTheCatalogOfTheFixture() {
+        final MetricCatalog built = MetricCatalog.build();
+        assertTrue(built.size() > 0);
+        assertTrue(built.lookup("kafka.server:type=ReplicaManager,name=UnderReplicatedPartitions", match));
+        assertEquals(MetricCatalog.KAFKA_BROKER, match.getEntity());
+    }
+
+    private static CodahaleMetric metric(final String context) {
+        return new CodahaleMetric.Builder()
+                .setName(context)
+                .setCodahaleMetricType(CodahaleMetricTypes.CodahaleMetricType.GAUGE)
+                .setContext(context)
+                .build();
+    }
+}
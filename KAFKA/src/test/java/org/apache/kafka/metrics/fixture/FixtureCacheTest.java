@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.fixture;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FixtureCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testKeyDependsOnInputs() throws Exception {
+        final String key = FixtureCache.computeKey("1.0", "kafka.request.names.from.kafka=false");
+        assertEquals(key, FixtureCache.computeKey("1.0", "kafka.request.names.from.kafka=false"));
+        assertNotEquals(key, FixtureCache.computeKey("1.1", "kafka.request.names.from.kafka=false"));
+        assertNotEquals(key, FixtureCache.computeKey("1.0", "kafka.request.names.from.kafka=true"));
+    }
+
+    @Test
+    public void testKeyDependsOnFileContent() throws Exception {
+        final File jar = folder.newFile("kafka.jar");
+        FileUtils.writeStringToFile(jar, "one", Charsets.UTF_8);
+        final String key = FixtureCache.computeKey("1.0", Arrays.asList(jar));
+        assertNotEquals(key, FixtureCache.computeKey("1.0", Collections.<File>emptyList()));
+        FileUtils.writeStringToFile(jar, "two", Charsets.UTF_8);
+        assertNotEquals(key, FixtureCache.computeKey("1.0", Arrays.asList(jar)));
+    }
+
+    @Test
+    public void testStoreAndRestore() throws Exception {
+        final File root = folder.newFolder("cache");
+        final File output = new File(folder.newFolder("target"), "fixture.json");
+        final File other = new File(output.getParentFile(), "fixture-all.json");
+        final FixtureCache cache = new FixtureCache(root, "key");
+        assertFalse(cache.restore(output, other));
+
+        FileUtils.writeStringToFile(output, "fixture", Charsets.UTF_8);
+        FileUtils.writeStringToFile(other, "all", Charsets.UTF_8);
+        cache.store(output, other);
+        FileUtils.writeStringToFile(output, "changed", Charsets.UTF_8);
+        FileUtils.deleteQuietly(other);
+
+        assertTrue(cache.restore(output, other));
+        assertEquals("fixture", FileUtils.readFileToString(output, Charsets.UTF_8));
+        assertEquals("all", FileUtils.readFileToString(other, Charsets.UTF_8));
+        // An output that was not stored is a miss, not a partial restore
+        assertFalse(cache.restore(output, new File(output.getParentFile(), "fixture-1.0.json")));
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.fixture;
+
+import com.cloudera.csd.tools.JsonUtil;
+import com.cloudera.csd.tools.codahale.CodahaleMetric;
+import com.cloudera.csd.tools.codahale.CodahaleMetricDefinitionFixture;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FileUtils;
+import org.apache.kafka.metrics.broker.BrokerMetrics;
+import org.apache.kafka.metrics.replica.ReplicaMetrics;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * FixtureWriter has to write the same bytes as the JsonUtil.valueAsString it replaced, or CM
+ * would read a different fixture.
+ */
+public class FixtureWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static CodahaleMetricDefinitionFixture newFixture() {
+        final CodahaleMetricDefinitionFixture fixture = new CodahaleMetricDefinitionFixture();
+        fixture.setServiceName("KAFKA");
+        for (CodahaleMetric metric : BrokerMetrics.getMetrics()) {
+            fixture.addRoleMetric("KAFKA_BROKER", metric);
+        }
+        for (CodahaleMetric metric : ReplicaMetrics.getMetrics()) {
+            fixture.addEntityMetric("KAFKA_REPLICA", metric);
+        }
+        return fixture;
+    }
+
+    @Test
+    public void testCompactOutputMatchesJsonUtil() throws Exception {
+        final CodahaleMetricDefinitionFixture fixture = newFixture();
+        final File file = folder.newFile("fixture.json");
+        FixtureWriter.write(file, fixture, false);
+        assertEquals(JsonUtil.valueAsString(fixture), FileUtils.readFileToString(file, Charsets.UTF_8));
+    }
+
+    @Test
+    public void testPrettyOutputMatchesJsonUtil() throws Exception {
+        final Map<String, List<CodahaleMetric>> fixture = Maps.newTreeMap();
+        fixture.put("KAFKA_BROKER", BrokerMetrics.getMetrics());
+        final File file = folder.newFile("common.json");
+        FixtureWriter.write(file, fixture, true);
+        assertEquals(JsonUtil.valueAsString(fixture, true), FileUtils.readFileToString(file, Charsets.UTF_8));
+    }
+
+    @Test
+    public void testSerializedSizeMatchesJsonUtil() throws Exception {
+        final List<CodahaleMetric> metrics = BrokerMetrics.getMetrics();
+        assertEquals(JsonUtil.valueAsString(metrics).getBytes(Charsets.UTF_8).length,
+                FixtureWriter.serializedSize(metrics));
+    }
+
+    @Test
+    public void testReplacesExistingFile() throws Exception {
+        final File file = folder.newFile("replaced.json");
+        FileUtils.writeStringToFile(file, "stale", Charsets.UTF_8);
+        FixtureWriter.write(file, "fresh", false);
+        assertEquals("\"fresh\"", FileUtils.readFileToString(file, Charsets.UTF_8));
+        assertEquals(1, folder.getRoot().list().length);
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.planner;
+
+import org.junit.Test;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogDirectoryPlannerTest {
+
+    private static final double HORIZON_SECONDS = 3600;
+
+    private static ReplicaSnapshot readSnapshot() throws Exception {
+        final Reader in = new InputStreamReader(
+                LogDirectoryPlannerTest.class.getResourceAsStream("/replica_snapshot.tsv"), "UTF-8");
+        try {
+            return ReplicaSnapshot.read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testMovesLowerImbalance() throws Exception {
+        final ReplicaSnapshot snapshot = readSnapshot();
+        final LogDirectoryPlan plan = new LogDirectoryPlanner(HORIZON_SECONDS, 1, 0).plan(snapshot);
+        assertTrue(plan.getMoveCount() > 0);
+
+        final double[] loads = new double[snapshot.getDirCount()];
+        for (int dir = 0; dir < loads.length; dir++) {
+            loads[dir] = plan.getInitialLoad(dir);
+        }
+        double imbalance = imbalance(plan, loads);
+        for (int move = 0; move < plan.getMoveCount(); move++) {
+            final int replica = plan.getReplica(move);
+            assertEquals(snapshot.replicaDirs[replica], plan.getSource(move));
+            final double load = snapshot.sizes[replica] + snapshot.growths[replica] * HORIZON_SECONDS;
+            loads[plan.getSource(move)] -= load;
+            loads[plan.getDestination(move)] += load;
+            final double moved = imbalance(plan, loads);
+            assertTrue("Move " + move + " raised the imbalance", moved < imbalance);
+            imbalance = moved;
+        }
+        for (int dir = 0; dir < loads.length; dir++) {
+            assertEquals(plan.getFinalLoad(dir), loads[dir], 1);
+        }
+    }
+
+    @Test
+    public void testReplicaMovedAtMostOnce() throws Exception {
+        final LogDirectoryPlan plan = new LogDirectoryPlanner(HORIZON_SECONDS, 0, 0).plan(readSnapshot());
+        final Set<Integer> moved = new HashSet<Integer>();
+        for (int move = 0; move < plan.getMoveCount(); move++) {
+            assertTrue(moved.add(plan.getReplica(move)));
+        }
+    }
+
+    @Test
+    public void testMaxMoves() throws Exception {
+        final ReplicaSnapshot snapshot = readSnapshot();
+        assertTrue(new LogDirectoryPlanner(HORIZON_SECONDS, 1, 0).plan(snapshot).getMoveCount() > 2);
+        assertEquals(2, new LogDirectoryPlanner(HORIZON_SECONDS, 1, 2).plan(snapshot).getMoveCount());
+    }
+
+    @Test
+    public void testUnknownCapacityHasEqualTargets() throws Exception {
+        final ReplicaSnapshot recorded = readSnapshot();
+        final ReplicaSnapshot.Builder builder = new ReplicaSnapshot.Builder();
+        for (int dir = 0; dir < recorded.getDirCount(); dir++) {
+            builder.addDir(recorded.dirs[dir], dir == 0 ? 0 : recorded.capacities[dir]);
+        }
+        double total = 0;
+        for (int replica = 0; replica < recorded.getReplicaCount(); replica++) {
+            builder.addReplica(recorded.topics[replica], recorded.partitions[replica], recorded.replicaDirs[replica],
+                    recorded.sizes[replica], recorded.growths[replica]);
+            total += recorded.sizes[replica] + recorded.growths[replica] * HORIZON_SECONDS;
+        }
+
+        final LogDirectoryPlan plan = new LogDirectoryPlanner(HORIZON_SECONDS, 1, 0).plan(builder.build());
+        for (int dir = 0; dir < recorded.getDirCount(); dir++) {
+            assertEquals(total / recorded.getDirCount(), plan.getTarget(dir), 1);
+        }
+    }
+
+    @Test
+    public void testMovesFitUsableSpace() {
+        final ReplicaSnapshot.Builder fits = new ReplicaSnapshot.Builder();
+        fits.addDir("/data/1", 1000, 500);
+        fits.addDir("/data/2", 1000, 1000);
+        fits.addReplica("a", 0, 0, 300, 0).addReplica("a", 1, 0, 200, 0);
+        assertEquals(1, new LogDirectoryPlanner(0, 0, 0).plan(fits.build()).getMoveCount());
+
+        // The smaller replica evens the log directories out, but does not fit
+        final ReplicaSnapshot.Builder full = new ReplicaSnapshot.Builder();
+        full.addDir("/data/1", 1000, 500);
+        full.addDir("/data/2", 1000, 100);
+        full.addReplica("a", 0, 0, 300, 0).addReplica("a", 1, 0, 200, 0);
+        assertEquals(0, new LogDirectoryPlanner(0, 0, 0).plan(full.build()).getMoveCount());
+    }
+
+    @Test
+    public void testUsableSpaceRoundTrip() throws Exception {
+        final ReplicaSnapshot snapshot = readSnapshot();
+        final StringWriter out = new StringWriter();
+        snapshot.write(out);
+        assertArrayEquals(snapshot.usables, ReplicaSnapshot.read(new StringReader(out.toString())).usables);
+        assertArrayEquals(new long[] { ReplicaSnapshot.UNKNOWN_USABLE },
+                ReplicaSnapshot.read(new StringReader("dir\t/data/1\t1000\n")).usables);
+    }
+
+    @Test(timeout = 10000)
+    public void testPlansManyReplicas() {
+        final Random random = new Random(50000);
+        final ReplicaSnapshot.Builder builder = new ReplicaSnapshot.Builder();
+        for (int dir = 0; dir < 8; dir++) {
+            builder.addDir("/data/" + dir, 4000000000000L);
+        }
+        for (int replica = 0; replica < 50000; replica++) {
+            // Most replicas are on the first log directory
+            final int dir = random.nextInt(4) == 0 ? random.nextInt(8) : 0;
+            builder.addReplica("topic-" + replica / 100, replica % 100, dir,
+                    (long) (Math.exp(random.nextGaussian() + 20)), random.nextDouble() * 100000);
+        }
+        final LogDirectoryPlan plan = new LogDirectoryPlanner(HORIZON_SECONDS, 1, 0).plan(builder.build());
+        assertTrue(plan.getMoveCount() > 0);
+    }
+
+    /**
+     * The sum of the squared distances of the log directories to their targets.
+     */
+    private static double imbalance(final LogDirectoryPlan plan, final double[] loads) {
+        double ret = 0;
+        for (int dir = 0; dir < loads.length; dir++) {
+            final double distance = loads[dir] - plan.getTarget(dir);
+            ret += distance * distance;
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Metric;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.apache.kafka.common.metrics.Measurable;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.metrics.Metrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ClientQuotaMetricsBridgeTest {
+
+    private MetricsRegistry registry;
+    private Metrics metrics;
+    private ClientQuotaMetricsBridge bridge;
+
+    @Before
+    public void setUp() {
+        registry = new MetricsRegistry();
+        metrics = new Metrics();
+        bridge = new ClientQuotaMetricsBridge(registry);
+        metrics.addReporter(bridge);
+    }
+
+    @After
+    public void tearDown() {
+        metrics.close();
+        registry.shutdown();
+    }
+
+    @Test
+    public void testClientsOfDifferentUsersStaySeparate() {
+        addThrottleTime("alice", "app", 10);
+        addThrottleTime("bob", "app", 20);
+        assertEquals(10, throttleTime("user.alice.clientId.app"), 0);
+        assertEquals(20, throttleTime("user.bob.clientId.app"), 0);
+        assertEquals(2, rollup(ClientQuotaMetricsBridge.TRACKED_CLIENTS), 0);
+        assertEquals(20, rollup(ClientQuotaMetricsBridge.MAX_THROTTLE_TIME), 0);
+    }
+
+    @Test
+    public void testRemovalDropsOnlyTheMatchingClient() {
+        addThrottleTime("alice", "app", 10);
+        addThrottleTime("bob", "app", 20);
+        addThrottleTime(null, "app", 30);
+
+        removeThrottleTime("alice", "app");
+        assertNull(gauge("user.alice.clientId.app"));
+        assertEquals(20, throttleTime("user.bob.clientId.app"), 0);
+        assertEquals(30, throttleTime("user.*.clientId.app"), 0);
+        assertEquals(2, rollup(ClientQuotaMetricsBridge.TRACKED_CLIENTS), 0);
+
+        // A missing user is the same as an empty one
+        final Metrics unbridged = new Metrics();
+        unbridged.addMetric(kafkaName("", "app"), constant(30));
+        bridge.metricRemoval(unbridged.metrics().get(kafkaName("", "app")));
+        unbridged.close();
+        assertNull(gauge("user.*.clientId.app"));
+        assertEquals(20, throttleTime("user.bob.clientId.app"), 0);
+        assertEquals(1, rollup(ClientQuotaMetricsBridge.TRACKED_CLIENTS), 0);
+    }
+
+    @Test
+    public void testClientsSharingAScopeWait() {
+        addThrottleTime("alice", "app.a", 10);
+        addThrottleTime("alice", "app_a", 20);
+        assertEquals(10, throttleTime("user.alice.clientId.app_a"), 0);
+        assertEquals(1, rollup(ClientQuotaMetricsBridge.TRACKED_CLIENTS), 0);
+        assertEquals(1, rollup(ClientQuotaMetricsBridge.UNTRACKED_CLIENTS), 0);
+        assertEquals(2, rollup(ClientQuotaMetricsBridge.THROTTLED_CLIENTS), 0);
+
+        // The waiting client takes the scope over once the first one expires
+        removeThrottleTime("alice", "app.a");
+        assertEquals(20, throttleTime("user.alice.clientId.app_a"), 0);
+        assertEquals(1, rollup(ClientQuotaMetricsBridge.TRACKED_CLIENTS), 0);
+        assertEquals(0, rollup(ClientQuotaMetricsBridge.UNTRACKED_CLIENTS), 0);
+    }
+
+    private void addThrottleTime(final String user, final String clientId, final double value) {
+        metrics.addMetric(kafkaName(user, clientId), constant(value));
+    }
+
+    private void removeThrottleTime(final String user, final String clientId) {
+        bridge.metricRemoval(metrics.metrics().get(kafkaName(user, clientId)));
+    }
+
+    private static org.apache.kafka.common.MetricName kafkaName(final String user, final String clientId) {
+        final Map<String, String> tags = new HashMap<String, String>();
+        if (user != null) {
+            tags.put(ClientQuotaMetricsBridge.USER_TAG, user);
+        }
+        tags.put(ClientQuotaMetricsBridge.CLIENT_ID_TAG, clientId);
+        return new org.apache.kafka.common.MetricName("throttle-time", "Produce", tags);
+    }
+
+    private double throttleTime(final String scope) {
+        return value(gauge(scope));
+    }
+
+    private Metric gauge(final String scope) {
+        return registry.allMetrics().get(new MetricName(ClientQuotaMetricsBridge.YAMMER_GROUP,
+                ClientQuotaMetricsBridge.YAMMER_TYPE, "ProduceThrottleTimeMsAvg", scope));
+    }
+
+    private double rollup(final String name) {
+        return value(registry.allMetrics().get(new MetricName(ClientQuotaMetricsBridge.YAMMER_GROUP,
+                ClientQuotaMetricsBridge.YAMMER_TYPE, name)));
+    }
+
+    private static Measurable constant(final double value) {
+        return new Measurable() {
+            @Override
+            public double measure(final MetricConfig config, final long now) {
+                return value;
+            }
+        };
+    }
+
+    private static double value(final Metric gauge) {
+        return ((Number) ((Gauge<?>) gauge).value()).doubleValue();
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConsumerGroupLagTest {
+
+    private static final String GROUP = ConsumerGroupLag.ROOT + ".group.app_1";
+    private static final String TOPIC = ThroughputSkew.CLUSTER_ROOT + ".topic.events";
+
+    private MetricsRegistry registry;
+    private ReporterCatalog catalog;
+    private InMemoryOffsetSource source;
+    private ConsumerGroupLag lag;
+
+    @Before
+    public void setUp() {
+        registry = new MetricsRegistry();
+        catalog = new ReporterCatalog();
+        catalog.add(ReporterCatalog.KAFKA_BROKER, "GAUGE",
+                ThroughputSkew.CONTROLLER_GROUP + "::" + ThroughputSkew.ACTIVE_CONTROLLER_COUNT, false,
+                ReporterCatalog.TIER_DEFAULT);
+        catalog.add("KAFKA_REPLICA", "GAUGE", ReporterCatalog.REPLICA_ROOT + "::LogEndOffset", false,
+                ReporterCatalog.TIER_DEFAULT);
+        registry.newGauge(new MetricName("kafka.controller", "KafkaController", ThroughputSkew.ACTIVE_CONTROLLER_COUNT),
+                zero());
+        registry.newGauge(new MetricName("kafka.log", "Log", "LogEndOffset", "partition.0.topic.events"), zero());
+        registry.newGauge(new MetricName("kafka.log", "Log", "LogEndOffset", "partition.1.topic.events"), zero());
+        source = new InMemoryOffsetSource();
+        lag = new ConsumerGroupLag(Collections.<String>emptyList(), 1, source);
+    }
+
+    @Test
+    public void testControllerReportsLag() {
+        source.commit("app.1", "events", 0, 40);
+        source.commit("app.1", "events", 2, 7);
+
+        SnapshotBuffer snapshot = snapshot(lag.bind(buildIndex()), true);
+        lag.merge();
+        final ConsumerGroupLag.Binding binding = lag.bind(buildIndex());
+        snapshot = snapshot(binding, true);
+        assertEquals(60, get(snapshot, GROUP, ConsumerGroupLag.TOTAL_LAG), 0);
+        assertEquals(60, get(snapshot, GROUP, ConsumerGroupLag.MAX_LAG), 0);
+        assertEquals(2, get(snapshot, GROUP, ConsumerGroupLag.PARTITIONS), 0);
+        // No broker reports the log end offset of partition 2
+        assertEquals(1, get(snapshot, GROUP, ConsumerGroupLag.UNKNOWN_LAG_PARTITIONS), 0);
+        assertEquals(60, get(snapshot, TOPIC, ConsumerGroupLag.TOPIC_TOTAL_LAG), 0);
+        assertEquals(1, get(snapshot, TOPIC, ConsumerGroupLag.TOPIC_UNKNOWN_LAG_PARTITIONS), 0);
+
+        // Only the changed offsets are read
+        source.commit("app.1", "events", 0, 90);
+        lag.merge();
+        assertFalse(binding.isStale());
+        snapshot = snapshot(binding, true);
+        assertEquals(10, get(snapshot, GROUP, ConsumerGroupLag.TOTAL_LAG), 0);
+
+        source.remove("app.1", "events", 0);
+        source.remove("app.1", "events", 2);
+        lag.merge();
+        assertTrue(binding.isStale());
+        assertEquals(-1, slotOf(buildIndex(), GROUP, ConsumerGroupLag.TOTAL_LAG));
+    }
+
+    @Test
+    public void testOtherBrokersReportNoLag() {
+        source.commit("app.1", "events", 0, 40);
+        snapshot(lag.bind(buildIndex()), true);
+        lag.merge();
+        assertTrue(slotOf(buildIndex(), GROUP, ConsumerGroupLag.TOTAL_LAG) >= 0);
+
+        snapshot(lag.bind(buildIndex()), false);
+        lag.merge();
+        assertEquals(1, source.getCloses());
+        assertEquals(-1, slotOf(buildIndex(), GROUP, ConsumerGroupLag.TOTAL_LAG));
+    }
+
+    /**
+     * Snapshot a log end offset of 100 for partition 0 and an unknown one for partition 1.
+     */
+    private SnapshotBuffer snapshot(final ConsumerGroupLag.Binding binding, final boolean controller) {
+        final SnapshotBuffer snapshot = new SnapshotBuffer(buildIndex());
+        final SnapshotIndex index = snapshot.index;
+        snapshot.values[index.offsets[slotOf(index, ThroughputSkew.CONTROLLER_GROUP,
+                ThroughputSkew.ACTIVE_CONTROLLER_COUNT)]] = controller ? 1 : 0;
+        snapshot.values[index.offsets[slotOf(index, "kafka.log.Log.partition.0.topic.events", "LogEndOffset")]] = 100;
+        snapshot.values[index.offsets[slotOf(index, "kafka.log.Log.partition.1.topic.events", "LogEndOffset")]] =
+                Double.NaN;
+        binding.update(snapshot.values);
+        return snapshot;
+    }
+
+    private SnapshotIndex buildIndex() {
+        return SnapshotIndex.build(registry.allMetrics(), catalog,
+                LatencyHistograms.install(registry, catalog, Collections.<String>emptyList()),
+                new DiskStats(Collections.<String>emptyList()),
+                new ThroughputSkew(Collections.<String>emptyList(), 1), lag);
+    }
+
+    private static int slotOf(final SnapshotIndex index, final String group, final String name) {
+        for (int slot = 0; slot < index.size(); slot++) {
+            if (group.equals(index.groups[slot]) && name.equals(index.names[slot])) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private static double get(final SnapshotBuffer snapshot, final String group, final String name) {
+        return snapshot.values[snapshot.index.offsets[slotOf(snapshot.index, group, name)]];
+    }
+
+    private static Gauge<Long> zero() {
+        return new Gauge<Long>() {
+            @Override
+            public Long value() {
+                return 0L;
+            }
+        };
+    }
+}
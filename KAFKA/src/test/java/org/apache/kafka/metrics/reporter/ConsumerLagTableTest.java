@@ -0,0 +1,222 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ConsumerLagTableTest {
+
+    private static void logEndOffsets(final ConsumerLagTable table, final Object... topicPartitionOffsets) {
+        table.beginLogEndOffsets();
+        for (int i = 0; i < topicPartitionOffsets.length; i += 3) {
+            table.offerLogEndOffset((String) topicPartitionOffsets[i], (Integer) topicPartitionOffsets[i + 1],
+                    (Long) topicPartitionOffsets[i + 2]);
+        }
+        table.endLogEndOffsets();
+    }
+
+    private static int groupId(final ConsumerLagTable table, final String group) {
+        for (int groupId = 0; groupId < table.getGroupCapacity(); groupId++) {
+            if (group.equals(table.getGroupName(groupId))) {
+                return groupId;
+            }
+        }
+        throw new IllegalArgumentException(group);
+    }
+
+    @Test
+    public void testLagOfCommittedOffsets() {
+        final ConsumerLagTable table = new ConsumerLagTable();
+        table.setCommitted("g", "t", 0, 40);
+        table.setCommitted("g", "t", 1, 7);
+        logEndOffsets(table, "t", 0, 100L, "t", 0, 90L);
+
+        final int g = groupId(table, "g");
+        assertEquals(60, table.getGroupTotalLag(g));
+        assertEquals(60, table.getGroupMaxLag(g));
+        assertEquals(2, table.getGroupPartitions(g));
+        // Partition 1 has no log end offset
+        assertEquals(1, table.getGroupUnknownLags(g));
+        assertEquals(60, table.getTopicTotalLag(0));
+        assertEquals(1, table.getTopicUnknownLags(0));
+
+        logEndOffsets(table, "t", 0, 100L, "t", 1, 10L);
+        assertEquals(63, table.getGroupTotalLag(g));
+        assertEquals(0, table.getGroupUnknownLags(g));
+
+        table.setCommitted("g", "t", 0, 100);
+        assertEquals(3, table.getGroupTotalLag(g));
+        assertEquals(3, table.getTopicMaxLag(0));
+    }
+
+    @Test
+    public void testUnknownLag() {
+        final ConsumerLagTable table = new ConsumerLagTable();
+        table.setCommitted("g", "t", 0, 40);
+        final int g = groupId(table, "g");
+        assertEquals(-1, table.getGroupTotalLag(g));
+        assertEquals(-1, table.getGroupMaxLag(g));
+        assertEquals(1, table.getGroupUnknownLags(g));
+        assertEquals(-1, table.getTopicTotalLag(0));
+    }
+
+    @Test
+    public void testStaleMaxIsRescanned() {
+        final ConsumerLagTable table = new ConsumerLagTable();
+        table.setCommitted("g", "t", 0, 0);
+        table.setCommitted("g", "t", 1, 0);
+        logEndOffsets(table, "t", 0, 10L, "t", 1, 4L);
+        final int g = groupId(table, "g");
+        assertEquals(10, table.getGroupMaxLag(g));
+        assertEquals(10, table.getTopicMaxLag(0));
+
+        table.setCommitted("g", "t", 0, 8);
+        assertEquals(4, table.getGroupMaxLag(g));
+        assertEquals(4, table.getTopicMaxLag(0));
+        assertEquals(6, table.getGroupTotalLag(g));
+    }
+
+    @Test
+    public void testRemoveCommitted() {
+        final ConsumerLagTable table = new ConsumerLagTable();
+        table.setCommitted("g", "t", 0, 5);
+        table.setCommitted("h", "t", 0, 5);
+        logEndOffsets(table, "t", 0, 10L);
+        final int version = table.getVersion();
+
+        table.removeCommitted("g", "t", 0);
+        table.removeCommitted("g", "t", 0);
+        table.removeCommitted("unknown", "t", 0);
+        table.removeCommitted("h", "unknown", 0);
+        assertEquals(1, table.getEntryCount());
+        assertEquals(5, table.getTopicTotalLag(0));
+        assertEquals(1, table.getTopicEntries(0));
+        // The group lost its last offset
+        assertEquals(version + 1, table.getVersion());
+        assertNull(table.getGroupName(0));
+    }
+
+    @Test
+    public void testClear() {
+        final ConsumerLagTable table = new ConsumerLagTable();
+        table.setCommitted("g", "t", 0, 5);
+        table.setCommitted("h", "u", 1, 5);
+        logEndOffsets(table, "t", 0, 10L, "u", 1, 20L);
+        table.clear();
+        assertEquals(0, table.getEntryCount());
+        assertEquals(0, table.getTopicEntries(0));
+        assertEquals(-1, table.getTopicTotalLag(1));
+        assertNull(table.getGroupName(0));
+        assertNull(table.getGroupName(1));
+
+        // The log end offsets are kept
+        table.setCommitted("g", "u", 1, 15);
+        assertEquals(5, table.getGroupTotalLag(groupId(table, "g")));
+    }
+
+    @Test
+    public void testReusesFreedGroupsAndEntries() {
+        final ConsumerLagTable table = new ConsumerLagTable();
+        for (int partition = 0; partition < 100; partition++) {
+            table.setCommitted("g", "t", partition, 0);
+        }
+        table.clear();
+        for (int partition = 0; partition < 100; partition++) {
+            table.setCommitted("h", "t", partition, 0);
+        }
+        assertEquals(1, table.getGroupCapacity());
+        assertEquals("h", table.getGroupName(0));
+        assertEquals(100, table.getGroupPartitions(0));
+    }
+
+    /**
+     * Random commits and removals, checked against the lag recomputed from scratch. Many
+     * groups share the partitions, so the entries probe past each other.
+     */
+    @Test
+    public void testMatchesRecomputedLag() {
+        final Random random = new Random(24);
+        final ConsumerLagTable table = new ConsumerLagTable();
+        final Map<String, Long> committed = new HashMap<String, Long>();
+        final long[] logEndOffsets = new long[16];
+        for (int partition = 0; partition < logEndOffsets.length; partition++) {
+            logEndOffsets[partition] = random.nextInt(1000);
+        }
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 500; i++) {
+                final String group = "g" + random.nextInt(40);
+                final int partition = random.nextInt(logEndOffsets.length);
+                final String key = group + "/" + partition;
+                if (random.nextInt(3) == 0) {
+                    table.removeCommitted(group, "t", partition);
+                    committed.remove(key);
+                } else {
+                    final long offset = random.nextInt(1000);
+                    table.setCommitted(group, "t", partition, offset);
+                    committed.put(key, offset);
+                }
+            }
+            table.beginLogEndOffsets();
+            for (int partition = 0; partition < logEndOffsets.length; partition++) {
+                logEndOffsets[partition] += random.nextInt(100);
+                // Every fourth partition has no leader this round
+                if ((partition + round) % 4 != 0) {
+                    table.offerLogEndOffset("t", partition, logEndOffsets[partition]);
+                }
+            }
+            table.endLogEndOffsets();
+
+            assertEquals(committed.size(), table.getEntryCount());
+            for (int g = 0; g < 40; g++) {
+                long total = 0;
+                long max = -1;
+                int partitions = 0;
+                int unknown = 0;
+                for (int partition = 0; partition < logEndOffsets.length; partition++) {
+                    final Long offset = committed.get("g" + g + "/" + partition);
+                    if (offset == null) {
+                        continue;
+                    }
+                    partitions++;
+                    if ((partition + round) % 4 == 0) {
+                        unknown++;
+                    } else {
+                        final long lag = Math.max(0, logEndOffsets[partition] - offset);
+                        total += lag;
+                        max = Math.max(max, lag);
+                    }
+                }
+                if (partitions == 0) {
+                    continue;
+                }
+                final int groupId = groupId(table, "g" + g);
+                assertEquals(partitions, table.getGroupPartitions(groupId));
+                assertEquals(unknown, table.getGroupUnknownLags(groupId));
+                assertEquals(max < 0 ? -1 : total, table.getGroupTotalLag(groupId));
+                assertEquals(max, table.getGroupMaxLag(groupId));
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DeltaExportTest {
+
+    private static final String GROUP = "kafka.server.Test";
+
+    private MetricsRegistry registry;
+    private ReporterCatalog catalog;
+    private final JsonRenderer renderer = new JsonRenderer();
+
+    @Before
+    public void setUp() {
+        registry = new MetricsRegistry();
+        catalog = new ReporterCatalog();
+        catalog.add(ReporterCatalog.KAFKA_BROKER, "GAUGE", GROUP + "::Gauge", true, ReporterCatalog.TIER_DEFAULT);
+        catalog.add(ReporterCatalog.KAFKA_BROKER, "COUNTER", GROUP + "::Counter", true, ReporterCatalog.TIER_DEFAULT);
+        catalog.add(ReporterCatalog.KAFKA_BROKER, "METER", GROUP + "::Meter", true, ReporterCatalog.TIER_DEFAULT);
+        catalog.add(ReporterCatalog.KAFKA_BROKER, "GAUGE", GROUP + "::Full", false, ReporterCatalog.TIER_DEFAULT);
+        registry.newGauge(new MetricName("kafka.server", "Test", "Gauge"), constant());
+        registry.newCounter(new MetricName("kafka.server", "Test", "Counter"));
+        registry.newMeter(new MetricName("kafka.server", "Test", "Meter"), "events", TimeUnit.SECONDS);
+        registry.newGauge(new MetricName("kafka.server", "Test", "Full"), constant());
+    }
+
+    @Test
+    public void testUnchangedMetricsAreLeftOut() throws Exception {
+        final SnapshotBuffer snapshot = new SnapshotBuffer(buildIndex());
+        final DeltaExport delta = new DeltaExport(100);
+        set(snapshot, "Gauge", 0, 1);
+        set(snapshot, "Counter", 0, 10);
+        set(snapshot, "Meter", 0, 100);
+
+        final String first = export(delta, snapshot);
+        assertTrue(delta.isKeyframe());
+        assertTrue(first.contains("\"Gauge\":{\"type\":\"gauge\",\"value\":1}"));
+        assertTrue(first.contains("\"Counter\":{\"type\":\"counter\",\"count\":10}"));
+
+        final String second = export(delta, snapshot);
+        assertFalse(delta.isKeyframe());
+        assertFalse(second.contains("\"Gauge\""));
+        assertFalse(second.contains("\"Counter\""));
+        assertFalse(second.contains("\"Meter\""));
+        // Metrics that are not delta exportable are always sent
+        assertTrue(second.contains("\"Full\""));
+    }
+
+    @Test
+    public void testChangedCountsAreSentAsDeltas() throws Exception {
+        final SnapshotBuffer snapshot = new SnapshotBuffer(buildIndex());
+        final DeltaExport delta = new DeltaExport(100);
+        set(snapshot, "Counter", 0, 10);
+        set(snapshot, "Meter", 0, 100);
+        export(delta, snapshot);
+
+        set(snapshot, "Counter", 0, 15);
+        set(snapshot, "Meter", 0, 130);
+        final String json = export(delta, snapshot);
+        assertTrue(json.contains("\"Counter\":{\"type\":\"counter\",\"delta\":5}"));
+        assertTrue(json.contains("\"Meter\":{\"type\":\"meter\",\"delta\":30,"));
+    }
+
+    @Test
+    public void testMeterWithDecayingRatesIsSent() throws Exception {
+        final SnapshotBuffer snapshot = new SnapshotBuffer(buildIndex());
+        final DeltaExport delta = new DeltaExport(100);
+        set(snapshot, "Meter", 0, 100);
+        set(snapshot, "Meter", 2, 8);
+        export(delta, snapshot);
+
+        // The count stays the same while the one minute rate decays
+        set(snapshot, "Meter", 2, 4);
+        final String json = export(delta, snapshot);
+        assertTrue(json, json.contains("\"Meter\":{\"type\":\"meter\",\"delta\":0,"));
+        assertTrue(json, json.contains("\"m1\":4"));
+
+        final String unchanged = export(delta, snapshot);
+        assertFalse(unchanged, unchanged.contains("\"Meter\""));
+    }
+
+    @Test
+    public void testKeyframeInterval() throws Exception {
+        final SnapshotBuffer snapshot = new SnapshotBuffer(buildIndex());
+        final DeltaExport delta = new DeltaExport(3);
+        set(snapshot, "Gauge", 0, 1);
+        export(delta, snapshot);
+        assertTrue(delta.isKeyframe());
+        assertFalse(export(delta, snapshot).contains("\"Gauge\""));
+        assertFalse(export(delta, snapshot).contains("\"Gauge\""));
+        // Every third export sends everything
+        assertTrue(export(delta, snapshot).contains("\"Gauge\":{\"type\":\"gauge\",\"value\":1}"));
+        assertTrue(delta.isKeyframe());
+        assertFalse(export(delta, snapshot).contains("\"Gauge\""));
+    }
+
+    @Test
+    public void testRequestedKeyframe() throws Exception {
+        final SnapshotBuffer snapshot = new SnapshotBuffer(buildIndex());
+        final DeltaExport delta = new DeltaExport(100);
+        set(snapshot, "Counter", 0, 10);
+        export(delta, snapshot);
+        delta.beginExport(true);
+        delta.beginRender(snapshot.index);
+        final String json = render(snapshot, delta);
+        delta.commit();
+        assertTrue(delta.isKeyframe());
+        assertTrue(json.contains("\"Counter\":{\"type\":\"counter\",\"count\":10}"));
+    }
+
+    @Test
+    public void testRebuiltIndexIsKeyframe() throws Exception {
+        final SnapshotBuffer snapshot = new SnapshotBuffer(buildIndex());
+        final DeltaExport delta = new DeltaExport(100);
+        set(snapshot, "Gauge", 0, 1);
+        export(delta, snapshot);
+        export(delta, snapshot);
+
+        final SnapshotBuffer rebuilt = new SnapshotBuffer(buildIndex());
+        set(rebuilt, "Gauge", 0, 1);
+        assertTrue(export(delta, rebuilt).contains("\"Gauge\":{\"type\":\"gauge\",\"value\":1}"));
+        assertTrue(delta.isKeyframe());
+        assertFalse(export(delta, rebuilt).contains("\"Gauge\""));
+    }
+
+    @Test
+    public void testRebuildCarriesValuesOver() throws Exception {
+        // Enough contexts for the open addressing map to probe past collisions
+        for (int i = 0; i < 500; i++) {
+            addGauge("Gauge" + i);
+        }
+        final SnapshotBuffer snapshot = new SnapshotBuffer(buildIndex());
+        for (int i = 0; i < 500; i++) {
+            set(snapshot, "Gauge" + i, 0, i);
+        }
+        final DeltaExport delta = new DeltaExport(100);
+        export(delta, snapshot);
+
+        // Every other gauge is removed and new ones are added
+        for (int i = 0; i < 500; i += 2) {
+            registry.removeMetric(new MetricName("kafka.server", "Test", "Gauge" + i));
+        }
+        for (int i = 500; i < 600; i++) {
+            addGauge("Gauge" + i);
+        }
+        final SnapshotIndex rebuilt = buildIndex();
+        delta.beginExport(false);
+        delta.beginRender(rebuilt);
+        for (int slot = 0; slot < rebuilt.size(); slot++) {
+            if (!rebuilt.names[slot].startsWith("Gauge") || rebuilt.names[slot].equals("Gauge")) {
+                continue;
+            }
+            final int i = Integer.parseInt(rebuilt.names[slot].substring("Gauge".length()));
+            final long last = delta.lastValue(delta.positionOf(slot), 0);
+            if (i < 500) {
+                assertEquals(rebuilt.names[slot], Double.doubleToLongBits(i), last);
+            } else {
+                assertEquals(rebuilt.names[slot], DeltaExport.MISSING, last);
+            }
+        }
+    }
+
+    @Test
+    public void testConsumersKeepSeparateBaselines() throws Exception {
+        final MetricsHttpHandler handler = new MetricsHttpHandler(null, 100);
+        final SnapshotBuffer snapshot = new SnapshotBuffer(buildIndex());
+        set(snapshot, "Counter", 0, 10);
+        export(handler.deltaOf("agent"), snapshot);
+
+        set(snapshot, "Counter", 0, 15);
+        // A second scraper starts from a keyframe and leaves the baseline of the first alone
+        final String curl = export(handler.deltaOf("curl"), snapshot);
+        assertTrue(curl, curl.contains("\"Counter\":{\"type\":\"counter\",\"count\":15}"));
+        final String agent = export(handler.deltaOf("agent"), snapshot);
+        assertTrue(agent, agent.contains("\"Counter\":{\"type\":\"counter\",\"delta\":5}"));
+        assertSame(handler.deltaOf("agent"), handler.deltaOf("agent"));
+    }
+
+    @Test
+    public void testDeltaConsumersAreLimited() {
+        final MetricsHttpHandler handler = new MetricsHttpHandler(null, 100);
+        for (int i = 0; i < MetricsHttpHandler.MAX_DELTA_CONSUMERS; i++) {
+            assertNotNull(handler.deltaOf("consumer" + i));
+        }
+        assertNull(handler.deltaOf("another"));
+        assertNotNull(handler.deltaOf("consumer0"));
+    }
+
+    @Test
+    public void testConsumerParameter() throws Exception {
+        assertEquals("cm agent", MetricsHttpHandler.parameterValue("mode=delta&consumer=cm+agent", "consumer="));
+        assertEquals("a&b", MetricsHttpHandler.parameterValue("consumer=a%26b&mode=delta", "consumer="));
+        assertNull(MetricsHttpHandler.parameterValue("mode=delta&consumer=", "consumer="));
+        assertNull(MetricsHttpHandler.parameterValue("mode=delta", "consumer="));
+        assertNull(MetricsHttpHandler.parameterValue(null, "consumer="));
+    }
+
+    @Test
+    public void testStringsAreWrittenAsUtf8() throws Exception {
+        addGauge("caf\u00e9-\u5ba2\ud83d\ude00\u0001\"\\\ud800");
+        final String json = render(new SnapshotBuffer(buildIndex()), null);
+        assertTrue(json, json.contains("\"caf\u00e9-\u5ba2\ud83d\ude00\\u0001\\\"\\\\?\":{\"type\":\"gauge\""));
+    }
+
+    private void addGauge(final String name) {
+        catalog.add(ReporterCatalog.KAFKA_BROKER, "GAUGE", GROUP + "::" + name, true, ReporterCatalog.TIER_DEFAULT);
+        registry.newGauge(new MetricName("kafka.server", "Test", name), constant());
+    }
+
+    private SnapshotIndex buildIndex() {
+        return SnapshotIndex.build(registry.allMetrics(), catalog,
+                LatencyHistograms.install(registry, catalog, Collections.<String>emptyList()),
+                new DiskStats(Collections.<String>emptyList()),
+                new ThroughputSkew(Collections.<String>emptyList(), 0),
+                new ConsumerGroupLag(Collections.<String>emptyList(), 0, null));
+    }
+
+    private static void set(final SnapshotBuffer snapshot, final String name, final int field, final double value) {
+        final SnapshotIndex index = snapshot.index;
+        for (int slot = 0; slot < index.size(); slot++) {
+            if (GROUP.equals(index.groups[slot]) && name.equals(index.names[slot])) {
+                snapshot.values[index.offsets[slot] + field] = value;
+                return;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private String export(final DeltaExport delta, final SnapshotBuffer snapshot) throws Exception {
+        delta.beginExport(false);
+        delta.beginRender(snapshot.index);
+        final String json = render(snapshot, delta);
+        delta.commit();
+        return json;
+    }
+
+    private String render(final SnapshotBuffer snapshot, final DeltaExport delta) throws Exception {
+        final int length = renderer.render(snapshot, delta);
+        return new String(renderer.getBuffer(), 0, length, "UTF-8");
+    }
+
+    private static Gauge<Double> constant() {
+        return new Gauge<Double>() {
+            @Override
+            public Double value() {
+                return 0.0;
+            }
+        };
+    }
+}
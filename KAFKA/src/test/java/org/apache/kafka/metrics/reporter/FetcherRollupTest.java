@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FetcherRollupTest {
+
+    private static final String THREAD = "ReplicaFetcherThread-0-1";
+    private static final String BROKER_SCOPE = "brokerHost.broker1.brokerPort.9092.clientId." + THREAD;
+    private static final String ALL_BROKERS_SCOPE = "clientId." + THREAD;
+    private static final String FETCHER_GROUP = ReporterCatalog.FETCHER_ROOT + "." + BROKER_SCOPE;
+    private static final String TIMER_GROUP = ReporterCatalog.FETCHER_REQUEST_ROOT + "." + BROKER_SCOPE;
+    private static final String ALL_BROKERS_TIMER_GROUP = ReporterCatalog.FETCHER_REQUEST_ROOT + "." + ALL_BROKERS_SCOPE;
+    private static final int P99 = SnapshotIndex.METERED_WIDTH + 8;
+
+    private MetricsRegistry registry;
+    private ReporterCatalog catalog;
+
+    @Before
+    public void setUp() {
+        registry = new MetricsRegistry();
+        catalog = new ReporterCatalog();
+        catalog.add("KAFKA_REPLICA_FETCHER", "METER", ReporterCatalog.FETCHER_ROOT + "::RequestsPerSec", true,
+                ReporterCatalog.TIER_DEFAULT);
+        catalog.add("KAFKA_REPLICA_FETCHER", "TIMER",
+                ReporterCatalog.FETCHER_REQUEST_ROOT + "::" + FetcherRollup.FETCH_REQUEST_TIMER, true,
+                ReporterCatalog.TIER_DEFAULT);
+        registry.newMeter(new MetricName("kafka.server", "FetcherStats", "RequestsPerSec", BROKER_SCOPE),
+                "requests", TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testFetchTimeIsTimerPercentile() {
+        registerTimer(BROKER_SCOPE);
+        registerTimer(ALL_BROKERS_SCOPE);
+        final SnapshotIndex index = buildIndex();
+        final SnapshotBuffer snapshot = new SnapshotBuffer(index);
+        Arrays.fill(snapshot.exported, true);
+        set(snapshot, FETCHER_GROUP, "RequestsPerSec", 2, 20);
+        set(snapshot, TIMER_GROUP, FetcherRollup.FETCH_REQUEST_TIMER, P99, 120);
+        set(snapshot, ALL_BROKERS_TIMER_GROUP, FetcherRollup.FETCH_REQUEST_TIMER, P99, 80);
+
+        new FetcherRollup(index).update(snapshot.values, snapshot.exported);
+        // The per broker timer is preferred, and not the inverse of the request rate
+        assertEquals(120, get(snapshot, FETCHER_GROUP, FetcherRollup.FETCH_TIME), 0);
+        assertEquals(120, get(snapshot, FetcherRollup.BROKER_ROOT, FetcherRollup.BROKER_MAX_FETCH_TIME), 0);
+        assertEquals(20, get(snapshot, FetcherRollup.BROKER_ROOT, FetcherRollup.BROKER_REQUESTS), 0);
+        assertFalse(snapshot.exported[slotOf(index, TIMER_GROUP, FetcherRollup.FETCH_REQUEST_TIMER)]);
+        assertFalse(snapshot.exported[slotOf(index, ALL_BROKERS_TIMER_GROUP, FetcherRollup.FETCH_REQUEST_TIMER)]);
+    }
+
+    @Test
+    public void testAllBrokersTimer() {
+        registerTimer(ALL_BROKERS_SCOPE);
+        final SnapshotIndex index = buildIndex();
+        final SnapshotBuffer snapshot = new SnapshotBuffer(index);
+        set(snapshot, ALL_BROKERS_TIMER_GROUP, FetcherRollup.FETCH_REQUEST_TIMER, P99, 80);
+
+        new FetcherRollup(index).update(snapshot.values, snapshot.exported);
+        assertEquals(80, get(snapshot, FetcherRollup.BROKER_ROOT, FetcherRollup.BROKER_MAX_FETCH_TIME), 0);
+    }
+
+    @Test
+    public void testNoFetchTimeWithoutTimer() {
+        final SnapshotIndex index = buildIndex();
+        final SnapshotBuffer snapshot = new SnapshotBuffer(index);
+        set(snapshot, FETCHER_GROUP, "RequestsPerSec", 2, 20);
+
+        new FetcherRollup(index).update(snapshot.values, snapshot.exported);
+        assertTrue(Double.isNaN(get(snapshot, FETCHER_GROUP, FetcherRollup.FETCH_TIME)));
+        assertTrue(Double.isNaN(get(snapshot, FetcherRollup.BROKER_ROOT, FetcherRollup.BROKER_MAX_FETCH_TIME)));
+    }
+
+    private void registerTimer(final String scope) {
+        registry.newTimer(new MetricName("kafka.consumer", "FetchRequestAndResponseMetrics",
+                FetcherRollup.FETCH_REQUEST_TIMER, scope), TimeUnit.MILLISECONDS, TimeUnit.SECONDS);
+    }
+
+    private SnapshotIndex buildIndex() {
+        return SnapshotIndex.build(registry.allMetrics(), catalog,
+                LatencyHistograms.install(registry, catalog, Collections.<String>emptyList()),
+                new DiskStats(Collections.<String>emptyList()),
+                new ThroughputSkew(Collections.<String>emptyList(), 0),
+                new ConsumerGroupLag(Collections.<String>emptyList(), 0, null));
+    }
+
+    private static int slotOf(final SnapshotIndex index, final String group, final String name) {
+        for (int slot = 0; slot < index.size(); slot++) {
+            if (group.equals(index.groups[slot]) && name.equals(index.names[slot])) {
+                return slot;
+            }
+        }
+        throw new IllegalArgumentException(group + "::" + name);
+    }
+
+    private static void set(final SnapshotBuffer snapshot, final String group, final String name, final int field,
+                            final double value) {
+        snapshot.values[snapshot.index.offsets[slotOf(snapshot.index, group, name)] + field] = value;
+    }
+
+    private static double get(final SnapshotBuffer snapshot, final String group, final String name) {
+        return snapshot.values[snapshot.index.offsets[slotOf(snapshot.index, group, name)]];
+    }
+}
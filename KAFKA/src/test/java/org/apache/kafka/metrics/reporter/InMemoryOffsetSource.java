@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Committed offsets kept in memory. The first read after creating or closing the source
+ * reports all offsets, later reads the offsets committed or removed since.
+ */
+final class InMemoryOffsetSource implements OffsetSource {
+
+    private final Map<List<Object>, Long> offsets = new LinkedHashMap<List<Object>, Long>();
+    private final List<List<Object>> changed = new ArrayList<List<Object>>();
+    private boolean open;
+    private int closes;
+
+    void commit(final String group, final String topic, final int partition, final long offset) {
+        final List<Object> key = key(group, topic, partition);
+        offsets.put(key, offset);
+        changed.add(key);
+    }
+
+    void remove(final String group, final String topic, final int partition) {
+        final List<Object> key = key(group, topic, partition);
+        offsets.remove(key);
+        changed.add(key);
+    }
+
+    int getCloses() {
+        return closes;
+    }
+
+    @Override
+    public void read(final Listener listener) {
+        final List<List<Object>> keys;
+        if (!open) {
+            open = true;
+            listener.reset();
+            keys = new ArrayList<List<Object>>(offsets.keySet());
+        } else {
+            keys = new ArrayList<List<Object>>(changed);
+        }
+        changed.clear();
+        for (List<Object> key : keys) {
+            final Long offset = offsets.get(key);
+            if (offset == null) {
+                listener.removed((String) key.get(0), (String) key.get(1), (Integer) key.get(2));
+            } else {
+                listener.committed((String) key.get(0), (String) key.get(1), (Integer) key.get(2), offset);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        closes++;
+    }
+
+    private static List<Object> key(final String group, final String topic, final int partition) {
+        final List<Object> ret = new ArrayList<Object>();
+        ret.add(group);
+        ret.add(topic);
+        ret.add(partition);
+        return ret;
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+
+public class LogDirectoryRollupTest {
+
+    @Test
+    public void testGroupOfReplacesDots() {
+        assertEquals("kafka.log.LogManager.logDirectory./data/kafka_1/logs",
+                LogDirectoryRollup.groupOf("/data/kafka.1/logs"));
+    }
+
+    @Test
+    public void testGroupOfRelativePath() {
+        final String absolute = new File("kafka-logs").getAbsolutePath().replace('.', '_');
+        assertEquals("kafka.log.LogManager.logDirectory." + absolute, LogDirectoryRollup.groupOf("kafka-logs"));
+    }
+}
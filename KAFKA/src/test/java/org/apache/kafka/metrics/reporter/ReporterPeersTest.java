@@ -0,0 +1,43 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import kafka.utils.VerifiableProperties;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReporterPeersTest {
+
+    @Test
+    public void testParse() {
+        final Properties props = new Properties();
+        props.setProperty(ReporterPeers.PEERS_PROPERTY, " broker2:24042, ,broker3:24042");
+        assertEquals(Arrays.asList("broker2:24042", "broker3:24042"),
+                ReporterPeers.parse(new VerifiableProperties(props)));
+    }
+
+    @Test
+    public void testNoPeers() {
+        assertEquals(Collections.<String>emptyList(), ReporterPeers.parse(new VerifiableProperties(new Properties())));
+    }
+}
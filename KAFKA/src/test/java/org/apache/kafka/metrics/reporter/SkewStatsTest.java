@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SkewStatsTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void testEqualValues() {
+        final SkewStats stats = new SkewStats(4);
+        final int row = stats.addSeries();
+        for (int column = 0; column < 4; column++) {
+            stats.set(row, column, 25);
+        }
+        assertEquals(0, stats.gini(row), DELTA);
+        assertEquals(1, stats.maxMeanRatio(row), DELTA);
+    }
+
+    @Test
+    public void testSingleNonZeroColumn() {
+        final SkewStats stats = new SkewStats(5);
+        final int row = stats.addSeries();
+        for (int column = 0; column < 5; column++) {
+            stats.set(row, column, column == 2 ? 100 : 0);
+        }
+        assertEquals(4.0 / 5, stats.gini(row), DELTA);
+        assertEquals(5, stats.maxMeanRatio(row), DELTA);
+    }
+
+    @Test
+    public void testAllZero() {
+        final SkewStats stats = new SkewStats(3);
+        final int row = stats.addSeries();
+        for (int column = 0; column < 3; column++) {
+            stats.set(row, column, 0);
+        }
+        assertEquals(0, stats.gini(row), DELTA);
+        assertEquals(1, stats.maxMeanRatio(row), DELTA);
+
+        // A series that drops back to 0 as well
+        stats.set(row, 1, 10);
+        stats.set(row, 1, 0);
+        assertEquals(0, stats.gini(row), DELTA);
+        assertEquals(1, stats.maxMeanRatio(row), DELTA);
+    }
+
+    @Test
+    public void testSeriesWithoutValues() {
+        final SkewStats stats = new SkewStats(3);
+        final int row = stats.addSeries();
+        assertTrue(Double.isNaN(stats.gini(row)));
+        assertTrue(Double.isNaN(stats.maxMeanRatio(row)));
+        stats.set(row, 0, 5);
+        stats.remove(row, 0);
+        assertTrue(Double.isNaN(stats.gini(row)));
+    }
+
+    @Test
+    public void testOnlyPresentColumnsCount() {
+        final SkewStats stats = new SkewStats(4);
+        final int row = stats.addSeries();
+        stats.set(row, 0, 10);
+        stats.set(row, 3, 30);
+        // |10 - 30| / (2 * 40)
+        assertEquals(0.25, stats.gini(row), DELTA);
+        assertEquals(1.5, stats.maxMeanRatio(row), DELTA);
+        stats.set(row, 3, Double.NaN);
+        assertEquals(1, stats.getCount(row));
+        assertEquals(0, stats.gini(row), DELTA);
+    }
+
+    /**
+     * Incremental updates, including decreases of the maximum, against the statistics
+     * recomputed from scratch.
+     */
+    @Test
+    public void testMatchesRecomputedStats() {
+        final Random random = new Random(23);
+        final int columns = 7;
+        final SkewStats stats = new SkewStats(columns);
+        final int[] rows = { stats.addSeries(), stats.addSeries() };
+        final double[][] values = new double[rows.length][columns];
+        for (double[] row : values) {
+            Arrays.fill(row, Double.NaN);
+        }
+        for (int i = 0; i < 2000; i++) {
+            final int row = random.nextInt(rows.length);
+            final int column = random.nextInt(columns);
+            final double value = random.nextInt(4) == 0 ? Double.NaN : random.nextInt(1000);
+            stats.set(rows[row], column, value);
+            values[row][column] = value;
+
+            int count = 0;
+            double sum = 0;
+            double max = 0;
+            double pairs = 0;
+            for (int a = 0; a < columns; a++) {
+                if (Double.isNaN(values[row][a])) {
+                    continue;
+                }
+                count++;
+                sum += values[row][a];
+                max = Math.max(max, values[row][a]);
+                for (int b = a + 1; b < columns; b++) {
+                    if (!Double.isNaN(values[row][b])) {
+                        pairs += Math.abs(values[row][a] - values[row][b]);
+                    }
+                }
+            }
+            if (count == 0) {
+                assertTrue(Double.isNaN(stats.gini(rows[row])));
+            } else if (sum > 0) {
+                assertEquals(pairs / (count * sum), stats.gini(rows[row]), 1e-6);
+                assertEquals(max * count / sum, stats.maxMeanRatio(rows[row]), 1e-6);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpaceSavingSketchTest {
+
+    @Test
+    public void testSelectsHeavyHitters() {
+        final SpaceSavingSketch sketch = new SpaceSavingSketch(10, 1000);
+        final Random random = new Random(42);
+        for (int round = 0; round < 100; round++) {
+            // Three heavy keys among a long tail of light ones
+            sketch.offer(7, 1000);
+            sketch.offer(123, 900);
+            sketch.offer(999, 800);
+            for (int i = 0; i < 20; i++) {
+                sketch.offer(random.nextInt(1000), 10);
+            }
+        }
+        final boolean[] selected = new boolean[1000];
+        sketch.selectTop(3, selected);
+        assertEquals(3, countSelected(selected));
+        assertTrue(selected[7]);
+        assertTrue(selected[123]);
+        assertTrue(selected[999]);
+        assertTrue(sketch.count(7) >= 100 * 1000);
+    }
+
+    @Test
+    public void testErrorBoundsOverestimation() {
+        final SpaceSavingSketch sketch = new SpaceSavingSketch(2, 3);
+        sketch.offer(0, 5);
+        sketch.offer(1, 3);
+        sketch.offer(2, 1);
+        // Key 2 replaced key 1, the smallest count, and inherited it as its error
+        assertEquals(0, sketch.count(1));
+        assertEquals(4, sketch.count(2));
+        assertEquals(3, sketch.error(2));
+        assertEquals(5, sketch.count(0));
+        assertEquals(0, sketch.error(0));
+    }
+
+    @Test
+    public void testSelectTopBreaksTiesUpToK() {
+        final SpaceSavingSketch sketch = new SpaceSavingSketch(4, 4);
+        for (int key = 0; key < 4; key++) {
+            sketch.offer(key, 10);
+        }
+        final boolean[] selected = new boolean[4];
+        sketch.selectTop(2, selected);
+        assertEquals(2, countSelected(selected));
+    }
+
+    @Test
+    public void testSelectTopOfSmallSketchSelectsAll() {
+        final SpaceSavingSketch sketch = new SpaceSavingSketch(4, 10);
+        sketch.offer(3, 1);
+        sketch.offer(8, 2);
+        final boolean[] selected = new boolean[10];
+        sketch.selectTop(5, selected);
+        assertEquals(2, countSelected(selected));
+        assertTrue(selected[3]);
+        assertTrue(selected[8]);
+    }
+
+    @Test
+    public void testDecayLetsRecentKeysOvertakeOldOnes() {
+        final SpaceSavingSketch sketch = new SpaceSavingSketch(4, 4);
+        for (int round = 0; round < 10; round++) {
+            sketch.decay(0.5);
+            sketch.offer(0, 1000);
+        }
+        for (int round = 0; round < 10; round++) {
+            sketch.decay(0.5);
+            sketch.offer(1, 100);
+        }
+        final boolean[] selected = new boolean[4];
+        sketch.selectTop(1, selected);
+        assertTrue(selected[1]);
+        assertTrue(sketch.count(0) < sketch.count(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecayRejectsFactorAboveOne() {
+        new SpaceSavingSketch(1, 1).decay(1.5);
+    }
+
+    @Test
+    public void testCarryOverRenumbersKeys() {
+        final SpaceSavingSketch previous = new SpaceSavingSketch(3, 4);
+        previous.offer(0, 10);
+        previous.offer(1, 20);
+        previous.offer(2, 30);
+        previous.offer(3, 5);
+
+        // Key 0 was removed, keys 1, 2 and 3 became 2, 0 and 1
+        final SpaceSavingSketch sketch = new SpaceSavingSketch(3, 3);
+        sketch.carryOver(previous, new int[] { -1, 2, 0, 1 });
+        assertEquals(30, sketch.count(0));
+        assertEquals(previous.count(3), sketch.count(1));
+        assertEquals(previous.error(3), sketch.error(1));
+        assertEquals(20, sketch.count(2));
+
+        sketch.offer(1, 100);
+        final boolean[] selected = new boolean[3];
+        sketch.selectTop(1, selected);
+        assertArrayEquals(new boolean[] { false, true, false }, selected);
+    }
+
+    @Test
+    public void testCarryOverKeepsLargestCountsWhenSmaller() {
+        final SpaceSavingSketch previous = new SpaceSavingSketch(4, 4);
+        for (int key = 0; key < 4; key++) {
+            previous.offer(key, 10 * (key + 1));
+        }
+        final SpaceSavingSketch sketch = new SpaceSavingSketch(2, 4);
+        sketch.carryOver(previous, new int[] { 0, 1, 2, 3 });
+        assertEquals(0, sketch.count(0));
+        assertEquals(0, sketch.count(1));
+        assertEquals(30, sketch.count(2));
+        assertEquals(40, sketch.count(3));
+    }
+
+    @Test
+    public void testKthLargest() {
+        final long[] values = { 5, 1, 9, 3, 7, 7, 2 };
+        assertEquals(9, SpaceSavingSketch.kthLargest(values.clone(), values.length, 1));
+        assertEquals(7, SpaceSavingSketch.kthLargest(values.clone(), values.length, 2));
+        assertEquals(7, SpaceSavingSketch.kthLargest(values.clone(), values.length, 3));
+        assertEquals(5, SpaceSavingSketch.kthLargest(values.clone(), values.length, 4));
+        assertEquals(1, SpaceSavingSketch.kthLargest(values.clone(), values.length, 7));
+    }
+
+    private static int countSelected(final boolean[] selected) {
+        int count = 0;
+        for (boolean s : selected) {
+            if (s) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
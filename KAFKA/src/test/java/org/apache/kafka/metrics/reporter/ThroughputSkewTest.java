@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kafka.metrics.reporter;
+
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ThroughputSkewTest {
+
+    @Test
+    public void testClusterSkewOnlyExportedByController() {
+        final MetricsRegistry registry = new MetricsRegistry();
+        final ReporterCatalog catalog = new ReporterCatalog();
+        catalog.add(ReporterCatalog.KAFKA_BROKER, "GAUGE",
+                ThroughputSkew.CONTROLLER_GROUP + "::" + ThroughputSkew.ACTIVE_CONTROLLER_COUNT, false,
+                ReporterCatalog.TIER_DEFAULT);
+        registry.newGauge(new MetricName("kafka.controller", "KafkaController", ThroughputSkew.ACTIVE_CONTROLLER_COUNT),
+                new Gauge<Integer>() {
+                    @Override
+                    public Integer value() {
+                        return 0;
+                    }
+                });
+        final ThroughputSkew skew = new ThroughputSkew(Arrays.asList("broker2:24042"), 1);
+        final SnapshotIndex index = SnapshotIndex.build(registry.allMetrics(), catalog,
+                LatencyHistograms.install(registry, catalog, Collections.<String>emptyList()),
+                new DiskStats(Collections.<String>emptyList()), skew,
+                new ConsumerGroupLag(Collections.<String>emptyList(), 0, null));
+        final SnapshotBuffer snapshot = new SnapshotBuffer(index);
+        final ThroughputSkew.Binding binding = skew.bind(index);
+        final int controller = slotOf(index, ThroughputSkew.CONTROLLER_GROUP, ThroughputSkew.ACTIVE_CONTROLLER_COUNT);
+        final int gini = slotOf(index, ThroughputSkew.CLUSTER_ROOT, ThroughputSkew.BYTES_IN_GINI);
+
+        Arrays.fill(snapshot.exported, true);
+        snapshot.values[index.offsets[controller]] = 0;
+        binding.update(snapshot.values, snapshot.exported);
+        assertFalse(snapshot.exported[gini]);
+
+        snapshot.values[index.offsets[controller]] = 1;
+        binding.update(snapshot.values, snapshot.exported);
+        assertTrue(snapshot.exported[gini]);
+    }
+
+    private static int slotOf(final SnapshotIndex index, final String group, final String name) {
+        for (int slot = 0; slot < index.size(); slot++) {
+            if (group.equals(index.groups[slot]) && name.equals(index.names[slot])) {
+                return slot;
+            }
+        }
+        throw new IllegalArgumentException(group + "::" + name);
+    }
+}